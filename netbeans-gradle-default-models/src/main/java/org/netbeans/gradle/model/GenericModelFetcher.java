@@ -32,11 +32,10 @@ import org.netbeans.gradle.model.util.BasicFileUtils;
 import org.netbeans.gradle.model.util.BuilderUtils;
 import org.netbeans.gradle.model.util.ClassLoaderUtils;
 import org.netbeans.gradle.model.util.CollectionUtils;
+import org.netbeans.gradle.model.util.PersistentFileCache;
 import org.netbeans.gradle.model.util.SerializationCache;
 import org.netbeans.gradle.model.util.SerializationCaches;
 import org.netbeans.gradle.model.util.SerializationUtils;
-import org.netbeans.gradle.model.util.TemporaryFileManager;
-import org.netbeans.gradle.model.util.TemporaryFileRef;
 
 public final class GenericModelFetcher {
     private static final Charset INIT_SCRIPT_ENCODING = Charset.forName("UTF-8");
@@ -129,8 +128,64 @@ public final class GenericModelFetcher {
     }
 
     public FetchedModelsOrError getModels(ProjectConnection connection, OperationInitializer init) throws IOException {
+        return getModels(connection, init, null);
+    }
+
+    /**
+     * Fetches the models of the projects of the build. The project info
+     * builders and the tooling models are only queried for the specified
+     * projects, the models of other projects will only contain the basic
+     * information of the project (e.g.: the project tree and the tasks).
+     *
+     * @param connection the connection to the build. This argument cannot be
+     *   {@code null}.
+     * @param init the initializer of the model fetching operation. This
+     *   argument cannot be {@code null}.
+     * @param projectsToQuery the full paths (e.g.: ":subproject") of the
+     *   projects whose models are to be queried. This argument can be
+     *   {@code null}, in which case every project is queried.
+     * @return the fetched models. This method never returns {@code null}.
+     * @throws IOException thrown if the files needed to fetch the models could
+     *   not be created
+     */
+    public FetchedModelsOrError getModels(
+            ProjectConnection connection,
+            OperationInitializer init,
+            Set<String> projectsToQuery) throws IOException {
+        return getModels(connection, init, projectsToQuery, null);
+    }
+
+    /**
+     * Fetches the models of the projects of the build, possibly reusing the
+     * results of the project info builders stored on the Gradle side by
+     * previous queries of the same scope. The stored results are only reused
+     * if the build scripts of the build did not change, but other inputs
+     * (e.g.: new versions of dynamic dependencies) are not checked. So the
+     * caller should use a new scope when the user explicitly requests the
+     * models to be reloaded.
+     *
+     * @param connection the connection to the build. This argument cannot be
+     *   {@code null}.
+     * @param init the initializer of the model fetching operation. This
+     *   argument cannot be {@code null}.
+     * @param projectsToQuery the full paths (e.g.: ":subproject") of the
+     *   projects whose models are to be queried. This argument can be
+     *   {@code null}, in which case every project is queried.
+     * @param resultCacheScope the scope in which the results of the project
+     *   info builders might be reused. This argument can be {@code null}, in
+     *   which case the results are neither reused nor stored.
+     * @return the fetched models. This method never returns {@code null}.
+     * @throws IOException thrown if the files needed to fetch the models could
+     *   not be created
+     */
+    public FetchedModelsOrError getModels(
+            ProjectConnection connection,
+            OperationInitializer init,
+            Set<String> projectsToQuery,
+            String resultCacheScope) throws IOException {
+
         BuildActionExecuter<ActionFetchedModelsOrError> executer = connection.action(
-                new ModelFetcherBuildAction(buildInfoBuilders, modelClasses));
+                new ModelFetcherBuildAction(buildInfoBuilders, modelClasses, projectsToQuery));
 
         BuildOperationArgs buildOPArgs = new BuildOperationArgs();
         init.initOperation(buildOPArgs);
@@ -141,37 +196,44 @@ public final class GenericModelFetcher {
             userArgs = new String[0];
         }
 
-        String initScript = getInitScript();
+        File initScriptFile = getInitScriptFile();
 
-        initScript = initScript.replace(
-                "$NB_BOOT_CLASSPATH",
-                toPastableString(ClassLoaderUtils.getLocationOfClassPath().getPath()));
+        ModelQueryInput modelInput = new ModelQueryInput(
+                projectInfoBuilders.getSerializableBuilderMap(),
+                projectsToQuery,
+                resultCacheScope);
+        File modelInputFile = PersistentFileCache.getDefault()
+                .getFile(modelInputPrefix, ".bin", modelInput.toCompactBytes());
 
-        TemporaryFileManager fileManager = TemporaryFileManager.getDefault();
+        String[] executerArgs = new String[userArgs.length + 3];
+        System.arraycopy(userArgs, 0, executerArgs, 0, userArgs.length);
 
-        ModelQueryInput modelInput = new ModelQueryInput(projectInfoBuilders.getSerializableBuilderMap());
-        TemporaryFileRef modelInputFile = fileManager.createFileFromSerialized(modelInputPrefix, modelInput);
-        try {
-            initScript = initScript.replace("$INPUT_FILE", toPastableString(modelInputFile.getFile()));
+        executerArgs[executerArgs.length - 3] = "--init-script";
+        executerArgs[executerArgs.length - 2] = initScriptFile.getPath();
+        executerArgs[executerArgs.length - 1] = "-P" + ModelQueryInput.MODEL_INPUT_PROPERTY + "=" + modelInputFile.getPath();
 
-            TemporaryFileRef initScriptRef = fileManager
-                    .createFile(initScriptPrefix, initScript, INIT_SCRIPT_ENCODING);
-            try {
-                String[] executerArgs = new String[userArgs.length + 2];
-                System.arraycopy(userArgs, 0, executerArgs, 0, userArgs.length);
+        executer.withArguments(executerArgs);
+
+        return transformActionModels(executer.run());
+    }
 
-                executerArgs[executerArgs.length - 2] = "--init-script";
-                executerArgs[executerArgs.length - 1] = initScriptRef.getFile().getPath();
+    /**
+     * Returns the init script file which only depends on the location of this
+     * library. Since the content of the init script is always the same, Gradle
+     * can reuse the compiled init script between builds.
+     */
+    private static File getInitScriptFile() throws IOException {
+        String initScript = getInitScript();
 
-                executer.withArguments(executerArgs);
+        initScript = initScript.replace(
+                "$NB_BOOT_CLASSPATH",
+                toPastableString(ClassLoaderUtils.getLocationOfClassPath().getPath()));
+        initScript = initScript.replace(
+                "$MODEL_INPUT_PROPERTY",
+                toPastableString(ModelQueryInput.MODEL_INPUT_PROPERTY));
 
-                return transformActionModels(executer.run());
-            } finally {
-                initScriptRef.close();
-            }
-        } finally {
-            modelInputFile.close();
-        }
+        return PersistentFileCache.getDefault()
+                .getFile(initScriptPrefix, ".gradle", initScript, INIT_SCRIPT_ENCODING);
     }
 
     private static String toPastableString(File file) {
@@ -281,12 +343,18 @@ public final class GenericModelFetcher {
         // key -> list of BuildInfoBuilder
         private final CustomSerializedMap.Deserializer serializedBuildInfoRequests;
         private final Set<Class<?>> modelClasses;
+        // null means all projects
+        private final Set<String> projectsToQuery;
 
         public ModelFetcherBuildAction(
                 GradleInfoQueryMap buildInfoRequests,
-                Set<Class<?>> modelClasses) {
+                Set<Class<?>> modelClasses,
+                Set<String> projectsToQuery) {
             this.serializedBuildInfoRequests = buildInfoRequests.getSerializableBuilderMap();
             this.modelClasses = modelClasses;
+            this.projectsToQuery = projectsToQuery != null
+                    ? new HashSet<String>(projectsToQuery)
+                    : null;
         }
 
         private CustomSerializedMap getBuildInfoResults(BuildController controller) {
@@ -327,7 +395,7 @@ public final class GenericModelFetcher {
         }
 
         public ActionFetchedModels executeUnsafe(EvaluatedBuild evaluatedBuild, BuildController controller) {
-            AllProjectInfoBuilder builder = new AllProjectInfoBuilder(modelClasses, evaluatedBuild);
+            AllProjectInfoBuilder builder = new AllProjectInfoBuilder(modelClasses, projectsToQuery, evaluatedBuild);
 
             Map<String, ActionFetchedProjectModels> fetchedModels = builder.buildProjectModels(controller);
             ActionFetchedProjectModels defaultModels = fetchedModels.remove(builder.getDefaultProjectPath());
@@ -373,6 +441,7 @@ public final class GenericModelFetcher {
 
     private static final class AllProjectInfoBuilder {
         private final Set<Class<?>> modelClasses;
+        private final Set<String> projectsToQuery;
         private final Map<String, BasicGradleProject> basicInfos;
         private final Map<String, ModelQueryOutput> customInfos;
         private final BasicGradleProject basicRootProject;
@@ -380,9 +449,13 @@ public final class GenericModelFetcher {
 
         private final SerializationCache serializationCache;
 
-        public AllProjectInfoBuilder(Set<Class<?>> modelClasses, EvaluatedBuild evaluatedBuild) {
+        public AllProjectInfoBuilder(
+                Set<Class<?>> modelClasses,
+                Set<String> projectsToQuery,
+                EvaluatedBuild evaluatedBuild) {
             int projectCount = evaluatedBuild.allProjects.size();
             this.modelClasses = modelClasses;
+            this.projectsToQuery = projectsToQuery;
             this.basicInfos = CollectionUtils.newHashMap(projectCount);
             this.customInfos = CollectionUtils.newHashMap(projectCount);
             this.basicRootProject = evaluatedBuild.buildModel.getRootProject();
@@ -470,7 +543,7 @@ public final class GenericModelFetcher {
 
             Map<Class<?>, Object> toolingModels;
 
-            if (modelClasses.isEmpty()) {
+            if (modelClasses.isEmpty() || !shouldQueryProject(projectPath)) {
                 toolingModels = Collections.emptyMap();
             }
             else {
@@ -492,6 +565,10 @@ public final class GenericModelFetcher {
                     modelOutput.getIssue());
         }
 
+        private boolean shouldQueryProject(String projectPath) {
+            return projectsToQuery == null || projectsToQuery.contains(projectPath);
+        }
+
         private GradleProjectTree parseTrees(
                 BuildController controller,
                 BasicGradleProject project,
@@ -25,9 +25,20 @@ public final class CustomSerializedMap implements Serializable {
 
     public static final class Builder {
         private final Map<Object, List<Object>> map;
+        private final Map<Object, SerializedEntries> serializedMap;
 
         public Builder(int expectedSize) {
             this.map = CollectionUtils.newHashMap(expectedSize);
+            this.serializedMap = new HashMap<Object, SerializedEntries>();
+        }
+
+        /**
+         * Adds values which were already serialized. The key must not be
+         * passed to the other methods adding values.
+         */
+        public void addSerializedValues(Object key, SerializedEntries values) {
+            if (values == null) throw new NullPointerException("values");
+            serializedMap.put(key, values);
         }
 
         public void addValues(Object key, Collection<?> values) {
@@ -65,7 +76,9 @@ public final class CustomSerializedMap implements Serializable {
     private CustomSerializedMap(Builder builder, Map<Object, Throwable> issueResult) {
         Map<Object, Throwable> problems = issueResult;
 
-        Map<Object, SerializedEntries> mutableMap = CollectionUtils.newHashMap(builder.map.size());
+        Map<Object, SerializedEntries> mutableMap
+                = CollectionUtils.newHashMap(builder.map.size() + builder.serializedMap.size());
+        mutableMap.putAll(builder.serializedMap);
         for (Map.Entry<Object, List<Object>> entry: builder.map.entrySet()) {
             Object key = entry.getKey();
             List<Object> value = entry.getValue();
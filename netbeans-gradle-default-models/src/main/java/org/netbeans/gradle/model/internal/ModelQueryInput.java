@@ -1,21 +1,197 @@
 package org.netbeans.gradle.model.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import org.netbeans.gradle.model.api.ProjectInfoBuilder2;
 import org.netbeans.gradle.model.util.SerializationCache;
+import org.netbeans.gradle.model.util.SerializationCaches;
+import org.netbeans.gradle.model.util.SerializationUtils;
 import org.netbeans.gradle.model.util.TransferableExceptionWrapper;
 
 public final class ModelQueryInput implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The project property containing the path of the file storing the
+     * model query input.
+     */
+    public static final String MODEL_INPUT_PROPERTY = "org.netbeans.gradle.modelQueryInput";
+
+    private static final int COMPACT_FORMAT_MAGIC = 0x4E424D51; // "NBMQ"
+    private static final int COMPACT_FORMAT_VERSION = 2;
+
     // Object -> List of ProjectInfoBuilder<?>
     private final CustomSerializedMap.Deserializer projectInfoRequests;
 
+    // null means all projects
+    private final Set<String> projectsToQuery;
+
+    // null means that the results must not be cached
+    private final String resultCacheScope;
+
     public ModelQueryInput(CustomSerializedMap.Deserializer projectInfoRequests) {
+        this(projectInfoRequests, null);
+    }
+
+    public ModelQueryInput(CustomSerializedMap.Deserializer projectInfoRequests, Set<String> projectsToQuery) {
+        this(projectInfoRequests, projectsToQuery, null);
+    }
+
+    /**
+     * Creates a new {@code ModelQueryInput}.
+     *
+     * @param projectInfoRequests the project info builders to be executed for
+     *   the queried projects. This argument cannot be {@code null}.
+     * @param projectsToQuery the full paths (e.g.: ":subproject") of the
+     *   projects for which the project info builders need to be executed. For
+     *   other projects, only the basic information is retrieved. This argument
+     *   can be {@code null}, in which case every project is queried.
+     * @param resultCacheScope the scope in which the results of the project
+     *   info builders might be reused by later queries (see
+     *   {@link ProjectInfoResultCache}). This argument can be {@code null},
+     *   in which case the results are neither reused nor stored.
+     */
+    public ModelQueryInput(
+            CustomSerializedMap.Deserializer projectInfoRequests,
+            Set<String> projectsToQuery,
+            String resultCacheScope) {
         if (projectInfoRequests == null) throw new NullPointerException("projectInfoRequests");
         this.projectInfoRequests = projectInfoRequests;
+        this.projectsToQuery = projectsToQuery != null
+                ? Collections.unmodifiableSet(new HashSet<String>(projectsToQuery))
+                : null;
+        this.resultCacheScope = resultCacheScope;
+    }
+
+    public boolean shouldQueryProject(String projectPath) {
+        return projectsToQuery == null || projectsToQuery.contains(projectPath);
+    }
+
+    /**
+     * Returns the scope in which the results of the project info builders
+     * might be reused or {@code null} if the results must not be cached.
+     */
+    public String getResultCacheScope() {
+        return resultCacheScope;
+    }
+
+    /**
+     * Returns this input in a compact form to be read by
+     * {@link #fromCompactBytes(byte[]) fromCompactBytes}. Only the project info
+     * builders (which are arbitrary objects) are stored using Java
+     * serialization. The same input always results in the same bytes within
+     * the same VM.
+     */
+    public byte[] toCompactBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 * 1024);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(COMPACT_FORMAT_MAGIC);
+            output.writeInt(COMPACT_FORMAT_VERSION);
+
+            if (projectsToQuery != null) {
+                output.writeInt(projectsToQuery.size());
+                // Sorted, so that the same set is always written the same way.
+                for (String projectPath: new TreeSet<String>(projectsToQuery)) {
+                    output.writeUTF(projectPath);
+                }
+            }
+            else {
+                output.writeInt(-1);
+            }
+
+            output.writeBoolean(resultCacheScope != null);
+            if (resultCacheScope != null) {
+                output.writeUTF(resultCacheScope);
+            }
+
+            byte[] serializedRequests = SerializationUtils.serializeObject(projectInfoRequests);
+            output.writeInt(serializedRequests.length);
+            output.write(serializedRequests);
+            output.close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ModelQueryInput fromCompactBytes(byte[] compactBytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(compactBytes));
+
+        if (input.readInt() != COMPACT_FORMAT_MAGIC) {
+            throw new IOException("Not a model query input.");
+        }
+        int version = input.readInt();
+        if (version != COMPACT_FORMAT_VERSION) {
+            throw new IOException("Unsupported model query input version: " + version);
+        }
+
+        Set<String> projectsToQuery = null;
+        int projectCount = input.readInt();
+        if (projectCount >= 0) {
+            projectsToQuery = new HashSet<String>(2 * projectCount);
+            for (int i = 0; i < projectCount; i++) {
+                projectsToQuery.add(input.readUTF());
+            }
+        }
+
+        String resultCacheScope = input.readBoolean() ? input.readUTF() : null;
+
+        byte[] serializedRequests = new byte[input.readInt()];
+        input.readFully(serializedRequests);
+
+        Object projectInfoRequests;
+        try {
+            projectInfoRequests = SerializationUtils.deserializeObject(
+                    serializedRequests,
+                    SerializationCaches.getDefault(),
+                    ModelQueryInput.class.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            IOException toThrow = new IOException("Unexpected class in model query input.");
+            toThrow.initCause(ex);
+            throw toThrow;
+        }
+
+        return new ModelQueryInput(
+                (CustomSerializedMap.Deserializer)projectInfoRequests,
+                projectsToQuery,
+                resultCacheScope);
+    }
+
+    /**
+     * Reads a file written in the format of {@link #toCompactBytes() toCompactBytes}.
+     * This method is called by the init script loading the models.
+     */
+    public static ModelQueryInput readFromFile(File inputFile) throws IOException {
+        if (inputFile == null) throw new NullPointerException("inputFile");
+
+        long fileLength = inputFile.length();
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Model query input is too large: " + inputFile);
+        }
+
+        byte[] content = new byte[(int)fileLength];
+        InputStream input = new FileInputStream(inputFile);
+        try {
+            new DataInputStream(input).readFully(content);
+        } finally {
+            input.close();
+        }
+
+        return fromCompactBytes(content);
     }
 
     public Map<Object, List<?>> getProjectInfoRequests(SerializationCache cache, ClassLoader parent) {
@@ -0,0 +1,116 @@
+package org.netbeans.gradle.model.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.gradle.model.util.BasicFileUtils;
+import org.netbeans.gradle.model.util.PersistentFileCache;
+
+/**
+ * Stores the serialized results of project info builders on the Gradle side,
+ * so that the builders do not have to be executed again if their inputs did
+ * not change. The entries are stored as files because the classes of this
+ * library are loaded by a new class loader in each build.
+ * <P>
+ * The inputs of the results cannot be determined completely (e.g.: a new
+ * snapshot version of a dependency or a script applied from an arbitrary
+ * location), so the results are only reused within the same scope: The IDE
+ * chooses a new scope in each session and whenever the user explicitly
+ * requests the project to be reloaded. See {@link #tryGetCacheKey(String, String, String) tryGetCacheKey}.
+ * <P>
+ * The methods of this class are safe to be called from multiple threads
+ * concurrently.
+ */
+public final class ProjectInfoResultCache {
+    private static final Logger LOGGER = Logger.getLogger(ProjectInfoResultCache.class.getName());
+
+    // Entries of a previous session are never used again, so they are removed
+    // much sooner than the other cached files.
+    private static final long STALE_ENTRY_AGE_MS = 24L * 60 * 60 * 1000;
+    private static final String ENTRY_PREFIX = "results";
+    private static final String ENTRY_SUFFIX = ".bin";
+
+    private static final ProjectInfoResultCache DEFAULT = new ProjectInfoResultCache(null);
+
+    private final PersistentFileCache files;
+
+    /**
+     * Creates a new cache storing the entries in the given directory.
+     *
+     * @param cacheDir the directory where the entries are stored. This
+     *   argument can be {@code null}, in which case a subdirectory of the
+     *   {@link BasicFileUtils#getPluginTmpDir() plugin's temporary directory}
+     *   is used.
+     */
+    public ProjectInfoResultCache(File cacheDir) {
+        File dir = cacheDir != null
+                ? cacheDir
+                : new File(BasicFileUtils.getPluginTmpDir(), "project-info-results");
+        this.files = new PersistentFileCache(dir, STALE_ENTRY_AGE_MS);
+    }
+
+    public static ProjectInfoResultCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the key identifying the results of the given builders for the
+     * given inputs or {@code null} if the results must not be cached.
+     *
+     * @param scope the scope chosen by the IDE in which the results might be
+     *   reused. This argument can be {@code null}, in which case the results
+     *   are not cached.
+     * @param inputsFingerprint the fingerprint of the inputs of the project.
+     *   This argument can be {@code null}, if the inputs could not be
+     *   determined, in which case the results are not cached.
+     * @param buildersFingerprint the fingerprint of the builders. This
+     *   argument can be {@code null}, if the builders could not be
+     *   fingerprinted, in which case the results are not cached.
+     * @return the key identifying the results of the given builders for the
+     *   given inputs or {@code null} if the results must not be cached
+     */
+    public static String tryGetCacheKey(String scope, String inputsFingerprint, String buildersFingerprint) {
+        if (scope == null || inputsFingerprint == null || buildersFingerprint == null) {
+            return null;
+        }
+
+        StringBuilder result = new StringBuilder(
+                scope.length() + inputsFingerprint.length() + buildersFingerprint.length() + 16);
+        result.append("scope=").append(scope).append('\n');
+        result.append(inputsFingerprint).append('\n');
+        result.append(buildersFingerprint);
+        return result.toString();
+    }
+
+    /**
+     * Returns the results stored for the given key or {@code null} if there
+     * are no such results (or they could not be read).
+     */
+    public SerializedEntries tryGet(String cacheKey) {
+        if (cacheKey == null) throw new NullPointerException("cacheKey");
+
+        try {
+            byte[] content = files.tryReadEntry(ENTRY_PREFIX, cacheKey, ENTRY_SUFFIX);
+            return content != null ? SerializedEntries.fromSerializedValues(content) : null;
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to read cached project info results.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the results for the given key. Failures are logged but otherwise
+     * ignored.
+     */
+    public void put(String cacheKey, SerializedEntries results) {
+        if (cacheKey == null) throw new NullPointerException("cacheKey");
+        if (results == null) throw new NullPointerException("results");
+
+        try {
+            files.writeEntry(ENTRY_PREFIX, cacheKey, ENTRY_SUFFIX, results.getSerializedValues());
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to store project info results.", ex);
+        }
+    }
+}
@@ -16,6 +16,23 @@ public final class SerializedEntries implements Serializable {
         this.serializedValues = SerializationUtils.serializeObject(new ArrayList<Object>(values));
     }
 
+    private SerializedEntries(byte[] serializedValues) {
+        this.serializedValues = serializedValues;
+    }
+
+    /**
+     * Creates entries from the bytes returned by a previous call to
+     * {@link #getSerializedValues() getSerializedValues}.
+     */
+    public static SerializedEntries fromSerializedValues(byte[] serializedValues) {
+        if (serializedValues == null) throw new NullPointerException("serializedValues");
+        return new SerializedEntries(serializedValues.clone());
+    }
+
+    public byte[] getSerializedValues() {
+        return serializedValues.clone();
+    }
+
     public List<?> getUnserialized(SerializationCache cache, ClassLoader classLoader) {
         try {
             Object result = classLoader != null
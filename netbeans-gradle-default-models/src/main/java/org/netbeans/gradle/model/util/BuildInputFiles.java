@@ -0,0 +1,167 @@
+package org.netbeans.gradle.model.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Defines the files which are likely to affect the configuration of the
+ * projects of a Gradle build. Both the IDE and the model builders executed by
+ * Gradle use these files to detect if a build might have changed, so that they
+ * agree on what is considered a change.
+ * <P>
+ * This is only an approximation: Scripts applied from outside the directories
+ * of the projects (e.g.: {@code apply from: '../common/java.gradle'} or from a
+ * URL) and resolved dependencies (e.g.: snapshot versions) are not covered.
+ * <P>
+ * The returned lists are ordered, so that they can be fingerprinted without
+ * sorting them again. Files which do not exist are only included if their
+ * existence might matter (e.g.: a missing settings script).
+ */
+public final class BuildInputFiles {
+    public static final String GRADLE_PROPERTIES_NAME = "gradle.properties";
+
+    private static final String[] SCRIPT_EXTENSIONS = {".gradle", ".gradle.kts"};
+
+    private static final String SETTINGS_BASE_NAME = "settings";
+    private static final String GRADLE_DIR_NAME = "gradle";
+    private static final String WRAPPER_PROPERTIES_PATH = "wrapper" + File.separator + "gradle-wrapper.properties";
+    private static final String BUILD_SRC_NAME = "buildSrc";
+    private static final String INIT_SCRIPT_BASE_NAME = "init";
+    private static final String INIT_D_DIR_NAME = "init.d";
+
+    public static boolean isScriptFileName(String fileName) {
+        for (String extension: SCRIPT_EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the inputs shared by every project of the build: the settings
+     * script, the {@code gradle.properties}, the wrapper properties and the
+     * scripts in the {@code gradle} directory of the root project and the
+     * content of the {@code buildSrc} directory.
+     */
+    public static List<File> getBuildFiles(File rootProjectDir) {
+        if (rootProjectDir == null) throw new NullPointerException("rootProjectDir");
+
+        List<File> result = new ArrayList<File>();
+        addScripts(rootProjectDir, SETTINGS_BASE_NAME, result);
+        result.add(new File(rootProjectDir, GRADLE_PROPERTIES_NAME));
+
+        File gradleDir = new File(rootProjectDir, GRADLE_DIR_NAME);
+        result.add(new File(gradleDir, WRAPPER_PROPERTIES_PATH));
+        addScriptsInDir(gradleDir, result);
+
+        addBuildSrcFiles(new File(rootProjectDir, BUILD_SRC_NAME), true, result);
+        return result;
+    }
+
+    /**
+     * Returns the inputs of a single project, not including the inputs of its
+     * parent projects: its build script, its {@code gradle.properties} and the
+     * other scripts in its directory (which might be applied by the build
+     * script).
+     *
+     * @param projectDir the directory of the project. This argument cannot be
+     *   {@code null}.
+     * @param buildScript the build script of the project. This argument can be
+     *   {@code null} if the project has no build script.
+     * @return the inputs of the given project. This method never returns
+     *   {@code null}.
+     */
+    public static List<File> getProjectFiles(File projectDir, File buildScript) {
+        if (projectDir == null) throw new NullPointerException("projectDir");
+
+        List<File> result = new ArrayList<File>();
+        if (buildScript != null) {
+            result.add(buildScript);
+        }
+        result.add(new File(projectDir, GRADLE_PROPERTIES_NAME));
+
+        List<File> scripts = new ArrayList<File>();
+        addScriptsInDir(projectDir, scripts);
+        for (File script: scripts) {
+            if (!script.equals(buildScript)) {
+                result.add(script);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the inputs of a build which are not part of the build itself:
+     * the {@code gradle.properties} and the init scripts in the Gradle user
+     * home directory and the explicitly specified init scripts.
+     *
+     * @param gradleUserHome the Gradle user home directory. This argument can
+     *   be {@code null} if the Gradle user home is not known.
+     * @param initScripts the init scripts passed to Gradle. This argument
+     *   cannot be {@code null}.
+     * @return the inputs of a build which are not part of the build itself.
+     *   This method never returns {@code null}.
+     */
+    public static List<File> getEnvironmentFiles(File gradleUserHome, Collection<File> initScripts) {
+        if (initScripts == null) throw new NullPointerException("initScripts");
+
+        List<File> result = new ArrayList<File>();
+        if (gradleUserHome != null) {
+            result.add(new File(gradleUserHome, GRADLE_PROPERTIES_NAME));
+            addScripts(gradleUserHome, INIT_SCRIPT_BASE_NAME, result);
+            addScriptsInDir(new File(gradleUserHome, INIT_D_DIR_NAME), result);
+        }
+        result.addAll(initScripts);
+        return result;
+    }
+
+    private static void addScripts(File dir, String baseName, List<File> result) {
+        for (String extension: SCRIPT_EXTENSIONS) {
+            result.add(new File(dir, baseName + extension));
+        }
+    }
+
+    private static void addScriptsInDir(File dir, List<File> result) {
+        File[] files = listSortedFiles(dir);
+        for (File file: files) {
+            if (isScriptFileName(file.getName()) && file.isFile()) {
+                result.add(file);
+            }
+        }
+    }
+
+    private static void addBuildSrcFiles(File dir, boolean buildSrcRoot, List<File> result) {
+        for (File file: listSortedFiles(dir)) {
+            if (file.isDirectory()) {
+                if (!buildSrcRoot || !isBuildOutputDirName(file.getName())) {
+                    addBuildSrcFiles(file, false, result);
+                }
+            }
+            else {
+                result.add(file);
+            }
+        }
+    }
+
+    private static boolean isBuildOutputDirName(String name) {
+        return "build".equals(name) || ".gradle".equals(name);
+    }
+
+    private static File[] listSortedFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(files);
+        return files;
+    }
+
+    private BuildInputFiles() {
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,278 @@
+package org.netbeans.gradle.model.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Defines a directory of files whose names are derived from their content.
+ * Unlike the files of {@link TemporaryFileManager}, these files are never
+ * removed while in use and are kept between sessions, so the same content is
+ * always available in the same file.
+ * <P>
+ * The cache can also store files identified by an explicit key instead of
+ * their content (see {@link #tryReadEntry(String, String, String) tryReadEntry}
+ * and {@link #writeEntry(String, String, String, byte[]) writeEntry}).
+ * <P>
+ * Files not used for a long time are removed when the cache is first used.
+ * <P>
+ * The methods of this class are safe to be called from multiple threads
+ * concurrently.
+ */
+public final class PersistentFileCache {
+    private static final Logger LOGGER = Logger.getLogger(PersistentFileCache.class.getName());
+
+    private static final long STALE_FILE_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+
+    private static final PersistentFileCache DEFAULT = new PersistentFileCache(null);
+
+    private final File explicitDir;
+    private final long staleFileAgeMs;
+    private final AtomicBoolean staleFilesRemoved;
+    // The files verified (and touched) by this cache.
+    private final ConcurrentMap<File, Boolean> verifiedFiles;
+
+    /**
+     * Creates a new cache storing the files in the given directory.
+     *
+     * @param cacheDir the directory where the files are stored. This argument
+     *   can be {@code null}, in which case a subdirectory of the
+     *   {@link BasicFileUtils#getPluginTmpDir() plugin's temporary directory}
+     *   is used.
+     */
+    public PersistentFileCache(File cacheDir) {
+        this(cacheDir, STALE_FILE_AGE_MS);
+    }
+
+    /**
+     * Creates a new cache storing the files in the given directory and
+     * removing the files not used for the given time.
+     *
+     * @param cacheDir the directory where the files are stored. This argument
+     *   can be {@code null}, in which case a subdirectory of the
+     *   {@link BasicFileUtils#getPluginTmpDir() plugin's temporary directory}
+     *   is used.
+     * @param staleFileAgeMs the time in milliseconds after which a file not
+     *   used is removed. This argument must be greater than zero.
+     */
+    public PersistentFileCache(File cacheDir, long staleFileAgeMs) {
+        if (staleFileAgeMs <= 0) throw new IllegalArgumentException("staleFileAgeMs must be positive.");
+
+        this.explicitDir = cacheDir;
+        this.staleFileAgeMs = staleFileAgeMs;
+        this.staleFilesRemoved = new AtomicBoolean(false);
+        this.verifiedFiles = new ConcurrentHashMap<File, Boolean>();
+    }
+
+    public static PersistentFileCache getDefault() {
+        return DEFAULT;
+    }
+
+    private File getCacheDir() {
+        return explicitDir != null
+                ? explicitDir
+                : new File(BasicFileUtils.getPluginTmpDir(), "content-cache");
+    }
+
+    public File getFile(String preferredPrefix, String suffix, String strContent, Charset charset) throws IOException {
+        return getFile(preferredPrefix, suffix, strContent.getBytes(charset.name()));
+    }
+
+    /**
+     * Returns a file with the given content, creating it if there is no such
+     * file yet. The returned file must not be modified.
+     *
+     * @param preferredPrefix the prefix of the name of the file. This argument
+     *   cannot be {@code null}.
+     * @param suffix the suffix of the name of the file (e.g.: ".gradle"). This
+     *   argument cannot be {@code null}.
+     * @param content the content of the file. This argument cannot be
+     *   {@code null}.
+     * @return the file with the given content. This method never returns
+     *   {@code null}.
+     * @throws IOException thrown if the file could not be created
+     */
+    public File getFile(String preferredPrefix, String suffix, byte[] content) throws IOException {
+        if (preferredPrefix == null) throw new NullPointerException("preferredPrefix");
+        if (suffix == null) throw new NullPointerException("suffix");
+        if (content == null) throw new NullPointerException("content");
+
+        File cacheDir = getCacheDirForUse();
+        File file = new File(cacheDir, preferredPrefix + "-" + BasicFileUtils.getMD5(content) + suffix);
+        if (verifiedFiles.containsKey(file) && file.isFile()) {
+            return file;
+        }
+
+        if (hasContent(file, content)) {
+            // Prevent the file from being removed as stale.
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                LOGGER.log(Level.FINE, "Failed to update the last modified time of {0}", file);
+            }
+        }
+        else {
+            writeFile(cacheDir, file, content);
+        }
+
+        verifiedFiles.put(file, Boolean.TRUE);
+        return file;
+    }
+
+    /**
+     * Returns the content stored for the given key or {@code null} if nothing
+     * was stored for the key (or the stored content could not be read).
+     *
+     * @param prefix the prefix of the name of the file. This argument cannot
+     *   be {@code null}.
+     * @param key the key identifying the content. This argument cannot be
+     *   {@code null}.
+     * @param suffix the suffix of the name of the file. This argument cannot
+     *   be {@code null}.
+     * @return the content stored for the given key or {@code null} if there
+     *   is no such content
+     * @throws IOException thrown if the file could not be read
+     */
+    public byte[] tryReadEntry(String prefix, String key, String suffix) throws IOException {
+        File file = getEntryFile(prefix, key, suffix);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        byte[] result = tryReadAll(file);
+        if (result != null && !file.setLastModified(System.currentTimeMillis())) {
+            LOGGER.log(Level.FINE, "Failed to update the last modified time of {0}", file);
+        }
+        return result;
+    }
+
+    /**
+     * Stores the given content for the given key, replacing the content
+     * previously stored for the same key. Readers never see a partially
+     * written content.
+     *
+     * @param prefix the prefix of the name of the file. This argument cannot
+     *   be {@code null}.
+     * @param key the key identifying the content. This argument cannot be
+     *   {@code null}.
+     * @param suffix the suffix of the name of the file. This argument cannot
+     *   be {@code null}.
+     * @param content the content to be stored. This argument cannot be
+     *   {@code null}.
+     * @throws IOException thrown if the file could not be written
+     */
+    public void writeEntry(String prefix, String key, String suffix, byte[] content) throws IOException {
+        if (content == null) throw new NullPointerException("content");
+
+        File file = getEntryFile(prefix, key, suffix);
+        writeFile(file.getParentFile(), file, content);
+    }
+
+    private File getEntryFile(String prefix, String key, String suffix) throws IOException {
+        if (prefix == null) throw new NullPointerException("prefix");
+        if (key == null) throw new NullPointerException("key");
+        if (suffix == null) throw new NullPointerException("suffix");
+
+        String keyHash = BasicFileUtils.getMD5(key.getBytes("UTF-8"));
+        return new File(getCacheDirForUse(), prefix + "-" + keyHash + suffix);
+    }
+
+    private File getCacheDirForUse() {
+        File cacheDir = getCacheDir();
+        if (staleFilesRemoved.compareAndSet(false, true)) {
+            removeStaleFiles(cacheDir, staleFileAgeMs);
+        }
+        return cacheDir;
+    }
+
+    private static void writeFile(File cacheDir, File file, byte[] content) throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs() && !cacheDir.isDirectory()) {
+            throw new IOException("Could not create directory: " + cacheDir);
+        }
+
+        // Write into a separate file first, so that nobody sees a partially
+        // written file.
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", cacheDir);
+        try {
+            OutputStream output = new FileOutputStream(tmpFile);
+            try {
+                output.write(content);
+            } finally {
+                output.close();
+            }
+
+            if (!tmpFile.renameTo(file)) {
+                // Maybe somebody else created the same file concurrently
+                // or the file is corrupt and has to be replaced.
+                if (!hasContent(file, content)) {
+                    if (file.exists() && !file.delete()) {
+                        throw new IOException("Could not replace " + file);
+                    }
+                    if (!tmpFile.renameTo(file)) {
+                        throw new IOException("Could not create " + file);
+                    }
+                }
+            }
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                LOGGER.log(Level.WARNING, "Failed to remove temporary file: {0}", tmpFile);
+            }
+        }
+    }
+
+    private static boolean hasContent(File file, byte[] expectedContent) throws IOException {
+        if (!file.isFile() || file.length() != expectedContent.length) {
+            return false;
+        }
+
+        byte[] content = tryReadAll(file);
+        return content != null && Arrays.equals(content, expectedContent);
+    }
+
+    private static byte[] tryReadAll(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        byte[] result = new byte[(int)length];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < result.length) {
+                int readCount = input.read(result, offset, result.length - offset);
+                if (readCount <= 0) {
+                    return null;
+                }
+                offset += readCount;
+            }
+        } finally {
+            input.close();
+        }
+        return result;
+    }
+
+    private static void removeStaleFiles(File cacheDir, long staleFileAgeMs) {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long staleTime = System.currentTimeMillis() - staleFileAgeMs;
+        for (File file: files) {
+            if (file.isFile() && file.lastModified() < staleTime) {
+                if (!file.delete()) {
+                    LOGGER.log(Level.INFO, "Failed to remove stale file: {0}", file);
+                }
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.gradle.api.Project;
@@ -43,8 +44,31 @@ public final class DynamicModelLoader implements ToolingModelBuilder {
         int requestCount = projectInfoRequests.size();
         CustomSerializedMap.Builder projectInfosBuilder = new CustomSerializedMap.Builder(requestCount);
 
+        ProjectInfoResultCache resultCache = ProjectInfoResultCache.getDefault();
+        String resultCacheScope = input.getResultCacheScope();
+        String inputsFingerprint = resultCacheScope != null
+                ? ProjectInputsFingerprint.tryGetFingerprint(project)
+                : null;
+        Map<Object, String> cacheKeysToStore = new HashMap<Object, String>();
+
         for (Map.Entry<?, List<?>> entry: projectInfoRequests.entrySet()) {
             Object key = entry.getKey();
+
+            String cacheKey = inputsFingerprint != null
+                    ? ProjectInfoResultCache.tryGetCacheKey(
+                            resultCacheScope,
+                            inputsFingerprint,
+                            tryGetBuildersFingerprint(entry.getValue()))
+                    : null;
+            if (cacheKey != null) {
+                SerializedEntries cachedResults = resultCache.tryGet(cacheKey);
+                if (cachedResults != null) {
+                    projectInfosBuilder.addSerializedValues(key, cachedResults);
+                    continue;
+                }
+            }
+
+            boolean failed = false;
             for (Object projectInfoBuilder: entry.getValue()) {
                 Object info = null;
                 Throwable issue = null;
@@ -55,6 +79,7 @@ public final class DynamicModelLoader implements ToolingModelBuilder {
                     info = builder.getProjectInfo(project);
                 } catch (Throwable ex) {
                     issue = ex;
+                    failed = true;
                 }
 
                 if (info != null || issue != null) {
@@ -64,9 +89,30 @@ public final class DynamicModelLoader implements ToolingModelBuilder {
                     projectInfosBuilder.addValue(key, builderResult);
                 }
             }
+
+            // Failures might be temporary, so do not cache them.
+            if (cacheKey != null && !failed) {
+                cacheKeysToStore.put(key, cacheKey);
+            }
+        }
+
+        CustomSerializedMap result = projectInfosBuilder.create();
+        for (Map.Entry<Object, String> entry: cacheKeysToStore.entrySet()) {
+            SerializedEntries results = result.getMap().get(entry.getKey());
+            if (results != null) {
+                resultCache.put(entry.getValue(), results);
+            }
         }
+        return result;
+    }
 
-        return projectInfosBuilder.create();
+    private static String tryGetBuildersFingerprint(List<?> builders) {
+        try {
+            return ProjectInputsFingerprint.getBuildersFingerprint(builders);
+        } catch (Throwable ex) {
+            // The builders are not required to be serializable in this case.
+            return null;
+        }
     }
 
     private Collection<GradleTaskID> findTasks(Project project) {
@@ -126,6 +172,10 @@ public final class DynamicModelLoader implements ToolingModelBuilder {
         }
 
         BasicInfoWithError basicInfo = getBasicInfo(project);
+        if (!input.shouldQueryProject(project.getPath())) {
+            ModelQueryOutput output = new ModelQueryOutput(basicInfo.info, CustomSerializedMap.EMPTY, basicInfo.error);
+            return new DefaultModelQueryOutputRef(output);
+        }
 
         ModelQueryOutput output;
         try {
@@ -0,0 +1,180 @@
+package org.netbeans.gradle.model.internal;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.gradle.StartParameter;
+import org.gradle.api.Project;
+import org.gradle.api.invocation.Gradle;
+import org.netbeans.gradle.model.util.BasicFileUtils;
+import org.netbeans.gradle.model.util.BuildInputFiles;
+import org.netbeans.gradle.model.util.ClassLoaderUtils;
+import org.netbeans.gradle.model.util.SerializationUtils;
+
+/**
+ * Computes fingerprints of the files and settings which are likely to affect
+ * the configuration of a project. Since a project might depend on any other
+ * project of the build (e.g., its classpath), the fingerprint covers the
+ * scripts of every project of the build. The files are the ones defined by
+ * {@link BuildInputFiles}, so that the IDE and the model builders agree on the
+ * inputs. The fingerprints are based on the size and the modification time of
+ * the files.
+ * <P>
+ * This is only an approximation: Changes in resolved dependencies (e.g.:
+ * snapshot versions) are not detected. Therefore, no fingerprint is returned
+ * if the user requested the dependencies to be refreshed, and the results
+ * are only reused within the scope chosen by the IDE (see
+ * {@link ProjectInfoResultCache}).
+ */
+final class ProjectInputsFingerprint {
+    private static final Logger LOGGER = Logger.getLogger(ProjectInputsFingerprint.class.getName());
+
+    // The fingerprint of the build is computed once for each build
+    // invocation (i.e., for each Gradle instance), so that changes between
+    // invocations are detected even if the classes of this library are reused.
+    private static final Map<Gradle, String> BUILD_FINGERPRINTS
+            = Collections.synchronizedMap(new WeakHashMap<Gradle, String>());
+
+    /**
+     * Returns the fingerprint of the inputs of the given project or
+     * {@code null} if the inputs cannot be determined.
+     */
+    public static String tryGetFingerprint(Project project) {
+        try {
+            StartParameter startParameter = project.getGradle().getStartParameter();
+            if (startParameter.isRefreshDependencies()) {
+                return null;
+            }
+
+            StringBuilder result = new StringBuilder(1024);
+            result.append("target=").append(project.getPath()).append('\n');
+            result.append(getBuildFingerprint(project.getGradle(), project.getRootProject()));
+            return result.toString();
+        } catch (Throwable ex) {
+            LOGGER.log(Level.INFO, "Failed to determine the inputs of " + project.getPath(), ex);
+            return null;
+        }
+    }
+
+    private static String getBuildFingerprint(Gradle gradle, Project rootProject) {
+        String result = BUILD_FINGERPRINTS.get(gradle);
+        if (result == null) {
+            result = computeBuildFingerprint(rootProject);
+            BUILD_FINGERPRINTS.put(gradle, result);
+        }
+        return result;
+    }
+
+    private static String computeBuildFingerprint(Project rootProject) {
+        StartParameter startParameter = rootProject.getGradle().getStartParameter();
+        File rootDir = rootProject.getProjectDir();
+
+        StringBuilder result = new StringBuilder(4 * 1024);
+        result.append("gradle=").append(rootProject.getGradle().getGradleVersion()).append('\n');
+        result.append("offline=").append(startParameter.isOffline()).append('\n');
+
+        Map<String, String> projectProperties = new TreeMap<String, String>(startParameter.getProjectProperties());
+        // The input file does not affect the configuration of the projects.
+        projectProperties.remove(ModelQueryInput.MODEL_INPUT_PROPERTY);
+        result.append("projectProperties=").append(projectProperties).append('\n');
+        result.append("systemProperties=")
+                .append(new TreeMap<String, String>(startParameter.getSystemPropertiesArgs()))
+                .append('\n');
+        result.append("environment=")
+                .append(getEnvironmentFingerprint())
+                .append('\n');
+
+        appendFile(ClassLoaderUtils.getLocationOfClassPath(), result);
+        appendFiles(BuildInputFiles.getEnvironmentFiles(
+                startParameter.getGradleUserHomeDir(),
+                startParameter.getInitScripts()), result);
+        appendFiles(BuildInputFiles.getBuildFiles(rootDir), result);
+
+        // Sorted by the path of the projects.
+        for (Project project: new TreeSet<Project>(rootProject.getAllprojects())) {
+            result.append("project=").append(project.getPath()).append('\n');
+            appendFiles(BuildInputFiles.getProjectFiles(project.getProjectDir(), project.getBuildFile()), result);
+        }
+
+        return result.toString();
+    }
+
+    private static String getEnvironmentFingerprint() {
+        // The environment variables might contain secrets, so only their hash
+        // is part of the key.
+        String environment = new TreeMap<String, String>(System.getenv()).toString();
+        try {
+            return BasicFileUtils.getMD5(environment.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void appendFiles(Collection<File> files, StringBuilder result) {
+        for (File file: files) {
+            appendFile(file, result);
+        }
+    }
+
+    private static void appendFile(File file, StringBuilder result) {
+        result.append(file != null ? file.getPath() : "null");
+        if (file != null && file.isFile()) {
+            result.append('|').append(file.length());
+            result.append('|').append(file.lastModified());
+        }
+        result.append('\n');
+    }
+
+    /**
+     * Returns a string identifying the given builders and the code
+     * implementing them.
+     */
+    public static String getBuildersFingerprint(Collection<?> builders) {
+        StringBuilder result = new StringBuilder(256);
+        for (Object builder: builders) {
+            appendCodeLocation(builder.getClass(), result);
+        }
+
+        byte[] serializedBuilders = SerializationUtils.serializeObject(new ArrayList<Object>(builders));
+        result.append(BasicFileUtils.getMD5(serializedBuilders));
+        return result.toString();
+    }
+
+    private static void appendCodeLocation(Class<?> type, StringBuilder result) {
+        result.append(type.getName()).append('@');
+
+        ProtectionDomain protectionDomain = type.getProtectionDomain();
+        CodeSource codeSource = protectionDomain != null ? protectionDomain.getCodeSource() : null;
+        URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location == null) {
+            result.append("?\n");
+            return;
+        }
+
+        if ("file".equals(location.getProtocol())) {
+            try {
+                appendFile(new File(location.toURI()), result);
+                return;
+            } catch (URISyntaxException ex) {
+                // Fall back to the URL.
+            }
+        }
+        result.append(location).append('\n');
+    }
+
+    private ProjectInputsFingerprint() {
+        throw new AssertionError();
+    }
+}
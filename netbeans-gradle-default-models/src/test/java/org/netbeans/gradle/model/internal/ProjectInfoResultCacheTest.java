@@ -0,0 +1,95 @@
+package org.netbeans.gradle.model.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.netbeans.gradle.model.util.SerializationCaches;
+
+import static org.junit.Assert.*;
+
+public class ProjectInfoResultCacheTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void testMissingEntry() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        assertNull(cache.tryGet("missing"));
+    }
+
+    @Test
+    public void testStoredEntry() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        cache.put("key1", new SerializedEntries(Arrays.asList("Value1", "Value2")));
+        cache.put("key2", new SerializedEntries(Arrays.asList("Value3")));
+
+        SerializedEntries entries = new ProjectInfoResultCache(tmpDir.getRoot()).tryGet("key1");
+        assertNotNull(entries);
+
+        List<?> values = entries.getUnserialized(SerializationCaches.getDefault(), null);
+        assertEquals(Arrays.asList("Value1", "Value2"), values);
+    }
+
+    @Test
+    public void testOverwriteEntry() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        cache.put("key", new SerializedEntries(Arrays.asList("Value1")));
+        cache.put("key", new SerializedEntries(Arrays.asList("Value2")));
+
+        List<?> values = cache.tryGet("key").getUnserialized(SerializationCaches.getDefault(), null);
+        assertEquals(Arrays.asList("Value2"), values);
+    }
+
+    private static String cacheKey(String scope, String inputs, String builders) {
+        return ProjectInfoResultCache.tryGetCacheKey(scope, inputs, builders);
+    }
+
+    @Test
+    public void testCacheKeyRequiresEveryPart() {
+        assertNull(cacheKey(null, "inputs", "builders"));
+        assertNull(cacheKey("scope", null, "builders"));
+        assertNull(cacheKey("scope", "inputs", null));
+        assertNotNull(cacheKey("scope", "inputs", "builders"));
+    }
+
+    @Test
+    public void testSameInputsHitTheCache() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        cache.put(cacheKey("scope", "inputs", "builders"), new SerializedEntries(Arrays.asList("Value")));
+
+        SerializedEntries entries = cache.tryGet(cacheKey("scope", "inputs", "builders"));
+        assertNotNull(entries);
+        assertEquals(Arrays.asList("Value"), entries.getUnserialized(SerializationCaches.getDefault(), null));
+    }
+
+    @Test
+    public void testNewScopeInvalidatesEntries() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        cache.put(cacheKey("scope1", "inputs", "builders"), new SerializedEntries(Arrays.asList("Value")));
+
+        assertNull(cache.tryGet(cacheKey("scope2", "inputs", "builders")));
+    }
+
+    @Test
+    public void testChangedInputsInvalidateEntries() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        cache.put(cacheKey("scope", "inputs1", "builders"), new SerializedEntries(Arrays.asList("Value")));
+
+        assertNull(cache.tryGet(cacheKey("scope", "inputs2", "builders")));
+    }
+
+    @Test
+    public void testChangedBuildersInvalidateEntries() {
+        ProjectInfoResultCache cache = new ProjectInfoResultCache(tmpDir.getRoot());
+        cache.put(cacheKey("scope", "inputs", "builders1"), new SerializedEntries(Arrays.asList("Value")));
+
+        assertNull(cache.tryGet(cacheKey("scope", "inputs", "builders2")));
+    }
+
+    @Test
+    public void testPartsAreSeparated() {
+        assertFalse(cacheKey("scope", "inputs", "builders").equals(cacheKey("scope", "input", "sbuilders")));
+    }
+}
@@ -0,0 +1,120 @@
+package org.netbeans.gradle.model.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class PersistentFileCacheTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private static byte[] readAll(File file) throws IOException {
+        byte[] result = new byte[(int)file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < result.length) {
+                int readCount = input.read(result, offset, result.length - offset);
+                if (readCount <= 0) {
+                    throw new IOException("Unexpected end of file.");
+                }
+                offset += readCount;
+            }
+        } finally {
+            input.close();
+        }
+        return result;
+    }
+
+    private static void assertContent(File file, String expectedContent) throws IOException {
+        assertEquals(expectedContent, new String(readAll(file), UTF8.name()));
+    }
+
+    @Test
+    public void testSameContentSameFile() throws IOException {
+        PersistentFileCache cache = new PersistentFileCache(tmpDir.getRoot());
+
+        File file1 = cache.getFile("test", ".txt", "Hello", UTF8);
+        File file2 = cache.getFile("test", ".txt", "Hello", UTF8);
+
+        assertEquals(file1, file2);
+        assertContent(file1, "Hello");
+    }
+
+    @Test
+    public void testDifferentContentDifferentFile() throws IOException {
+        PersistentFileCache cache = new PersistentFileCache(tmpDir.getRoot());
+
+        File file1 = cache.getFile("test", ".txt", "Hello", UTF8);
+        File file2 = cache.getFile("test", ".txt", "World", UTF8);
+
+        assertFalse(file1.equals(file2));
+        assertContent(file1, "Hello");
+        assertContent(file2, "World");
+    }
+
+    @Test
+    public void testFileIsReusedByNewCache() throws IOException {
+        File file1 = new PersistentFileCache(tmpDir.getRoot()).getFile("test", ".txt", "Hello", UTF8);
+        File file2 = new PersistentFileCache(tmpDir.getRoot()).getFile("test", ".txt", "Hello", UTF8);
+
+        assertEquals(file1, file2);
+        assertEquals(1, tmpDir.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void testCorruptFileIsReplaced() throws IOException {
+        File file = new PersistentFileCache(tmpDir.getRoot()).getFile("test", ".txt", "Hello", UTF8);
+
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write("Hellx".getBytes(UTF8.name()));
+        } finally {
+            output.close();
+        }
+
+        File file2 = new PersistentFileCache(tmpDir.getRoot()).getFile("test", ".txt", "Hello", UTF8);
+        assertEquals(file, file2);
+        assertContent(file, "Hello");
+        assertEquals(Arrays.asList(file), Arrays.asList(tmpDir.getRoot().listFiles()));
+    }
+
+    @Test
+    public void testMissingEntry() throws IOException {
+        PersistentFileCache cache = new PersistentFileCache(tmpDir.getRoot());
+        assertNull(cache.tryReadEntry("test", "key", ".bin"));
+    }
+
+    @Test
+    public void testEntryIsReplaced() throws IOException {
+        PersistentFileCache cache = new PersistentFileCache(tmpDir.getRoot());
+        cache.writeEntry("test", "key", ".bin", "Hello".getBytes(UTF8.name()));
+        cache.writeEntry("test", "key", ".bin", "World".getBytes(UTF8.name()));
+
+        byte[] content = new PersistentFileCache(tmpDir.getRoot()).tryReadEntry("test", "key", ".bin");
+        assertEquals("World", new String(content, UTF8.name()));
+        assertEquals(1, tmpDir.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void testEntriesOfDifferentKeys() throws IOException {
+        PersistentFileCache cache = new PersistentFileCache(tmpDir.getRoot());
+        cache.writeEntry("test", "key1", ".bin", "Hello".getBytes(UTF8.name()));
+        cache.writeEntry("test", "key2", ".bin", "World".getBytes(UTF8.name()));
+
+        assertEquals("Hello", new String(cache.tryReadEntry("test", "key1", ".bin"), UTF8.name()));
+        assertEquals("World", new String(cache.tryReadEntry("test", "key2", ".bin"), UTF8.name()));
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import org.netbeans.gradle.project.model.SegmentFileModelCache;
 
 public final class NbGradleModuleInstall extends Yenta {
     private static final long serialVersionUID = 1L;
@@ -18,4 +19,8 @@ public final class NbGradleModuleInstall extends Yenta {
         return FRIENDS;
     }
 
+    @Override
+    public void close() {
+        SegmentFileModelCache.flushPendingWrites();
+    }
 }
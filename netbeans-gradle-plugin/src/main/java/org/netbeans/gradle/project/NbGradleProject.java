@@ -31,6 +31,7 @@ import org.netbeans.gradle.project.model.NbGradleModel;
 import org.netbeans.gradle.project.model.SettingsGradleDef;
 import org.netbeans.gradle.project.model.issue.ModelLoadIssue;
 import org.netbeans.gradle.project.model.issue.ModelLoadIssueReporter;
+import org.netbeans.gradle.project.output.ProjectOutputLinks;
 import org.netbeans.gradle.project.properties.DefaultProjectSettingsProvider;
 import org.netbeans.gradle.project.properties.GradleAuxiliaryConfiguration;
 import org.netbeans.gradle.project.properties.GradleAuxiliaryProperties;
@@ -207,6 +208,10 @@ public final class NbGradleProject implements Project {
         return getServiceObjects().scriptFileProvider;
     }
 
+    public ProjectOutputLinks getOutputLinks() {
+        return getServiceObjects().outputLinks;
+    }
+
     @Nonnull
     public String getName() {
         return name;
@@ -300,6 +305,7 @@ public final class NbGradleProject implements Project {
         public final BuiltInGradleCommandQuery mergedCommandQuery;
         public final SettingsFileManager settingsFileManager;
         public final ScriptFileProvider scriptFileProvider;
+        public final ProjectOutputLinks outputLinks;
 
         public final Lookup services;
         public final NbGradleProjectLookups projectLookups;
@@ -340,6 +346,7 @@ public final class NbGradleProject implements Project {
             this.projectDisplayInfo = new ProjectDisplayInfo(
                     modelManager.currentModel(),
                     commonProperties.displayNamePattern().getActiveSource());
+            this.outputLinks = new ProjectOutputLinks(project);
 
             this.auxConfig = add(new GradleAuxiliaryConfiguration(profileLoader), serviceObjects);
             this.state = add(state, serviceObjects);
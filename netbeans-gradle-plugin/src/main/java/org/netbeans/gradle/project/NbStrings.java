@@ -544,6 +544,16 @@ public final class NbStrings {
                 testReportDir);
     }
 
+    public static String getTruncatedTestOutput(File outputFile) {
+        return outputFile != null
+                ? NbBundle.getMessage(NbStrings.class, "NbStrings.TruncatedTestOutputSaved", outputFile)
+                : NbBundle.getMessage(NbStrings.class, "NbStrings.TruncatedTestOutput");
+    }
+
+    public static String getSpilledOutput(File logFile) {
+        return NbBundle.getMessage(NbStrings.class, "NbStrings.SpilledOutput", logFile);
+    }
+
     public static String getJumpToSource() {
         return NbBundle.getMessage(NbStrings.class, "NbStrings.JumpToSource");
     }
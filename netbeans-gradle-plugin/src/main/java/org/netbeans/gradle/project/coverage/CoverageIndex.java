@@ -0,0 +1,570 @@
+package org.netbeans.gradle.project.coverage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines a compact index of a JaCoCo or Cobertura XML coverage report. The
+ * index only keeps the per file summaries in memory, the line coverage of a
+ * file is loaded on demand from the index file stored next to the report.
+ * <P>
+ * The index file is rebuilt (in a single pass over the report) only if the
+ * report has changed since the index file was written.
+ * <P>
+ * Instances of this class are safe to be used by multiple threads
+ * concurrently.
+ */
+final class CoverageIndex {
+    private static final Logger LOGGER = Logger.getLogger(CoverageIndex.class.getName());
+
+    private static final int MAGIC = 0x4E42_4349; // "NBCI"
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE_SUFFIX = ".nb-coverage-index";
+
+    private final File report;
+    private final File indexFile;
+    private final long reportLastModified;
+    private final Map<String, FileEntry> files;
+
+    private CoverageIndex(File report, File indexFile, long reportLastModified, Map<String, FileEntry> files) {
+        this.report = report;
+        this.indexFile = indexFile;
+        this.reportLastModified = reportLastModified;
+        this.files = files;
+    }
+
+    public static File getIndexFile(File report) {
+        ExceptionHelper.checkNotNullArgument(report, "report");
+        return new File(report.getParentFile(), report.getName() + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Loads the index of the given report, rebuilding the index file if it is
+     * missing or out of date. If the index file cannot be written, the
+     * returned index keeps the complete coverage data in memory.
+     */
+    public static CoverageIndex load(File report) throws IOException {
+        ExceptionHelper.checkNotNullArgument(report, "report");
+
+        File indexFile = getIndexFile(report);
+        long lastModified = report.lastModified();
+        long length = report.length();
+
+        if (indexFile.isFile()) {
+            try {
+                CoverageIndex result = tryReadIndex(report, indexFile, lastModified, length);
+                if (result != null) {
+                    LOGGER.log(Level.FINE, "Reusing coverage index {0}", indexFile);
+                    return result;
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to read coverage index " + indexFile, ex);
+            }
+        }
+
+        Map<String, FileCoverageBuilder> parsed = parseReport(report);
+        LOGGER.log(Level.FINE, "Parsed coverage report {0}", report);
+
+        try {
+            writeIndex(indexFile, lastModified, length, parsed.values());
+            CoverageIndex result = tryReadIndex(report, indexFile, lastModified, length);
+            if (result != null) {
+                return result;
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to write coverage index " + indexFile, ex);
+        }
+
+        return createInMemoryIndex(report, lastModified, parsed.values());
+    }
+
+    public File getReport() {
+        return report;
+    }
+
+    public long getReportLastModified() {
+        return reportLastModified;
+    }
+
+    public Collection<FileEntry> getFiles() {
+        return files.values();
+    }
+
+    public FileEntry tryGetFile(String path) {
+        return files.get(path);
+    }
+
+    public LineCoverage loadLineCoverage(FileEntry entry) throws IOException {
+        ExceptionHelper.checkNotNullArgument(entry, "entry");
+
+        if (entry.inMemoryLines != null) {
+            return entry.inMemoryLines;
+        }
+
+        int lineCount = entry.getLineCount();
+        byte[] data = new byte[lineCount * 4 * 4];
+        try (RandomAccessFile input = new RandomAccessFile(indexFile, "r")) {
+            input.seek(entry.dataOffset);
+            input.readFully(data);
+        }
+
+        IntBuffer buffer = ByteBuffer.wrap(data).asIntBuffer();
+        int[] lines = new int[lineCount];
+        int[] hits = new int[lineCount];
+        int[] missedBranches = new int[lineCount];
+        int[] coveredBranches = new int[lineCount];
+        buffer.get(lines);
+        buffer.get(hits);
+        buffer.get(missedBranches);
+        buffer.get(coveredBranches);
+        return new LineCoverage(lines, hits, missedBranches, coveredBranches);
+    }
+
+    private static CoverageIndex tryReadIndex(
+            File report,
+            File indexFile,
+            long expectedLastModified,
+            long expectedLength) throws IOException {
+
+        try (InputStream fileInput = new FileInputStream(indexFile);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            if (input.readLong() != expectedLastModified || input.readLong() != expectedLength) {
+                return null;
+            }
+
+            long dataStart = input.readLong();
+            int fileCount = input.readInt();
+            Map<String, FileEntry> files = new LinkedHashMap<>(2 * fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                String path = input.readUTF();
+                String displayName = input.readUTF();
+                int lineCount = input.readInt();
+                int executedLineCount = input.readInt();
+                int partialLineCount = input.readInt();
+                long dataOffset = dataStart + input.readLong();
+
+                files.put(path, new FileEntry(path, displayName,
+                        lineCount, executedLineCount, partialLineCount, dataOffset, null));
+            }
+            return new CoverageIndex(report, indexFile, expectedLastModified, files);
+        }
+    }
+
+    private static void writeIndex(
+            File indexFile,
+            long reportLastModified,
+            long reportLength,
+            Collection<FileCoverageBuilder> parsedFiles) throws IOException {
+
+        ByteArrayOutputStream entriesBytes = new ByteArrayOutputStream(64 * parsedFiles.size() + 16);
+        DataOutputStream entries = new DataOutputStream(entriesBytes);
+        entries.writeInt(parsedFiles.size());
+
+        long dataOffset = 0;
+        for (FileCoverageBuilder file: parsedFiles) {
+            entries.writeUTF(file.path);
+            entries.writeUTF(file.displayName);
+            entries.writeInt(file.lines.size());
+            entries.writeInt(file.getExecutedLineCount());
+            entries.writeInt(file.getPartialLineCount());
+            entries.writeLong(dataOffset);
+
+            dataOffset += file.lines.size() * 4L * 4L;
+        }
+        entries.flush();
+
+        // magic, version, last modified, length and the start of the data
+        long dataStart = 4 + 4 + 8 + 8 + 8 + entriesBytes.size();
+
+        File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (OutputStream fileOutput = new FileOutputStream(tmpFile);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(reportLastModified);
+            output.writeLong(reportLength);
+            output.writeLong(dataStart);
+            entriesBytes.writeTo(output);
+
+            for (FileCoverageBuilder file: parsedFiles) {
+                LineCoverage lines = file.toLineCoverage();
+                writeInts(output, lines.lines);
+                writeInts(output, lines.hits);
+                writeInts(output, lines.missedBranches);
+                writeInts(output, lines.coveredBranches);
+            }
+        }
+
+        Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+        for (int value: values) {
+            output.writeInt(value);
+        }
+    }
+
+    private static CoverageIndex createInMemoryIndex(
+            File report,
+            long reportLastModified,
+            Collection<FileCoverageBuilder> parsedFiles) {
+
+        Map<String, FileEntry> files = new LinkedHashMap<>(2 * parsedFiles.size());
+        for (FileCoverageBuilder file: parsedFiles) {
+            files.put(file.path, new FileEntry(file.path, file.displayName,
+                    file.lines.size(), file.getExecutedLineCount(), file.getPartialLineCount(),
+                    -1, file.toLineCoverage()));
+        }
+        return new CoverageIndex(report, null, reportLastModified, files);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Coverage reports reference DTDs (possibly online) which are not
+        // needed to read the reports.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    static Map<String, FileCoverageBuilder> parseReport(File report) throws IOException {
+        try (InputStream fileInput = new FileInputStream(report);
+                InputStream input = new BufferedInputStream(fileInput)) {
+            XMLStreamReader reader = createInputFactory().createXMLStreamReader(input);
+            try {
+                return parseReport(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Invalid coverage report: " + report, ex);
+        }
+    }
+
+    private static Map<String, FileCoverageBuilder> parseReport(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, FileCoverageBuilder> result = new LinkedHashMap<>();
+
+        boolean jacoco = true;
+        boolean rootElement = true;
+        String packageName = "";
+        FileCoverageBuilder currentFile = null;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String elementName = reader.getLocalName();
+                if (jacoco ? "sourcefile".equals(elementName) : "class".equals(elementName)) {
+                    currentFile = null;
+                }
+                else if (!jacoco && "methods".equals(elementName) && currentFile != null) {
+                    currentFile.inMethod = false;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String elementName = reader.getLocalName();
+            if (rootElement) {
+                rootElement = false;
+                jacoco = !"coverage".equals(elementName);
+                continue;
+            }
+
+            if (jacoco) {
+                switch (elementName) {
+                    case "package":
+                        packageName = nullToEmpty(reader.getAttributeValue(null, "name"));
+                        break;
+                    case "sourcefile":
+                        String fileName = nullToEmpty(reader.getAttributeValue(null, "name"));
+                        String path = packageName.isEmpty() ? fileName : packageName + '/' + fileName;
+                        String name = path.replaceFirst("[.]java$", "").replace('/', '.');
+                        currentFile = getFileBuilder(result, path, name);
+                        break;
+                    case "line":
+                        if (currentFile != null) {
+                            currentFile.addLine(
+                                    parseInt(reader.getAttributeValue(null, "nr")) - 1,
+                                    parseInt(reader.getAttributeValue(null, "ci")),
+                                    parseInt(reader.getAttributeValue(null, "mb")),
+                                    parseInt(reader.getAttributeValue(null, "cb")));
+                        }
+                        break;
+                }
+            }
+            else {
+                switch (elementName) {
+                    case "class":
+                        String path = nullToEmpty(reader.getAttributeValue(null, "filename"));
+                        String name = nullToEmpty(reader.getAttributeValue(null, "name")).replace('$', '.');
+                        currentFile = getFileBuilder(result, path, name);
+                        break;
+                    case "line":
+                        // Lines are also listed under methods but those are
+                        // duplicates of the lines of the class.
+                        if (currentFile != null && !currentFile.inMethod) {
+                            addCoberturaLine(currentFile, reader);
+                        }
+                        break;
+                    case "methods":
+                        if (currentFile != null) {
+                            currentFile.inMethod = true;
+                        }
+                        break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void addCoberturaLine(FileCoverageBuilder file, XMLStreamReader reader) {
+        int lineIndex = parseInt(reader.getAttributeValue(null, "number")) - 1;
+        int hits = parseInt(reader.getAttributeValue(null, "hits"));
+
+        int missedBranches = 0;
+        int coveredBranches = 0;
+
+        // The format is: "50% (1/2)"
+        String conditionCoverage = reader.getAttributeValue(null, "condition-coverage");
+        if (conditionCoverage != null) {
+            int openIndex = conditionCoverage.indexOf('(');
+            int slashIndex = conditionCoverage.indexOf('/', openIndex + 1);
+            int closeIndex = conditionCoverage.indexOf(')', slashIndex + 1);
+            if (openIndex >= 0 && slashIndex >= 0 && closeIndex >= 0) {
+                coveredBranches = parseInt(conditionCoverage.substring(openIndex + 1, slashIndex));
+                int branchCount = parseInt(conditionCoverage.substring(slashIndex + 1, closeIndex));
+                missedBranches = Math.max(0, branchCount - coveredBranches);
+            }
+        }
+
+        file.addLine(lineIndex, hits, missedBranches, coveredBranches);
+    }
+
+    private static FileCoverageBuilder getFileBuilder(
+            Map<String, FileCoverageBuilder> files,
+            String path,
+            String displayName) {
+
+        FileCoverageBuilder result = files.get(path);
+        if (result == null) {
+            result = new FileCoverageBuilder(path, displayName);
+            files.put(path, result);
+        }
+        else if (displayName.length() < result.displayName.length()) {
+            // Prefer the name of the top level class when multiple classes
+            // are defined in the same file.
+            result.displayName = displayName;
+        }
+        result.inMethod = false;
+        return result;
+    }
+
+    private static String nullToEmpty(String str) {
+        return str != null ? str : "";
+    }
+
+    private static int parseInt(String str) {
+        if (str == null) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(str.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    public static final class FileEntry {
+        private final String path;
+        private final String displayName;
+        private final int lineCount;
+        private final int executedLineCount;
+        private final int partialLineCount;
+        private final long dataOffset;
+        private final LineCoverage inMemoryLines;
+
+        private FileEntry(
+                String path,
+                String displayName,
+                int lineCount,
+                int executedLineCount,
+                int partialLineCount,
+                long dataOffset,
+                LineCoverage inMemoryLines) {
+            this.path = path;
+            this.displayName = displayName;
+            this.lineCount = lineCount;
+            this.executedLineCount = executedLineCount;
+            this.partialLineCount = partialLineCount;
+            this.dataOffset = dataOffset;
+            this.inMemoryLines = inMemoryLines;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Returns the number of lines recorded in the report. This is not the
+         * number of lines in the source file.
+         */
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        public int getExecutedLineCount() {
+            return executedLineCount;
+        }
+
+        public int getPartialLineCount() {
+            return partialLineCount;
+        }
+    }
+
+    /**
+     * Defines the coverage of the lines of a single file. Line indexes are
+     * zero based.
+     */
+    public static final class LineCoverage {
+        private final int[] lines;
+        private final int[] hits;
+        private final int[] missedBranches;
+        private final int[] coveredBranches;
+
+        private LineCoverage(int[] lines, int[] hits, int[] missedBranches, int[] coveredBranches) {
+            this.lines = lines;
+            this.hits = hits;
+            this.missedBranches = missedBranches;
+            this.coveredBranches = coveredBranches;
+        }
+
+        private int indexOf(int lineIndex) {
+            return Arrays.binarySearch(lines, lineIndex);
+        }
+
+        public boolean isRecorded(int lineIndex) {
+            return indexOf(lineIndex) >= 0;
+        }
+
+        public int getHitCount(int lineIndex) {
+            int index = indexOf(lineIndex);
+            return index >= 0 ? hits[index] : 0;
+        }
+
+        public int getMissedBranchCount(int lineIndex) {
+            int index = indexOf(lineIndex);
+            return index >= 0 ? missedBranches[index] : 0;
+        }
+
+        public int getCoveredBranchCount(int lineIndex) {
+            int index = indexOf(lineIndex);
+            return index >= 0 ? coveredBranches[index] : 0;
+        }
+    }
+
+    static final class FileCoverageBuilder {
+        private final String path;
+        private String displayName;
+        private boolean inMethod;
+        private final Map<Integer, int[]> lines;
+
+        public FileCoverageBuilder(String path, String displayName) {
+            this.path = path;
+            this.displayName = displayName;
+            this.inMethod = false;
+            this.lines = new TreeMap<>();
+        }
+
+        public void addLine(int lineIndex, int hits, int missedBranches, int coveredBranches) {
+            int[] prev = lines.get(lineIndex);
+            if (prev == null) {
+                lines.put(lineIndex, new int[]{hits, missedBranches, coveredBranches});
+            }
+            else {
+                prev[0] = Math.max(prev[0], hits);
+                prev[1] = Math.max(prev[1], missedBranches);
+                prev[2] = Math.max(prev[2], coveredBranches);
+            }
+        }
+
+        private static boolean isPartial(int[] line) {
+            return line[0] != 0 && line[1] > 0;
+        }
+
+        public int getExecutedLineCount() {
+            int result = 0;
+            for (int[] line: lines.values()) {
+                if (line[0] != 0) {
+                    result++;
+                }
+            }
+            return result;
+        }
+
+        public int getPartialLineCount() {
+            int result = 0;
+            for (int[] line: lines.values()) {
+                if (isPartial(line)) {
+                    result++;
+                }
+            }
+            return result;
+        }
+
+        public LineCoverage toLineCoverage() {
+            int lineCount = lines.size();
+            int[] lineIndexes = new int[lineCount];
+            int[] hits = new int[lineCount];
+            int[] missedBranches = new int[lineCount];
+            int[] coveredBranches = new int[lineCount];
+
+            int index = 0;
+            for (Map.Entry<Integer, int[]> entry: lines.entrySet()) {
+                int[] line = entry.getValue();
+                lineIndexes[index] = entry.getKey();
+                hits[index] = line[0];
+                missedBranches[index] = line[1];
+                coveredBranches[index] = line[2];
+                index++;
+            }
+            return new LineCoverage(lineIndexes, hits, missedBranches, coveredBranches);
+        }
+    }
+}
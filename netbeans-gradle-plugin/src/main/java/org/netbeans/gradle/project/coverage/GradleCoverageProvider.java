@@ -4,9 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,17 +28,10 @@ import org.openide.filesystems.FileChangeListener;
 import org.openide.filesystems.FileEvent;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
-import org.openide.util.Pair;
-import org.openide.xml.XMLUtil;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * Implementation of CoverageProvider for Gradle project infrastructure.
- * Actual implementation suppors jacoco (cobertura TBD)
+ * Actual implementation suppors jacoco and cobertura XML reports.
  * @author sven
  */
 public class GradleCoverageProvider implements CoverageProvider {
@@ -48,14 +39,14 @@ public class GradleCoverageProvider implements CoverageProvider {
 
     private final JavaExtension javaExt;
     private final Project p;
-    private Map<String, GradleSummary> summaryCache;
+    private CoverageIndex index;
     private FileChangeListener listener;
 
     public GradleCoverageProvider(JavaExtension javaExt) {
         ExceptionHelper.checkNotNullArgument(javaExt, "javaExt");
         this.javaExt = javaExt;
         this.p = javaExt.getProject();
-        this.summaryCache = null;
+        this.index = null;
         this.listener = null;
     }
 
@@ -115,55 +106,98 @@ public class GradleCoverageProvider implements CoverageProvider {
     public @Override synchronized void clear() {
         File r = report();
         if (r != null && r.isFile() && r.delete()) {
-            summaryCache = null;
+            deleteIndex(r);
+            index = null;
             CoverageManager.INSTANCE.resultsUpdated(p, GradleCoverageProvider.this);
         }
     }
 
+    private static void deleteIndex(File report) {
+        File indexFile = CoverageIndex.getIndexFile(report);
+        if (indexFile.isFile() && !indexFile.delete()) {
+            LOG.log(Level.INFO, "Could not delete {0}", indexFile);
+        }
+    }
+
     @Override
     public FileCoverageDetails getDetails(FileObject fo, Document doc) {
         String path = srcPath().getResourceName(fo);
         if (path == null) {
             return null;
         }
-        GradleDetails det = null;
+
+        CoverageIndex currentIndex = tryGetIndex();
+        if (currentIndex == null) {
+            return null;
+        }
+
+        CoverageIndex.FileEntry entry = currentIndex.tryGetFile(path);
+        if (entry == null) {
+            return null;
+        }
+
+        CoverageIndex.LineCoverage lines;
+        try {
+            lines = currentIndex.loadLineCoverage(entry);
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Could not load coverage of " + path, ex);
+            return null;
+        }
+
+        //we have to set the linecount here, as the entire line span is not apparent from the parsed xml, giving strange results then.
+        int lineCount = doc.getDefaultRootElement().getElementCount();
+        return new GradleDetails(fo, entry, currentIndex.getReportLastModified(), lineCount, lines);
+    }
+
+    private @CheckForNull CoverageIndex tryGetIndex() {
+        synchronized (this) {
+            if (index != null) {
+                return index;
+            }
+        }
+
+        CoverageIndex newIndex = loadIndex();
+        if (newIndex == null) {
+            return null;
+        }
+
         synchronized (this) {
-            GradleSummary summ = summaryCache != null ? summaryCache.get(path) : null;
-            if (summ != null) {
-                det = summ.getDetails();
-                //we have to set the linecount here, as the entire line span is not apparent from the parsed xml, giving strange results then.
-                det.lineCount = doc.getDefaultRootElement().getElementCount();
+            // The report might have been changed while we were parsing it.
+            if (newIndex.getReportLastModified() == newIndex.getReport().lastModified()) {
+                index = newIndex;
             }
         }
-        return det;
+        return newIndex;
     }
 
-    private @CheckForNull Pair<File, org.w3c.dom.Document> parse() {
+    private @CheckForNull CoverageIndex loadIndex() {
         File r = report();
         if (r == null) {
             LOG.fine("undefined report location");
             return null;
         }
         CoverageManager.INSTANCE.setEnabled(p, true); // XXX otherwise it defaults to disabled?? not clear where to call this
-        if (listener == null) {
-            listener = new FileChangeAdapter() {
-                public @Override void fileChanged(FileEvent fe) {
-                    fire();
-                }
-                public @Override void fileDataCreated(FileEvent fe) {
-                    fire();
-                }
-                public @Override void fileDeleted(FileEvent fe) {
-                    fire();
-                }
-                private void fire() {
-                    synchronized (GradleCoverageProvider.this) {
-                        summaryCache = null;
+        synchronized (this) {
+            if (listener == null) {
+                listener = new FileChangeAdapter() {
+                    public @Override void fileChanged(FileEvent fe) {
+                        fire();
+                    }
+                    public @Override void fileDataCreated(FileEvent fe) {
+                        fire();
                     }
-                    CoverageManager.INSTANCE.resultsUpdated(p, GradleCoverageProvider.this);
-                }
-            };
-            FileUtil.addFileChangeListener(listener, r);
+                    public @Override void fileDeleted(FileEvent fe) {
+                        fire();
+                    }
+                    private void fire() {
+                        synchronized (GradleCoverageProvider.this) {
+                            index = null;
+                        }
+                        CoverageManager.INSTANCE.resultsUpdated(p, GradleCoverageProvider.this);
+                    }
+                };
+                FileUtil.addFileChangeListener(listener, r);
+            }
         }
         if (!r.isFile()) {
             LOG.log(Level.FINE, "missing {0}", r);
@@ -175,23 +209,8 @@ public class GradleCoverageProvider implements CoverageProvider {
             return null;
         }
         try {
-            org.w3c.dom.Document report = XMLUtil.parse(new InputSource(r.toURI().toString()), true, false, XMLUtil.defaultErrorHandler(), new EntityResolver() {
-                public @Override
-                InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
-                    if (systemId.equals("http://cobertura.sourceforge.net/xml/coverage-04.dtd")) {
-                        return new InputSource(GradleCoverageProvider.class.getResourceAsStream("coverage-04.dtd")); // NOI18N
-                    }
-                    else if (publicId.equals("-//JACOCO//DTD Report 1.0//EN")) {
-                        return new InputSource(GradleCoverageProvider.class.getResourceAsStream("jacoco-1.0.dtd"));
-                    }
-                    else {
-                        return null;
-                    }
-                }
-            });
-            LOG.log(Level.FINE, "parsed {0}", r);
-            return Pair.of(r, report);
-        } catch (IOException | SAXException ex) {
+            return CoverageIndex.load(r);
+        } catch (IOException ex) {
             LOG.log(Level.INFO, "Could not parse " + r, ex);
             return null;
         }
@@ -208,101 +227,55 @@ public class GradleCoverageProvider implements CoverageProvider {
 
     @Override
     public List<FileCoverageSummary> getResults() {
-        Pair<File, org.w3c.dom.Document> r = parse();
-        if (r == null) {
+        CoverageIndex currentIndex = tryGetIndex();
+        if (currentIndex == null) {
             return null;
         }
         ClassPath src = srcPath();
         List<FileCoverageSummary> summs = new ArrayList<>();
-        Map<String, GradleSummary> summaries = new HashMap<>();
-        boolean jacoco = hasPlugin();
-        NodeList nl = r.second().getElementsByTagName(jacoco ? "sourcefile" : "class"); // NOI18N
-        for (int i = 0; i < nl.getLength(); i++) {
-            Element clazz = (Element)nl.item(i);
-            String filename;
-            List<Element> lines;
-            String name;
-            if (jacoco) {
-                filename = ((Element)clazz.getParentNode()).getAttribute("name") + '/' + clazz.getAttribute("name");
-                lines = new ArrayList<>();
-                for (Element line: XMLUtil.findSubElements(clazz)) {
-                    if (line.getTagName().equals("line")) {
-                        lines.add(line);
-                    }
-                }
-                name = filename.replaceFirst("[.]java$", "").replace('/', '.');
-            }
-            else {
-                filename = clazz.getAttribute("filename");
-                Element linesE = XMLUtil.findElement(clazz, "lines", null); // NOI18N
-                lines = linesE != null ? XMLUtil.findSubElements(linesE) : Collections.<Element>emptyList();
-                // XXX nicer to collect together nested classes in same compilation unit
-                name = clazz.getAttribute("name").replace('$', '.');
-            }
-            FileObject java = src.findResource(filename); // NOI18N
+        for (CoverageIndex.FileEntry entry: currentIndex.getFiles()) {
+            FileObject java = src.findResource(entry.getPath());
             if (java == null) {
                 continue;
             }
-            final GradleSummary summar = summaryOf(java, name, lines, jacoco, r.first().lastModified());
-            summaries.put(filename, summar);
-            summs.add(summar);
-        }
-        synchronized (this) {
-            summaryCache = summaries;
+            summs.add(new GradleSummary(java, entry));
         }
         return summs;
     }
 
-    private GradleSummary summaryOf(FileObject java, String name, List<Element> lines, boolean jacoco, long lastUpdated) {
-        // Not really the total number of lines in the file at all, but close enough - the ones Cobertura recorded.
-        int lineCount = 0;
-        int executedLineCount = 0;
-        Map<Integer, Integer> detLines = new HashMap<>();
-        for (Element line : lines) {
-            lineCount++;
-            String attr = line.getAttribute(jacoco ? "ci" : "hits");
-            String num = line.getAttribute(jacoco ? "nr" : "number");
-            detLines.put(Integer.valueOf(num) - 1,Integer.valueOf(attr));
-            if (!attr.equals("0")) {
-                executedLineCount++;
-            }
-        }
-        GradleDetails det = new GradleDetails(java, lastUpdated, lineCount, detLines);
-        GradleSummary s = new GradleSummary(java, name, det, executedLineCount);
-        return s;
-    }
-
     @Override
     public String getTestAllAction() {
         return GradleJavaBuiltInCommands.TEST_WITH_COVERAGE;
     }
 
     private static class GradleSummary extends FileCoverageSummary {
-        private final GradleDetails details;
-
-        public GradleSummary(FileObject file, String displayName, GradleDetails details, int executedLineCount) {
-            super(file, displayName, details.getLineCount(), executedLineCount, 0, 0);
-            this.details = details;
-            details.setSummary(this);
-        }
-
-        GradleDetails getDetails() {
-            return details;
+        public GradleSummary(FileObject file, CoverageIndex.FileEntry entry) {
+            super(file,
+                    entry.getDisplayName(),
+                    entry.getLineCount(),
+                    entry.getExecutedLineCount(),
+                    entry.getPartialLineCount(),
+                    0);
         }
-
     }
 
     private static class GradleDetails implements FileCoverageDetails {
         private final FileObject fileObject;
         private final long lastUpdated;
-        private FileCoverageSummary summary;
-        private final Map<Integer, Integer> lineHitCounts;
-        int lineCount;
-
-        public GradleDetails(FileObject fileObject, long lastUpdated, int lineCount, Map<Integer, Integer> lineHitCounts) {
+        private final FileCoverageSummary summary;
+        private final CoverageIndex.LineCoverage lines;
+        private final int lineCount;
+
+        public GradleDetails(
+                FileObject fileObject,
+                CoverageIndex.FileEntry entry,
+                long lastUpdated,
+                int lineCount,
+                CoverageIndex.LineCoverage lines) {
             this.fileObject = fileObject;
+            this.summary = new GradleSummary(fileObject, entry);
             this.lastUpdated = lastUpdated;
-            this.lineHitCounts = lineHitCounts;
+            this.lines = lines;
             this.lineCount = lineCount;
         }
 
@@ -331,23 +304,21 @@ public class GradleCoverageProvider implements CoverageProvider {
         public FileCoverageSummary getSummary() {
             return summary;
         }
-        public void setSummary(FileCoverageSummary summary) {
-            this.summary = summary;
-        }
 
         @Override
         public CoverageType getType(int lineNo) {
-            Integer count = lineHitCounts.get(lineNo);
-            return count == null ? CoverageType.INFERRED : count == 0 ? CoverageType.NOT_COVERED : CoverageType.COVERED;
+            if (!lines.isRecorded(lineNo)) {
+                return CoverageType.INFERRED;
+            }
+            if (lines.getHitCount(lineNo) == 0) {
+                return CoverageType.NOT_COVERED;
+            }
+            return lines.getMissedBranchCount(lineNo) > 0 ? CoverageType.PARTIAL : CoverageType.COVERED;
         }
 
         @Override
         public int getHitCount(int lineNo) {
-            Integer ret = lineHitCounts.get(lineNo);
-            if (ret == null) {
-                return 0;
-            }
-            return ret;
+            return lines.getHitCount(lineNo);
         }
 
     }
@@ -58,6 +58,7 @@ import org.netbeans.gradle.project.java.query.GradleSourceLevelQueryImplementati
 import org.netbeans.gradle.project.java.query.GradleUnitTestFinder;
 import org.netbeans.gradle.project.java.query.J2SEPlatformFromScriptQueryImpl;
 import org.netbeans.gradle.project.java.query.JavaInitScriptQuery;
+import org.netbeans.gradle.project.java.query.OpenedProjectsOutputRegistry;
 import org.netbeans.gradle.project.java.tasks.GradleJavaBuiltInCommands;
 import org.netbeans.gradle.project.java.tasks.JavaGradleTaskVariableQuery;
 import org.netbeans.gradle.project.model.issue.DependencyResolutionIssue;
@@ -356,6 +357,7 @@ public final class JavaExtension implements GradleProjectExtension2<NbJavaModel>
             listener.onModelChange();
         }
         projectDependencies.updateDependencies();
+        OpenedProjectsOutputRegistry.getDefault().onModelChange(this);
         modelChangeListeners.fireEventually();
     }
 
@@ -550,10 +552,14 @@ public final class JavaExtension implements GradleProjectExtension2<NbJavaModel>
     // OpenHook is important for debugging because the debugger relies on the
     // globally registered source class paths for source stepping.
     private static class OpenHook extends ProjectOpenedHook {
+        private final JavaExtension javaExt;
         private final CloseableActionContainer closeableActions;
+        private final AtomicReference<ListenerRef> outputRegistrationRef;
 
         public OpenHook(JavaExtension javaExt) {
+            this.javaExt = javaExt;
             this.closeableActions = new CloseableActionContainer();
+            this.outputRegistrationRef = new AtomicReference<>(null);
 
             closeableActions.defineAction(classPathProviderProperty(javaExt,
                     ClassPath.SOURCE,
@@ -565,11 +571,22 @@ public final class JavaExtension implements GradleProjectExtension2<NbJavaModel>
         @Override
         protected void projectOpened() {
             closeableActions.open();
+
+            ListenerRef outputRegistration = OpenedProjectsOutputRegistry.getDefault().registerOpenedProject(javaExt);
+            ListenerRef prevRegistration = outputRegistrationRef.getAndSet(outputRegistration);
+            if (prevRegistration != null) {
+                prevRegistration.unregister();
+            }
         }
 
         @Override
         protected void projectClosed() {
             closeableActions.close();
+
+            ListenerRef outputRegistration = outputRegistrationRef.getAndSet(null);
+            if (outputRegistration != null) {
+                outputRegistration.unregister();
+            }
         }
     }
 
@@ -23,7 +23,6 @@ import org.jtrim.swing.concurrent.SwingUpdateTaskExecutor;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.java.classpath.ClassPath;
 import org.netbeans.api.java.classpath.JavaClassPathConstants;
-import org.netbeans.gradle.model.java.JavaOutputDirs;
 import org.netbeans.gradle.model.java.JavaSourceGroup;
 import org.netbeans.gradle.model.java.JavaSourceSet;
 import org.netbeans.gradle.project.NbGradleProject;
@@ -53,7 +52,6 @@ import org.netbeans.gradle.project.util.ExcludeIncludeRules;
 import org.netbeans.gradle.project.util.LazyValue;
 import org.netbeans.gradle.project.util.ListenerRegistrations;
 import org.netbeans.gradle.project.util.NbConsumer;
-import org.netbeans.gradle.project.util.NbFileUtils;
 import org.netbeans.gradle.project.util.NbSupplier;
 import org.netbeans.gradle.project.util.NbTaskExecutors;
 import org.netbeans.spi.java.classpath.ClassPathFactory;
@@ -79,6 +77,7 @@ implements
     private final AtomicReference<ProjectIssueRef> infoRefRef;
 
     private final AtomicReference<ClassPath> allSourcesClassPathRef;
+    private final AtomicReference<SourceSetFileIndex> sourceSetIndexRef;
     private volatile List<PathResourceImplementation> allSources;
 
     private volatile boolean loadedOnce;
@@ -108,6 +107,7 @@ implements
         this.classpaths = new ConcurrentHashMap<>();
         this.allSources = Collections.emptyList();
         this.allSourcesClassPathRef = new AtomicReference<>(null);
+        this.sourceSetIndexRef = new AtomicReference<>(null);
 
         TaskExecutor pathUpdater = TaskExecutors.inOrderSimpleExecutor(NbTaskExecutors.DEFAULT_EXECUTOR);
         this.classpathUpdateExecutor = new GenericUpdateTaskExecutor(pathUpdater);
@@ -245,20 +245,13 @@ implements
         changes.removePropertyChangeListener(listener);
     }
 
-    private boolean isInOneOf(File file, Collection<File> roots) {
-        return isInOneOf(file, roots, null);
-    }
-
-    private boolean isInOneOf(File file, Collection<File> roots, ExcludeIncludeRules excludeRules) {
-        for (File root: roots) {
-            if (NbFileUtils.isParentOrSame(root, file)) {
-                if (excludeRules == null) {
-                    return true;
-                }
-                return excludeRules.isIncluded(root.toPath(), file);
-            }
+    private SourceSetFileIndex getSourceSetIndex(NbJavaModel projectModel) {
+        SourceSetFileIndex result = sourceSetIndexRef.get();
+        if (result == null || result.getModel() != projectModel) {
+            result = SourceSetFileIndex.create(projectModel);
+            sourceSetIndexRef.set(result);
         }
-        return false;
+        return result;
     }
 
     private JavaSourceSet findAssociatedSourceSet(NbJavaModel projectModel, FileObject fileObj) {
@@ -267,27 +260,7 @@ implements
             return null;
         }
 
-        for (JavaSourceSet sourceSet: projectModel.getMainModule().getSources()) {
-            JavaOutputDirs outputDirs = sourceSet.getOutputDirs();
-            outputDirs.getClassesDir();
-
-            if (isInOneOf(file, sourceSet.getClasspaths().getCompileClasspaths())) {
-                return sourceSet;
-            }
-
-            if (isInOneOf(file, sourceSet.getClasspaths().getRuntimeClasspaths())) {
-                return sourceSet;
-            }
-
-            for (JavaSourceGroup sourceGroup: sourceSet.getSourceGroups()) {
-                ExcludeIncludeRules excludeRules = ExcludeIncludeRules.create(sourceGroup);
-                if (isInOneOf(file, sourceGroup.getSourceRoots(), excludeRules)) {
-                    return sourceSet;
-                }
-            }
-        }
-
-        return null;
+        return getSourceSetIndex(projectModel).tryFindSourceSet(file);
     }
 
     private ClassPathKey getClassPathType(NbJavaModel projectModel, FileObject fileObj, String type) {
@@ -0,0 +1,383 @@
+package org.netbeans.gradle.project.java.query;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jtrim.event.ListenerRef;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.java.JavaExtension;
+import org.netbeans.gradle.project.java.model.JavaProjectDependencyDef;
+import org.netbeans.gradle.project.java.model.NbJarOutput;
+
+/**
+ * Defines a registry of the outputs of the opened Gradle Java projects and
+ * the projects they depend on. The registry is updated incrementally when the
+ * model or the project dependencies of a registered project change, and can be
+ * queried without locking.
+ */
+public final class OpenedProjectsOutputRegistry {
+    private static final OpenedProjectsOutputRegistry DEFAULT = new OpenedProjectsOutputRegistry();
+
+    private final Lock mainLock;
+    // The following two fields are guarded by mainLock.
+    private final Map<File, ProjectEntry> projects;
+    private final Map<String, Map<File, JarCandidate>> jarCandidates;
+
+    private final ConcurrentMap<String, Set<File>> jarClassDirs;
+
+    public OpenedProjectsOutputRegistry() {
+        this.mainLock = new ReentrantLock();
+        this.projects = new HashMap<>();
+        this.jarCandidates = new HashMap<>();
+        this.jarClassDirs = new ConcurrentHashMap<>();
+    }
+
+    public static OpenedProjectsOutputRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    private static String getJarKey(String jarName) {
+        return jarName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the class directories of the opened projects (or their
+     * dependencies) packaged into a jar with the given name (ignoring case).
+     * If there are multiple such jars, the jar built by the default jar task
+     * is preferred.
+     */
+    public Set<File> tryGetClassDirsOfJar(String jarName) {
+        ExceptionHelper.checkNotNullArgument(jarName, "jarName");
+        return jarClassDirs.get(getJarKey(jarName));
+    }
+
+    /**
+     * Registers an opened project. The registered project and the projects it
+     * depends on remain in the registry until the returned reference is
+     * unregistered.
+     */
+    public ListenerRef registerOpenedProject(JavaExtension javaExt) {
+        ExceptionHelper.checkNotNullArgument(javaExt, "javaExt");
+        return registerOpenedProject(new JavaExtProject(javaExt));
+    }
+
+    ListenerRef registerOpenedProject(final RegisteredProject project) {
+        mainLock.lock();
+        try {
+            ProjectEntry entry = retain(project);
+            entry.openCount++;
+            updateDependencies(entry);
+        } finally {
+            mainLock.unlock();
+        }
+
+        final ListenerRef dependenciesRef = project.addDependenciesChangeListener(new Runnable() {
+            @Override
+            public void run() {
+                onDependenciesChange(project);
+            }
+        });
+
+        return new ListenerRef() {
+            private boolean registered = true;
+
+            @Override
+            public boolean isRegistered() {
+                mainLock.lock();
+                try {
+                    return registered;
+                } finally {
+                    mainLock.unlock();
+                }
+            }
+
+            @Override
+            public void unregister() {
+                dependenciesRef.unregister();
+
+                mainLock.lock();
+                try {
+                    if (registered) {
+                        registered = false;
+                        unregisterOpenedProject(project);
+                    }
+                } finally {
+                    mainLock.unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Updates the outputs of the given project if it is in the registry. This
+     * method must be called whenever the model of a project changes.
+     */
+    public void onModelChange(JavaExtension javaExt) {
+        ExceptionHelper.checkNotNullArgument(javaExt, "javaExt");
+        onModelChange(new JavaExtProject(javaExt));
+    }
+
+    void onModelChange(RegisteredProject project) {
+        mainLock.lock();
+        try {
+            ProjectEntry entry = projects.get(project.getProjectDir());
+            if (entry == null) {
+                return;
+            }
+
+            removeOutputs(entry);
+            entry.project = project;
+            addOutputs(entry);
+
+            updateDependencies(entry);
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    private void onDependenciesChange(RegisteredProject project) {
+        mainLock.lock();
+        try {
+            ProjectEntry entry = projects.get(project.getProjectDir());
+            if (entry != null) {
+                updateDependencies(entry);
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    private void unregisterOpenedProject(RegisteredProject project) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        File projectDir = project.getProjectDir();
+        ProjectEntry entry = projects.get(projectDir);
+        if (entry == null) {
+            return;
+        }
+
+        entry.openCount--;
+        if (entry.openCount <= 0) {
+            for (File dependencyDir: entry.dependencyDirs) {
+                release(dependencyDir);
+            }
+            entry.dependencyDirs = Collections.emptySet();
+        }
+        release(projectDir);
+    }
+
+    private ProjectEntry retain(RegisteredProject project) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        File projectDir = project.getProjectDir();
+        ProjectEntry entry = projects.get(projectDir);
+        if (entry == null) {
+            entry = new ProjectEntry(projectDir, project);
+            projects.put(projectDir, entry);
+            addOutputs(entry);
+        }
+        entry.refCount++;
+        return entry;
+    }
+
+    private void release(File projectDir) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        ProjectEntry entry = projects.get(projectDir);
+        if (entry == null) {
+            return;
+        }
+
+        entry.refCount--;
+        if (entry.refCount <= 0) {
+            projects.remove(projectDir);
+            removeOutputs(entry);
+        }
+    }
+
+    private void updateDependencies(ProjectEntry entry) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        if (entry.openCount <= 0) {
+            return;
+        }
+
+        Map<File, RegisteredProject> newDependencies = new HashMap<>();
+        for (RegisteredProject dependency: entry.project.getDependencies()) {
+            File dependencyDir = dependency.getProjectDir();
+            if (!dependencyDir.equals(entry.projectDir)) {
+                newDependencies.put(dependencyDir, dependency);
+            }
+        }
+
+        Set<File> prevDependencyDirs = entry.dependencyDirs;
+        for (Map.Entry<File, RegisteredProject> dependency: newDependencies.entrySet()) {
+            if (!prevDependencyDirs.contains(dependency.getKey())) {
+                retain(dependency.getValue());
+            }
+        }
+        for (File prevDependencyDir: prevDependencyDirs) {
+            if (!newDependencies.containsKey(prevDependencyDir)) {
+                release(prevDependencyDir);
+            }
+        }
+
+        entry.dependencyDirs = new HashSet<>(newDependencies.keySet());
+    }
+
+    private void addOutputs(ProjectEntry entry) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        Map<String, JarCandidate> projectJars = new HashMap<>();
+        for (NbJarOutput jarOutput: entry.project.getJarOutputs()) {
+            Set<File> classDirs = jarOutput.getClassDirs();
+            if (classDirs.isEmpty()) {
+                continue;
+            }
+
+            String key = getJarKey(jarOutput.getJar().getName());
+            if (!projectJars.containsKey(key) || jarOutput.isDefaultJar()) {
+                projectJars.put(key, new JarCandidate(classDirs, jarOutput.isDefaultJar()));
+            }
+        }
+
+        for (Map.Entry<String, JarCandidate> jar: projectJars.entrySet()) {
+            String key = jar.getKey();
+
+            Map<File, JarCandidate> candidates = jarCandidates.get(key);
+            if (candidates == null) {
+                candidates = new LinkedHashMap<>();
+                jarCandidates.put(key, candidates);
+            }
+            candidates.put(entry.projectDir, jar.getValue());
+            refreshJar(key);
+        }
+        entry.jarKeys = new ArrayList<>(projectJars.keySet());
+    }
+
+    private void removeOutputs(ProjectEntry entry) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        for (String key: entry.jarKeys) {
+            Map<File, JarCandidate> candidates = jarCandidates.get(key);
+            if (candidates != null) {
+                candidates.remove(entry.projectDir);
+                refreshJar(key);
+            }
+        }
+        entry.jarKeys = Collections.emptyList();
+    }
+
+    private void refreshJar(String key) {
+        Map<File, JarCandidate> candidates = jarCandidates.get(key);
+        if (candidates == null || candidates.isEmpty()) {
+            jarCandidates.remove(key);
+            jarClassDirs.remove(key);
+            return;
+        }
+
+        JarCandidate selected = null;
+        for (JarCandidate candidate: candidates.values()) {
+            if (selected == null || (candidate.defaultJar && !selected.defaultJar)) {
+                selected = candidate;
+            }
+        }
+        jarClassDirs.put(key, selected.classDirs);
+    }
+
+    /**
+     * Defines the properties of a project the registry relies on. This is
+     * implemented by a simple adapter of {@link JavaExtension} and allows
+     * the registry to be tested without loading real projects.
+     */
+    interface RegisteredProject {
+        public File getProjectDir();
+
+        public Collection<NbJarOutput> getJarOutputs();
+
+        public Collection<RegisteredProject> getDependencies();
+
+        public ListenerRef addDependenciesChangeListener(Runnable listener);
+    }
+
+    private static final class JavaExtProject implements RegisteredProject {
+        private final JavaExtension javaExt;
+
+        public JavaExtProject(JavaExtension javaExt) {
+            this.javaExt = javaExt;
+        }
+
+        @Override
+        public File getProjectDir() {
+            return javaExt.getProjectDirectoryAsFile();
+        }
+
+        @Override
+        public Collection<NbJarOutput> getJarOutputs() {
+            return javaExt.getCurrentModel().getMainModule().getJarOutputs();
+        }
+
+        @Override
+        public Collection<RegisteredProject> getDependencies() {
+            Map<File, JavaProjectDependencyDef> dependencies = javaExt
+                    .getProjectDependencies()
+                    .translatedDependencies()
+                    .getValue();
+
+            List<RegisteredProject> result = new ArrayList<>(dependencies.size());
+            for (JavaProjectDependencyDef dependency: dependencies.values()) {
+                result.add(new JavaExtProject(dependency.getJavaExt()));
+            }
+            return result;
+        }
+
+        @Override
+        public ListenerRef addDependenciesChangeListener(Runnable listener) {
+            return javaExt.getProjectDependencies()
+                    .translatedDependencies()
+                    .addChangeListener(listener);
+        }
+    }
+
+    private static final class ProjectEntry {
+        public final File projectDir;
+        public RegisteredProject project;
+
+        public int refCount;
+        public int openCount;
+        public Set<File> dependencyDirs;
+
+        public List<String> jarKeys;
+
+        public ProjectEntry(File projectDir, RegisteredProject project) {
+            this.projectDir = projectDir;
+            this.project = project;
+            this.refCount = 0;
+            this.openCount = 0;
+            this.dependencyDirs = Collections.emptySet();
+            this.jarKeys = Collections.emptyList();
+        }
+    }
+
+    private static final class JarCandidate {
+        public final Set<File> classDirs;
+        public final boolean defaultJar;
+
+        public JarCandidate(Set<File> classDirs, boolean defaultJar) {
+            this.classDirs = classDirs;
+            this.defaultJar = defaultJar;
+        }
+    }
+}
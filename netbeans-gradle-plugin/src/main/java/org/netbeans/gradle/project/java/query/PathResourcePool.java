@@ -0,0 +1,269 @@
+package org.netbeans.gradle.project.java.query;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.properties.WeakValueHashMap;
+import org.netbeans.gradle.project.util.FileGroupFilter;
+import org.netbeans.gradle.project.util.UrlFactory;
+import org.netbeans.spi.java.classpath.PathResourceImplementation;
+import org.netbeans.spi.java.classpath.support.ClassPathSupport;
+
+/**
+ * Defines a pool of {@code PathResourceImplementation} instances and of lists
+ * of them, so that the same dependency referenced by many projects is
+ * represented by the same objects. The pooled objects are only weakly
+ * referenced by the pool.
+ * <P>
+ * The methods of this class can be called from multiple threads concurrently.
+ */
+public final class PathResourcePool {
+    private static final PathResourcePool DEFAULT = new PathResourcePool();
+
+    private final Lock mainLock;
+    private final WeakValueHashMap<ResourceKey, PathResourceImplementation> resources;
+    private final Map<List<PathResourceImplementation>, WeakReference<List<PathResourceImplementation>>> lists;
+
+    private final AtomicLong resourceRequestCount;
+    private final AtomicLong resourceHitCount;
+    private final AtomicLong listRequestCount;
+    private final AtomicLong listHitCount;
+
+    public PathResourcePool() {
+        this.mainLock = new ReentrantLock();
+        this.resources = new WeakValueHashMap<>();
+        this.lists = new WeakHashMap<>();
+
+        this.resourceRequestCount = new AtomicLong(0);
+        this.resourceHitCount = new AtomicLong(0);
+        this.listRequestCount = new AtomicLong(0);
+        this.listHitCount = new AtomicLong(0);
+    }
+
+    public static PathResourcePool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the path resource for the given class path entry or {@code null}
+     * if the entry cannot be converted to an URL. Resources are only shared
+     * between requests specifying the same {@code UrlFactory} instance.
+     */
+    public PathResourceImplementation tryGetResource(
+            File file,
+            FileGroupFilter includeRules,
+            UrlFactory urlFactory) {
+        ExceptionHelper.checkNotNullArgument(file, "file");
+        ExceptionHelper.checkNotNullArgument(includeRules, "includeRules");
+        ExceptionHelper.checkNotNullArgument(urlFactory, "urlFactory");
+
+        ResourceKey key = new ResourceKey(file, includeRules.isAllowAll() ? null : includeRules, urlFactory);
+
+        resourceRequestCount.incrementAndGet();
+
+        PathResourceImplementation result;
+        mainLock.lock();
+        try {
+            result = resources.get(key);
+        } finally {
+            mainLock.unlock();
+        }
+
+        if (result != null) {
+            resourceHitCount.incrementAndGet();
+            return result;
+        }
+
+        result = createResource(file, key.includeRules, urlFactory);
+        if (result == null) {
+            return null;
+        }
+
+        mainLock.lock();
+        try {
+            PathResourceImplementation concurrentResult = resources.get(key);
+            if (concurrentResult != null) {
+                return concurrentResult;
+            }
+            resources.put(key, result);
+        } finally {
+            mainLock.unlock();
+        }
+        return result;
+    }
+
+    private static PathResourceImplementation createResource(
+            File file,
+            FileGroupFilter includeRules,
+            UrlFactory urlFactory) {
+
+        if (includeRules == null) {
+            URL url = urlFactory.toUrl(file);
+            return url != null ? ClassPathSupport.createResource(url) : null;
+        }
+        else {
+            return ExcludeAwarePathResource.tryCreate(file, includeRules, urlFactory);
+        }
+    }
+
+    /**
+     * Returns an unmodifiable list with the same elements as the given list.
+     * Lists with equivalent elements are shared.
+     */
+    public List<PathResourceImplementation> internList(List<? extends PathResourceImplementation> resourceList) {
+        ExceptionHelper.checkNotNullArgument(resourceList, "resourceList");
+
+        List<PathResourceImplementation> list = Collections.unmodifiableList(
+                new ArrayList<PathResourceImplementation>(resourceList));
+
+        listRequestCount.incrementAndGet();
+
+        mainLock.lock();
+        try {
+            WeakReference<List<PathResourceImplementation>> resultRef = lists.get(list);
+            List<PathResourceImplementation> result = resultRef != null ? resultRef.get() : null;
+            if (result != null) {
+                listHitCount.incrementAndGet();
+                return result;
+            }
+
+            lists.put(list, new WeakReference<>(list));
+            return list;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    public Statistics getStatistics() {
+        int pooledResourceCount;
+        int pooledListCount;
+
+        mainLock.lock();
+        try {
+            pooledResourceCount = resources.size();
+            pooledListCount = lists.size();
+        } finally {
+            mainLock.unlock();
+        }
+
+        return new Statistics(
+                pooledResourceCount,
+                resourceRequestCount.get(),
+                resourceHitCount.get(),
+                pooledListCount,
+                listRequestCount.get(),
+                listHitCount.get());
+    }
+
+    public static final class Statistics {
+        private final int pooledResourceCount;
+        private final long resourceRequestCount;
+        private final long resourceHitCount;
+        private final int pooledListCount;
+        private final long listRequestCount;
+        private final long listHitCount;
+
+        private Statistics(
+                int pooledResourceCount,
+                long resourceRequestCount,
+                long resourceHitCount,
+                int pooledListCount,
+                long listRequestCount,
+                long listHitCount) {
+            this.pooledResourceCount = pooledResourceCount;
+            this.resourceRequestCount = resourceRequestCount;
+            this.resourceHitCount = resourceHitCount;
+            this.pooledListCount = pooledListCount;
+            this.listRequestCount = listRequestCount;
+            this.listHitCount = listHitCount;
+        }
+
+        private static double getRate(long hitCount, long requestCount) {
+            return requestCount > 0 ? (double)hitCount / (double)requestCount : 0.0;
+        }
+
+        public int getPooledResourceCount() {
+            return pooledResourceCount;
+        }
+
+        public long getResourceRequestCount() {
+            return resourceRequestCount;
+        }
+
+        public long getResourceHitCount() {
+            return resourceHitCount;
+        }
+
+        public double getResourceHitRate() {
+            return getRate(resourceHitCount, resourceRequestCount);
+        }
+
+        public int getPooledListCount() {
+            return pooledListCount;
+        }
+
+        public long getListRequestCount() {
+            return listRequestCount;
+        }
+
+        public long getListHitCount() {
+            return listHitCount;
+        }
+
+        public double getListHitRate() {
+            return getRate(listHitCount, listRequestCount);
+        }
+
+        @Override
+        public String toString() {
+            return "PathResourcePool.Statistics{"
+                    + "resources=" + pooledResourceCount
+                    + ", resourceHits=" + resourceHitCount + "/" + resourceRequestCount
+                    + ", lists=" + pooledListCount
+                    + ", listHits=" + listHitCount + "/" + listRequestCount + '}';
+        }
+    }
+
+    private static final class ResourceKey {
+        private final File file;
+        private final FileGroupFilter includeRules;
+        private final UrlFactory urlFactory;
+
+        public ResourceKey(File file, FileGroupFilter includeRules, UrlFactory urlFactory) {
+            this.file = file;
+            this.includeRules = includeRules;
+            this.urlFactory = urlFactory;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 67 * hash + file.hashCode();
+            hash = 67 * hash + Objects.hashCode(includeRules);
+            hash = 67 * hash + System.identityHashCode(urlFactory);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) return false;
+            if (obj == this) return true;
+            if (getClass() != obj.getClass()) return false;
+
+            final ResourceKey other = (ResourceKey)obj;
+            return this.urlFactory == other.urlFactory
+                    && this.file.equals(other.file)
+                    && Objects.equals(this.includeRules, other.includeRules);
+        }
+    }
+}
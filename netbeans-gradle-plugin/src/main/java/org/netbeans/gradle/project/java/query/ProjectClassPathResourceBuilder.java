@@ -10,24 +10,16 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jtrim.collections.CollectionsEx;
 import org.jtrim.utils.ExceptionHelper;
-import org.netbeans.api.project.Project;
-import org.netbeans.api.project.ui.OpenProjects;
 import org.netbeans.gradle.model.java.JavaOutputDirs;
 import org.netbeans.gradle.model.java.JavaSourceGroup;
 import org.netbeans.gradle.model.java.JavaSourceSet;
-import org.netbeans.gradle.project.NbGradleProject;
 import org.netbeans.gradle.project.api.entry.ProjectPlatform;
-import org.netbeans.gradle.project.java.JavaExtension;
-import org.netbeans.gradle.project.java.model.JavaProjectDependencies;
 import org.netbeans.gradle.project.java.model.JavaProjectDependencyDef;
-import org.netbeans.gradle.project.java.model.NbJarOutput;
 import org.netbeans.gradle.project.java.model.NbJavaModel;
 import org.netbeans.gradle.project.java.model.NbJavaModule;
 import org.netbeans.gradle.project.properties.global.CommonGlobalSettings;
@@ -37,7 +29,6 @@ import org.netbeans.gradle.project.util.UnionFileGroupFilter;
 import org.netbeans.gradle.project.util.UrlFactory;
 import org.netbeans.spi.java.classpath.PathResourceImplementation;
 import org.netbeans.spi.java.classpath.support.ClassPathSupport;
-import org.openide.util.Lookup;
 
 public final class ProjectClassPathResourceBuilder {
     private static final Logger LOGGER = Logger.getLogger(ProjectClassPathResourceBuilder.class.getName());
@@ -50,7 +41,7 @@ public final class ProjectClassPathResourceBuilder {
     private Map<ClassPathKey, List<PathResourceImplementation>> classpathResources;
 
     // Maps JAR name to source set output directory.
-    private Map<String, Set<File>> openedProjectsOutput;
+    private OpenedProjectsOutputRegistry openedProjectsOutput;
 
     private final UrlFactory urlForArchiveFactory;
 
@@ -87,54 +78,19 @@ public final class ProjectClassPathResourceBuilder {
 
         loadCompileForGlobalClassPath(projectModel);
         loadRuntimeForGlobalClassPath(projectModel);
-    }
-
-    /**
-     * Returns all the currently opened Gradle Java projects, including the projects
-     * referenced by them (project dependencies).
-     */
-    private static Collection<JavaExtension> getAllOpenedGradleJavaProjects() {
-        Project[] openedProjects = OpenProjects.getDefault().getOpenProjects();
-        Map<File, JavaExtension> result = new HashMap<>();
-
-        for (Project project: openedProjects) {
-            Lookup lookup = project.getLookup();
-            NbGradleProject gradleProject = lookup.lookup(NbGradleProject.class);
-            JavaExtension javaExt = lookup.lookup(JavaExtension.class);
-
-            if (javaExt != null && gradleProject != null) {
-                result.put(gradleProject.getProjectDirectoryAsFile(), javaExt);
 
-                JavaProjectDependencies projectDependencies = javaExt.getProjectDependencies();
-                for (JavaProjectDependencyDef dependency: projectDependencies.translatedDependencies().getValue().values()) {
-                    JavaExtension dependencyJavaExt = dependency.getJavaExt();
-                    result.put(dependencyJavaExt.getProjectDirectoryAsFile(), dependencyJavaExt);
-                }
-            }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Path resource pool after loading the class paths of {0}: {1}",
+                    new Object[]{mainModule.getShortName(), PathResourcePool.getDefault().getStatistics()});
         }
-
-        return new ArrayList<>(result.values());
     }
 
-    private static Map<String, Set<File>> findOpenedProjectsOutput() {
+    private static OpenedProjectsOutputRegistry findOpenedProjectsOutput() {
         if (!CommonGlobalSettings.getDefault().detectProjectDependenciesByJarName().getActiveValue()) {
             return null;
         }
 
-        Collection<JavaExtension> javaExts = getAllOpenedGradleJavaProjects();
-        Map<String, Set<File>> result = CollectionsEx.newHashMap(javaExts.size());
-        for (JavaExtension javaExt: javaExts) {
-            NbJavaModule mainModule = javaExt.getCurrentModel().getMainModule();
-            for (NbJarOutput jarOutput: mainModule.getJarOutputs()) {
-                String key = jarOutput.getJar().getName().toLowerCase(Locale.ROOT);
-                Set<File> classDirs = jarOutput.getClassDirs();
-
-                if (!classDirs.isEmpty() && (!result.containsKey(key) || jarOutput.isDefaultJar())) {
-                    result.put(key, jarOutput.getClassDirs());
-                }
-            }
-        }
-        return result;
+        return OpenedProjectsOutputRegistry.getDefault();
     }
 
     private List<PathResourceImplementation> getBuildOutputDirsAsPathResources(JavaSourceSet sourceSet) {
@@ -150,7 +106,7 @@ public final class ProjectClassPathResourceBuilder {
 
     private Set<File> tryUpdateDependency(File original) {
         return openedProjectsOutput != null
-                ? openedProjectsOutput.get(original.getName().toLowerCase(Locale.ROOT))
+                ? openedProjectsOutput.tryGetClassDirsOfJar(original.getName())
                 : null;
     }
 
@@ -326,7 +282,7 @@ public final class ProjectClassPathResourceBuilder {
     private void setClassPathResources(
             ClassPathKey classPathKey,
             List<PathResourceImplementation> paths) {
-        classpathResources.put(classPathKey, Collections.unmodifiableList(paths));
+        classpathResources.put(classPathKey, PathResourcePool.getDefault().internList(paths));
     }
 
     private void setClassPathResources(
@@ -341,15 +297,7 @@ public final class ProjectClassPathResourceBuilder {
 
 
     private static PathResourceImplementation toPathResource(File file, UrlFactory urlForArchiveFactory) {
-        URL url = urlForArchiveFactory.toUrl(file);
-        return url != null ? ClassPathSupport.createResource(url) : null;
-    }
-
-    private static PathResourceImplementation toPathResource(
-            File file,
-            FileGroupFilter includeRules,
-            UrlFactory urlForArchiveFactory) {
-        return ExcludeAwarePathResource.tryCreate(file, includeRules, urlForArchiveFactory);
+        return PathResourcePool.getDefault().tryGetResource(file, ExcludeIncludeRules.ALLOW_ALL, urlForArchiveFactory);
     }
 
     private static List<PathResourceImplementation> getPathResources(
@@ -369,14 +317,11 @@ public final class ProjectClassPathResourceBuilder {
             Set<File> invalid,
             FileGroupFilter includeRules) {
 
-        boolean allowAll = includeRules.isAllowAll();
-
+        PathResourcePool pool = PathResourcePool.getDefault();
         UrlFactory urlFactory = UrlFactory.getDefaultArchiveOrDirFactory();
         List<PathResourceImplementation> result = new ArrayList<>(files.size());
         for (File file: asSet(files)) {
-            PathResourceImplementation pathResource = allowAll
-                    ? toPathResource(file, urlFactory)
-                    : toPathResource(file, includeRules, urlFactory);
+            PathResourceImplementation pathResource = pool.tryGetResource(file, includeRules, urlFactory);
             // Ignore invalid classpath entries
             if (pathResource != null) {
                 result.add(pathResource);
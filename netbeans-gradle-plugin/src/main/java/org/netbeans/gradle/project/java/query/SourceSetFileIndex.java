@@ -0,0 +1,181 @@
+package org.netbeans.gradle.project.java.query;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.model.java.JavaSourceGroup;
+import org.netbeans.gradle.model.java.JavaSourceSet;
+import org.netbeans.gradle.project.java.model.NbJavaModel;
+import org.netbeans.gradle.project.util.ExcludeIncludeRules;
+
+/**
+ * Defines an immutable index from the source roots and class path entries of
+ * the source sets of a model to the source sets. Finding the source set of a
+ * file only requires looking up the parent directories of the file.
+ */
+final class SourceSetFileIndex {
+    private final NbJavaModel model;
+    private final Map<File, RootEntry[]> roots;
+
+    private SourceSetFileIndex(NbJavaModel model, Map<File, RootEntry[]> roots) {
+        this.model = model;
+        this.roots = roots;
+    }
+
+    public static SourceSetFileIndex create(NbJavaModel model) {
+        ExceptionHelper.checkNotNullArgument(model, "model");
+
+        Map<File, List<RootEntry>> roots = new HashMap<>();
+
+        int sourceSetIndex = 0;
+        int groupIndex = 0;
+        for (JavaSourceSet sourceSet: model.getMainModule().getSources()) {
+            addRoots(sourceSetIndex, sourceSet, sourceSet.getClasspaths().getCompileClasspaths(), roots);
+            addRoots(sourceSetIndex, sourceSet, sourceSet.getClasspaths().getRuntimeClasspaths(), roots);
+
+            for (JavaSourceGroup sourceGroup: sourceSet.getSourceGroups()) {
+                ExcludeIncludeRules includeRules = ExcludeIncludeRules.create(sourceGroup);
+
+                int rootIndex = 0;
+                for (File root: sourceGroup.getSourceRoots()) {
+                    RootEntry entry = new RootEntry(sourceSetIndex, sourceSet, groupIndex, rootIndex, includeRules);
+                    addRoot(root, entry, roots);
+                    rootIndex++;
+                }
+                groupIndex++;
+            }
+            sourceSetIndex++;
+        }
+
+        Map<File, RootEntry[]> result = new HashMap<>(2 * roots.size());
+        for (Map.Entry<File, List<RootEntry>> entry: roots.entrySet()) {
+            List<RootEntry> rootEntries = entry.getValue();
+            result.put(entry.getKey(), rootEntries.toArray(new RootEntry[rootEntries.size()]));
+        }
+        return new SourceSetFileIndex(model, result);
+    }
+
+    private static void addRoots(
+            int sourceSetIndex,
+            JavaSourceSet sourceSet,
+            Collection<File> classpath,
+            Map<File, List<RootEntry>> roots) {
+
+        RootEntry entry = new RootEntry(sourceSetIndex, sourceSet, -1, 0, null);
+        for (File root: classpath) {
+            addRoot(root, entry, roots);
+        }
+    }
+
+    private static void addRoot(File root, RootEntry entry, Map<File, List<RootEntry>> roots) {
+        List<RootEntry> entries = roots.get(root);
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            roots.put(root, entries);
+        }
+        entries.add(entry);
+    }
+
+    public NbJavaModel getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the first source set (in the order of the model) having a source
+     * root or class path entry containing the given file. If the containing
+     * source root of a source group excludes the file, the source group is
+     * not considered to contain the file.
+     */
+    public JavaSourceSet tryFindSourceSet(File file) {
+        ExceptionHelper.checkNotNullArgument(file, "file");
+
+        List<ContainingRoot> containingRoots = null;
+        for (File current = file; current != null; current = current.getParentFile()) {
+            RootEntry[] entries = roots.get(current);
+            if (entries == null) {
+                continue;
+            }
+
+            if (containingRoots == null) {
+                containingRoots = new ArrayList<>();
+            }
+            for (RootEntry entry: entries) {
+                containingRoots.add(new ContainingRoot(current, entry));
+            }
+        }
+
+        if (containingRoots == null) {
+            return null;
+        }
+
+        RootEntry best = null;
+        for (ContainingRoot containingRoot: containingRoots) {
+            RootEntry entry = containingRoot.entry;
+            if (best != null && best.sourceSetIndex <= entry.sourceSetIndex) {
+                continue;
+            }
+
+            if (isIncluded(file, containingRoot, containingRoots)) {
+                best = entry;
+            }
+        }
+        return best != null ? best.sourceSet : null;
+    }
+
+    private static boolean isIncluded(
+            File file,
+            ContainingRoot containingRoot,
+            List<ContainingRoot> containingRoots) {
+
+        RootEntry entry = containingRoot.entry;
+        if (entry.includeRules == null) {
+            return true;
+        }
+
+        // Only the first root of the source group containing the file
+        // decides if the file is included.
+        for (ContainingRoot other: containingRoots) {
+            RootEntry otherEntry = other.entry;
+            if (otherEntry.groupIndex == entry.groupIndex && otherEntry.rootIndex < entry.rootIndex) {
+                return false;
+            }
+        }
+        return entry.includeRules.isIncluded(containingRoot.root.toPath(), file);
+    }
+
+    private static final class ContainingRoot {
+        public final File root;
+        public final RootEntry entry;
+
+        public ContainingRoot(File root, RootEntry entry) {
+            this.root = root;
+            this.entry = entry;
+        }
+    }
+
+    private static final class RootEntry {
+        public final int sourceSetIndex;
+        public final JavaSourceSet sourceSet;
+        public final int groupIndex;
+        public final int rootIndex;
+        public final ExcludeIncludeRules includeRules;
+
+        public RootEntry(
+                int sourceSetIndex,
+                JavaSourceSet sourceSet,
+                int groupIndex,
+                int rootIndex,
+                ExcludeIncludeRules includeRules) {
+
+            this.sourceSetIndex = sourceSetIndex;
+            this.sourceSet = sourceSet;
+            this.groupIndex = groupIndex;
+            this.rootIndex = rootIndex;
+            this.includeRules = includeRules;
+        }
+    }
+}
@@ -45,8 +45,10 @@ import org.netbeans.gradle.project.java.properties.DebugMode;
 import org.netbeans.gradle.project.java.test.TestTaskName;
 import org.netbeans.gradle.project.java.test.TestXmlDisplayer;
 import org.netbeans.gradle.project.output.DebugTextListener;
+import org.netbeans.gradle.project.properties.global.CommonGlobalSettings;
 import org.netbeans.gradle.project.tasks.AttacherListener;
 import org.netbeans.gradle.project.tasks.DebugUtils;
+import org.netbeans.gradle.project.tasks.ExecutionAwareCommandCompleteListener;
 import org.netbeans.gradle.project.tasks.vars.StandardTaskVariable;
 import org.netbeans.gradle.project.util.GradleVersions;
 import org.netbeans.gradle.project.view.GlobalErrorReporter;
@@ -504,14 +506,45 @@ public final class GradleJavaBuiltInCommands implements BuiltInGradleCommandQuer
             final Project project,
             final JavaExtension javaExt,
             final Lookup startContext) {
-        return new ContextAwareCommandCompleteListener() {
+
+        return new ExecutionAwareCommandCompleteListener() {
+            // The reports are only watched while the command is executed, so
+            // that nothing is left running if the command is never executed.
+            private volatile Map<String, TestXmlDisplayer.ReportWatch> reportWatches
+                    = Collections.emptyMap();
+
+            @Override
+            public void onExecutionStarted() {
+                reportWatches = startWatchingReports(project, startContext);
+            }
+
             @Override
             public void onComplete(ExecutedCommandContext executedCommandContext, Throwable error) {
-                displayTestReports(project, javaExt, executedCommandContext, startContext, error);
+                Map<String, TestXmlDisplayer.ReportWatch> currentWatches = reportWatches;
+                reportWatches = Collections.emptyMap();
+                displayTestReports(project, javaExt, executedCommandContext, startContext, currentWatches, error);
             }
         };
     }
 
+    private static Map<String, TestXmlDisplayer.ReportWatch> startWatchingReports(
+            Project project,
+            Lookup startContext) {
+
+        if (!CommonGlobalSettings.getDefault().watchTestReports().getActiveValue()) {
+            return Collections.emptyMap();
+        }
+
+        // The actually executed test tasks are only known after the command
+        // has been completed, so guess the test task based on the context.
+        String testName = TestTaskName.getTaskName(startContext);
+        TestXmlDisplayer xmlDisplayer = new TestXmlDisplayer(project, testName);
+
+        Map<String, TestXmlDisplayer.ReportWatch> result = new HashMap<>();
+        result.put(testName, xmlDisplayer.startWatchingReports(startContext));
+        return result;
+    }
+
     private static void displayErrorDueToNoTestReportsFound(TestXmlDisplayer xmlDisplayer) {
         String message = NbStrings.getErrorDueToNoTestReportsFound(
                 xmlDisplayer.getTestName(),
@@ -525,17 +558,30 @@ public final class GradleJavaBuiltInCommands implements BuiltInGradleCommandQuer
             JavaExtension javaExt,
             ExecutedCommandContext executedCommandContext,
             Lookup startContext,
+            Map<String, TestXmlDisplayer.ReportWatch> reportWatches,
             Throwable error) {
 
-        List<String> testNames = getTestNames(javaExt, executedCommandContext);
+        Map<String, TestXmlDisplayer.ReportWatch> unusedWatches = new HashMap<>(reportWatches);
+        try {
+            List<String> testNames = getTestNames(javaExt, executedCommandContext);
+            for (String testName: testNames) {
+                TestXmlDisplayer xmlDisplayer = new TestXmlDisplayer(project, testName);
+                TestXmlDisplayer.ReportWatch reportWatch = unusedWatches.remove(testName);
+
+                boolean displayed = reportWatch != null
+                        ? reportWatch.finish()
+                        : xmlDisplayer.displayReport(startContext);
 
-        for (String testName: testNames) {
-            TestXmlDisplayer xmlDisplayer = new TestXmlDisplayer(project, testName);
-            if (!xmlDisplayer.displayReport(startContext)) {
-                if (error == null) {
-                    displayErrorDueToNoTestReportsFound(xmlDisplayer);
+                if (!displayed) {
+                    if (error == null) {
+                        displayErrorDueToNoTestReportsFound(xmlDisplayer);
+                    }
                 }
             }
+        } finally {
+            for (TestXmlDisplayer.ReportWatch reportWatch: unusedWatches.values()) {
+                reportWatch.stop();
+            }
         }
     }
 
@@ -0,0 +1,131 @@
+package org.netbeans.gradle.project.java.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.NbStrings;
+
+/**
+ * Collects the output captured by a test suite keeping at most a limited
+ * number of characters in memory. If the output is longer than the limit, the
+ * complete output is written to a temporary file and only the beginning of the
+ * output is kept in memory. The temporary file is created by the
+ * {@link CapturedOutputFiles} of the test session, which removes it when the
+ * test session is discarded (or when the IDE exits).
+ * <P>
+ * Instances of this class are not safe to be used by multiple threads
+ * concurrently.
+ */
+final class CapturedOutput {
+    private static final Logger LOGGER = Logger.getLogger(CapturedOutput.class.getName());
+
+    private final int maxLength;
+    private final CapturedOutputFiles spillFiles;
+    private final StringBuilder head;
+
+    private boolean truncated;
+    private File spillFile;
+    private Writer spillWriter;
+
+    public CapturedOutput(int maxLength, CapturedOutputFiles spillFiles) {
+        ExceptionHelper.checkArgumentInRange(maxLength, 0, Integer.MAX_VALUE, "maxLength");
+        ExceptionHelper.checkNotNullArgument(spillFiles, "spillFiles");
+
+        this.maxLength = maxLength;
+        this.spillFiles = spillFiles;
+        this.head = new StringBuilder(Math.min(maxLength, 1024));
+        this.truncated = false;
+        this.spillFile = null;
+        this.spillWriter = null;
+    }
+
+    public void append(char[] ch, int start, int length) {
+        int spillStart = start;
+        int spillLength = length;
+
+        if (!truncated) {
+            int headLength = Math.min(length, maxLength - head.length());
+            head.append(ch, start, headLength);
+            if (headLength == length) {
+                return;
+            }
+
+            truncated = true;
+            startSpilling();
+
+            spillStart += headLength;
+            spillLength -= headLength;
+        }
+
+        if (spillWriter != null) {
+            try {
+                spillWriter.write(ch, spillStart, spillLength);
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to write captured test output to " + spillFile, ex);
+                closeSpillWriter();
+                spillFile = null;
+            }
+        }
+    }
+
+    private void startSpilling() {
+        try {
+            spillFile = spillFiles.createFile();
+            spillWriter = new OutputStreamWriter(new FileOutputStream(spillFile), StandardCharsets.UTF_8);
+            spillWriter.append(head);
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to create file for captured test output.", ex);
+            closeSpillWriter();
+            spillFile = null;
+        }
+    }
+
+    private void closeSpillWriter() {
+        Writer writer = spillWriter;
+        spillWriter = null;
+
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to close " + spillFile, ex);
+                spillFile = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the file the output is written to (if there is any). This method
+     * must be called even if the output is not {@link #finish() finished}
+     * (e.g., because parsing the report failed). Subsequent calls to this
+     * method do nothing.
+     * <P>
+     * No more output might be appended after calling this method.
+     */
+    public void close() {
+        closeSpillWriter();
+    }
+
+    /**
+     * Returns the captured output to be displayed. If the output was longer
+     * than the limit, the returned string contains the beginning of the output
+     * and the path of the file containing the complete output (if it could be
+     * saved).
+     * <P>
+     * No more output might be appended after calling this method.
+     */
+    public String finish() {
+        if (!truncated) {
+            return head.toString();
+        }
+
+        closeSpillWriter();
+        return head.toString() + NbStrings.getTruncatedTestOutput(spillFile);
+    }
+}
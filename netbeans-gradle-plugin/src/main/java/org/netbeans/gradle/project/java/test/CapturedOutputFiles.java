@@ -0,0 +1,90 @@
+package org.netbeans.gradle.project.java.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the files the complete output of the test suites of a single
+ * test session was written to, so that they can be removed once the test
+ * session is no longer displayed. Sessions which are never replaced (e.g.: the
+ * test task is not run again) keep their files until the IDE exits, when the
+ * files are removed as well.
+ * <P>
+ * The methods of this class can be called from multiple threads concurrently.
+ *
+ * @see CapturedOutput
+ */
+final class CapturedOutputFiles {
+    private static final Logger LOGGER = Logger.getLogger(CapturedOutputFiles.class.getName());
+
+    private final Lock mainLock;
+    private final List<File> files;
+    private boolean deleted;
+
+    public CapturedOutputFiles() {
+        this.mainLock = new ReentrantLock();
+        this.files = new ArrayList<>();
+        this.deleted = false;
+    }
+
+    /**
+     * Creates a new empty temporary file to which the output of a test suite
+     * can be written. The file is removed by the {@link #deleteAll() deleteAll}
+     * method or when the IDE exits.
+     *
+     * @return the newly created file. This method never returns {@code null}.
+     *
+     * @throws IOException thrown if the file could not be created or if the
+     *   files of this session have already been deleted
+     */
+    public File createFile() throws IOException {
+        File result = File.createTempFile("nb-gradle-test-output", ".txt");
+        result.deleteOnExit();
+
+        mainLock.lock();
+        try {
+            if (!deleted) {
+                files.add(result);
+                return result;
+            }
+        } finally {
+            mainLock.unlock();
+        }
+
+        deleteFile(result);
+        throw new IOException("The test session has already been discarded.");
+    }
+
+    /**
+     * Removes every file created by this object. Files can no longer be
+     * created after this method was called. Subsequent calls to this method
+     * do nothing.
+     */
+    public void deleteAll() {
+        List<File> toDelete;
+        mainLock.lock();
+        try {
+            deleted = true;
+            toDelete = new ArrayList<>(files);
+            files.clear();
+        } finally {
+            mainLock.unlock();
+        }
+
+        for (File file: toDelete) {
+            deleteFile(file);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.log(Level.INFO, "Failed to delete captured test output: {0}", file);
+        }
+    }
+}
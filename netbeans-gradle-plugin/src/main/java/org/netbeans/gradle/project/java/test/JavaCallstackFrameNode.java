@@ -10,6 +10,8 @@ import org.jtrim.cancel.CancellationToken;
 import org.jtrim.concurrent.CancelableTask;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.project.Project;
+import org.netbeans.gradle.project.NbGradleProject;
+import org.netbeans.gradle.project.NbGradleProjectFactory;
 import org.netbeans.gradle.project.NbStrings;
 import org.netbeans.gradle.project.java.JavaExtension;
 import org.netbeans.gradle.project.output.StackTraceConsumer;
@@ -39,7 +41,10 @@ public final class JavaCallstackFrameNode extends CallstackFrameNode {
     public static ActionListener tryGetOpenLocationAction(Project project, String location) {
         String stackTraceLine = getConsumableStackTrace(location);
 
-        StackTraceConsumer stackTraceConsumer = new StackTraceConsumer(project);
+        NbGradleProject gradleProject = NbGradleProjectFactory.tryGetGradleProject(project);
+        StackTraceConsumer stackTraceConsumer = gradleProject != null
+                ? gradleProject.getOutputLinks().getStackTraceConsumer()
+                : new StackTraceConsumer(project);
         return stackTraceConsumer.tryGetOpenEditorAction(stackTraceLine);
     }
 
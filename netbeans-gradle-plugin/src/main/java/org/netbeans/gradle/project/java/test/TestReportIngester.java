@@ -0,0 +1,283 @@
+package org.netbeans.gradle.project.java.test;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.concurrent.CancelableTask;
+import org.jtrim.concurrent.CleanupTask;
+import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.others.test.NbGradleTestSession;
+import org.netbeans.gradle.project.util.NbSupplier;
+import org.netbeans.gradle.project.util.NbTaskExecutors;
+import org.xml.sax.SAXException;
+
+/**
+ * Parses JUnit XML report files concurrently and adds the parsed test suites to
+ * a test session in the order the report files were submitted. A test suite is
+ * added as soon as it and the previously submitted suites have been parsed.
+ * <P>
+ * The test session is only started when the first test suite is to be added.
+ * <P>
+ * The methods of this class can be called from multiple threads concurrently.
+ */
+final class TestReportIngester {
+    private static final Logger LOGGER = Logger.getLogger(TestReportIngester.class.getName());
+
+    private static final TaskExecutor DEFAULT_PARSER_EXECUTOR
+            = NbTaskExecutors.newExecutor("Gradle-Test-Report-Parser", getDefaultParserThreadCount());
+
+    private static final ThreadLocal<SAXParser> PARSER_REF = new ThreadLocal<>();
+
+    private final TaskExecutor parserExecutor;
+    private final NbSupplier<? extends NbGradleTestSession> sessionFactory;
+    private final CapturedOutputFiles outputFiles;
+
+    private final Lock queueLock;
+    private final Condition publishedSignal;
+    private final Deque<PendingReport> pendingReports;
+    private int unpublishedCount;
+
+    private final ReentrantLock publishLock;
+    private NbGradleTestSession session;
+
+    public TestReportIngester(
+            NbSupplier<? extends NbGradleTestSession> sessionFactory,
+            CapturedOutputFiles outputFiles) {
+        this(DEFAULT_PARSER_EXECUTOR, sessionFactory, outputFiles);
+    }
+
+    /**
+     * Creates a new {@code TestReportIngester}.
+     *
+     * @param parserExecutor the executor on which the reports are parsed. This
+     *   argument cannot be {@code null}.
+     * @param sessionFactory the factory starting the test session when the
+     *   first test suite is to be added. This argument cannot be {@code null}.
+     * @param outputFiles the files of the test session to which too long test
+     *   outputs are written. The files are deleted if the test session is not
+     *   started. Otherwise they must be deleted by the owner of the session
+     *   when the session is discarded. This argument cannot be {@code null}.
+     */
+    public TestReportIngester(
+            TaskExecutor parserExecutor,
+            NbSupplier<? extends NbGradleTestSession> sessionFactory,
+            CapturedOutputFiles outputFiles) {
+        ExceptionHelper.checkNotNullArgument(parserExecutor, "parserExecutor");
+        ExceptionHelper.checkNotNullArgument(sessionFactory, "sessionFactory");
+        ExceptionHelper.checkNotNullArgument(outputFiles, "outputFiles");
+
+        this.parserExecutor = parserExecutor;
+        this.sessionFactory = sessionFactory;
+        this.outputFiles = outputFiles;
+        this.queueLock = new ReentrantLock();
+        this.publishedSignal = queueLock.newCondition();
+        this.pendingReports = new ArrayDeque<>();
+        this.unpublishedCount = 0;
+        this.publishLock = new ReentrantLock();
+        this.session = null;
+    }
+
+    private static int getDefaultParserThreadCount() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    }
+
+    private static SAXParser tryGetSaxParser() {
+        SAXParser result = PARSER_REF.get();
+        if (result != null) {
+            return result;
+        }
+
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        try {
+            result = parserFactory.newSAXParser();
+        } catch (ParserConfigurationException ex) {
+            LOGGER.log(Level.WARNING, "Unexpected parser configuration error.", ex);
+            return null;
+        } catch (SAXException ex) {
+            LOGGER.log(Level.WARNING, "Unexpected SAXException.", ex);
+            return null;
+        }
+
+        PARSER_REF.set(result);
+        return result;
+    }
+
+    /**
+     * Submits a report file to be parsed and then added to the test session.
+     *
+     * @param reportFile the report file to be parsed. This argument cannot be
+     *   {@code null}.
+     * @param parseFailureListener the listener to be notified if the report
+     *   file cannot be parsed. This argument can be {@code null}, in which case
+     *   failures are only logged.
+     */
+    public void submit(File reportFile, final Runnable parseFailureListener) {
+        ExceptionHelper.checkNotNullArgument(reportFile, "reportFile");
+
+        final PendingReport pendingReport = new PendingReport(reportFile);
+        queueLock.lock();
+        try {
+            pendingReports.add(pendingReport);
+            unpublishedCount++;
+        } finally {
+            queueLock.unlock();
+        }
+
+        parserExecutor.execute(Cancellation.UNCANCELABLE_TOKEN, new CancelableTask() {
+            @Override
+            public void execute(CancellationToken cancelToken) throws Exception {
+                pendingReport.report = parse(pendingReport.reportFile, outputFiles, parseFailureListener);
+            }
+        }, new CleanupTask() {
+            @Override
+            public void cleanup(boolean canceled, Throwable error) {
+                if (error != null) {
+                    LOGGER.log(Level.SEVERE, "Unexpected error while parsing " + pendingReport.reportFile, error);
+                }
+
+                queueLock.lock();
+                try {
+                    pendingReport.parsed = true;
+                } finally {
+                    queueLock.unlock();
+                }
+                publishParsedReports();
+            }
+        });
+    }
+
+    private static TestSuiteReport parse(
+            File reportFile,
+            CapturedOutputFiles outputFiles,
+            Runnable parseFailureListener) {
+        SAXParser parser = tryGetSaxParser();
+        if (parser == null) {
+            return null;
+        }
+
+        try {
+            return TestSuiteReport.parse(reportFile, parser, outputFiles);
+        } catch (Exception ex) {
+            if (parseFailureListener != null) {
+                LOGGER.log(Level.FINE, "Error while parsing " + reportFile, ex);
+                parseFailureListener.run();
+            }
+            else {
+                LOGGER.log(Level.INFO, "Error while parsing " + reportFile, ex);
+            }
+            return null;
+        }
+    }
+
+    private void publishParsedReports() {
+        // The publish lock is held while polling the queue, so that the
+        // reports are published in the order they were submitted.
+        publishLock.lock();
+        try {
+            while (true) {
+                PendingReport pendingReport;
+                queueLock.lock();
+                try {
+                    pendingReport = pendingReports.peek();
+                    if (pendingReport == null || !pendingReport.parsed) {
+                        return;
+                    }
+                    pendingReports.poll();
+                } finally {
+                    queueLock.unlock();
+                }
+
+                try {
+                    if (pendingReport.report != null) {
+                        pendingReport.report.display(getSession());
+                    }
+                } catch (Throwable ex) {
+                    LOGGER.log(Level.SEVERE, "Failed to display test report " + pendingReport.reportFile, ex);
+                } finally {
+                    queueLock.lock();
+                    try {
+                        unpublishedCount--;
+                        publishedSignal.signalAll();
+                    } finally {
+                        queueLock.unlock();
+                    }
+                }
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private NbGradleTestSession getSession() {
+        assert publishLock.isHeldByCurrentThread();
+
+        if (session == null) {
+            session = sessionFactory.get();
+        }
+        return session;
+    }
+
+    /**
+     * Waits until every submitted report has been parsed and added to the test
+     * session.
+     */
+    public void awaitPublished() {
+        queueLock.lock();
+        try {
+            while (unpublishedCount > 0) {
+                publishedSignal.awaitUninterruptibly();
+            }
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every submitted report has been added to the test session
+     * and then ends the test session if it was started.
+     *
+     * @return {@code true} if the test session was started (that is, at least
+     *   one test suite was displayed), {@code false} otherwise
+     */
+    public boolean endSession() {
+        awaitPublished();
+
+        publishLock.lock();
+        try {
+            if (session == null) {
+                // Nothing was displayed, so nobody can refer to the files.
+                outputFiles.deleteAll();
+                return false;
+            }
+            session.endSession();
+            return true;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private static final class PendingReport {
+        public final File reportFile;
+        // Written by the parser before setting parsed.
+        public volatile TestSuiteReport report;
+        // Guarded by queueLock.
+        public boolean parsed;
+
+        public PendingReport(File reportFile) {
+            this.reportFile = reportFile;
+            this.report = null;
+            this.parsed = false;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package org.netbeans.gradle.project.java.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.SAXParser;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.others.test.NbGradleTestSession;
+import org.netbeans.gradle.project.others.test.NbGradleTestSuite;
+import org.netbeans.modules.gsf.testrunner.api.Status;
+import org.netbeans.modules.gsf.testrunner.api.Testcase;
+import org.netbeans.modules.gsf.testrunner.api.Trouble;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Defines the content of a JUnit XML report file. Parsing the report does not
+ * require the test session, so reports can be parsed concurrently and added to
+ * the (not thread-safe) test session later.
+ */
+final class TestSuiteReport {
+    private static final Logger LOGGER = Logger.getLogger(TestSuiteReport.class.getName());
+
+    private static final String[] STACKTRACE_PREFIXES = {"at "};
+
+    // The maximum number of characters of stdout (and stderr) kept in memory
+    // for a single test suite.
+    private static final int MAX_OUTPUT_LENGTH = 1024 * 1024;
+
+    private final String suiteName;
+    private final long suiteTime;
+    private final List<TestcaseReport> testcases;
+    private final String stdout;
+    private final String stderr;
+
+    private TestSuiteReport(
+            String suiteName,
+            long suiteTime,
+            List<TestcaseReport> testcases,
+            String stdout,
+            String stderr) {
+        this.suiteName = suiteName;
+        this.suiteTime = suiteTime;
+        this.testcases = testcases;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    /**
+     * Parses the given report file. The parser is reset before parsing the
+     * report, so the same parser can be used to parse multiple reports (but not
+     * concurrently).
+     *
+     * @param spillFiles the files of the test session to which too long
+     *   outputs of the test suite are to be written
+     * @return the content of the report or {@code null} if the report does not
+     *   contain a test suite
+     */
+    public static TestSuiteReport parse(
+            File reportFile,
+            SAXParser parser,
+            CapturedOutputFiles spillFiles) throws Exception {
+        ExceptionHelper.checkNotNullArgument(reportFile, "reportFile");
+        ExceptionHelper.checkNotNullArgument(parser, "parser");
+        ExceptionHelper.checkNotNullArgument(spillFiles, "spillFiles");
+
+        parser.reset();
+
+        TestXmlContentHandler testXmlContentHandler = new TestXmlContentHandler(reportFile, spillFiles);
+        try {
+            parser.parse(reportFile, testXmlContentHandler);
+        } finally {
+            testXmlContentHandler.close();
+        }
+        return testXmlContentHandler.toReport();
+    }
+
+    /**
+     * Adds this test suite to the given test session. This method must not be
+     * called concurrently with other methods of the test session.
+     */
+    public void display(NbGradleTestSession testSession) {
+        ExceptionHelper.checkNotNullArgument(testSession, "testSession");
+
+        NbGradleTestSuite testSuite = testSession.startTestSuite(suiteName);
+        for (TestcaseReport testcaseReport: testcases) {
+            testcaseReport.addTo(testSuite);
+        }
+
+        testSuite.setStdErr(stderr);
+        testSuite.setStdOut(stdout);
+        testSuite.endSuite(suiteTime);
+    }
+
+    private static long tryReadTimeMillis(String timeStr, long defaultValue) {
+        if (timeStr == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Math.round(Double.parseDouble(timeStr) * 1000.0);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    private static List<String> toLines(CharSequence text) {
+        List<String> result = new ArrayList<>();
+
+        int length = text.length();
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch == '\n' || ch == '\r') {
+                result.add(text.subSequence(lineStart, i).toString());
+                if (ch == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        result.add(text.subSequence(lineStart, length).toString());
+
+        // Remove the leading and trailing lines only containing whitespace
+        // the same way String.trim would.
+        int firstLine = 0;
+        while (firstLine < result.size() - 1 && result.get(firstLine).trim().isEmpty()) {
+            firstLine++;
+        }
+        int lastLine = result.size() - 1;
+        while (lastLine > firstLine && result.get(lastLine).trim().isEmpty()) {
+            lastLine--;
+        }
+
+        List<String> trimmed = new ArrayList<>(result.subList(firstLine, lastLine + 1));
+        trimmed.set(0, trimLeading(trimmed.get(0)));
+        int lastIndex = trimmed.size() - 1;
+        trimmed.set(lastIndex, trimTrailing(trimmed.get(lastIndex)));
+        return trimmed;
+    }
+
+    private static String trimLeading(String str) {
+        int start = 0;
+        while (start < str.length() && str.charAt(start) <= ' ') {
+            start++;
+        }
+        return str.substring(start);
+    }
+
+    private static String trimTrailing(String str) {
+        int end = str.length();
+        while (end > 0 && str.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return str.substring(0, end);
+    }
+
+    static String[] extractStackTrace(CharSequence text) {
+        List<String> lines = toLines(text);
+        String[] result = new String[lines.size()];
+
+        // The first line is the exception message.
+        result[0] = lines.get(0);
+        for (int i = 1; i < result.length; i++) {
+            String line = lines.get(i).trim();
+            for (String prefix: STACKTRACE_PREFIXES) {
+                if (line.startsWith(prefix)) {
+                    line = line.substring(prefix.length());
+                    break;
+                }
+            }
+            result[i] = line;
+        }
+        return result;
+    }
+
+    private static final class TestcaseReport {
+        private final String name;
+        private final String className;
+        private final long timeMillis;
+        private Status status;
+        private boolean error;
+        private String[] stackTrace;
+
+        public TestcaseReport(String name, String className, long timeMillis, Status status) {
+            this.name = name;
+            this.className = className;
+            this.timeMillis = timeMillis;
+            this.status = status;
+            this.error = false;
+            this.stackTrace = null;
+        }
+
+        public void addTo(NbGradleTestSuite testSuite) {
+            Testcase testcase = testSuite.addTestcase(name);
+            if (className != null) {
+                testcase.setClassName(className);
+            }
+            testcase.setTimeMillis(timeMillis);
+            testcase.setStatus(status);
+
+            if (stackTrace != null) {
+                Trouble trouble = new Trouble(error);
+                trouble.setStackTrace(stackTrace);
+                testcase.setTrouble(trouble);
+            }
+        }
+    }
+
+    private static final class TestXmlContentHandler extends DefaultHandler {
+        private final File reportFile;
+        private final CapturedOutputFiles spillFiles;
+
+        private int level;
+        private String suiteName;
+        private final List<TestcaseReport> allTestcases;
+
+        private String stdout;
+        private String stderr;
+        private long suiteTime;
+        private boolean error;
+        private TestcaseReport testcase;
+        private StringBuilder failureContent;
+        private boolean outputIsStdOut;
+        private CapturedOutput output;
+
+        public TestXmlContentHandler(File reportFile, CapturedOutputFiles spillFiles) {
+            this.reportFile = reportFile;
+            this.spillFiles = spillFiles;
+            this.allTestcases = new ArrayList<>(64);
+
+            this.level = 0;
+            this.suiteName = null;
+            this.suiteTime = 0;
+            this.error = false;
+            this.testcase = null;
+            this.failureContent = null;
+            this.outputIsStdOut = false;
+            this.output = null;
+        }
+
+        /**
+         * Closes the output being captured, if the report ended (or parsing
+         * failed) before the end of the output element.
+         */
+        public void close() {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+        }
+
+        public TestSuiteReport toReport() {
+            if (suiteName == null) {
+                return null;
+            }
+            return new TestSuiteReport(suiteName, suiteTime, allTestcases, stdout, stderr);
+        }
+
+        private void startSuite(Attributes attributes) {
+            String name = attributes.getValue("", "name");
+            suiteTime = tryReadTimeMillis(attributes.getValue("", "time"), 0);
+
+            suiteName = name != null ? name : reportFile.getName();
+        }
+
+        private TestcaseReport tryGetTestCase(Attributes attributes, Status status) {
+            if (suiteName == null) {
+                LOGGER.warning("test suite has not been started but there is a test case to add.");
+                return null;
+            }
+
+            String name = attributes.getValue("", "name");
+            if (name == null) {
+                return null;
+            }
+
+            String className = attributes.getValue("", "classname");
+            long time = tryReadTimeMillis(attributes.getValue("", "time"), 0);
+
+            return new TestcaseReport(name, className, time, status);
+        }
+
+        private boolean tryAddTestCase(String uri, String localName, String qName, Attributes attributes) {
+            switch (qName) {
+                case "testcase":
+                    testcase = tryGetTestCase(attributes, Status.PASSED);
+                    break;
+                case "ignored-testcase":
+                    testcase = tryGetTestCase(attributes, Status.SKIPPED);
+                    break;
+            }
+
+            if (testcase != null) {
+                allTestcases.add(testcase);
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+
+        private void tryUpdateTestCase(String uri, String localName, String qName, Attributes attributes) {
+            if (testcase != null) {
+                switch (qName) {
+                    case "failure":
+                        error = false;
+                        testcase.status = Status.FAILED;
+                        break;
+                    case "error":
+                        error = true;
+                        testcase.status = Status.ERROR;
+                        break;
+                    case "skipped":
+                        error = false;
+                        testcase.status = Status.SKIPPED;
+                        break;
+                    default:
+                        LOGGER.log(Level.WARNING, "Unexpected element in testcase: {0}", qName);
+                        error = true;
+                        testcase.status = Status.ERROR;
+                        break;
+                }
+                failureContent = new StringBuilder(1024);
+            }
+        }
+
+        private void tryStartOutput(String uri, String localName, String qName, Attributes attributes) {
+            switch (qName) {
+                case "system-out":
+                    output = new CapturedOutput(MAX_OUTPUT_LENGTH, spillFiles);
+                    outputIsStdOut = true;
+                    break;
+                case "system-err":
+                    output = new CapturedOutput(MAX_OUTPUT_LENGTH, spillFiles);
+                    outputIsStdOut = false;
+                    break;
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            switch (level) {
+                case 0:
+                    startSuite(attributes);
+                    break;
+                case 1:
+                    if (!tryAddTestCase(uri, localName, qName, attributes)) {
+                        tryStartOutput(uri, localName, qName, attributes);
+                    }
+                    break;
+                case 2:
+                    tryUpdateTestCase(uri, localName, qName, attributes);
+                    break;
+            }
+
+            level++;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            level--;
+
+            switch (level) {
+                case 1:
+                    testcase = null;
+                    if (output != null) {
+                        if (outputIsStdOut) {
+                            stdout = output.finish();
+                        }
+                        else {
+                            stderr = output.finish();
+                        }
+                        output = null;
+                    }
+                    break;
+                case 2:
+                    if (failureContent != null && testcase != null) {
+                        testcase.error = error;
+                        testcase.stackTrace = extractStackTrace(failureContent);
+                    }
+                    failureContent = null;
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (failureContent != null) {
+                failureContent.append(ch, start, length);
+            }
+            if (output != null) {
+                output.append(ch, start, length);
+            }
+        }
+    }
+}
@@ -3,16 +3,24 @@ package org.netbeans.gradle.project.java.test;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import javax.swing.event.ChangeListener;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.concurrent.CancelableTask;
+import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.concurrent.WaitableSignal;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.ProjectInformation;
@@ -22,25 +30,32 @@ import org.netbeans.gradle.project.java.JavaExtension;
 import org.netbeans.gradle.project.others.test.NbGradleTestManager;
 import org.netbeans.gradle.project.others.test.NbGradleTestManagers;
 import org.netbeans.gradle.project.others.test.NbGradleTestSession;
-import org.netbeans.gradle.project.others.test.NbGradleTestSuite;
+import org.netbeans.gradle.project.util.NbSupplier;
+import org.netbeans.gradle.project.util.NbTaskExecutors;
 import org.netbeans.gradle.project.view.GradleActionProvider;
 import org.netbeans.modules.gsf.testrunner.api.RerunHandler;
 import org.netbeans.modules.gsf.testrunner.api.RerunType;
-import org.netbeans.modules.gsf.testrunner.api.Status;
 import org.netbeans.modules.gsf.testrunner.api.Testcase;
-import org.netbeans.modules.gsf.testrunner.api.Trouble;
 import org.netbeans.spi.project.ActionProvider;
 import org.openide.util.Lookup;
 import org.openide.util.lookup.Lookups;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 public final class TestXmlDisplayer {
     private static final Logger LOGGER = Logger.getLogger(TestXmlDisplayer.class.getName());
     private static final File[] NO_FILES = new File[0];
-    private static final String NEW_LINE_PATTERN = Pattern.quote("\n");
-    private static final String[] STACKTRACE_PREFIXES = {"at "};
+
+    private static final long POLL_INTERVAL_MS = 500;
+    private static final long STALE_REPORT_MARGIN_MS = 1000;
+
+    private static final TaskExecutor REPORT_WATCHER
+            = NbTaskExecutors.newExecutor("Gradle-Test-Report-Watcher", 4);
+
+    // The output files of the last displayed test session of each test task.
+    // A new session of the same test task replaces the previous session in the
+    // test results window, so the files of the previous session are no
+    // longer needed.
+    private static final ConcurrentMap<String, CapturedOutputFiles> DISPLAYED_OUTPUT_FILES
+            = new ConcurrentHashMap<>();
 
     private final Project project;
     private final JavaExtension javaExt;
@@ -93,113 +108,224 @@ public final class TestXmlDisplayer {
         return result != null ? result : NO_FILES;
     }
 
-    private static long tryReadTimeMillis(String timeStr, long defaultValue) {
-        if (timeStr == null) {
-            return defaultValue;
-        }
+    private NbGradleTestSession startSession(Lookup runContext) {
+        return testManager.startSession(
+                getProjectName(),
+                project,
+                new JavaTestRunnerNodeFactory(javaExt, new TestTaskName(testName)),
+                new JavaRerunHandler(runContext));
+    }
 
-        try {
-            return Math.round(Double.parseDouble(timeStr) * 1000.0);
-        } catch (NumberFormatException ex) {
-            return defaultValue;
-        }
+    private TestReportIngester newIngester(final Lookup runContext) {
+        final CapturedOutputFiles outputFiles = new CapturedOutputFiles();
+        return new TestReportIngester(new NbSupplier<NbGradleTestSession>() {
+            @Override
+            public NbGradleTestSession get() {
+                setDisplayedOutputFiles(outputFiles);
+                return startSession(runContext);
+            }
+        }, outputFiles);
     }
 
-    private static String[] toLines(String text) {
-        return text
-                .replace("\r\n", "\n")
-                .replace("\r", "\n")
-                .trim()
-                .split(NEW_LINE_PATTERN);
+    private void setDisplayedOutputFiles(CapturedOutputFiles outputFiles) {
+        String sessionKey = project.getProjectDirectory().getPath() + ":" + testName;
+        CapturedOutputFiles prevOutputFiles = DISPLAYED_OUTPUT_FILES.put(sessionKey, outputFiles);
+        if (prevOutputFiles != null) {
+            prevOutputFiles.deleteAll();
+        }
     }
 
-    private static String[] extractStackTrace(String text) {
-        String[] lines = toLines(text);
+    public boolean displayReport(Lookup runContext) {
+        ExceptionHelper.checkNotNullArgument(runContext, "runContext");
 
-        // The first line is the exception message.
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            for (String prefix: STACKTRACE_PREFIXES) {
-                if (line.startsWith(prefix)) {
-                    line = line.substring(prefix.length());
-                    break;
-                }
-            }
-            lines[i] = line;
+        File[] reportFiles = getTestReportFiles();
+        if (reportFiles.length == 0) {
+            LOGGER.log(Level.WARNING,
+                    "Could not find output for test task \"{0}\" in {1}",
+                    new Object[]{testName, tryGetReportDirectory()});
+            return false;
         }
-        return lines;
+
+        TestReportIngester ingester = newIngester(runContext);
+        for (File reportFile: reportFiles) {
+            ingester.submit(reportFile, null);
+        }
+        return ingester.endSession();
     }
 
-    private void displayTestSuite(final File reportFile, SAXParser parser, final NbGradleTestSession testSession) throws Exception {
-        parser.reset();
+    /**
+     * Starts watching the report directory of the test task and displays the
+     * test suites as soon as their report file has been written. This method
+     * is to be called before the test task is started. Reports already
+     * existing at the time of this call are only displayed after
+     * {@link ReportWatch#finish() finish} is called.
+     *
+     * @param runContext the context in which the test task was started. This
+     *   argument cannot be {@code null}.
+     * @return the object which must be used to display the remaining reports
+     *   after the test task has been completed. This method never returns
+     *   {@code null}.
+     */
+    public ReportWatch startWatchingReports(Lookup runContext) {
+        ExceptionHelper.checkNotNullArgument(runContext, "runContext");
 
-        TestXmlContentHandler testXmlContentHandler = new TestXmlContentHandler(testSession, reportFile);
-        parser.parse(reportFile, testXmlContentHandler);
+        ReportWatch result = new ReportWatch(newIngester(runContext));
+        result.start();
+        return result;
+    }
 
-        NbGradleTestSuite testSuite = testXmlContentHandler.testSuite;
-        if (testSuite != null) {
-            testSuite.setStdErr(testXmlContentHandler.stderr);
-            testSuite.setStdOut(testXmlContentHandler.stdout);
-            testSuite.endSuite(testXmlContentHandler.suiteTime);
+    public final class ReportWatch {
+        private static final int STATE_NOT_STARTED = 0;
+        private static final int STATE_RUNNING = 1;
+        private static final int STATE_STOPPED = 2;
+
+        private final TestReportIngester ingester;
+        private final long startTimeMillis;
+
+        private final AtomicInteger state;
+        private final WaitableSignal stopSignal;
+        private final WaitableSignal pollerDoneSignal;
+
+        // Only accessed by the poller until it is done.
+        private final Map<File, ReportFileState> lastFileStates;
+        private final Set<File> submittedFiles;
+
+        private ReportWatch(TestReportIngester ingester) {
+            this.ingester = ingester;
+            this.startTimeMillis = System.currentTimeMillis();
+            this.state = new AtomicInteger(STATE_NOT_STARTED);
+            this.stopSignal = new WaitableSignal();
+            this.pollerDoneSignal = new WaitableSignal();
+            this.lastFileStates = new HashMap<>();
+            this.submittedFiles = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
         }
-    }
 
-    private SAXParser tryGetSaxParser() {
-        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-        try {
-            return parserFactory.newSAXParser();
-        } catch (ParserConfigurationException ex) {
-            LOGGER.log(Level.WARNING, "Unexpected parser configuration error.", ex);
-            return null;
-        } catch (SAXException ex) {
-            LOGGER.log(Level.WARNING, "Unexpected SAXException.", ex);
-            return null;
+        private void start() {
+            REPORT_WATCHER.execute(Cancellation.UNCANCELABLE_TOKEN, new CancelableTask() {
+                @Override
+                public void execute(CancellationToken cancelToken) {
+                    if (!state.compareAndSet(STATE_NOT_STARTED, STATE_RUNNING)) {
+                        return;
+                    }
+
+                    try {
+                        do {
+                            submitNewReports();
+                        } while (!stopSignal.tryWaitSignal(cancelToken, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS));
+                    } finally {
+                        pollerDoneSignal.signal();
+                    }
+                }
+            }, null);
         }
-    }
 
-    private boolean displayTestSession(NbGradleTestSession testSession, File[] reportFiles) {
-        SAXParser parser = tryGetSaxParser();
-        if (parser == null) {
-            return false;
+        private void submitNewReports() {
+            // Files written before this watch was started are considered to
+            // belong to a previous run. Allow some difference due to the
+            // precision of the file system.
+            long minLastModified = startTimeMillis - STALE_REPORT_MARGIN_MS;
+
+            for (final File reportFile: getTestReportFiles()) {
+                if (submittedFiles.contains(reportFile)) {
+                    continue;
+                }
+
+                long lastModified = reportFile.lastModified();
+                if (lastModified < minLastModified) {
+                    continue;
+                }
+
+                // Reports are only parsed if they were not changed since the
+                // previous poll, so that we do not parse partially written reports.
+                ReportFileState fileState = new ReportFileState(reportFile.length(), lastModified);
+                ReportFileState prevFileState = lastFileStates.put(reportFile, fileState);
+                if (fileState.length <= 0 || !fileState.equals(prevFileState)) {
+                    continue;
+                }
+
+                submittedFiles.add(reportFile);
+                ingester.submit(reportFile, new Runnable() {
+                    @Override
+                    public void run() {
+                        // Retry when the test task has been completed.
+                        submittedFiles.remove(reportFile);
+                    }
+                });
+            }
         }
 
-        for (File reportFile: reportFiles) {
-            try {
-                displayTestSuite(reportFile, parser, testSession);
-            } catch (Exception ex) {
-                LOGGER.log(Level.INFO, "Error while parsing " + reportFile, ex);
+        private void stopPoller() {
+            stopSignal.signal();
+            if (!state.compareAndSet(STATE_NOT_STARTED, STATE_STOPPED)) {
+                pollerDoneSignal.waitSignal(Cancellation.UNCANCELABLE_TOKEN);
             }
         }
 
-        return true;
-    }
+        /**
+         * Stops watching the report directory, displays the reports not
+         * displayed yet and ends the test session. This method is to be called
+         * after the test task has been completed.
+         *
+         * @return {@code true} if there was at least one report displayed,
+         *   {@code false} otherwise
+         */
+        public boolean finish() {
+            stopPoller();
+            ingester.awaitPublished();
+
+            for (File reportFile: getTestReportFiles()) {
+                if (!submittedFiles.contains(reportFile)) {
+                    ingester.submit(reportFile, null);
+                }
+            }
 
-    private boolean displayReport(Lookup runContext, File[] reportFiles) {
-        NbGradleTestSession testSession = testManager.startSession(
-                getProjectName(),
-                project,
-                new JavaTestRunnerNodeFactory(javaExt, new TestTaskName(testName)),
-                new JavaRerunHandler(runContext));
+            boolean result = ingester.endSession();
+            if (!result) {
+                LOGGER.log(Level.WARNING,
+                        "Could not find output for test task \"{0}\" in {1}",
+                        new Object[]{testName, tryGetReportDirectory()});
+            }
+            return result;
+        }
 
-        try {
-            return displayTestSession(testSession, reportFiles);
-        } finally {
-            testSession.endSession();
+        /**
+         * Stops watching the report directory and ends the test session if
+         * any test suite was displayed. This method is to be called if the
+         * watched test task was not executed.
+         */
+        public void stop() {
+            stopPoller();
+            ingester.endSession();
         }
     }
 
-    public boolean displayReport(Lookup runContext) {
-        ExceptionHelper.checkNotNullArgument(runContext, "runContext");
+    private static final class ReportFileState {
+        public final long length;
+        public final long lastModified;
 
-        File[] reportFiles = getTestReportFiles();
-        if (reportFiles.length == 0) {
-            LOGGER.log(Level.WARNING,
-                    "Could not find output for test task \"{0}\" in {1}",
-                    new Object[]{testName, tryGetReportDirectory()});
-            return false;
+        public ReportFileState(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 5;
+            hash = 41 * hash + (int)(length ^ (length >>> 32));
+            hash = 41 * hash + (int)(lastModified ^ (lastModified >>> 32));
+            return hash;
         }
 
-        return displayReport(runContext, reportFiles);
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) return false;
+            if (obj == this) return true;
+            if (getClass() != obj.getClass()) return false;
+
+            final ReportFileState other = (ReportFileState)obj;
+            return this.length == other.length
+                    && this.lastModified == other.lastModified;
+        }
     }
 
     public class JavaRerunHandler implements RerunHandler {
@@ -253,193 +379,4 @@ public final class TestXmlDisplayer {
         public void removeChangeListener(ChangeListener listener) {
         }
     }
-
-    private static final class TestXmlContentHandler extends DefaultHandler {
-        private final NbGradleTestSession session;
-        private final File reportFile;
-
-        private int level;
-        private NbGradleTestSuite testSuite;
-        private final List<Testcase> allTestcases;
-
-        private String stdout;
-        private String stderr;
-        private long suiteTime;
-        private boolean error;
-        private Testcase testcase;
-        private StringBuilder failureContent;
-        private boolean outputBuilderIsStdOut;
-        private StringBuilder outputBuilder;
-
-        public TestXmlContentHandler(NbGradleTestSession session, File reportFile) {
-            this.session = session;
-            this.reportFile = reportFile;
-            this.allTestcases = new ArrayList<>(64);
-
-            this.level = 0;
-            this.testSuite = null;
-            this.suiteTime = 0;
-            this.error = false;
-            this.testcase = null;
-            this.failureContent = null;
-            this.outputBuilderIsStdOut = false;
-        }
-
-        private void startSuite(Attributes attributes) {
-            String name = attributes.getValue("", "name");
-            suiteTime = tryReadTimeMillis(attributes.getValue("", "time"), 0);
-
-            String suiteName = name != null ? name : reportFile.getName();
-            testSuite = session.startTestSuite(suiteName);
-        }
-
-        private Testcase tryGetTestCase(Attributes attributes, Status status) {
-            Testcase result = tryGetTestCase(attributes);
-            if (result != null) {
-                result.setStatus(status);
-            }
-            return result;
-        }
-
-        private Testcase tryGetTestCase(Attributes attributes) {
-            if (testSuite == null) {
-                LOGGER.warning("test suite has not been started but there is a test case to add.");
-                return null;
-            }
-
-            String name = attributes.getValue("", "name");
-            if (name == null) {
-                return null;
-            }
-
-            Testcase result = testSuite.addTestcase(name);
-
-            String className = attributes.getValue("", "classname");
-            if (className != null) {
-                result.setClassName(className);
-            }
-
-            long time = tryReadTimeMillis(attributes.getValue("", "time"), 0);
-            result.setTimeMillis(time);
-
-            return result;
-        }
-
-        private boolean tryAddTestCase(String uri, String localName, String qName, Attributes attributes) {
-            switch (qName) {
-                case "testcase":
-                    testcase = tryGetTestCase(attributes, Status.PASSED);
-                    break;
-                case "ignored-testcase":
-                    testcase = tryGetTestCase(attributes, Status.SKIPPED);
-                    break;
-            }
-
-            if (testcase != null) {
-                allTestcases.add(testcase);
-                return true;
-            }
-            else {
-                return false;
-            }
-        }
-
-        private void tryUpdateTestCase(String uri, String localName, String qName, Attributes attributes) {
-            if (testcase != null) {
-                switch (qName) {
-                    case "failure":
-                        error = false;
-                        testcase.setStatus(Status.FAILED);
-                        break;
-                    case "error":
-                        error = true;
-                        testcase.setStatus(Status.ERROR);
-                        break;
-                    case "skipped":
-                        error = false;
-                        testcase.setStatus(Status.SKIPPED);
-                        break;
-                    default:
-                        LOGGER.log(Level.WARNING, "Unexpected element in testcase: {0}", qName);
-                        error = true;
-                        testcase.setStatus(Status.ERROR);
-                        break;
-                }
-                failureContent = new StringBuilder(1024);
-            }
-        }
-
-        private void tryStartOutput(String uri, String localName, String qName, Attributes attributes) {
-            switch (qName) {
-                case "system-out":
-                    outputBuilder = new StringBuilder();
-                    outputBuilderIsStdOut = true;
-                    break;
-                case "system-err":
-                    outputBuilder = new StringBuilder();
-                    outputBuilderIsStdOut = false;
-                    break;
-            }
-        }
-
-        @Override
-        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-            switch (level) {
-                case 0:
-                    startSuite(attributes);
-                    break;
-                case 1:
-                    if (!tryAddTestCase(uri, localName, qName, attributes)) {
-                        tryStartOutput(uri, localName, qName, attributes);
-                    }
-                    break;
-                case 2:
-                    tryUpdateTestCase(uri, localName, qName, attributes);
-                    break;
-            }
-
-            level++;
-        }
-
-        @Override
-        public void endElement(String uri, String localName, String qName) throws SAXException {
-            level--;
-
-            switch (level) {
-                case 1:
-                    testcase = null;
-                    if (outputBuilder != null) {
-                        if (outputBuilderIsStdOut) {
-                            stdout = outputBuilder.toString();
-                        }
-                        else {
-                            stderr = outputBuilder.toString();
-                        }
-                        outputBuilder = null;
-                    }
-                    break;
-                case 2:
-                    if (failureContent != null && testcase != null) {
-                        Trouble trouble = new Trouble(error);
-                        trouble.setStackTrace(extractStackTrace(failureContent.toString()));
-                        testcase.setTrouble(trouble);
-                    }
-                    failureContent = null;
-                    break;
-            }
-        }
-
-        private static void tryAppend(char[] ch, int start, int length, StringBuilder... results) {
-            for (StringBuilder result: results) {
-                if (result != null) {
-                    result.append(ch, start, length);
-                }
-            }
-        }
-
-        @Override
-        public void characters(char[] ch, int start, int length) throws SAXException {
-            tryAppend(ch, start, length, failureContent, outputBuilder);
-        }
-    }
 }
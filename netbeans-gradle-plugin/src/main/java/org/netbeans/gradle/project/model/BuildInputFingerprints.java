@@ -0,0 +1,260 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.model.util.BuildInputFiles;
+
+/**
+ * Computes fingerprints of the files affecting the evaluation of a Gradle
+ * build as defined by {@link BuildInputFiles}. The checksums of the files are remembered for a given size and last
+ * modified time, so unchanged files are not read again.
+ */
+public final class BuildInputFingerprints {
+    private static final Logger LOGGER = Logger.getLogger(BuildInputFingerprints.class.getName());
+
+    private static final BuildInputFingerprints DEFAULT = new BuildInputFingerprints();
+
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    private static final String INIT_SCRIPT_OPTION = "--init-script";
+    private static final String INIT_SCRIPT_SHORT_OPTION = "-I";
+
+    private static final long MISSING_FILE_HASH = -1L;
+
+    private final ConcurrentMap<Path, FileChecksum> checksums;
+
+    public BuildInputFingerprints() {
+        this.checksums = new ConcurrentHashMap<>();
+    }
+
+    public static BuildInputFingerprints getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the fingerprint of the inputs shared by every project of the
+     * build (see {@link BuildInputFiles#getBuildFiles(File) BuildInputFiles.getBuildFiles}).
+     */
+    public long getBuildFingerprint(Path rootProjectDir) {
+        ExceptionHelper.checkNotNullArgument(rootProjectDir, "rootProjectDir");
+        return getFilesFingerprint(BuildInputFiles.getBuildFiles(rootProjectDir.toFile()));
+    }
+
+    /**
+     * Returns the fingerprint of the inputs of a single project, not
+     * including the inputs of its parent projects (see
+     * {@link BuildInputFiles#getProjectFiles(File, File) BuildInputFiles.getProjectFiles}).
+     */
+    public long getProjectFingerprint(Path projectDir, Path buildScript) {
+        ExceptionHelper.checkNotNullArgument(projectDir, "projectDir");
+
+        return getFilesFingerprint(BuildInputFiles.getProjectFiles(
+                projectDir.toFile(),
+                buildScript != null ? buildScript.toFile() : null));
+    }
+
+    /**
+     * Returns the fingerprint of the inputs of a build which are not part of
+     * the build itself (see
+     * {@link BuildInputFiles#getEnvironmentFiles(File, Collection) BuildInputFiles.getEnvironmentFiles}).
+     *
+     * @param gradleUserHome the Gradle user home directory. This argument can
+     *   be {@code null} if the Gradle user home is not known.
+     * @param rootProjectDir the directory relative to which init scripts
+     *   are resolved. This argument cannot be {@code null}.
+     * @param gradleArguments the arguments passed to Gradle. This argument
+     *   cannot be {@code null}.
+     * @return the fingerprint of the inputs of a build which are not part of
+     *   the build itself
+     */
+    public long getEnvironmentFingerprint(
+            Path gradleUserHome,
+            Path rootProjectDir,
+            List<String> gradleArguments) {
+        ExceptionHelper.checkNotNullArgument(rootProjectDir, "rootProjectDir");
+        ExceptionHelper.checkNotNullArgument(gradleArguments, "gradleArguments");
+
+        List<File> initScripts = new ArrayList<>();
+        for (String initScript: getInitScriptArguments(gradleArguments)) {
+            try {
+                initScripts.add(rootProjectDir.resolve(initScript).toFile());
+            } catch (InvalidPathException ex) {
+                LOGGER.log(Level.INFO, "Invalid init script path: " + initScript, ex);
+            }
+        }
+
+        return getFilesFingerprint(BuildInputFiles.getEnvironmentFiles(
+                gradleUserHome != null ? gradleUserHome.toFile() : null,
+                initScripts));
+    }
+
+    private long getFilesFingerprint(List<File> files) {
+        CRC32 result = new CRC32();
+        for (File file: files) {
+            addFile(file.toPath(), result);
+        }
+        return result.getValue();
+    }
+
+    private static List<String> getInitScriptArguments(List<String> gradleArguments) {
+        List<String> result = new ArrayList<>();
+
+        int argCount = gradleArguments.size();
+        for (int i = 0; i < argCount; i++) {
+            String arg = gradleArguments.get(i);
+            if (INIT_SCRIPT_OPTION.equals(arg) || INIT_SCRIPT_SHORT_OPTION.equals(arg)) {
+                if (i + 1 < argCount) {
+                    result.add(gradleArguments.get(i + 1));
+                    i++;
+                }
+            }
+            else if (arg.startsWith(INIT_SCRIPT_OPTION + "=")) {
+                result.add(arg.substring(INIT_SCRIPT_OPTION.length() + 1));
+            }
+        }
+        return result;
+    }
+
+    public static long combineFingerprints(long fingerprint1, long fingerprint2) {
+        CRC32 result = new CRC32();
+        addLong(fingerprint1, result);
+        addLong(fingerprint2, result);
+        return result.getValue();
+    }
+
+    /**
+     * Returns the remembered checksums of the files in the given directory
+     * (including subdirectories), so that they can be persisted.
+     */
+    public Map<Path, FileChecksum> getKnownChecksums(Path dir) {
+        ExceptionHelper.checkNotNullArgument(dir, "dir");
+
+        Map<Path, FileChecksum> result = new HashMap<>();
+        for (Map.Entry<Path, FileChecksum> entry: checksums.entrySet()) {
+            if (entry.getKey().startsWith(dir)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds previously persisted checksums. Checksums already known by this
+     * object are not overwritten.
+     */
+    public void addKnownChecksums(Map<Path, FileChecksum> newChecksums) {
+        ExceptionHelper.checkNotNullArgument(newChecksums, "newChecksums");
+
+        for (Map.Entry<Path, FileChecksum> entry: newChecksums.entrySet()) {
+            checksums.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void addFile(Path file, CRC32 result) {
+        byte[] pathBytes = file.toString().getBytes(StandardCharsets.UTF_8);
+        result.update(pathBytes, 0, pathBytes.length);
+        addLong(getFileHash(file), result);
+    }
+
+    private static void addLong(long value, CRC32 result) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            result.update((int)(value >>> shift));
+        }
+    }
+
+    /**
+     * Returns the CRC32 checksum of the given file or a negative value if the
+     * file does not exist or cannot be read.
+     */
+    public long getFileHash(Path file) {
+        ExceptionHelper.checkNotNullArgument(file, "file");
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            checksums.remove(file);
+            return MISSING_FILE_HASH;
+        }
+
+        if (!attrs.isRegularFile()) {
+            return MISSING_FILE_HASH;
+        }
+
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        FileChecksum cached = checksums.get(file);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.checksum;
+        }
+
+        long checksum;
+        try {
+            checksum = computeChecksum(file);
+        } catch (NoSuchFileException ex) {
+            return MISSING_FILE_HASH;
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to read build input: " + file, ex);
+            return MISSING_FILE_HASH;
+        }
+
+        checksums.put(file, new FileChecksum(size, lastModified, checksum));
+        return checksum;
+    }
+
+    private static long computeChecksum(Path file) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(FILE_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                checksum.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+        return checksum.getValue();
+    }
+
+    public static final class FileChecksum {
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+
+        public FileChecksum(long size, long lastModified, long checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+}
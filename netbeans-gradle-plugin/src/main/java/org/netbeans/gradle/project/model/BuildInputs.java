@@ -0,0 +1,203 @@
+package org.netbeans.gradle.project.model;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines the fingerprints of the inputs of a whole build at a given point in
+ * time: The fingerprint of the inputs shared by every project (including the
+ * inputs outside the build) and the fingerprint of the own inputs of each
+ * project.
+ * <P>
+ * Instances of this class are immutable.
+ *
+ * @see BuildInputFingerprints
+ */
+final class BuildInputs {
+    private final Path rootProjectDir;
+    private final long buildFingerprint;
+    private final Map<String, ProjectInputs> projects;
+    private final long fingerprint;
+
+    private BuildInputs(Path rootProjectDir, long buildFingerprint, Map<String, ProjectInputs> projects) {
+        this.rootProjectDir = rootProjectDir;
+        this.buildFingerprint = buildFingerprint;
+        this.projects = projects;
+
+        long currentFingerprint = buildFingerprint;
+        for (ProjectInputs inputs: projects.values()) {
+            currentFingerprint = BuildInputFingerprints.combineFingerprints(currentFingerprint, inputs.ownFingerprint);
+        }
+        this.fingerprint = currentFingerprint;
+    }
+
+    /**
+     * Fingerprints the current inputs of the given build.
+     *
+     * @param fingerprints the object computing the fingerprints of the files.
+     *   This argument cannot be {@code null}.
+     * @param rootProjectDir the directory of the root project of the build.
+     *   This argument cannot be {@code null}.
+     * @param environmentFingerprint the fingerprint of the inputs outside the
+     *   build (see {@link ModelQueryEnvironment#getFingerprint(BuildInputFingerprints, Path) ModelQueryEnvironment.getFingerprint})
+     * @param projects the projects of the build. This argument cannot be
+     *   {@code null}.
+     * @return the fingerprints of the current inputs of the given build. This
+     *   method never returns {@code null}.
+     */
+    public static BuildInputs capture(
+            BuildInputFingerprints fingerprints,
+            Path rootProjectDir,
+            long environmentFingerprint,
+            Collection<ProjectLocation> projects) {
+        ExceptionHelper.checkNotNullArgument(fingerprints, "fingerprints");
+        ExceptionHelper.checkNotNullArgument(rootProjectDir, "rootProjectDir");
+        ExceptionHelper.checkNotNullElements(projects, "projects");
+
+        long buildFingerprint = BuildInputFingerprints.combineFingerprints(
+                fingerprints.getBuildFingerprint(rootProjectDir),
+                environmentFingerprint);
+
+        Map<String, ProjectInputs> projectInputs = new TreeMap<>();
+        for (ProjectLocation project: projects) {
+            long ownFingerprint = fingerprints.getProjectFingerprint(project.getProjectDir(), project.getBuildScript());
+            projectInputs.put(project.getPath(), new ProjectInputs(project, ownFingerprint));
+        }
+        return new BuildInputs(rootProjectDir, buildFingerprint, projectInputs);
+    }
+
+    public Path getRootProjectDir() {
+        return rootProjectDir;
+    }
+
+    /**
+     * Returns the fingerprint of the inputs shared by every project of the
+     * build: The inputs of the root project directory (e.g., the settings
+     * script) and the inputs outside the build.
+     */
+    public long getBuildFingerprint() {
+        return buildFingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of the whole build: the fingerprint of the
+     * build combined with the fingerprint of every project in the order
+     * of their paths.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the own fingerprint of the given project or {@code null} if the
+     * project was not fingerprinted at the given location.
+     */
+    public Long tryGetOwnFingerprint(ProjectLocation project) {
+        ExceptionHelper.checkNotNullArgument(project, "project");
+
+        ProjectInputs inputs = projects.get(project.getPath());
+        if (inputs == null || !inputs.location.equals(project)) {
+            return null;
+        }
+        return inputs.ownFingerprint;
+    }
+
+    /**
+     * Returns the paths of the projects whose own inputs differ from the
+     * inputs of the same project in the given previous state. Projects
+     * missing from either state are considered to be changed.
+     */
+    public Set<String> getChangedProjects(BuildInputs previous) {
+        ExceptionHelper.checkNotNullArgument(previous, "previous");
+
+        Set<String> result = new HashSet<>();
+        for (ProjectInputs inputs: projects.values()) {
+            Long previousFingerprint = previous.tryGetOwnFingerprint(inputs.location);
+            if (previousFingerprint == null || previousFingerprint != inputs.ownFingerprint) {
+                result.add(inputs.location.getPath());
+            }
+        }
+        for (String path: previous.projects.keySet()) {
+            if (!projects.containsKey(path)) {
+                result.add(path);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Defines where a project of a build is and where its build script is.
+     */
+    public static final class ProjectLocation {
+        private final String path;
+        private final Path projectDir;
+        private final Path buildScript;
+
+        /**
+         * @param path the full path of the project (e.g., ":sub1:sub2"). This
+         *   argument cannot be {@code null}.
+         * @param projectDir the directory of the project. This argument cannot
+         *   be {@code null}.
+         * @param buildScript the build script of the project. This argument
+         *   can be {@code null} if the project has no build script.
+         */
+        public ProjectLocation(String path, Path projectDir, Path buildScript) {
+            ExceptionHelper.checkNotNullArgument(path, "path");
+            ExceptionHelper.checkNotNullArgument(projectDir, "projectDir");
+
+            this.path = path;
+            this.projectDir = projectDir;
+            this.buildScript = buildScript;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Path getProjectDir() {
+            return projectDir;
+        }
+
+        public Path getBuildScript() {
+            return buildScript;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 53 * hash + path.hashCode();
+            hash = 53 * hash + projectDir.hashCode();
+            hash = 53 * hash + Objects.hashCode(buildScript);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+
+            final ProjectLocation other = (ProjectLocation)obj;
+            return path.equals(other.path)
+                    && projectDir.equals(other.projectDir)
+                    && Objects.equals(buildScript, other.buildScript);
+        }
+    }
+
+    private static final class ProjectInputs {
+        public final ProjectLocation location;
+        public final long ownFingerprint;
+
+        public ProjectInputs(ProjectLocation location, long ownFingerprint) {
+            this.location = location;
+            this.ownFingerprint = ownFingerprint;
+        }
+    }
+}
@@ -5,12 +5,11 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -58,13 +57,17 @@ import org.netbeans.gradle.project.properties.NbGradleCommonProperties;
 import org.netbeans.gradle.project.properties.global.CommonGlobalSettings;
 import org.netbeans.gradle.project.script.ScriptFileProvider;
 import org.netbeans.gradle.project.tasks.DaemonTask;
+import org.netbeans.gradle.project.tasks.DaemonTaskDef;
+import org.netbeans.gradle.project.tasks.DaemonTaskKind;
 import org.netbeans.gradle.project.tasks.GradleArguments;
 import org.netbeans.gradle.project.tasks.GradleDaemonFailures;
 import org.netbeans.gradle.project.tasks.GradleDaemonManager;
 import org.netbeans.gradle.project.tasks.GradleTasks;
+import org.netbeans.gradle.project.tasks.KeyedTaskScheduler;
 import org.netbeans.gradle.project.tasks.vars.StringResolver;
 import org.netbeans.gradle.project.tasks.vars.StringResolvers;
 import org.netbeans.gradle.project.util.GradleVersions;
+import org.netbeans.gradle.project.util.NbFileUtils;
 import org.netbeans.gradle.project.util.NbFunction;
 import org.netbeans.gradle.project.util.NbSupplier;
 import org.netbeans.gradle.project.util.NbTaskExecutors;
@@ -74,8 +77,17 @@ import org.openide.util.Lookup;
 public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel> {
     private static final Logger LOGGER = Logger.getLogger(DefaultGradleModelLoader.class.getName());
 
+    // The actual number of concurrent loads is limited by DEFAULT_PROJECT_LOAD_SCHEDULER.
+    private static final int MAX_PROJECT_LOADER_THREADS = 16;
+
+    // The number of models of other projects made available (and persisted) at once.
+    private static final int PUBLISH_BATCH_SIZE = 8;
+
     private static final TaskExecutor DEFAULT_PROJECT_LOADER
-            = NbTaskExecutors.newExecutor("Gradle-Project-Loader", 1);
+            = NbTaskExecutors.newExecutor("Gradle-Project-Loader", MAX_PROJECT_LOADER_THREADS);
+
+    private static final AtomicReference<KeyedTaskScheduler<Path>> DEFAULT_PROJECT_LOAD_SCHEDULER_REF
+            = new AtomicReference<>(null);
 
     private static final MonitorableTaskExecutorService DEFAULT_MODEL_LOAD_NOTIFIER
             = NbTaskExecutors.newExecutor("Gradle-Project-Load-Notifier", 1);
@@ -87,10 +99,12 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             = new AtomicReference<>(null);
 
     private final NbGradleProject project;
-    private final TaskExecutor projectLoader;
+    private final KeyedTaskScheduler<Path> projectLoadScheduler;
     private final MonitorableTaskExecutorService modelLoadNotifier;
+    private final TaskExecutor modelPersister;
     private final LoadedProjectManager loadedProjectManager;
     private final PersistentModelCache<NbGradleModel> persistentCache;
+    private final ModelFingerprintIndex fingerprintIndex;
     private final NbSupplier<? extends GradleModelCache> cacheRef;
     private final CacheSizeIncreaser cacheSizeIncreaser;
 
@@ -98,10 +112,12 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
 
     private DefaultGradleModelLoader(Builder builder) {
         this.project = builder.project;
-        this.projectLoader = builder.projectLoader;
+        this.projectLoadScheduler = builder.projectLoadScheduler;
         this.modelLoadNotifier = builder.modelLoadNotifier;
+        this.modelPersister = builder.modelPersister;
         this.loadedProjectManager = builder.loadedProjectManager;
         this.persistentCache = builder.persistentCache;
+        this.fingerprintIndex = builder.fingerprintIndex;
         this.cacheRef = builder.cacheRef;
         this.cacheSizeIncreaser = builder.cacheSizeIncreaser;
         this.modelWasSetOnce = new AtomicBoolean(false);
@@ -118,8 +134,10 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
     private static GradleModelCache getDefaultCache() {
         GradleModelCache result = DEFAULT_CACHE_REF.get();
         if (result == null) {
-            final PropertySource<Integer> cacheSize = CommonGlobalSettings.getDefault().projectCacheSize().getActiveSource();
-            result = new GradleModelCache(cacheSize.getValue());
+            CommonGlobalSettings globalSettings = CommonGlobalSettings.getDefault();
+            final PropertySource<Integer> cacheSize = globalSettings.projectCacheSize().getActiveSource();
+            final PropertySource<Integer> memoryBudgetMb = globalSettings.projectCacheMemoryBudgetMb().getActiveSource();
+            result = new GradleModelCache(cacheSize.getValue(), toMaxWeight(memoryBudgetMb.getValue()), EstimatedModelWeigher.INSTANCE);
             if (DEFAULT_CACHE_REF.compareAndSet(null, result)) {
                 final GradleModelCache cache = result;
                 cacheSize.addChangeListener(new Runnable() {
@@ -128,7 +146,14 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
                         cache.setMaxCapacity(cacheSize.getValue());
                     }
                 });
+                memoryBudgetMb.addChangeListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        cache.setMaxWeight(toMaxWeight(memoryBudgetMb.getValue()));
+                    }
+                });
                 cache.setMaxCapacity(cacheSize.getValue());
+                cache.setMaxWeight(toMaxWeight(memoryBudgetMb.getValue()));
                 cache.addModelUpdateListener(new ProjectModelUpdatedListener() {
                     @Override
                     public void onUpdateProject(NbGradleModel newModel) {
@@ -143,6 +168,78 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
         return result;
     }
 
+    private static long toMaxWeight(Integer memoryBudgetMb) {
+        if (memoryBudgetMb == null || memoryBudgetMb <= 0) {
+            return 0;
+        }
+        return memoryBudgetMb * 1024L * 1024L;
+    }
+
+    private static KeyedTaskScheduler<Path> getDefaultProjectLoadScheduler() {
+        KeyedTaskScheduler<Path> result = DEFAULT_PROJECT_LOAD_SCHEDULER_REF.get();
+        if (result == null) {
+            final PropertySource<Integer> maxParallelLoads
+                    = CommonGlobalSettings.getDefault().maxParallelProjectLoads().getActiveSource();
+            result = new KeyedTaskScheduler<>(DEFAULT_PROJECT_LOADER, toMaxConcurrentLoads(maxParallelLoads.getValue()));
+            if (DEFAULT_PROJECT_LOAD_SCHEDULER_REF.compareAndSet(null, result)) {
+                final KeyedTaskScheduler<Path> scheduler = result;
+                maxParallelLoads.addChangeListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.setMaxConcurrency(toMaxConcurrentLoads(maxParallelLoads.getValue()));
+                    }
+                });
+                scheduler.setMaxConcurrency(toMaxConcurrentLoads(maxParallelLoads.getValue()));
+            }
+            else {
+                result = DEFAULT_PROJECT_LOAD_SCHEDULER_REF.get();
+            }
+        }
+        return result;
+    }
+
+    private static int toMaxConcurrentLoads(Integer maxParallelLoads) {
+        int result = maxParallelLoads != null
+                ? maxParallelLoads
+                : Math.min(Runtime.getRuntime().availableProcessors(), 4);
+        return Math.max(1, Math.min(result, MAX_PROJECT_LOADER_THREADS));
+    }
+
+    /**
+     * Returns the statistics of the model loading queues of the root projects
+     * loaded by the default project loader. The keys of the returned map are
+     * the root project directories of the builds.
+     *
+     * @return the statistics of the model loading queues of the root projects.
+     *   This method never returns {@code null}.
+     */
+    public static Map<Path, KeyedTaskScheduler.QueueStatistics> getProjectLoadStatistics() {
+        return getDefaultProjectLoadScheduler().getAllStatistics();
+    }
+
+    private TaskExecutor getProjectLoader() {
+        // Loads of the same build are serialized because they would mostly
+        // evaluate the same build scripts and the results of one load are
+        // likely to be reused by the next one (through the cache).
+        return projectLoadScheduler.getExecutor(getBuildRootDir(project));
+    }
+
+    /**
+     * Returns the normalized root project directory of the build of the given
+     * project. This is the directory identifying the build when scheduling
+     * the Gradle daemon tasks of the project, so every task of the same build
+     * must use this method to be queued with the other tasks of the build.
+     *
+     * @param project the project whose build is to be identified. This
+     *   argument cannot be {@code null}.
+     * @return the normalized root project directory of the build of the given
+     *   project. This method never returns {@code null}.
+     */
+    public static Path getBuildRootDir(NbGradleProject project) {
+        ExceptionHelper.checkNotNullArgument(project, "project");
+        return NbFileUtils.toSafeRealPath(getProjectLoadKey(project).getAppliedRootProjectDir());
+    }
+
     private GradleModelCache getCache() {
         return cacheRef.get();
     }
@@ -327,6 +424,10 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
                     model = mayFetchFromCache ? tryGetFromCache(projectLoadKey) : null;
                     if (model == null || hasUnloadedExtension(model)) {
                         model = tryGetFromPersistentCache(projectLoadKey);
+                        if (mayFetchFromCache && model != null && isUpToDatePersistentModel(projectLoadKey, model)) {
+                            model = getCache().updateEntry(model);
+                            needLoadFromScripts = false;
+                        }
                     }
                     else {
                         needLoadFromScripts = false;
@@ -376,13 +477,13 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
 
         ProjectLoadRequest rootLoadKey = new ProjectLoadRequest(rootProject, projectLoadKey.settingsGradleDef);
         NbGradleModel rootModel = tryGetFromCache(rootLoadKey);
-        if (rootModel == null || !isUpToDateModel(rootModel, project.getProjectDirectoryAsPath())) {
+        if (rootModel == null || !isUpToDateModel(rootLoadKey, rootModel, false)) {
             if (rootModel != null) {
                 LOGGER.log(Level.INFO,
-                        "Reloading the guessed root project of {0} because its project directory was created after parsing the root project.",
+                        "Reloading the guessed root project of {0} because its build inputs changed after parsing the root project.",
                         project.getProjectDirectoryAsPath());
             }
-            rootModel = loadModelWithProgress(cancelToken, rootLoadKey, progress, null);
+            rootModel = loadModelWithProgress(cancelToken, rootLoadKey, progress, null, true);
             assert rootModel != null;
         }
 
@@ -395,17 +496,62 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
         return projectLoadKey;
     }
 
-    private static boolean isUpToDateModel(NbGradleModel rootModel, Path dir) {
+    private boolean isUpToDateModel(
+            ProjectLoadRequest loadRequest,
+            NbGradleModel model,
+            boolean mayReuseSnapshot) throws IOException {
+        return fingerprintIndex.isUpToDate(
+                loadRequest.getPersistentModelKey(),
+                model,
+                ModelQueryEnvironment.fromSetup(modelBuilderSetup(loadRequest, null)),
+                mayReuseSnapshot);
+    }
+
+    /**
+     * Captures the inputs of the build before its models are fetched, so that
+     * changes made during the fetch will make the fetched models out of date.
+     * The projects of the build are taken from a previously known model of the
+     * build, so if there is no such model or the projects of the build change,
+     * no fingerprint will be recorded for the fetched models.
+     */
+    private ModelFingerprintIndex.BuildInputsSnapshot tryCaptureInputs(
+            ProjectLoadRequest loadRequest,
+            NbGradleModel cachedEntry,
+            OperationInitializer setup) {
+
+        NbGradleModel knownModel = cachedEntry != null
+                ? cachedEntry
+                : loadRequest.project.currentModel().getValue();
+        if (knownModel == null) {
+            return null;
+        }
+
         try {
-            BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class);
-            FileTime creationTime = attrs.creationTime();
-            if (creationTime == null) {
-                return true;
-            }
+            return fingerprintIndex.captureInputs(
+                    knownModel,
+                    ModelQueryEnvironment.fromSetup(setup));
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO,
+                    "Failed to capture the build inputs of " + loadRequest.project.getProjectDirectoryAsFile(),
+                    ex);
+            return null;
+        }
+    }
+
+    private boolean isUpToDatePersistentModel(ProjectLoadRequest loadRequest, NbGradleModel model) {
+        if (hasUnloadedExtension(model)) {
+            return false;
+        }
 
-            return rootModel.getGenericInfo().getCreateTimeEpochMs() >= creationTime.toMillis();
+        try {
+            // The projects of the same build are usually opened together, so
+            // reuse the inputs of the build captured for the other projects.
+            return isUpToDateModel(loadRequest, model, true);
         } catch (IOException ex) {
-            return true;
+            LOGGER.log(Level.INFO,
+                    "Failed to check if the persisted model is up-to-date: " + loadRequest.project.getProjectDirectoryAsFile(),
+                    ex);
+            return false;
         }
     }
 
@@ -430,7 +576,8 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
         final Runnable safeCompleteListener = Tasks.runOnceTask(aboutToCompleteListener, false);
 
         String caption = NbStrings.getLoadingProjectText(project.getDisplayName());
-        GradleDaemonManager.submitGradleTask(projectLoader, caption, new DaemonTask() {
+        Path rootProjectDir = getBuildRootDir(project);
+        DaemonTaskDef taskDef = new DaemonTaskDef(caption, true, DaemonTaskKind.MODEL_LOAD, rootProjectDir, new DaemonTask() {
             @Override
             public void run(CancellationToken cancelToken, ProgressHandle progress) {
                 ProjectLoadRequest projectLoadKey = getProjectLoadKey(project);
@@ -443,7 +590,7 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
                         model = tryGetFromCache(fixedLoadKey);
                     }
                     if (model == null || hasUnloadedExtension(model)) {
-                        model = loadModelWithProgress(cancelToken, fixedLoadKey, progress, model);
+                        model = loadModelWithProgress(cancelToken, fixedLoadKey, progress, model, mayFetchFromCache);
                     }
                 } catch (IOException | BuildException ex) {
                     error = ex;
@@ -461,10 +608,20 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
                     }
                 }
             }
-        }, true, projectTaskCompleteListener(safeCompleteListener));
+        });
+        GradleDaemonManager.submitGradleTask(getProjectLoader(), taskDef, projectTaskCompleteListener(safeCompleteListener));
     }
 
-    private void saveToPersistentCache(Collection<NbGradleModel> models) {
+    private void saveToPersistentCache(final Collection<NbGradleModel> models) {
+        modelPersister.execute(Cancellation.UNCANCELABLE_TOKEN, new CancelableTask() {
+            @Override
+            public void execute(CancellationToken cancelToken) {
+                saveToPersistentCacheNow(models);
+            }
+        }, null);
+    }
+
+    private void saveToPersistentCacheNow(Collection<NbGradleModel> models) {
         try {
             persistentCache.saveGradleModels(models);
         } catch (IOException ex) {
@@ -474,6 +631,27 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
         }
     }
 
+    /**
+     * Writes the fingerprint index of the build of the given model after the
+     * models of a load were submitted to be saved. The index covers the whole
+     * build, so it is written only once for each load instead of once for each
+     * published batch.
+     */
+    private void saveFingerprintIndex(final NbGradleModel model) {
+        modelPersister.execute(Cancellation.UNCANCELABLE_TOKEN, new CancelableTask() {
+            @Override
+            public void execute(CancellationToken cancelToken) {
+                try {
+                    fingerprintIndex.saveIndexes(Collections.singleton(model));
+                } catch (IOException ex) {
+                    LOGGER.log(Level.INFO, "Failed to save the model fingerprint index.", ex);
+                } catch (Throwable ex) {
+                    LOGGER.log(Level.SEVERE, "Unexpected error while saving the model fingerprint index.", ex);
+                }
+            }
+        }, null);
+    }
+
     private NbGradleModel introduceLoadedModel(NbGradleModel model, boolean replaced) {
         NbGradleModel modelToSave;
         if (replaced) {
@@ -493,19 +671,43 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
     }
 
     private void introduceProjects(
-            List<NbGradleModel> otherModels,
-            NbGradleModel mainModel) {
+            NbModelLoader.Result loadedModels,
+            NbGradleModel mainModel,
+            final ModelFingerprintIndex.BuildInputsSnapshot inputsBeforeFetch) {
 
-        int numberOfModels = otherModels.size() + 1;
+        int numberOfModels = loadedModels.getOtherModelCount() + 1;
         // Required one more than actually needed to create room for a buildSrc project.
         cacheSizeIncreaser.requiresCacheSize(getCache(), numberOfModels + 1);
 
-        List<NbGradleModel> toSave = new ArrayList<>(numberOfModels);
-        for (NbGradleModel model: otherModels) {
-            toSave.add(introduceLoadedModel(model, false));
+        // The main model is published first, so that the requested project
+        // becomes usable without waiting for the other models to be parsed.
+        NbGradleModel publishedMainModel = introduceLoadedModel(mainModel, true);
+        publishModels(Collections.singletonList(publishedMainModel), inputsBeforeFetch);
+
+        final List<NbGradleModel> batch = new ArrayList<>(PUBLISH_BATCH_SIZE);
+        loadedModels.parseOtherModels(new NbModelLoader.ParsedModelListener() {
+            @Override
+            public void onModelParsed(NbGradleModel model) {
+                batch.add(introduceLoadedModel(model, false));
+                if (batch.size() >= PUBLISH_BATCH_SIZE) {
+                    publishModels(new ArrayList<>(batch), inputsBeforeFetch);
+                    batch.clear();
+                }
+            }
+        });
+
+        if (!batch.isEmpty()) {
+            publishModels(batch, inputsBeforeFetch);
         }
-        toSave.add(introduceLoadedModel(mainModel, true));
-        saveToPersistentCache(toSave);
+
+        saveFingerprintIndex(publishedMainModel);
+    }
+
+    private void publishModels(
+            List<NbGradleModel> models,
+            ModelFingerprintIndex.BuildInputsSnapshot inputsBeforeFetch) {
+        fingerprintIndex.updateFingerprints(models, inputsBeforeFetch);
+        saveToPersistentCache(models);
     }
 
     public static void setupLongRunningOP(OperationInitializer setup, LongRunningOperation op) {
@@ -554,7 +756,8 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             CancellationToken cancelToken,
             final ProjectLoadRequest projectLoadKey,
             final ProgressHandle progress,
-            final NbGradleModel cachedEntry) throws IOException, GradleModelLoadError {
+            final NbGradleModel cachedEntry,
+            boolean mayReuseResults) throws IOException, GradleModelLoadError {
 
         File projectDir = project.getProjectDirectoryAsFile();
 
@@ -562,6 +765,10 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
                 "Loading Gradle project from directory: {0}, settings.gradle: {1}",
                 new Object[]{projectDir, projectLoadKey.settingsGradleDef});
 
+        DefaultModelBuilderSetup setup = modelBuilderSetup(projectLoadKey, progress);
+        ModelFingerprintIndex.BuildInputsSnapshot inputsBeforeFetch
+                = tryCaptureInputs(projectLoadKey, cachedEntry, setup);
+
         GradleConnector gradleConnector = createGradleConnector(cancelToken, project);
         gradleConnector.forProjectDirectory(projectDir);
         ProjectConnection projectConnection = null;
@@ -570,8 +777,6 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
         try {
             projectConnection = gradleConnector.connect();
 
-            DefaultModelBuilderSetup setup = modelBuilderSetup(projectLoadKey, progress);
-
             ModelBuilder<BuildEnvironment> modelBuilder = projectConnection.model(BuildEnvironment.class);
             setupLongRunningOP(setup, modelBuilder);
 
@@ -581,7 +786,12 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             GradleTarget gradleTarget = new GradleTarget(
                     setup.getJDKVersion(),
                     GradleVersion.version(env.getGradle().getGradleVersion()));
-            NbModelLoader modelLoader = chooseModel(projectLoadKey.settingsGradleDef, gradleTarget, cachedEntry, setup);
+            NbModelLoader modelLoader = chooseModel(
+                    projectLoadKey.settingsGradleDef,
+                    gradleTarget,
+                    cachedEntry,
+                    setup,
+                    mayReuseResults);
 
             loadedModels = modelLoader.loadModels(project, projectConnection, progress);
         } finally {
@@ -590,13 +800,17 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             }
         }
 
-        ModelLoadIssueReporter.reportAllIssues(loadedModels.getIssues());
-
         NbGradleModel result = cachedEntry != null
                 ? cachedEntry.updateEntry(loadedModels.getMainModel())
                 : loadedModels.getMainModel();
 
-        introduceProjects(loadedModels.getOtherModels(), result);
+        try {
+            introduceProjects(loadedModels, result, inputsBeforeFetch);
+        } finally {
+            // The issues of the other projects are only known after they
+            // have been parsed.
+            ModelLoadIssueReporter.reportAllIssues(loadedModels.getIssues());
+        }
 
         return result;
     }
@@ -619,13 +833,14 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             SettingsGradleDef settingsGradleDef,
             GradleTarget gradleTarget,
             NbGradleModel cachedModel,
-            OperationInitializer setup) {
+            OperationInitializer setup,
+            boolean mayReuseResults) {
 
         GradleVersion version = gradleTarget.getGradleVersion();
 
         ModelLoadingStrategy modelLoadingStrategy = CommonGlobalSettings.getDefault().modelLoadingStrategy().getActiveValue();
         NbModelLoader result = modelLoadingStrategy.canUse18Api(version)
-                ? new NbGradle18ModelLoader(settingsGradleDef, setup, gradleTarget)
+                ? new NbGradle18ModelLoader(settingsGradleDef, setup, gradleTarget, mayReuseResults)
                 : new NbCompatibleModelLoader(settingsGradleDef, cachedModel, setup, gradleTarget);
 
         LOGGER.log(Level.INFO, "Using model loader: {0}", result.getClass().getSimpleName());
@@ -671,15 +886,26 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
     public static final class Builder {
         private static final PersistentProjectModelStoreFactory DEFAULT_MODEL_STORE_FACTORY
                 = new PersistentProjectModelStoreFactory();
-        private static final LazyPersistentModelStoreFactory<NbGradleModel> DEFAULT_LAZY_MODEL_STORE_FACTORY
-                = new LazyPersistentModelStoreFactory<>(DEFAULT_MODEL_STORE_FACTORY.getModelPersister(), DEFAULT_MODEL_PERSISTER);
+        private static final NbFunction<NbGradleModel, PersistentModelKey> DEFAULT_MODEL_KEY_FACTORY
+                = new NbFunction<NbGradleModel, PersistentModelKey>() {
+            @Override
+            public PersistentModelKey apply(NbGradleModel arg) {
+                try {
+                    return new PersistentModelKey(arg).normalize();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
 
         private final NbGradleProject project;
 
-        private TaskExecutor projectLoader;
+        private KeyedTaskScheduler<Path> projectLoadScheduler;
         private MonitorableTaskExecutorService modelLoadNotifier;
+        private TaskExecutor modelPersister;
         private LoadedProjectManager loadedProjectManager;
         private PersistentModelCache<NbGradleModel> persistentCache;
+        private ModelFingerprintIndex fingerprintIndex;
         private NbSupplier<? extends GradleModelCache> cacheRef;
         private CacheSizeIncreaser cacheSizeIncreaser;
 
@@ -687,19 +913,12 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             ExceptionHelper.checkNotNullArgument(project, "project");
 
             this.project = project;
-            this.projectLoader = DEFAULT_PROJECT_LOADER;
+            this.projectLoadScheduler = getDefaultProjectLoadScheduler();
             this.modelLoadNotifier = DEFAULT_MODEL_LOAD_NOTIFIER;
             this.loadedProjectManager = LoadedProjectManager.getDefault();
-            this.persistentCache = new MultiFileModelCache<>(defaultModelPersister(project), new NbFunction<NbGradleModel, PersistentModelKey>() {
-                @Override
-                public PersistentModelKey apply(NbGradleModel arg) {
-                    try {
-                        return new PersistentModelKey(arg).normalize();
-                    } catch (IOException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                }
-            });
+            this.modelPersister = DEFAULT_MODEL_PERSISTER;
+            this.persistentCache = defaultPersistentCache(project);
+            this.fingerprintIndex = ModelFingerprintIndex.getDefault();
             this.cacheRef = new NbSupplier<GradleModelCache>() {
                 @Override
                 public GradleModelCache get() {
@@ -714,13 +933,26 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             };
         }
 
-        private static PersistentModelStore<NbGradleModel> defaultModelPersister(NbGradleProject project) {
-            return DEFAULT_LAZY_MODEL_STORE_FACTORY.createStore(DEFAULT_MODEL_STORE_FACTORY.createModelStore(project));
+        private static PersistentModelCache<NbGradleModel> defaultPersistentCache(NbGradleProject project) {
+            // The per project files are only read to migrate models saved by previous versions.
+            PersistentModelCache<NbGradleModel> legacyCache = new MultiFileModelCache<>(
+                    DEFAULT_MODEL_STORE_FACTORY.createModelStore(project),
+                    DEFAULT_MODEL_KEY_FACTORY);
+
+            return new SegmentFileModelCache<>(
+                    DEFAULT_MODEL_STORE_FACTORY.createModelSerializer(project),
+                    DEFAULT_MODEL_KEY_FACTORY,
+                    legacyCache);
         }
 
         public void setProjectLoader(TaskExecutor projectLoader) {
             ExceptionHelper.checkNotNullArgument(projectLoader, "projectLoader");
-            this.projectLoader = projectLoader;
+            this.projectLoadScheduler = new KeyedTaskScheduler<>(projectLoader, 1);
+        }
+
+        public void setProjectLoadScheduler(KeyedTaskScheduler<Path> projectLoadScheduler) {
+            ExceptionHelper.checkNotNullArgument(projectLoadScheduler, "projectLoadScheduler");
+            this.projectLoadScheduler = projectLoadScheduler;
         }
 
         public void setModelLoadNotifier(MonitorableTaskExecutorService modelLoadNotifier) {
@@ -728,6 +960,11 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             this.modelLoadNotifier = modelLoadNotifier;
         }
 
+        public void setModelPersister(TaskExecutor modelPersister) {
+            ExceptionHelper.checkNotNullArgument(modelPersister, "modelPersister");
+            this.modelPersister = modelPersister;
+        }
+
         public void setLoadedProjectManager(LoadedProjectManager loadedProjectManager) {
             ExceptionHelper.checkNotNullArgument(loadedProjectManager, "loadedProjectManager");
             this.loadedProjectManager = loadedProjectManager;
@@ -738,6 +975,11 @@ public final class DefaultGradleModelLoader implements ModelLoader<NbGradleModel
             this.persistentCache = persistentCache;
         }
 
+        public void setFingerprintIndex(ModelFingerprintIndex fingerprintIndex) {
+            ExceptionHelper.checkNotNullArgument(fingerprintIndex, "fingerprintIndex");
+            this.fingerprintIndex = fingerprintIndex;
+        }
+
         public void setCacheRef(final GradleModelCache cache) {
             ExceptionHelper.checkNotNullArgument(cache, "cache");
             this.cacheRef = new NbSupplier<GradleModelCache>() {
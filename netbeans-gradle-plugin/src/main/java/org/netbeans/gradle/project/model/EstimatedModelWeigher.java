@@ -0,0 +1,61 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Defines a {@code GradleModelWeigher} estimating the retained size of
+ * models from the size of their compact binary encoding (the format of the
+ * persistent model cache).
+ * <P>
+ * The models are mostly made of strings, files and collections of them. The
+ * binary encoding stores each of them once and without any object overhead,
+ * so the retained size is estimated to be a fixed multiple of the encoded size.
+ * Extension models which cannot be serialized are not counted.
+ */
+public enum EstimatedModelWeigher implements GradleModelWeigher {
+    INSTANCE;
+
+    private static final Logger LOGGER = Logger.getLogger(EstimatedModelWeigher.class.getName());
+
+    // The ratio of the retained size of the models and their encoded size.
+    private static final long ENCODED_SIZE_MULTIPLIER = 4;
+
+    @Override
+    public long getWeight(NbGradleModel model) {
+        SerializedNbGradleModels serializedModels = SerializedNbGradleModels.createSerialized(model);
+
+        ByteCounterOutputStream output = new ByteCounterOutputStream();
+        try {
+            NbGradleModelBinaryFormat.write(serializedModels, output);
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to estimate the size of the model of " + model.getProjectDir(), ex);
+        }
+
+        return ENCODED_SIZE_MULTIPLIER * output.getCount();
+    }
+
+    private static final class ByteCounterOutputStream extends OutputStream {
+        private long count;
+
+        public ByteCounterOutputStream() {
+            this.count = 0;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.model.FetchedModels;
+import org.netbeans.gradle.model.FetchedProjectModels;
+import org.netbeans.gradle.model.GenericProjectProperties;
+import org.netbeans.gradle.model.GradleMultiProjectDef;
+import org.netbeans.gradle.model.GradleProjectTree;
+import org.netbeans.gradle.model.util.CollectionUtils;
+
+/**
+ * Remembers the unparsed models of the last loaded builds along with the
+ * fingerprints of their build inputs, so that a refresh only needs to query
+ * the projects whose models might have changed since.
+ * <P>
+ * If any of the inputs shared by every project of the build changed (e.g., the
+ * settings script or an init script), every project is queried again.
+ * Otherwise the projects whose own inputs changed, their subprojects (which
+ * might be configured by their parents) and the project being loaded are
+ * queried again. Note that a project might also depend on a project which is
+ * not its parent (e.g., through a project dependency), such changes are only
+ * picked up when that project is queried again.
+ * <P>
+ * The cached models are strongly referenced, so only the models of the last
+ * few loaded builds are kept.
+ */
+final class FetchedModelsCache {
+    private static final String ROOT_PROJECT_PATH = ":";
+
+    private final BuildInputFingerprints fingerprints;
+    private final Lock buildsLock;
+    private final Map<Path, CachedBuild> builds;
+
+    /**
+     * Creates a new empty cache.
+     *
+     * @param fingerprints the object computing the fingerprints of the build
+     *   inputs. This argument cannot be {@code null}.
+     * @param maxCachedBuilds the maximum number of builds whose models are
+     *   kept. The models of the least recently used build are removed first.
+     *   This argument must be greater than zero.
+     */
+    public FetchedModelsCache(BuildInputFingerprints fingerprints, final int maxCachedBuilds) {
+        ExceptionHelper.checkNotNullArgument(fingerprints, "fingerprints");
+        ExceptionHelper.checkArgumentInRange(maxCachedBuilds, 1, Integer.MAX_VALUE, "maxCachedBuilds");
+
+        this.fingerprints = fingerprints;
+        this.buildsLock = new ReentrantLock();
+        this.builds = new LinkedHashMap<Path, CachedBuild>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedBuild> eldest) {
+                return size() > maxCachedBuilds;
+            }
+        };
+    }
+
+    /**
+     * Determines which projects of the given build need to be queried.
+     *
+     * @param buildKey the key identifying the build (usually the directory
+     *   containing the settings script)
+     * @param querySignature a string identifying the queried models and the
+     *   arguments of the query. The cached models are only used if the
+     *   signature matches the one used when they were fetched.
+     * @param environmentFingerprint the fingerprint of the inputs of the build
+     *   outside of the build (see
+     *   {@link ModelQueryEnvironment#getFingerprint(BuildInputFingerprints, Path) getFingerprint})
+     * @param mainProjectDir the directory of the project being loaded. This
+     *   project is always queried.
+     * @return the query determining which projects need to be queried and
+     *   able to merge and store the fetched models. This method never returns
+     *   {@code null}.
+     */
+    public IncrementalQuery startQuery(
+            Path buildKey,
+            String querySignature,
+            long environmentFingerprint,
+            Path mainProjectDir) {
+        ExceptionHelper.checkNotNullArgument(buildKey, "buildKey");
+        ExceptionHelper.checkNotNullArgument(querySignature, "querySignature");
+        ExceptionHelper.checkNotNullArgument(mainProjectDir, "mainProjectDir");
+
+        CachedBuild cached = tryGetBuild(buildKey);
+        if (cached == null) {
+            BuildInputs currentInputs = BuildInputs.capture(
+                    fingerprints,
+                    buildKey,
+                    environmentFingerprint,
+                    Collections.<BuildInputs.ProjectLocation>emptyList());
+            return new IncrementalQuery(buildKey, querySignature, environmentFingerprint, currentInputs, null);
+        }
+
+        List<BuildInputs.ProjectLocation> projectLocations = new ArrayList<>(cached.projects.size());
+        for (CachedProject project: cached.projects.values()) {
+            projectLocations.add(project.location);
+        }
+
+        BuildInputs currentInputs = BuildInputs.capture(
+                fingerprints,
+                cached.inputs.getRootProjectDir(),
+                environmentFingerprint,
+                projectLocations);
+
+        if (!querySignature.equals(cached.querySignature)
+                || currentInputs.getBuildFingerprint() != cached.inputs.getBuildFingerprint()) {
+            return new IncrementalQuery(buildKey, querySignature, environmentFingerprint, currentInputs, null);
+        }
+
+        Set<String> changedProjects = currentInputs.getChangedProjects(cached.inputs);
+
+        Set<String> projectsToQuery = new HashSet<>();
+        for (CachedProject project: cached.projects.values()) {
+            BuildInputs.ProjectLocation location = project.location;
+            if (project.models == null
+                    || location.getProjectDir().equals(mainProjectDir)
+                    || isAffectedByChanges(location.getPath(), changedProjects)) {
+                projectsToQuery.add(location.getPath());
+            }
+        }
+
+        if (projectsToQuery.size() >= cached.projects.size()) {
+            return new IncrementalQuery(buildKey, querySignature, environmentFingerprint, currentInputs, null);
+        }
+        return new IncrementalQuery(
+                buildKey,
+                querySignature,
+                environmentFingerprint,
+                currentInputs,
+                new Incremental(cached, projectsToQuery));
+    }
+
+    private static boolean isAffectedByChanges(String projectPath, Set<String> changedProjects) {
+        if (changedProjects.contains(projectPath) || changedProjects.contains(ROOT_PROJECT_PATH)) {
+            return true;
+        }
+
+        // The parent projects might configure their subprojects.
+        for (String changedPath: changedProjects) {
+            if (projectPath.startsWith(changedPath + ":")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CachedBuild tryGetBuild(Path buildKey) {
+        buildsLock.lock();
+        try {
+            return builds.get(buildKey);
+        } finally {
+            buildsLock.unlock();
+        }
+    }
+
+    private void putBuild(Path buildKey, CachedBuild build) {
+        buildsLock.lock();
+        try {
+            builds.put(buildKey, build);
+        } finally {
+            buildsLock.unlock();
+        }
+    }
+
+    private static String getProjectPath(FetchedProjectModels models) {
+        return getProperties(models).getProjectFullName();
+    }
+
+    private static GenericProjectProperties getProperties(FetchedProjectModels models) {
+        return models.getProjectDef().getMainProject().getGenericProperties();
+    }
+
+    private static BuildInputs.ProjectLocation getLocation(FetchedProjectModels models) {
+        GenericProjectProperties properties = getProperties(models);
+        return new BuildInputs.ProjectLocation(
+                properties.getProjectFullName(),
+                toPath(properties.getProjectDir()),
+                toPath(properties.getBuildScript()));
+    }
+
+    private static Path toPath(File file) {
+        return file != null ? file.toPath() : null;
+    }
+
+    public final class IncrementalQuery {
+        private final Path buildKey;
+        private final String querySignature;
+        private final long environmentFingerprint;
+        private final BuildInputs inputsBeforeFetch;
+        private final Incremental incremental;
+
+        private IncrementalQuery(
+                Path buildKey,
+                String querySignature,
+                long environmentFingerprint,
+                BuildInputs inputsBeforeFetch,
+                Incremental incremental) {
+            this.buildKey = buildKey;
+            this.querySignature = querySignature;
+            this.environmentFingerprint = environmentFingerprint;
+            this.inputsBeforeFetch = inputsBeforeFetch;
+            this.incremental = incremental;
+        }
+
+        /**
+         * Returns the full paths of the projects whose models need to be
+         * queried or {@code null} if every project needs to be queried.
+         */
+        public Set<String> getProjectsToQuery() {
+            return incremental != null
+                    ? Collections.unmodifiableSet(incremental.projectsToQuery)
+                    : null;
+        }
+
+        /**
+         * Replaces the models of the projects not queried with the previously
+         * cached ones.
+         *
+         * @return the models where the not queried projects have the cached
+         *   models or {@code null} if the cache does not contain the models of
+         *   some of the not queried projects. In which case, the models must be
+         *   fetched again for every project.
+         */
+        public FetchedModels mergeWithCached(FetchedModels fetchedModels) {
+            ExceptionHelper.checkNotNullArgument(fetchedModels, "fetchedModels");
+
+            if (incremental == null) {
+                return fetchedModels;
+            }
+
+            FetchedProjectModels defaultProjectModels = mergeWithCached(fetchedModels.getDefaultProjectModels());
+            if (defaultProjectModels == null) {
+                return null;
+            }
+
+            Collection<FetchedProjectModels> otherProjectModels = fetchedModels.getOtherProjectModels();
+            List<FetchedProjectModels> mergedOthers = new ArrayList<>(otherProjectModels.size());
+            for (FetchedProjectModels projectModels: otherProjectModels) {
+                FetchedProjectModels merged = mergeWithCached(projectModels);
+                if (merged == null) {
+                    return null;
+                }
+                mergedOthers.add(merged);
+            }
+
+            return new FetchedModels(fetchedModels.getBuildModels(), defaultProjectModels, mergedOthers);
+        }
+
+        private FetchedProjectModels mergeWithCached(FetchedProjectModels projectModels) {
+            String projectPath = getProjectPath(projectModels);
+            if (incremental.projectsToQuery.contains(projectPath)) {
+                return projectModels;
+            }
+
+            CachedProject cached = incremental.cachedBuild.projects.get(projectPath);
+            if (cached == null || cached.models == null) {
+                return null;
+            }
+
+            FetchedProjectModels cachedModels = cached.models;
+            return new FetchedProjectModels(
+                    projectModels.getProjectDef(),
+                    new HashMap<Object, List<?>>(cachedModels.getProjectInfoResults()),
+                    cachedModels.getToolingModels(),
+                    cachedModels.getIssue());
+        }
+
+        /**
+         * Stores the models of every project of the build, so that they can
+         * be reused by subsequent queries.
+         *
+         * @param mergedModels the models of every project of the build
+         *   as returned by {@link #mergeWithCached(FetchedModels) mergeWithCached}
+         */
+        public void storeModels(FetchedModels mergedModels) {
+            ExceptionHelper.checkNotNullArgument(mergedModels, "mergedModels");
+
+            GradleMultiProjectDef projectDef = mergedModels.getDefaultProjectModels().getProjectDef();
+            GradleProjectTree rootProject = projectDef.getRootProject();
+            Path rootProjectDir = toPath(rootProject.getGenericProperties().getProjectDir());
+
+            List<FetchedProjectModels> allModels = new ArrayList<>(mergedModels.getOtherProjectModels().size() + 1);
+            allModels.add(mergedModels.getDefaultProjectModels());
+            allModels.addAll(mergedModels.getOtherProjectModels());
+
+            List<BuildInputs.ProjectLocation> locations = new ArrayList<>(allModels.size());
+            Map<String, CachedProject> projects = CollectionUtils.newHashMap(allModels.size());
+            for (FetchedProjectModels projectModels: allModels) {
+                BuildInputs.ProjectLocation location = getLocation(projectModels);
+                locations.add(location);
+
+                // Failures might be caused by something we do not track (e.g., network issues),
+                // so such projects are always queried again.
+                FetchedProjectModels modelsToCache = projectModels.getIssue() == null
+                        ? projectModels
+                        : null;
+
+                projects.put(location.getPath(), new CachedProject(location, modelsToCache));
+            }
+
+            BuildInputs inputs = getInputsBeforeFetch(rootProjectDir, locations);
+            putBuild(buildKey, new CachedBuild(querySignature, inputs, projects));
+        }
+
+        /**
+         * Returns the state of the inputs of the given projects before the
+         * models were fetched where possible, so that changes made while
+         * fetching the models are detected by the next query.
+         */
+        private BuildInputs getInputsBeforeFetch(
+                Path rootProjectDir,
+                List<BuildInputs.ProjectLocation> locations) {
+
+            if (rootProjectDir.equals(inputsBeforeFetch.getRootProjectDir())) {
+                boolean allKnown = true;
+                for (BuildInputs.ProjectLocation location: locations) {
+                    if (inputsBeforeFetch.tryGetOwnFingerprint(location) == null) {
+                        allKnown = false;
+                        break;
+                    }
+                }
+                if (allKnown) {
+                    return inputsBeforeFetch;
+                }
+            }
+
+            // The layout of the build changed, so the next query will query
+            // every project anyway (due to the changed settings script).
+            return BuildInputs.capture(fingerprints, rootProjectDir, environmentFingerprint, locations);
+        }
+    }
+
+    private static final class Incremental {
+        public final CachedBuild cachedBuild;
+        public final Set<String> projectsToQuery;
+
+        public Incremental(CachedBuild cachedBuild, Set<String> projectsToQuery) {
+            this.cachedBuild = cachedBuild;
+            this.projectsToQuery = projectsToQuery;
+        }
+    }
+
+    private static final class CachedProject {
+        public final BuildInputs.ProjectLocation location;
+        public final FetchedProjectModels models;
+
+        public CachedProject(BuildInputs.ProjectLocation location, FetchedProjectModels models) {
+            this.location = location;
+            this.models = models;
+        }
+    }
+
+    private static final class CachedBuild {
+        public final String querySignature;
+        public final BuildInputs inputs;
+        public final Map<String, CachedProject> projects;
+
+        public CachedBuild(
+                String querySignature,
+                BuildInputs inputs,
+                Map<String, CachedProject> projects) {
+            this.querySignature = querySignature;
+            this.inputs = inputs;
+            this.projects = projects;
+        }
+    }
+}
@@ -1,60 +1,126 @@
 package org.netbeans.gradle.project.model;
 
 import java.io.File;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.jtrim.event.CopyOnTriggerListenerManager;
 import org.jtrim.event.EventDispatcher;
 import org.jtrim.event.ListenerManager;
 import org.jtrim.event.ListenerRef;
 import org.jtrim.utils.ExceptionHelper;
-import org.netbeans.gradle.model.util.CollectionUtils;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 
+/**
+ * Defines an in memory cache of the recently loaded models.
+ * <P>
+ * The cache limits both the number of models it retains and (optionally)
+ * the sum of their estimated retained sizes (weights). When any of the limits
+ * is exceeded, the least recently accessed models are evicted. The access
+ * order is only approximately tracked, so the evicted models might not be
+ * exactly the least recently used ones when models are accessed concurrently.
+ * <P>
+ * Retrieving models never blocks, only modifications are serialized. Models
+ * are weighed before acquiring the lock serializing the modifications. Since
+ * weighing a model is not cheap, models are only weighed while the weight of
+ * the models is limited. The models added while there was no limit are
+ * weighed when a limit is set.
+ */
 public final class GradleModelCache {
-    private final ReentrantLock cacheLock;
-    private final Map<CacheKey, NbGradleModel> cache;
+    private final ReentrantLock updateLock;
+    private final ConcurrentMap<CacheKey, CacheEntry> cache;
     private final AtomicInteger maxCapacity;
+    private final AtomicLong maxWeight;
+    private final AtomicLong totalWeight;
+    private final GradleModelWeigher weigher;
     private final ListenerManager<ProjectModelUpdatedListener> updateListeners;
 
     public GradleModelCache(int maxCapacity) {
+        this(maxCapacity, 0, EstimatedModelWeigher.INSTANCE);
+    }
+
+    /**
+     * Creates a new {@code GradleModelCache} with the given limits.
+     *
+     * @param maxCapacity the maximum number of models retained by this cache.
+     *   This argument must be non-negative.
+     * @param maxWeight the maximum sum of the weights of the models retained
+     *   by this cache. Zero or a negative value means that the weight of the
+     *   models is not limited.
+     * @param weigher the {@code GradleModelWeigher} estimating the retained
+     *   size of the models. This argument cannot be {@code null}.
+     */
+    public GradleModelCache(int maxCapacity, long maxWeight, GradleModelWeigher weigher) {
         if (maxCapacity < 0) {
             throw new IllegalArgumentException("Illegal max. capacity value: " + maxCapacity);
         }
+        ExceptionHelper.checkNotNullArgument(weigher, "weigher");
 
-        this.cacheLock = new ReentrantLock();
+        this.updateLock = new ReentrantLock();
         this.maxCapacity = new AtomicInteger(maxCapacity);
+        this.maxWeight = new AtomicLong(maxWeight);
+        this.totalWeight = new AtomicLong(0);
+        this.weigher = weigher;
 
-        this.cache = CollectionUtils.newLinkedHashMap(maxCapacity);
+        this.cache = new ConcurrentHashMap<>();
         this.updateListeners = new CopyOnTriggerListenerManager<>();
     }
 
-    private void cleanupCacheUnsafe() {
-        assert cacheLock.isHeldByCurrentThread();
+    private boolean isOverLimitUnsafe(int currentMaxCapacity, long currentMaxWeight) {
+        assert updateLock.isHeldByCurrentThread();
+
+        if (cache.size() > currentMaxCapacity) {
+            return true;
+        }
+        return currentMaxWeight > 0 && totalWeight.get() > currentMaxWeight;
+    }
+
+    private void cleanupCacheUnsafe(CacheKey keepKey) {
+        assert updateLock.isHeldByCurrentThread();
 
         int currentMaxCapacity = maxCapacity.get();
-        // Don't create the iterator.
-        if (cache.size() <= currentMaxCapacity) {
+        long currentMaxWeight = maxWeight.get();
+
+        // Don't sort the entries unless we have to.
+        if (!isOverLimitUnsafe(currentMaxCapacity, currentMaxWeight)) {
             return;
         }
 
-        Iterator<?> itr = cache.entrySet().iterator();
-        while (cache.size() > currentMaxCapacity && itr.hasNext()) {
-            itr.next();
-            itr.remove();
+        List<Map.Entry<CacheKey, CacheEntry>> entries = new ArrayList<>(cache.entrySet());
+        Collections.sort(entries, LeastRecentlyUsedFirst.INSTANCE);
+
+        for (Map.Entry<CacheKey, CacheEntry> entry: entries) {
+            if (!isOverLimitUnsafe(currentMaxCapacity, currentMaxWeight)) {
+                break;
+            }
+
+            CacheKey key = entry.getKey();
+            if (currentMaxCapacity > 0 && key.equals(keepKey)) {
+                continue;
+            }
+
+            CacheEntry removed = cache.remove(key);
+            if (removed != null) {
+                totalWeight.addAndGet(-removed.weight);
+            }
         }
     }
 
     private void cleanupCache() {
-        cacheLock.lock();
+        updateLock.lock();
         try {
-            cleanupCacheUnsafe();
+            cleanupCacheUnsafe(null);
         } finally {
-            cacheLock.unlock();
+            updateLock.unlock();
         }
     }
 
@@ -78,12 +144,68 @@ public final class GradleModelCache {
             throw new IllegalArgumentException("Illegal max. capacity value: " + newMaxCapacity);
         }
 
-        int prevCapacity = maxCapacity.get();
+        int prevCapacity;
         do {
+            prevCapacity = maxCapacity.get();
             if (prevCapacity >= newMaxCapacity) {
                 break;
             }
-        } while (maxCapacity.compareAndSet(prevCapacity, newMaxCapacity));
+        } while (!maxCapacity.compareAndSet(prevCapacity, newMaxCapacity));
+    }
+
+    public long getMaxWeight() {
+        return maxWeight.get();
+    }
+
+    /**
+     * Sets the maximum sum of the weights of the models retained by this cache.
+     *
+     * @param newMaxWeight the new maximum sum of the weights of the models.
+     *   Zero or a negative value means that the weight of the models is not
+     *   limited.
+     */
+    public void setMaxWeight(long newMaxWeight) {
+        long prevMaxWeight = maxWeight.getAndSet(newMaxWeight);
+        if (newMaxWeight > 0 && (prevMaxWeight <= 0 || prevMaxWeight > newMaxWeight)) {
+            if (prevMaxWeight <= 0) {
+                weighUnweighedEntries();
+            }
+            cleanupCache();
+        }
+    }
+
+    private void weighUnweighedEntries() {
+        for (Map.Entry<CacheKey, CacheEntry> entry: cache.entrySet()) {
+            CacheEntry cacheEntry = entry.getValue();
+            if (cacheEntry.isWeighed()) {
+                continue;
+            }
+
+            CacheEntry weighedEntry = new CacheEntry(cacheEntry, weigher.getWeight(cacheEntry.model));
+
+            updateLock.lock();
+            try {
+                // The entry might have been replaced while we were weighing it,
+                // in which case the new entry is weighed by its updater.
+                if (cache.replace(entry.getKey(), cacheEntry, weighedEntry)) {
+                    totalWeight.addAndGet(weighedEntry.weight);
+                }
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the estimated weights of the models currently in this
+     * cache. The models are only weighed while their weight is limited, so
+     * this method returns zero if there is no limit.
+     *
+     * @return the sum of the estimated weights of the models currently in this
+     *   cache. This method never returns a negative value.
+     */
+    public long getTotalWeight() {
+        return totalWeight.get();
     }
 
     private static CacheKey tryCreateKey(NbGradleModel model) {
@@ -111,27 +233,54 @@ public final class GradleModelCache {
         updateListeners.onEvent(ModelUpdateDispatcher.INSTANCE, newModel);
     }
 
+    private CacheEntry newEntry(NbGradleModel model) {
+        if (maxWeight.get() <= 0) {
+            return new CacheEntry(model);
+        }
+        return new CacheEntry(model, weigher.getWeight(model));
+    }
+
+    private CacheEntry putUnsafe(CacheKey key, CacheEntry entry) {
+        assert updateLock.isHeldByCurrentThread();
+
+        if (!entry.isWeighed() && maxWeight.get() > 0) {
+            // A limit was set since the entry was created.
+            entry = new CacheEntry(entry, weigher.getWeight(entry.model));
+        }
+
+        CacheEntry prevEntry = cache.put(key, entry);
+        totalWeight.addAndGet(entry.weight - (prevEntry != null ? prevEntry.weight : 0));
+        cleanupCacheUnsafe(key);
+        return prevEntry;
+    }
+
     public NbGradleModel updateEntry(NbGradleModel model) {
         CacheKey key = tryCreateKey(model);
         if (key == null) {
             return null;
         }
 
-        NbGradleModel newModel = model;
+        NbGradleModel newModel;
         NbGradleModel prevModel;
-        cacheLock.lock();
-        try {
-            prevModel = cache.get(key);
-            if (prevModel == null) {
-                cache.put(key, newModel);
-                cleanupCacheUnsafe();
+        while (true) {
+            CacheEntry prevEntry = cache.get(key);
+            prevModel = prevEntry != null ? prevEntry.model : null;
+            newModel = prevModel != null
+                    ? prevModel.updateEntry(model)
+                    : model;
+            CacheEntry newEntry = newEntry(newModel);
+
+            updateLock.lock();
+            try {
+                // Retry if the entry was concurrently modified while we were
+                // weighing the new model.
+                if (cache.get(key) == prevEntry) {
+                    putUnsafe(key, newEntry);
+                    break;
+                }
+            } finally {
+                updateLock.unlock();
             }
-            else {
-                newModel = prevModel.updateEntry(newModel);
-                cache.put(key, newModel);
-            }
-        } finally {
-            cacheLock.unlock();
         }
 
         if (prevModel != null) {
@@ -146,13 +295,15 @@ public final class GradleModelCache {
             return;
         }
 
+        CacheEntry newEntry = newEntry(model);
+
         NbGradleModel prevModel;
-        cacheLock.lock();
+        updateLock.lock();
         try {
-            prevModel = cache.put(key, model);
-            cleanupCacheUnsafe();
+            CacheEntry prevEntry = putUnsafe(key, newEntry);
+            prevModel = prevEntry != null ? prevEntry.model : null;
         } finally {
-            cacheLock.unlock();
+            updateLock.unlock();
         }
 
         if (prevModel != null && prevModel != model) {
@@ -162,11 +313,67 @@ public final class GradleModelCache {
 
     public NbGradleModel tryGet(File projectDir, File settingsFile) {
         CacheKey key = new CacheKey(projectDir, settingsFile);
-        cacheLock.lock();
-        try {
-            return cache.get(key);
-        } finally {
-            cacheLock.unlock();
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        entry.touch();
+        return entry.model;
+    }
+
+    private static final class CacheEntry {
+        private static final AtomicLong ACCESS_CLOCK = new AtomicLong(0);
+
+        public final NbGradleModel model;
+        // Zero for models not weighed.
+        public final long weight;
+        private final boolean weighed;
+        private volatile long lastAccess;
+
+        public CacheEntry(NbGradleModel model) {
+            this.model = model;
+            this.weight = 0;
+            this.weighed = false;
+            this.lastAccess = ACCESS_CLOCK.incrementAndGet();
+        }
+
+        public CacheEntry(NbGradleModel model, long weight) {
+            this.model = model;
+            this.weight = Math.max(0, weight);
+            this.weighed = true;
+            this.lastAccess = ACCESS_CLOCK.incrementAndGet();
+        }
+
+        public CacheEntry(CacheEntry unweighedEntry, long weight) {
+            this.model = unweighedEntry.model;
+            this.weight = Math.max(0, weight);
+            this.weighed = true;
+            this.lastAccess = unweighedEntry.lastAccess;
+        }
+
+        public boolean isWeighed() {
+            return weighed;
+        }
+
+        public void touch() {
+            // A racy update is fine, we only need an approximate order.
+            lastAccess = ACCESS_CLOCK.incrementAndGet();
+        }
+
+        public long getLastAccess() {
+            return lastAccess;
+        }
+    }
+
+    private enum LeastRecentlyUsedFirst implements Comparator<Map.Entry<CacheKey, CacheEntry>> {
+        INSTANCE;
+
+        @Override
+        public int compare(Map.Entry<CacheKey, CacheEntry> o1, Map.Entry<CacheKey, CacheEntry> o2) {
+            long access1 = o1.getValue().getLastAccess();
+            long access2 = o2.getValue().getLastAccess();
+            return access1 < access2 ? -1 : (access1 == access2 ? 0 : 1);
         }
     }
 
@@ -0,0 +1,12 @@
+package org.netbeans.gradle.project.model;
+
+public interface GradleModelWeigher {
+    /**
+     * Returns the estimated number of bytes retained by the given model.
+     *
+     * @param model the model to be weighed. This argument cannot be {@code null}.
+     * @return the estimated number of bytes retained by the given model.
+     *   This method must return a non-negative value.
+     */
+    public long getWeight(NbGradleModel model);
+}
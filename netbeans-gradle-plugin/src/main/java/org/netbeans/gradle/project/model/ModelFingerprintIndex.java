@@ -0,0 +1,542 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.properties.SettingsFiles;
+import org.netbeans.gradle.project.util.NbFunction;
+
+/**
+ * Stores the fingerprints of the build inputs of the persisted models, so that
+ * it can be decided without evaluating the build scripts if a persisted model
+ * is still up-to-date. The index also stores the checksums of the build
+ * inputs, so that they do not need to be read again after a restart unless
+ * they were modified.
+ * <P>
+ * There is a separate index file for each build in the cache directory of
+ * the root project (next to the persisted models).
+ * <P>
+ * Only the files listed by {@link org.netbeans.gradle.model.util.BuildInputFiles}
+ * are considered to be inputs of the build. So, for example, a script applied
+ * via {@code apply from:} from outside the directories of the build, or a
+ * new version of a dynamic dependency is not detected and the user has to
+ * reload the project explicitly.
+ */
+public final class ModelFingerprintIndex {
+    private static final Logger LOGGER = Logger.getLogger(ModelFingerprintIndex.class.getName());
+
+    private static final String INDEX_FILE_NAME = "model-fingerprints.idx";
+
+    private static final int FORMAT_MAGIC = 0x4E424649; // "NBFI"
+    private static final int FORMAT_VERSION = 2;
+
+    // The projects of a build are usually opened together and each of them
+    // checks the inputs of the whole build. So a snapshot captured this
+    // recently is reused instead of checking every input file again.
+    private static final long SNAPSHOT_REUSE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final NbFunction<Path, Path> DEFAULT_INDEX_FILE_PROVIDER = new NbFunction<Path, Path>() {
+        @Override
+        public Path apply(Path rootPath) {
+            return SettingsFiles.getCacheDir(rootPath).resolve(INDEX_FILE_NAME);
+        }
+    };
+
+    private static final ModelFingerprintIndex DEFAULT
+            = new ModelFingerprintIndex(BuildInputFingerprints.getDefault(), DEFAULT_INDEX_FILE_PROVIDER);
+
+    private final BuildInputFingerprints fingerprints;
+    private final NbFunction<? super Path, ? extends Path> indexFileProvider;
+    private final ConcurrentMap<Path, BuildIndex> buildIndexes;
+    private final ConcurrentMap<Path, BuildInputsSnapshot> recentSnapshots;
+
+    public ModelFingerprintIndex(
+            BuildInputFingerprints fingerprints,
+            NbFunction<? super Path, ? extends Path> indexFileProvider) {
+        ExceptionHelper.checkNotNullArgument(fingerprints, "fingerprints");
+        ExceptionHelper.checkNotNullArgument(indexFileProvider, "indexFileProvider");
+
+        this.fingerprints = fingerprints;
+        this.indexFileProvider = indexFileProvider;
+        this.buildIndexes = new ConcurrentHashMap<>();
+        this.recentSnapshots = new ConcurrentHashMap<>();
+    }
+
+    public static ModelFingerprintIndex getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the current state of the inputs of the build of the given model.
+     * The fingerprint of the returned snapshot covers the inputs of the whole
+     * build (including the scripts of every project of the build), the
+     * arguments of Gradle and the inputs outside the build (e.g., init
+     * scripts). Therefore the snapshot is the same for every model of the
+     * build.
+     *
+     * @param model a model of the build. The projects of the build are
+     *   determined from the project tree of this model. This argument cannot
+     *   be {@code null}.
+     * @param environment the arguments and settings used to load the models
+     *   of the build. This argument cannot be {@code null}.
+     * @return the current state of the inputs of the build of the given model.
+     *   This method never returns {@code null}.
+     */
+    public BuildInputsSnapshot captureInputs(
+            NbGradleModel model,
+            ModelQueryEnvironment environment) throws IOException {
+        ExceptionHelper.checkNotNullArgument(model, "model");
+        ExceptionHelper.checkNotNullArgument(environment, "environment");
+
+        NbGradleProjectTree rootProject = model.getGenericInfo().getProjectDef().getRootProject();
+        Path rootPath = getRootPath(model);
+        BuildInputsSnapshot result = captureInputs(rootPath, rootProject, environment);
+        recentSnapshots.put(rootPath, result);
+        return result;
+    }
+
+    private BuildInputsSnapshot captureInputs(
+            Path rootPath,
+            NbGradleProjectTree rootProject,
+            ModelQueryEnvironment environment) throws IOException {
+        long captureTimeNanos = System.nanoTime();
+        Path rootProjectDir = rootProject.getProjectDir().toPath();
+
+        List<NbGradleProjectTree> allProjects = getAllProjects(rootProject);
+        List<BuildInputs.ProjectLocation> projectLocations = new ArrayList<>(allProjects.size());
+        for (NbGradleProjectTree project: allProjects) {
+            projectLocations.add(new BuildInputs.ProjectLocation(
+                    project.getProjectFullName(),
+                    project.getProjectDir().toPath(),
+                    toPath(project.getGenericProperties().getBuildScript())));
+        }
+
+        BuildInputs inputs = BuildInputs.capture(
+                fingerprints,
+                rootProjectDir,
+                environment.getFingerprint(fingerprints, rootProjectDir),
+                projectLocations);
+        long fingerprint = BuildInputFingerprints.combineFingerprints(
+                inputs.getFingerprint(),
+                stringChecksum(environment.getSignature()));
+
+        return new BuildInputsSnapshot(
+                rootPath,
+                getLayoutChecksum(rootProject),
+                environment.getSignature(),
+                fingerprint,
+                captureTimeNanos);
+    }
+
+    private BuildInputsSnapshot getReusableInputs(
+            Path rootPath,
+            NbGradleModel model,
+            ModelQueryEnvironment environment) throws IOException {
+        NbGradleProjectTree rootProject = model.getGenericInfo().getProjectDef().getRootProject();
+
+        BuildInputsSnapshot recent = recentSnapshots.get(rootPath);
+        if (recent != null && recent.isRecentSnapshotOf(rootProject, environment)) {
+            return recent;
+        }
+
+        BuildInputsSnapshot result = captureInputs(rootPath, rootProject, environment);
+        recentSnapshots.put(rootPath, result);
+        return result;
+    }
+
+    private static Path getRootPath(NbGradleModel model) throws IOException {
+        return new PersistentModelKey(model).normalize().getRootPath();
+    }
+
+    private static Path toPath(File file) {
+        return file != null ? file.toPath() : null;
+    }
+
+    private static List<NbGradleProjectTree> getAllProjects(NbGradleProjectTree rootProject) {
+        List<NbGradleProjectTree> result = new ArrayList<>();
+        addAllProjects(rootProject, result);
+        Collections.sort(result, ProjectPathOrder.INSTANCE);
+        return result;
+    }
+
+    private static void addAllProjects(NbGradleProjectTree project, List<NbGradleProjectTree> result) {
+        result.add(project);
+        for (NbGradleProjectTree child: project.getChildren()) {
+            addAllProjects(child, result);
+        }
+    }
+
+    /**
+     * Returns a checksum of the projects of the build and of their build
+     * scripts, so that it can be verified that a snapshot was taken for the
+     * same set of inputs.
+     */
+    private static long getLayoutChecksum(NbGradleProjectTree rootProject) {
+        CRC32 result = new CRC32();
+        for (NbGradleProjectTree project: getAllProjects(rootProject)) {
+            File buildScript = project.getGenericProperties().getBuildScript();
+            addString(project.getProjectFullName(), result);
+            addString(project.getProjectDir().getPath(), result);
+            addString(buildScript != null ? buildScript.getPath() : "", result);
+        }
+        return result.getValue();
+    }
+
+    private static long stringChecksum(String str) {
+        CRC32 result = new CRC32();
+        addString(str, result);
+        return result.getValue();
+    }
+
+    private static void addString(String str, CRC32 result) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        result.update(bytes, 0, bytes.length);
+        // Separate the strings, so that different sequences cannot be
+        // concatenated to the same bytes.
+        result.update(0);
+    }
+
+    /**
+     * Returns {@code true} if the fingerprint of the given model was
+     * {@link #updateFingerprints(Collection, BuildInputsSnapshot) recorded}
+     * and the inputs of its build did not change since. The recorded
+     * fingerprint is only used if it was recorded for the same model (i.e.,
+     * for a model created at the same time).
+     *
+     * @param modelKey the normalized key of the given model. This argument
+     *   cannot be {@code null}.
+     * @param model the model to be checked. This argument cannot be
+     *   {@code null}.
+     * @param environment the arguments and settings used to load the models
+     *   of the build. This argument cannot be {@code null}.
+     * @param mayReuseSnapshot {@code true} if the inputs of the build captured
+     *   in the last few seconds for the same projects and environment may be
+     *   used instead of checking the input files again. This avoids checking
+     *   every input of a build for each of its projects when its projects are
+     *   opened together, at the cost of missing changes made in the last few
+     *   seconds.
+     */
+    public boolean isUpToDate(
+            PersistentModelKey modelKey,
+            NbGradleModel model,
+            ModelQueryEnvironment environment,
+            boolean mayReuseSnapshot) throws IOException {
+        ExceptionHelper.checkNotNullArgument(modelKey, "modelKey");
+        ExceptionHelper.checkNotNullArgument(model, "model");
+        ExceptionHelper.checkNotNullArgument(environment, "environment");
+
+        IndexEntry recorded = getBuildIndex(modelKey.getRootPath()).tryGetEntry(modelKey.getProjectDir());
+        if (recorded == null || recorded.modelCreateTime != model.getGenericInfo().getCreateTimeEpochMs()) {
+            return false;
+        }
+
+        BuildInputsSnapshot currentInputs = mayReuseSnapshot
+                ? getReusableInputs(modelKey.getRootPath(), model, environment)
+                : captureInputs(model, environment);
+        return recorded.fingerprint == currentInputs.getFingerprint();
+    }
+
+    /**
+     * Records the fingerprint of the given snapshot for the given models. The
+     * snapshot must have been {@link #captureInputs(NbGradleModel, ModelQueryEnvironment) captured}
+     * before the models were fetched, so that changes made while fetching the
+     * models are not recorded for the models. Models whose build has different
+     * projects than the build the snapshot was captured for are not recorded
+     * (and previously recorded fingerprints are removed for them).
+     * <P>
+     * The recorded fingerprints are only written to the disk by a subsequent
+     * {@link #saveIndexes(Collection) saveIndexes} call.
+     *
+     * @param models the models to be recorded. This argument cannot be
+     *   {@code null}.
+     * @param snapshotBeforeFetch the state of the inputs before the models were
+     *   fetched. This argument can be {@code null}, if no snapshot was taken.
+     *   In which case, no fingerprint is recorded.
+     */
+    public void updateFingerprints(
+            Collection<? extends NbGradleModel> models,
+            BuildInputsSnapshot snapshotBeforeFetch) {
+        ExceptionHelper.checkNotNullArgument(models, "models");
+
+        for (NbGradleModel model: models) {
+            PersistentModelKey modelKey;
+            try {
+                modelKey = new PersistentModelKey(model).normalize();
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to determine the key of the model: " + model.getProjectDir(), ex);
+                continue;
+            }
+
+            BuildIndex buildIndex = getBuildIndex(modelKey.getRootPath());
+            if (snapshotBeforeFetch == null || !snapshotBeforeFetch.isSnapshotOf(modelKey, model)) {
+                buildIndex.removeEntry(modelKey.getProjectDir());
+                continue;
+            }
+
+            IndexEntry entry = new IndexEntry(
+                    snapshotBeforeFetch.getFingerprint(),
+                    model.getGenericInfo().getCreateTimeEpochMs());
+            buildIndex.putEntry(modelKey.getProjectDir(), entry);
+        }
+    }
+
+    /**
+     * Writes the recorded fingerprints of the builds of the given models and
+     * the checksums of their build inputs to the disk.
+     */
+    public void saveIndexes(Collection<? extends NbGradleModel> models) throws IOException {
+        ExceptionHelper.checkNotNullArgument(models, "models");
+
+        Set<Path> rootPaths = new HashSet<>();
+        for (NbGradleModel model: models) {
+            rootPaths.add(new PersistentModelKey(model).normalize().getRootPath());
+        }
+
+        for (Path rootPath: rootPaths) {
+            getBuildIndex(rootPath).save(fingerprints.getKnownChecksums(rootPath));
+        }
+    }
+
+    private BuildIndex getBuildIndex(Path rootPath) {
+        BuildIndex result = buildIndexes.get(rootPath);
+        if (result == null) {
+            BuildIndex newIndex = new BuildIndex(indexFileProvider.apply(rootPath));
+            result = buildIndexes.putIfAbsent(rootPath, newIndex);
+            if (result == null) {
+                result = newIndex;
+            }
+        }
+        return result;
+    }
+
+    private final class BuildIndex {
+        private final Path indexFile;
+        private final Lock mainLock;
+        private Map<Path, IndexEntry> projectFingerprints;
+
+        public BuildIndex(Path indexFile) {
+            this.indexFile = indexFile;
+            this.mainLock = new ReentrantLock();
+            this.projectFingerprints = null;
+        }
+
+        public IndexEntry tryGetEntry(Path projectDir) {
+            mainLock.lock();
+            try {
+                return getProjectFingerprints().get(projectDir);
+            } finally {
+                mainLock.unlock();
+            }
+        }
+
+        public void removeEntry(Path projectDir) {
+            mainLock.lock();
+            try {
+                getProjectFingerprints().remove(projectDir);
+            } finally {
+                mainLock.unlock();
+            }
+        }
+
+        public void putEntry(Path projectDir, IndexEntry entry) {
+            mainLock.lock();
+            try {
+                getProjectFingerprints().put(projectDir, entry);
+            } finally {
+                mainLock.unlock();
+            }
+        }
+
+        private Map<Path, IndexEntry> getProjectFingerprints() {
+            assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+            if (projectFingerprints == null) {
+                projectFingerprints = new HashMap<>();
+                try {
+                    readIndex();
+                } catch (NoSuchFileException ex) {
+                    // There is no index yet.
+                } catch (IOException ex) {
+                    LOGGER.log(Level.INFO, "Failed to read the model fingerprint index: " + indexFile, ex);
+                    projectFingerprints.clear();
+                }
+            }
+            return projectFingerprints;
+        }
+
+        private void readIndex() throws IOException {
+            Map<Path, BuildInputFingerprints.FileChecksum> checksums = new HashMap<>();
+
+            try (InputStream fileInput = Files.newInputStream(indexFile);
+                    DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput))) {
+                if (input.readInt() != FORMAT_MAGIC || input.readInt() != FORMAT_VERSION) {
+                    return;
+                }
+
+                int projectCount = input.readInt();
+                for (int i = 0; i < projectCount; i++) {
+                    Path projectDir = Paths.get(input.readUTF());
+                    long fingerprint = input.readLong();
+                    long modelCreateTime = input.readLong();
+                    projectFingerprints.put(projectDir, new IndexEntry(fingerprint, modelCreateTime));
+                }
+
+                int fileCount = input.readInt();
+                for (int i = 0; i < fileCount; i++) {
+                    Path file = Paths.get(input.readUTF());
+                    long size = input.readLong();
+                    long lastModified = input.readLong();
+                    long checksum = input.readLong();
+                    checksums.put(file, new BuildInputFingerprints.FileChecksum(size, lastModified, checksum));
+                }
+            }
+
+            fingerprints.addKnownChecksums(checksums);
+        }
+
+        public void save(Map<Path, BuildInputFingerprints.FileChecksum> checksums) throws IOException {
+            mainLock.lock();
+            try {
+                saveUnlocked(getProjectFingerprints(), checksums);
+            } finally {
+                mainLock.unlock();
+            }
+        }
+
+        private void saveUnlocked(
+                Map<Path, IndexEntry> projectFingerprints,
+                Map<Path, BuildInputFingerprints.FileChecksum> checksums) throws IOException {
+
+            Path dir = indexFile.getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+
+            Path tmpFile = indexFile.resolveSibling(indexFile.getFileName().toString() + ".tmp");
+            try (OutputStream fileOutput = Files.newOutputStream(tmpFile);
+                    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+                output.writeInt(FORMAT_MAGIC);
+                output.writeInt(FORMAT_VERSION);
+
+                output.writeInt(projectFingerprints.size());
+                for (Map.Entry<Path, IndexEntry> entry: projectFingerprints.entrySet()) {
+                    output.writeUTF(entry.getKey().toString());
+                    output.writeLong(entry.getValue().fingerprint);
+                    output.writeLong(entry.getValue().modelCreateTime);
+                }
+
+                output.writeInt(checksums.size());
+                for (Map.Entry<Path, BuildInputFingerprints.FileChecksum> entry: checksums.entrySet()) {
+                    BuildInputFingerprints.FileChecksum checksum = entry.getValue();
+                    output.writeUTF(entry.getKey().toString());
+                    output.writeLong(checksum.getSize());
+                    output.writeLong(checksum.getLastModified());
+                    output.writeLong(checksum.getChecksum());
+                }
+            }
+
+            try {
+                Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Defines the state of the inputs of a build at a given point in time.
+     *
+     * @see #captureInputs(NbGradleModel, ModelQueryEnvironment)
+     */
+    public static final class BuildInputsSnapshot {
+        private final Path rootPath;
+        private final long layoutChecksum;
+        private final String environmentSignature;
+        private final long fingerprint;
+        private final long captureTimeNanos;
+
+        private BuildInputsSnapshot(
+                Path rootPath,
+                long layoutChecksum,
+                String environmentSignature,
+                long fingerprint,
+                long captureTimeNanos) {
+            this.rootPath = rootPath;
+            this.layoutChecksum = layoutChecksum;
+            this.environmentSignature = environmentSignature;
+            this.fingerprint = fingerprint;
+            this.captureTimeNanos = captureTimeNanos;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        private boolean isSnapshotOf(PersistentModelKey modelKey, NbGradleModel model) {
+            if (!rootPath.equals(modelKey.getRootPath())) {
+                return false;
+            }
+
+            NbGradleProjectTree rootProject = model.getGenericInfo().getProjectDef().getRootProject();
+            return layoutChecksum == getLayoutChecksum(rootProject);
+        }
+
+        private boolean isRecentSnapshotOf(NbGradleProjectTree rootProject, ModelQueryEnvironment environment) {
+            if (System.nanoTime() - captureTimeNanos > SNAPSHOT_REUSE_NANOS) {
+                return false;
+            }
+
+            return environmentSignature.equals(environment.getSignature())
+                    && layoutChecksum == getLayoutChecksum(rootProject);
+        }
+    }
+
+    private enum ProjectPathOrder implements Comparator<NbGradleProjectTree> {
+        INSTANCE;
+
+        @Override
+        public int compare(NbGradleProjectTree o1, NbGradleProjectTree o2) {
+            return o1.getProjectFullName().compareTo(o2.getProjectFullName());
+        }
+    }
+
+    private static final class IndexEntry {
+        public final long fingerprint;
+        public final long modelCreateTime;
+
+        public IndexEntry(long fingerprint, long modelCreateTime) {
+            this.fingerprint = fingerprint;
+            this.modelCreateTime = modelCreateTime;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.model.BuildOperationArgs;
+import org.netbeans.gradle.model.OperationInitializer;
+import org.netbeans.gradle.project.util.GradleFileUtils;
+
+/**
+ * Defines the inputs of a model query which are not part of the build itself:
+ * the arguments of Gradle and of the JVM evaluating the build and the files
+ * outside the build affecting the evaluation (e.g., init scripts).
+ */
+public final class ModelQueryEnvironment {
+    private final List<String> arguments;
+    private final List<String> jvmArguments;
+    private final File javaHome;
+
+    private ModelQueryEnvironment(List<String> arguments, List<String> jvmArguments, File javaHome) {
+        this.arguments = arguments;
+        this.jvmArguments = jvmArguments;
+        this.javaHome = javaHome;
+    }
+
+    public static ModelQueryEnvironment fromSetup(OperationInitializer setup) {
+        ExceptionHelper.checkNotNullArgument(setup, "setup");
+
+        BuildOperationArgs args = new BuildOperationArgs();
+        setup.initOperation(args);
+
+        return new ModelQueryEnvironment(
+                toList(args.getArguments()),
+                toList(args.getJvmArguments()),
+                args.getJavaHome());
+    }
+
+    private static List<String> toList(String[] array) {
+        return array != null
+                ? Collections.unmodifiableList(Arrays.asList(array))
+                : Collections.<String>emptyList();
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns a string which is only equal for two environments if they
+     * have the same arguments and use the same JVM.
+     */
+    public String getSignature() {
+        StringBuilder result = new StringBuilder();
+        result.append("javaHome=");
+        result.append(javaHome != null ? javaHome.getPath() : "");
+        appendArgs("args", arguments, result);
+        appendArgs("jvmArgs", jvmArguments, result);
+        return result.toString();
+    }
+
+    private static void appendArgs(String name, List<String> args, StringBuilder result) {
+        result.append('\n');
+        result.append(name);
+        result.append('=');
+        result.append(args.size());
+        for (String arg: args) {
+            result.append('\n');
+            result.append(arg);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the files outside the build affecting the
+     * evaluation of the build.
+     *
+     * @see BuildInputFingerprints#getEnvironmentFingerprint(Path, Path, List)
+     */
+    public long getFingerprint(BuildInputFingerprints fingerprints, Path rootProjectDir) {
+        ExceptionHelper.checkNotNullArgument(fingerprints, "fingerprints");
+
+        File gradleUserHome = GradleFileUtils.GRADLE_USER_HOME.getValue();
+        return fingerprints.getEnvironmentFingerprint(
+                gradleUserHome != null ? gradleUserHome.toPath() : null,
+                rootProjectDir,
+                arguments);
+    }
+}
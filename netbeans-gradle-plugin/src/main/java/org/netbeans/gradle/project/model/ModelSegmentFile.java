@@ -0,0 +1,571 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.util.StringUtils;
+
+/**
+ * Defines an append-only file storing arbitrary byte arrays identified by
+ * string keys. The file is memory mapped for reading, so looking up a record
+ * requires no file system access once the file has been opened.
+ * <P>
+ * Every record is stored with its own header and checksum. Records with an
+ * invalid checksum and a partially written last record (e.g., due to a crash)
+ * are ignored. When most of the file is occupied by records overwritten
+ * by later records, the live records are copied to a new file which then
+ * atomically replaces the old one.
+ * <P>
+ * The mapping of the file is released before the file is truncated or
+ * replaced because some platforms (e.g., Windows) do not allow these
+ * operations on a mapped file. If the mapping cannot be released, the records
+ * are read without memory mapping the file afterwards.
+ * <P>
+ * The methods of this class are safe to be called from multiple threads
+ * concurrently and reads may execute concurrently with each other.
+ */
+final class ModelSegmentFile {
+    private static final Logger LOGGER = Logger.getLogger(ModelSegmentFile.class.getName());
+
+    private static final int FILE_MAGIC = 0x4E424753; // "NBGS"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+
+    private static final int RECORD_MAGIC = 0x52454331; // "REC1"
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private static final BufferUnmapper UNMAPPER = BufferUnmapper.create();
+
+    private final Path file;
+
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    private final Map<String, RecordRef> index;
+    private long validLength;
+    private long liveBytes;
+    private long nextCompactionSize;
+    private boolean opened;
+
+    private final Object mappingLock;
+    private volatile MappedByteBuffer mapping;
+    private volatile boolean mappingDisabled;
+
+    public ModelSegmentFile(Path file) {
+        ExceptionHelper.checkNotNullArgument(file, "file");
+
+        this.file = file;
+
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+
+        this.index = new HashMap<>();
+        this.validLength = 0;
+        this.liveBytes = 0;
+        this.nextCompactionSize = MIN_COMPACTION_SIZE;
+        this.opened = false;
+
+        this.mappingLock = new Object();
+        this.mapping = null;
+        this.mappingDisabled = false;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public byte[] tryRead(String key) throws IOException {
+        ExceptionHelper.checkNotNullArgument(key, "key");
+
+        ensureOpened();
+
+        readLock.lock();
+        try {
+            RecordRef record = index.get(key);
+            if (record == null) {
+                return null;
+            }
+
+            if (mappingDisabled) {
+                return readRecordContentUnmapped(record);
+            }
+
+            ByteBuffer buffer = getMapping(record.getEndOffset());
+            if (buffer == null) {
+                return null;
+            }
+
+            return readRecordContent(buffer, record);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public void writeAll(Map<String, byte[]> records) throws IOException {
+        ExceptionHelper.checkNotNullArgument(records, "records");
+
+        if (records.isEmpty()) {
+            return;
+        }
+
+        ensureOpened();
+
+        writeLock.lock();
+        try {
+            appendRecordsUnsafe(records);
+            if (needsCompactionUnsafe()) {
+                compactUnsafe();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void ensureOpened() throws IOException {
+        readLock.lock();
+        try {
+            if (opened) {
+                return;
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        writeLock.lock();
+        try {
+            if (!opened) {
+                readIndexUnsafe();
+                opened = true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static byte[] readRecordContent(ByteBuffer buffer, RecordRef record) {
+        byte[] keyAndContent = new byte[record.keyLength + record.contentLength];
+        ByteBuffer recordBuffer = buffer.duplicate();
+        recordBuffer.position((int)record.offset + RECORD_HEADER_SIZE);
+        recordBuffer.get(keyAndContent);
+
+        return extractContent(keyAndContent, record);
+    }
+
+    private byte[] readRecordContentUnmapped(RecordRef record) throws IOException {
+        ByteBuffer keyAndContent = ByteBuffer.allocate(record.keyLength + record.contentLength);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = record.offset + RECORD_HEADER_SIZE;
+            while (keyAndContent.hasRemaining()) {
+                int readCount = channel.read(keyAndContent, position);
+                if (readCount < 0) {
+                    return null;
+                }
+                position += readCount;
+            }
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+
+        return extractContent(keyAndContent.array(), record);
+    }
+
+    private static byte[] extractContent(byte[] keyAndContent, RecordRef record) {
+        if (checksum(keyAndContent) != record.checksum) {
+            LOGGER.log(Level.INFO, "Invalid checksum for a record at offset {0}.", record.offset);
+            return null;
+        }
+
+        byte[] result = new byte[record.contentLength];
+        System.arraycopy(keyAndContent, record.keyLength, result, 0, result.length);
+        return result;
+    }
+
+    private static int checksum(byte[] keyAndContent) {
+        CRC32 crc = new CRC32();
+        crc.update(keyAndContent, 0, keyAndContent.length);
+        return (int)crc.getValue();
+    }
+
+    private ByteBuffer getMapping(long minimumSize) throws IOException {
+        MappedByteBuffer result = mapping;
+        if (result != null && result.capacity() >= minimumSize) {
+            return result;
+        }
+
+        synchronized (mappingLock) {
+            result = mapping;
+            if (result != null && result.capacity() >= minimumSize) {
+                return result;
+            }
+
+            result = tryMapFile();
+            mapping = result;
+        }
+
+        return result != null && result.capacity() >= minimumSize ? result : null;
+    }
+
+    private ByteBuffer getFileContentUnsafe(long minimumSize) throws IOException {
+        if (!mappingDisabled) {
+            return getMapping(minimumSize);
+        }
+
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+        return content.length >= minimumSize ? ByteBuffer.wrap(content) : null;
+    }
+
+    /**
+     * Releases the mapping of the file, so that the file can be truncated or
+     * replaced. Must only be called while holding the write lock, so that
+     * no reader can access the released mapping.
+     */
+    private void releaseMappingUnsafe() {
+        MappedByteBuffer prevMapping;
+        synchronized (mappingLock) {
+            prevMapping = mapping;
+            mapping = null;
+        }
+
+        if (prevMapping != null && !UNMAPPER.tryUnmap(prevMapping)) {
+            // The mapping is only released when the buffer is garbage
+            // collected, so do not create new mappings which would prevent
+            // modifying the file again.
+            disableMapping();
+        }
+    }
+
+    private void disableMapping() {
+        if (!mappingDisabled) {
+            LOGGER.log(Level.INFO, "Reading model segment file without memory mapping: {0}", file);
+            mappingDisabled = true;
+        }
+    }
+
+    private MappedByteBuffer tryMapFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Model segment file is too large: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private void readIndexUnsafe() throws IOException {
+        index.clear();
+        validLength = 0;
+        liveBytes = 0;
+
+        ByteBuffer buffer = getFileContentUnsafe(0);
+        if (buffer == null || buffer.capacity() < FILE_HEADER_SIZE) {
+            return;
+        }
+
+        buffer = buffer.duplicate();
+        if (buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FILE_VERSION) {
+            LOGGER.log(Level.INFO, "Ignoring model segment file with unknown format: {0}", file);
+            return;
+        }
+
+        long fileSize = buffer.capacity();
+        int offset = FILE_HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= fileSize) {
+            if (buffer.getInt(offset) != RECORD_MAGIC) {
+                break;
+            }
+
+            int keyLength = buffer.getInt(offset + 4);
+            int contentLength = buffer.getInt(offset + 8);
+            int checksum = buffer.getInt(offset + 12);
+
+            long recordEnd = (long)offset + RECORD_HEADER_SIZE + keyLength + contentLength;
+            if (keyLength < 0 || contentLength < 0 || recordEnd > fileSize) {
+                // Partially written record.
+                break;
+            }
+
+            byte[] keyAndContent = new byte[keyLength + contentLength];
+            buffer.position(offset + RECORD_HEADER_SIZE);
+            buffer.get(keyAndContent);
+            if (checksum(keyAndContent) != checksum) {
+                // Corrupted (e.g., not completely flushed) record, nothing after it can be trusted.
+                LOGGER.log(Level.INFO, "Invalid checksum for a record at offset {0} in {1}.",
+                        new Object[]{offset, file});
+                break;
+            }
+
+            String key = new String(keyAndContent, 0, keyLength, StringUtils.UTF8);
+
+            addToIndexUnsafe(key, new RecordRef(offset, keyLength, contentLength, checksum));
+            offset = (int)recordEnd;
+        }
+
+        validLength = offset;
+        if (validLength < fileSize) {
+            LOGGER.log(Level.INFO, "Ignoring {0} bytes at the end of model segment file {1}.",
+                    new Object[]{fileSize - validLength, file});
+        }
+    }
+
+    private void addToIndexUnsafe(String key, RecordRef record) {
+        RecordRef prevRecord = index.put(key, record);
+        if (prevRecord != null) {
+            liveBytes -= prevRecord.getSize();
+        }
+        liveBytes += record.getSize();
+    }
+
+    private static ByteBuffer fileHeader() {
+        ByteBuffer result = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        result.putInt(FILE_MAGIC);
+        result.putInt(FILE_VERSION);
+        result.flip();
+        return result;
+    }
+
+    private static ByteBuffer recordHeader(byte[] keyBytes, byte[] content, int checksum) {
+        ByteBuffer result = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        result.putInt(RECORD_MAGIC);
+        result.putInt(keyBytes.length);
+        result.putInt(content.length);
+        result.putInt(checksum);
+        result.flip();
+        return result;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer: buffers) {
+            remaining += buffer.remaining();
+        }
+
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private void appendRecordsUnsafe(Map<String, byte[]> records) throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<>(3 * records.size() + 1);
+        List<String> keys = new ArrayList<>(records.size());
+        List<RecordRef> newRecords = new ArrayList<>(records.size());
+
+        boolean newFile = validLength < FILE_HEADER_SIZE;
+        long offset = newFile ? FILE_HEADER_SIZE : validLength;
+        if (newFile) {
+            buffers.add(fileHeader());
+        }
+
+        for (Map.Entry<String, byte[]> entry: records.entrySet()) {
+            byte[] keyBytes = entry.getKey().getBytes(StringUtils.UTF8);
+            byte[] content = entry.getValue();
+
+            byte[] keyAndContent = new byte[keyBytes.length + content.length];
+            System.arraycopy(keyBytes, 0, keyAndContent, 0, keyBytes.length);
+            System.arraycopy(content, 0, keyAndContent, keyBytes.length, content.length);
+            int checksum = checksum(keyAndContent);
+
+            buffers.add(recordHeader(keyBytes, content, checksum));
+            buffers.add(ByteBuffer.wrap(keyAndContent));
+
+            RecordRef record = new RecordRef(offset, keyBytes.length, content.length, checksum);
+            keys.add(entry.getKey());
+            newRecords.add(record);
+            offset = record.getEndOffset();
+        }
+
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Model segment file would be too large: " + file);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drop anything after the last valid record (e.g., a record partially written before a crash).
+            long truncatedSize = newFile ? 0 : validLength;
+            if (channel.size() > truncatedSize) {
+                releaseMappingUnsafe();
+                channel.truncate(truncatedSize);
+            }
+
+            channel.position(newFile ? 0 : validLength);
+            writeFully(channel, buffers.toArray(new ByteBuffer[buffers.size()]));
+            channel.force(false);
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            addToIndexUnsafe(keys.get(i), newRecords.get(i));
+        }
+        validLength = offset;
+    }
+
+    private boolean needsCompactionUnsafe() {
+        return validLength >= nextCompactionSize && 2 * liveBytes < validLength;
+    }
+
+    private void compactUnsafe() {
+        Path tmpFile = file.resolveSibling(file.getFileName().toString() + ".tmp");
+        try {
+            ByteBuffer buffer = getFileContentUnsafe(validLength);
+            if (buffer == null) {
+                return;
+            }
+
+            Map<String, RecordRef> newIndex = new HashMap<>();
+            List<ByteBuffer> buffers = new ArrayList<>(index.size() + 1);
+            buffers.add(fileHeader());
+
+            long offset = FILE_HEADER_SIZE;
+            for (Map.Entry<String, RecordRef> entry: index.entrySet()) {
+                RecordRef record = entry.getValue();
+
+                ByteBuffer recordBuffer = buffer.duplicate();
+                recordBuffer.position((int)record.offset);
+                recordBuffer.limit((int)record.getEndOffset());
+                buffers.add(recordBuffer);
+
+                newIndex.put(entry.getKey(), record.moveTo(offset));
+                offset += record.getSize();
+            }
+
+            try (FileChannel channel = FileChannel.open(tmpFile,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                writeFully(channel, buffers.toArray(new ByteBuffer[buffers.size()]));
+                channel.force(true);
+            }
+
+            releaseMappingUnsafe();
+
+            moveAtomically(tmpFile, file);
+
+            index.clear();
+            index.putAll(newIndex);
+            validLength = offset;
+            liveBytes = offset - FILE_HEADER_SIZE;
+            nextCompactionSize = MIN_COMPACTION_SIZE;
+        } catch (IOException ex) {
+            // Do not copy the whole file again on every write, wait until
+            // the file grows considerably.
+            LOGGER.log(Level.INFO, "Failed to compact model segment file: " + file, ex);
+            nextCompactionSize = Math.max(MIN_COMPACTION_SIZE, 2 * validLength);
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException deleteEx) {
+                ex.addSuppressed(deleteEx);
+            }
+        }
+    }
+
+    private static void moveAtomically(Path src, Path dest) throws IOException {
+        try {
+            Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class BufferUnmapper {
+        private final Object unsafe;
+        private final Method invokeCleaner;
+
+        private BufferUnmapper(Object unsafe, Method invokeCleaner) {
+            this.unsafe = unsafe;
+            this.invokeCleaner = invokeCleaner;
+        }
+
+        public static BufferUnmapper create() {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                return new BufferUnmapper(unsafeField.get(null), invokeCleaner);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Java 8 and before: DirectBuffer.cleaner() is used.
+                return new BufferUnmapper(null, null);
+            }
+        }
+
+        public boolean tryUnmap(MappedByteBuffer buffer) {
+            try {
+                if (invokeCleaner != null) {
+                    invokeCleaner.invoke(unsafe, buffer);
+                    return true;
+                }
+
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner == null) {
+                    // Empty mappings have no cleaner because they do not map anything.
+                    return true;
+                }
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return true;
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                LOGGER.log(Level.FINE, "Failed to unmap a model segment file.", ex);
+                return false;
+            }
+        }
+    }
+
+    private static final class RecordRef {
+        public final long offset;
+        public final int keyLength;
+        public final int contentLength;
+        public final int checksum;
+
+        public RecordRef(long offset, int keyLength, int contentLength, int checksum) {
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.contentLength = contentLength;
+            this.checksum = checksum;
+        }
+
+        public long getSize() {
+            return RECORD_HEADER_SIZE + keyLength + contentLength;
+        }
+
+        public long getEndOffset() {
+            return offset + getSize();
+        }
+
+        public RecordRef moveTo(long newOffset) {
+            return new RecordRef(newOffset, keyLength, contentLength, checksum);
+        }
+    }
+}
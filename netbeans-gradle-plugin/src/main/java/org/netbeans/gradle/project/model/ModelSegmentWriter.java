@@ -0,0 +1,385 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jtrim.concurrent.GenericUpdateTaskExecutor;
+import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.concurrent.UpdateTaskExecutor;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines a write-behind stage for {@link ModelSegmentFile segment files}.
+ * <P>
+ * Records are written in the background after a short delay, so that repeated
+ * writes of the same record are coalesced and the records of many projects
+ * are written to a segment file in a single append. The writer limits the
+ * rate of writing to the given byte budget, so that saving the models of a
+ * large build does not saturate the disk.
+ * <P>
+ * Records not yet written to the disk are visible through
+ * {@link #tryGetPending(ModelSegmentFile, String) tryGetPending}.
+ */
+public final class ModelSegmentWriter {
+    private static final Logger LOGGER = Logger.getLogger(ModelSegmentWriter.class.getName());
+
+    private final UpdateTaskExecutor writerExecutor;
+    private final long writeDelayMs;
+    private final long maxBytesPerSecond;
+
+    private final Lock pendingLock;
+    private final Map<ModelSegmentFile, Map<String, PendingRecord>> pending;
+
+    // Serializes writing the batches, so that the writes of the same record
+    // are done in order. This lock is not held while throttling, so that an
+    // explicit flush does not have to wait for the background writer.
+    private final Lock flushLock;
+
+    private final Lock statisticsLock;
+    private long bytesWritten;
+    private long recordsWritten;
+    private long coalescedWrites;
+    private long batchCount;
+    private long totalFlushLatencyNanos;
+    private long maxFlushLatencyNanos;
+
+    /**
+     * Creates a new {@code ModelSegmentWriter}.
+     *
+     * @param executor the executor writing the records in the background.
+     *   This argument cannot be {@code null}. Writing blocks the executing
+     *   thread while honoring the byte budget, so this should be a dedicated
+     *   executor.
+     * @param writeDelayMs the time in milliseconds to wait before writing the
+     *   submitted records to allow coalescing of subsequent writes
+     * @param maxBytesPerSecond the maximum average number of bytes written to
+     *   the disk per second by the background writes. Zero or a negative value
+     *   means that the writes are not throttled.
+     */
+    public ModelSegmentWriter(TaskExecutor executor, long writeDelayMs, long maxBytesPerSecond) {
+        ExceptionHelper.checkNotNullArgument(executor, "executor");
+        ExceptionHelper.checkArgumentInRange(writeDelayMs, 0, Long.MAX_VALUE, "writeDelayMs");
+
+        this.writerExecutor = new GenericUpdateTaskExecutor(executor);
+        this.writeDelayMs = writeDelayMs;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+
+        this.pendingLock = new ReentrantLock();
+        this.pending = new HashMap<>();
+        this.flushLock = new ReentrantLock();
+        this.statisticsLock = new ReentrantLock();
+    }
+
+    void write(ModelSegmentFile segmentFile, Map<String, byte[]> records) {
+        ExceptionHelper.checkNotNullArgument(segmentFile, "segmentFile");
+        ExceptionHelper.checkNotNullArgument(records, "records");
+
+        long enqueueTime = System.nanoTime();
+        int coalesced = 0;
+
+        pendingLock.lock();
+        try {
+            Map<String, PendingRecord> segmentRecords = pending.get(segmentFile);
+            if (segmentRecords == null) {
+                segmentRecords = new LinkedHashMap<>();
+                pending.put(segmentFile, segmentRecords);
+            }
+
+            for (Map.Entry<String, byte[]> entry: records.entrySet()) {
+                PendingRecord prevRecord = segmentRecords.put(
+                        entry.getKey(),
+                        new PendingRecord(entry.getValue(), enqueueTime));
+                if (prevRecord != null) {
+                    coalesced++;
+                }
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+
+        if (coalesced > 0) {
+            statisticsLock.lock();
+            try {
+                coalescedWrites += coalesced;
+            } finally {
+                statisticsLock.unlock();
+            }
+        }
+
+        writerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writePendingInBackground();
+            }
+        });
+    }
+
+    byte[] tryGetPending(ModelSegmentFile segmentFile, String key) {
+        pendingLock.lock();
+        try {
+            Map<String, PendingRecord> segmentRecords = pending.get(segmentFile);
+            PendingRecord record = segmentRecords != null ? segmentRecords.get(key) : null;
+            return record != null ? record.content : null;
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending record to the disk without waiting and without
+     * throttling. This method returns only after the records submitted before
+     * calling this method were written (or failed to be written).
+     */
+    public void flush() {
+        flushPending(false);
+    }
+
+    private void writePendingInBackground() {
+        if (writeDelayMs > 0) {
+            try {
+                Thread.sleep(writeDelayMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushPending(true);
+    }
+
+    private Map.Entry<ModelSegmentFile, Map<String, PendingRecord>> tryGetBatch() {
+        pendingLock.lock();
+        try {
+            for (Map.Entry<ModelSegmentFile, Map<String, PendingRecord>> entry: pending.entrySet()) {
+                Map<String, PendingRecord> segmentRecords = entry.getValue();
+                if (!segmentRecords.isEmpty()) {
+                    Map<String, PendingRecord> batch = new LinkedHashMap<>(segmentRecords);
+                    return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), batch);
+                }
+            }
+            return null;
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    private void removeWritten(ModelSegmentFile segmentFile, Map<String, PendingRecord> batch) {
+        pendingLock.lock();
+        try {
+            Map<String, PendingRecord> segmentRecords = pending.get(segmentFile);
+            if (segmentRecords == null) {
+                return;
+            }
+
+            for (Map.Entry<String, PendingRecord> entry: batch.entrySet()) {
+                // Keep the records resubmitted since we have taken the batch.
+                if (segmentRecords.get(entry.getKey()) == entry.getValue()) {
+                    segmentRecords.remove(entry.getKey());
+                }
+            }
+
+            if (segmentRecords.isEmpty()) {
+                pending.remove(segmentFile);
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    private void flushPending(boolean throttle) {
+        while (true) {
+            long writeStartTime;
+            long batchBytes;
+
+            flushLock.lock();
+            try {
+                Map.Entry<ModelSegmentFile, Map<String, PendingRecord>> batchEntry = tryGetBatch();
+                if (batchEntry == null) {
+                    return;
+                }
+
+                ModelSegmentFile segmentFile = batchEntry.getKey();
+                Map<String, PendingRecord> batch = batchEntry.getValue();
+
+                writeStartTime = System.nanoTime();
+                batchBytes = writeBatch(segmentFile, batch);
+                removeWritten(segmentFile, batch);
+            } finally {
+                flushLock.unlock();
+            }
+
+            if (throttle && !pauseForBudget(batchBytes, System.nanoTime() - writeStartTime)) {
+                throttle = false;
+            }
+        }
+    }
+
+    private long writeBatch(ModelSegmentFile segmentFile, Map<String, PendingRecord> batch) {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        long batchBytes = 0;
+        long oldestEnqueueTime = Long.MAX_VALUE;
+        for (Map.Entry<String, PendingRecord> entry: batch.entrySet()) {
+            PendingRecord record = entry.getValue();
+            records.put(entry.getKey(), record.content);
+            batchBytes += record.content.length;
+            oldestEnqueueTime = Math.min(oldestEnqueueTime, record.enqueueTime);
+        }
+
+        try {
+            segmentFile.writeAll(records);
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to save into the persistent cache: " + segmentFile.getFile(), ex);
+            return 0;
+        } catch (Throwable ex) {
+            LOGGER.log(Level.SEVERE, "Unexpected error while saving to the persistent cache: " + segmentFile.getFile(), ex);
+            return 0;
+        }
+
+        long flushLatency = System.nanoTime() - oldestEnqueueTime;
+        statisticsLock.lock();
+        try {
+            bytesWritten += batchBytes;
+            recordsWritten += records.size();
+            batchCount++;
+            totalFlushLatencyNanos += flushLatency;
+            maxFlushLatencyNanos = Math.max(maxFlushLatencyNanos, flushLatency);
+        } finally {
+            statisticsLock.unlock();
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Written {0} models ({1} bytes) to {2} in {3} ms after the first request.",
+                    new Object[]{records.size(), batchBytes, segmentFile.getFile(), TimeUnit.NANOSECONDS.toMillis(flushLatency)});
+        }
+
+        return batchBytes;
+    }
+
+    private boolean pauseForBudget(long batchBytes, long writeTimeNanos) {
+        if (maxBytesPerSecond <= 0 || batchBytes <= 0) {
+            return true;
+        }
+
+        long requiredNanos = TimeUnit.SECONDS.toNanos(1) * batchBytes / maxBytesPerSecond;
+        long pauseMs = TimeUnit.NANOSECONDS.toMillis(requiredNanos - writeTimeNanos);
+        if (pauseMs <= 0) {
+            return true;
+        }
+
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public Statistics getStatistics() {
+        statisticsLock.lock();
+        try {
+            return new Statistics(
+                    bytesWritten,
+                    recordsWritten,
+                    coalescedWrites,
+                    batchCount,
+                    totalFlushLatencyNanos,
+                    maxFlushLatencyNanos);
+        } finally {
+            statisticsLock.unlock();
+        }
+    }
+
+    public static final class Statistics {
+        private final long bytesWritten;
+        private final long recordsWritten;
+        private final long coalescedWrites;
+        private final long batchCount;
+        private final long totalFlushLatencyNanos;
+        private final long maxFlushLatencyNanos;
+
+        private Statistics(
+                long bytesWritten,
+                long recordsWritten,
+                long coalescedWrites,
+                long batchCount,
+                long totalFlushLatencyNanos,
+                long maxFlushLatencyNanos) {
+            this.bytesWritten = bytesWritten;
+            this.recordsWritten = recordsWritten;
+            this.coalescedWrites = coalescedWrites;
+            this.batchCount = batchCount;
+            this.totalFlushLatencyNanos = totalFlushLatencyNanos;
+            this.maxFlushLatencyNanos = maxFlushLatencyNanos;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getRecordsWritten() {
+            return recordsWritten;
+        }
+
+        /**
+         * Returns the number of record writes which were replaced by a later
+         * write of the same record before being written to the disk.
+         *
+         * @return the number of record writes which were replaced by a later
+         *   write of the same record before being written to the disk
+         */
+        public long getCoalescedWrites() {
+            return coalescedWrites;
+        }
+
+        public long getBatchCount() {
+            return batchCount;
+        }
+
+        /**
+         * Returns the average time elapsed between submitting the oldest
+         * record of a batch and completing the write of the batch.
+         *
+         * @param unit the time unit of the returned value. This argument
+         *   cannot be {@code null}.
+         * @return the average flush latency of the batches
+         */
+        public long getAverageFlushLatency(TimeUnit unit) {
+            if (batchCount == 0) {
+                return 0;
+            }
+            return unit.convert(totalFlushLatencyNanos / batchCount, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxFlushLatency(TimeUnit unit) {
+            return unit.convert(maxFlushLatencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{"
+                    + "bytesWritten=" + bytesWritten
+                    + ", recordsWritten=" + recordsWritten
+                    + ", coalescedWrites=" + coalescedWrites
+                    + ", batchCount=" + batchCount
+                    + ", avgFlushLatencyMs=" + getAverageFlushLatency(TimeUnit.MILLISECONDS)
+                    + ", maxFlushLatencyMs=" + getMaxFlushLatency(TimeUnit.MILLISECONDS) + '}';
+        }
+    }
+
+    private static final class PendingRecord {
+        public final byte[] content;
+        public final long enqueueTime;
+
+        public PendingRecord(byte[] content, long enqueueTime) {
+            this.content = content;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
@@ -9,6 +9,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.gradle.tooling.ProjectConnection;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.progress.ProgressHandle;
@@ -34,15 +40,52 @@ import org.netbeans.gradle.project.api.modelquery.GradleTarget;
 import org.netbeans.gradle.project.extensions.NbGradleExtensionRef;
 import org.netbeans.gradle.project.model.issue.ModelLoadIssue;
 import org.netbeans.gradle.project.model.issue.ModelLoadIssues;
+import org.netbeans.gradle.project.util.NbSupplier;
 import org.openide.util.Lookup;
 import org.openide.util.lookup.Lookups;
 
 public final class NbGradle18ModelLoader implements NbModelLoader {
+    private static final Logger LOGGER = Logger.getLogger(NbGradle18ModelLoader.class.getName());
+
+    // The raw models of every project of a build are kept, so only a few
+    // builds are remembered.
+    private static final int MAX_FETCHED_BUILDS_TO_CACHE = 2;
+    private static final FetchedModelsCache FETCHED_MODELS_CACHE
+            = new FetchedModelsCache(BuildInputFingerprints.getDefault(), MAX_FETCHED_BUILDS_TO_CACHE);
+
+    // The scopes in which the results of the project info builders stored
+    // on the Gradle side might be reused. The scopes are only kept in memory,
+    // so results stored in a previous session are never reused.
+    private static final ConcurrentMap<Path, String> RESULT_CACHE_SCOPES = new ConcurrentHashMap<>();
+
     private final SettingsGradleDef settingsGradleDef;
     private final GradleTarget gradleTarget;
     private final OperationInitializer setup;
+    private final boolean mayReuseResults;
 
     public NbGradle18ModelLoader(SettingsGradleDef settingsGradleDef, OperationInitializer setup, GradleTarget gradleTarget) {
+        this(settingsGradleDef, setup, gradleTarget, true);
+    }
+
+    /**
+     * Creates a new {@code NbGradle18ModelLoader}.
+     *
+     * @param settingsGradleDef the settings script to be used to load the
+     *   build. This argument cannot be {@code null}.
+     * @param setup the initializer of the model loading operation. This
+     *   argument cannot be {@code null}.
+     * @param gradleTarget the Gradle and the JDK version loading the build.
+     *   This argument cannot be {@code null}.
+     * @param mayReuseResults {@code false} if the results of the project info
+     *   builders stored by Gradle in previous loads of the build must not be
+     *   reused (e.g.: because the user explicitly requested the project to be
+     *   reloaded), {@code true} otherwise
+     */
+    public NbGradle18ModelLoader(
+            SettingsGradleDef settingsGradleDef,
+            OperationInitializer setup,
+            GradleTarget gradleTarget,
+            boolean mayReuseResults) {
         ExceptionHelper.checkNotNullArgument(settingsGradleDef, "settingsGradleDef");
         ExceptionHelper.checkNotNullArgument(setup, "setup");
         ExceptionHelper.checkNotNullArgument(gradleTarget, "gradleTarget");
@@ -50,6 +93,18 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
         this.settingsGradleDef = settingsGradleDef;
         this.gradleTarget = gradleTarget;
         this.setup = setup;
+        this.mayReuseResults = mayReuseResults;
+    }
+
+    private static String getResultCacheScope(Path buildKey, boolean mayReuseResults) {
+        String newScope = UUID.randomUUID().toString();
+        if (!mayReuseResults) {
+            RESULT_CACHE_SCOPES.put(buildKey, newScope);
+            return newScope;
+        }
+
+        String prevScope = RESULT_CACHE_SCOPES.putIfAbsent(buildKey, newScope);
+        return prevScope != null ? prevScope : newScope;
     }
 
     private static <E> void addAllNullSafe(Collection<? super E> collection, Collection<? extends E> toAdd) {
@@ -64,8 +119,52 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
             ProjectConnection connection,
             ProgressHandle progress) throws IOException, GradleModelLoadError {
 
-        ProjectModelFetcher modelFetcher = new ProjectModelFetcher(project, gradleTarget);
-        FetchedModelsOrError fetchedModelsOrError = modelFetcher.getModels(connection, setup);
+        ModelQueryEnvironment environment = ModelQueryEnvironment.fromSetup(setup);
+        ProjectModelFetcher modelFetcher = new ProjectModelFetcher(project, gradleTarget, environment);
+
+        Path buildKey = modelFetcher.getBuildKey(project);
+        long environmentFingerprint = environment.getFingerprint(BuildInputFingerprints.getDefault(), buildKey);
+
+        FetchedModelsCache.IncrementalQuery query = FETCHED_MODELS_CACHE.startQuery(
+                buildKey,
+                modelFetcher.getQuerySignature(),
+                environmentFingerprint,
+                project.getProjectDirectoryAsPath());
+
+        String resultCacheScope = getResultCacheScope(buildKey, mayReuseResults);
+
+        Set<String> projectsToQuery = query.getProjectsToQuery();
+        FetchedModels fetchedModels = fetchModels(project, modelFetcher, connection, projectsToQuery, resultCacheScope);
+        FetchedModels mergedModels = query.mergeWithCached(fetchedModels);
+        if (mergedModels == null) {
+            LOGGER.log(Level.INFO,
+                    "Unexpected projects in the build of {0}, reloading every project.",
+                    project.getProjectDirectoryAsFile());
+            mergedModels = fetchModels(project, modelFetcher, connection, null, resultCacheScope);
+        }
+        else if (projectsToQuery != null) {
+            LOGGER.log(Level.FINE,
+                    "Queried the models of the changed projects only: {0}",
+                    projectsToQuery);
+        }
+
+        query.storeModels(mergedModels);
+
+        progress.progress(NbStrings.getParsingModel());
+
+        ProjectModelParser parser = new ProjectModelParser(gradleTarget, project, settingsGradleDef, modelFetcher);
+        return parser.parseModel(mergedModels);
+    }
+
+    private FetchedModels fetchModels(
+            NbGradleProject project,
+            ProjectModelFetcher modelFetcher,
+            ProjectConnection connection,
+            Set<String> projectsToQuery,
+            String resultCacheScope) throws IOException, GradleModelLoadError {
+
+        FetchedModelsOrError fetchedModelsOrError
+                = modelFetcher.getModels(connection, setup, projectsToQuery, resultCacheScope);
         FetchedModels fetchedModels = fetchedModelsOrError.getModels();
         if (fetchedModels == null) {
             throw new GradleModelLoadError(
@@ -73,11 +172,7 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
                     fetchedModelsOrError.getBuildScriptEvaluationError(),
                     fetchedModelsOrError.getUnexpectedError());
         }
-
-        progress.progress(NbStrings.getParsingModel());
-
-        ProjectModelParser parser = new ProjectModelParser(gradleTarget, project, settingsGradleDef, modelFetcher);
-        return parser.parseModel(fetchedModels);
+        return fetchedModels;
     }
 
     private static File getProjectDirFromModels(FetchedProjectModels projectModels) {
@@ -206,16 +301,29 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
                     fetchedModels.getDefaultProjectModels(),
                     extensionModels);
 
-            List<NbGradleModel> otherModels = new ArrayList<>();
+            // The other models are parsed on demand, so that the main model
+            // can be used before the (possibly many) other models are parsed.
+            List<NbSupplier<NbGradleModel>> otherModelParsers = new ArrayList<>(otherProjectModels.size());
             for (FetchedProjectModels models: otherProjectModels) {
                 File projectDir = getProjectDirFromModels(models);
                 if (defaultProjectDir.equals(projectDir)) {
                     continue;
                 }
-                otherModels.add(parseModel(models, extensionModels));
+                otherModelParsers.add(otherModelParser(models, extensionModels));
             }
 
-            return new Result(mainModel, otherModels, issues);
+            return Result.lazyResult(mainModel, otherModelParsers, issues);
+        }
+
+        private NbSupplier<NbGradleModel> otherModelParser(
+                final FetchedProjectModels projectModels,
+                final Map<File, ProjectModelsOfExtensions> extensionModels) {
+            return new NbSupplier<NbGradleModel>() {
+                @Override
+                public NbGradleModel get() {
+                    return parseModel(projectModels, extensionModels);
+                }
+            };
         }
 
         private NbGradleModel parseModel(
@@ -342,8 +450,12 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
         private final Path settingsFile;
         private final Map<String, List<Class<?>>> toolingModelNeeds;
         private final GenericModelFetcher modelFetcher;
+        private final String querySignature;
 
-        public ProjectModelFetcher(NbGradleProject project, GradleTarget gradleTarget) {
+        public ProjectModelFetcher(
+                NbGradleProject project,
+                GradleTarget gradleTarget,
+                ModelQueryEnvironment environment) {
             this.settingsFile = NbGenericModelInfo.findSettingsGradle(
                     project.getProjectDirectoryAsPath(),
                     project.getScriptFileProvider());
@@ -356,9 +468,18 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
             Map<Object, List<GradleProjectInfoQuery2<?>>> projectInfoRequests
                     = new HashMap<>();
 
+            StringBuilder querySignatureBuilder = new StringBuilder();
+            querySignatureBuilder.append(gradleTarget.getGradleVersion().getVersion());
+            querySignatureBuilder.append('/');
+            querySignatureBuilder.append(gradleTarget.getJavaVersion().toString());
+            querySignatureBuilder.append('/');
+            querySignatureBuilder.append(environment.getSignature());
+
             List<Class<?>> models = new ArrayList<>();
             for (NbGradleExtensionRef extensionRef: extensions) {
                 String extensionName = extensionRef.getName();
+                querySignatureBuilder.append('/');
+                querySignatureBuilder.append(extensionName);
 
                 GradleModelDefQuery2 modelQuery = extensionRef.getModelNeeds().getQuery2();
                 GradleModelDef modelDef = modelQuery.getModelDef(gradleTarget);
@@ -369,10 +490,24 @@ public final class NbGradle18ModelLoader implements NbModelLoader {
             }
 
             modelFetcher = new GenericModelFetcher(buildInfoRequests, projectInfoRequests, models);
+            querySignature = querySignatureBuilder.toString();
+        }
+
+        public FetchedModelsOrError getModels(
+                ProjectConnection connection,
+                OperationInitializer init,
+                Set<String> projectsToQuery,
+                String resultCacheScope) throws IOException {
+            return modelFetcher.getModels(connection, init, projectsToQuery, resultCacheScope);
+        }
+
+        public Path getBuildKey(NbGradleProject project) {
+            Path result = settingsFile != null ? settingsFile.getParent() : null;
+            return result != null ? result : project.getProjectDirectoryAsPath();
         }
 
-        public FetchedModelsOrError getModels(ProjectConnection connection, OperationInitializer init) throws IOException {
-            return modelFetcher.getModels(connection, init);
+        public String getQuerySignature() {
+            return querySignature;
         }
 
         public Path getSettingsFile() {
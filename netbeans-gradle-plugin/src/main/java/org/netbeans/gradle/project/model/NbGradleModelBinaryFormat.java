@@ -0,0 +1,392 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.gradle.model.GenericProjectProperties;
+import org.netbeans.gradle.model.GradleTaskID;
+import org.netbeans.gradle.model.ProjectId;
+import org.netbeans.gradle.model.util.CollectionUtils;
+import org.netbeans.gradle.project.util.StringUtils;
+
+/**
+ * Defines the compact binary format of {@link SerializedNbGradleModels} used
+ * by the persistent model cache.
+ * <P>
+ * The format starts with a magic number and a format version followed by a
+ * table of every string (and path) referenced by the model. The project tree
+ * refers to strings by their index in this table and every collection size and
+ * index is written as a variable length integer. Extension models are stored in
+ * separate length prefixed sections, so that sections of extensions not needed
+ * by the reader can be skipped without decoding them.
+ */
+final class NbGradleModelBinaryFormat {
+    private static final int MAGIC = 0x4E42474D; // "NBGM"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    private static final int MAIN_PROJECT_IS_ROOT = 0;
+    private static final int MAIN_PROJECT_BY_PATH = 1;
+    private static final int MAIN_PROJECT_SEPARATE = 2;
+
+    /**
+     * Returns {@code true} if the given header (the first four bytes of a file)
+     * belongs to a file written by {@link #write(SerializedNbGradleModels, OutputStream) write}.
+     */
+    public static boolean isBinaryFormat(int header) {
+        return header == MAGIC;
+    }
+
+    /**
+     * Returns {@code true} if the given header (the first four bytes of a file)
+     * belongs to a file written with plain Java serialization by previous
+     * versions of the plugin.
+     */
+    public static boolean isJavaSerializationFormat(int header) {
+        return (header >>> 16) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    public static void write(SerializedNbGradleModels models, OutputStream output) throws IOException {
+        ModelWriter writer = new ModelWriter();
+        writer.writeModels(models);
+
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(MAGIC);
+        writeVarInt(dataOutput, FORMAT_VERSION);
+        writer.writeTo(dataOutput);
+        dataOutput.flush();
+    }
+
+    /**
+     * Reads the models from the given input skipping the header which must
+     * have been already read by the caller.
+     *
+     * @param input the input to read from. The stream must be positioned right
+     *   after the magic number. This argument cannot be {@code null}.
+     * @param neededExtensions the names of the extensions whose models are to
+     *   be retained. Models of other extensions are skipped without loading
+     *   them into memory. This argument cannot be {@code null}.
+     * @return the models read or {@code null} if the file was written by an
+     *   unsupported version of the format
+     */
+    public static SerializedNbGradleModels readAfterHeader(
+            InputStream input,
+            Set<String> neededExtensions) throws IOException {
+
+        DataInputStream dataInput = new DataInputStream(input);
+        int version = readVarInt(dataInput);
+        if (version != FORMAT_VERSION) {
+            return null;
+        }
+
+        ModelReader reader = new ModelReader(dataInput);
+        return reader.readModels(neededExtensions);
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            output.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        output.writeByte(remaining);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length integer.");
+    }
+
+    private static void skipFully(DataInputStream input, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = input.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static final class ModelWriter {
+        private final Map<String, Integer> stringIndexes;
+        private final List<String> strings;
+
+        private final ByteArrayOutputStream bodyBytes;
+        private final DataOutputStream body;
+
+        public ModelWriter() {
+            this.stringIndexes = new HashMap<>();
+            this.strings = new ArrayList<>();
+            this.bodyBytes = new ByteArrayOutputStream(4 * 1024);
+            this.body = new DataOutputStream(bodyBytes);
+        }
+
+        public void writeModels(SerializedNbGradleModels models) throws IOException {
+            writeGenericInfo(models.getGenericInfo());
+            body.writeBoolean(models.isRootWithoutSettingsGradle());
+
+            Map<String, byte[]> extensionModels = models.getExtensionModels();
+            writeVarInt(body, extensionModels.size());
+            for (Map.Entry<String, byte[]> entry: extensionModels.entrySet()) {
+                byte[] extensionModel = entry.getValue();
+
+                writeString(entry.getKey());
+                writeVarInt(body, extensionModel.length);
+                body.write(extensionModel);
+            }
+            body.flush();
+        }
+
+        public void writeTo(DataOutputStream output) throws IOException {
+            writeVarInt(output, strings.size());
+            for (String str: strings) {
+                byte[] encoded = str.getBytes(StringUtils.UTF8);
+                writeVarInt(output, encoded.length);
+                output.write(encoded);
+            }
+
+            bodyBytes.writeTo(output);
+        }
+
+        private void writeGenericInfo(NbGenericModelInfo genericInfo) throws IOException {
+            body.writeLong(genericInfo.getCreateTimeEpochMs());
+            writePath(genericInfo.getSettingsFile());
+
+            NbGradleMultiProjectDef projectDef = genericInfo.getProjectDef();
+            NbGradleProjectTree rootProject = projectDef.getRootProject();
+            NbGradleProjectTree mainProject = projectDef.getMainProject();
+
+            writeTree(rootProject);
+
+            if (mainProject == rootProject) {
+                writeVarInt(body, MAIN_PROJECT_IS_ROOT);
+            }
+            else if (rootProject.findByPath(mainProject.getProjectFullName()) == mainProject) {
+                writeVarInt(body, MAIN_PROJECT_BY_PATH);
+                writeString(mainProject.getProjectFullName());
+            }
+            else {
+                writeVarInt(body, MAIN_PROJECT_SEPARATE);
+                writeTree(mainProject);
+            }
+        }
+
+        private void writeTree(NbGradleProjectTree tree) throws IOException {
+            GenericProjectProperties properties = tree.getGenericProperties();
+            ProjectId projectId = properties.getProjectId();
+
+            writeString(projectId.getGroup());
+            writeString(projectId.getName());
+            writeString(projectId.getVersion());
+            writeString(properties.getProjectFullName());
+            writeString(properties.getProjectDir().getPath());
+            writeString(properties.getBuildScript() != null ? properties.getBuildScript().getPath() : null);
+            writeString(properties.getBuildDir().getPath());
+
+            Collection<GradleTaskID> tasks = tree.getTasks();
+            writeVarInt(body, tasks.size());
+            for (GradleTaskID task: tasks) {
+                writeString(task.getName());
+                writeString(task.getFullName());
+            }
+
+            Collection<NbGradleProjectTree> children = tree.getChildren();
+            writeVarInt(body, children.size());
+            for (NbGradleProjectTree child: children) {
+                writeTree(child);
+            }
+        }
+
+        private void writePath(Path path) throws IOException {
+            writeString(path != null ? path.toString() : null);
+        }
+
+        private void writeString(String str) throws IOException {
+            // Zero is reserved for null.
+            if (str == null) {
+                writeVarInt(body, 0);
+                return;
+            }
+
+            Integer index = stringIndexes.get(str);
+            if (index == null) {
+                index = strings.size();
+                strings.add(str);
+                stringIndexes.put(str, index);
+            }
+            writeVarInt(body, index + 1);
+        }
+    }
+
+    private static final class ModelReader {
+        private final DataInputStream input;
+        private String[] strings;
+
+        public ModelReader(DataInputStream input) {
+            this.input = input;
+            this.strings = new String[0];
+        }
+
+        public SerializedNbGradleModels readModels(Set<String> neededExtensions) throws IOException {
+            readStringTable();
+
+            NbGenericModelInfo genericInfo = readGenericInfo();
+            boolean rootWithoutSettingsGradle = input.readBoolean();
+
+            int extensionCount = readVarInt(input);
+            Map<String, byte[]> extensionModels = CollectionUtils.newHashMap(extensionCount);
+            for (int i = 0; i < extensionCount; i++) {
+                String extensionName = readString();
+                int length = readVarInt(input);
+
+                if (neededExtensions.contains(extensionName)) {
+                    byte[] extensionModel = new byte[length];
+                    input.readFully(extensionModel);
+                    extensionModels.put(extensionName, extensionModel);
+                }
+                else {
+                    skipFully(input, length);
+                }
+            }
+
+            return SerializedNbGradleModels.create(genericInfo, extensionModels, rootWithoutSettingsGradle);
+        }
+
+        private void readStringTable() throws IOException {
+            int count = readVarInt(input);
+            String[] result = new String[count];
+
+            byte[] buffer = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = readVarInt(input);
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, 2 * buffer.length)];
+                }
+                input.readFully(buffer, 0, length);
+                result[i] = new String(buffer, 0, length, StringUtils.UTF8);
+            }
+
+            strings = result;
+        }
+
+        private NbGenericModelInfo readGenericInfo() throws IOException {
+            long createTimeEpochMs = input.readLong();
+            Path settingsFile = readPath();
+
+            NbGradleProjectTree rootProject = readTree();
+            NbGradleProjectTree mainProject;
+
+            int mainProjectKind = readVarInt(input);
+            switch (mainProjectKind) {
+                case MAIN_PROJECT_IS_ROOT:
+                    mainProject = rootProject;
+                    break;
+                case MAIN_PROJECT_BY_PATH:
+                    mainProject = rootProject.findByPath(readNonNullString());
+                    if (mainProject == null) {
+                        throw new IOException("Main project cannot be found in the project tree.");
+                    }
+                    break;
+                case MAIN_PROJECT_SEPARATE:
+                    mainProject = readTree();
+                    break;
+                default:
+                    throw new IOException("Unexpected main project kind: " + mainProjectKind);
+            }
+
+            NbGradleMultiProjectDef projectDef = new NbGradleMultiProjectDef(rootProject, mainProject);
+            return new NbGenericModelInfo(projectDef, settingsFile, createTimeEpochMs);
+        }
+
+        private NbGradleProjectTree readTree() throws IOException {
+            String group = readNonNullString();
+            String name = readNonNullString();
+            String version = readNonNullString();
+            String projectFullName = readNonNullString();
+            String projectDir = readNonNullString();
+            String buildScript = readString();
+            String buildDir = readNonNullString();
+
+            GenericProjectProperties properties = new GenericProjectProperties(
+                    new ProjectId(group, name, version),
+                    projectFullName,
+                    new File(projectDir),
+                    buildScript != null ? new File(buildScript) : null,
+                    new File(buildDir));
+
+            int taskCount = readVarInt(input);
+            List<GradleTaskID> tasks = new ArrayList<>(taskCount);
+            for (int i = 0; i < taskCount; i++) {
+                String taskName = readString();
+                String taskFullName = readString();
+                tasks.add(new GradleTaskID(taskName, taskFullName));
+            }
+
+            int childCount = readVarInt(input);
+            List<NbGradleProjectTree> children;
+            if (childCount == 0) {
+                children = Collections.emptyList();
+            }
+            else {
+                children = new ArrayList<>(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    children.add(readTree());
+                }
+            }
+
+            return new NbGradleProjectTree(properties, tasks, children);
+        }
+
+        private Path readPath() throws IOException {
+            String path = readString();
+            return path != null ? Paths.get(path) : null;
+        }
+
+        private String readNonNullString() throws IOException {
+            String result = readString();
+            if (result == null) {
+                throw new IOException("Unexpected null string in the model.");
+            }
+            return result;
+        }
+
+        private String readString() throws IOException {
+            int index = readVarInt(input);
+            if (index == 0) {
+                return null;
+            }
+
+            if (index > strings.length) {
+                throw new IOException("String index is out of bounds: " + index);
+            }
+            return strings[index - 1];
+        }
+    }
+
+    private NbGradleModelBinaryFormat() {
+        throw new AssertionError();
+    }
+}
@@ -1,6 +1,7 @@
 package org.netbeans.gradle.project.model;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -10,12 +11,22 @@ import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.gradle.model.util.CollectionUtils;
 import org.netbeans.gradle.project.NbGradleProject;
 import org.netbeans.gradle.project.model.issue.ModelLoadIssue;
+import org.netbeans.gradle.project.util.NbSupplier;
 
 public interface NbModelLoader {
+    /**
+     * Defines the models loaded by a single model loading request.
+     * <P>
+     * The models of the other projects might be parsed lazily, so that they
+     * can be published one by one (after the main model). Therefore, the
+     * methods of this class must be called from the thread which requested
+     * the models to be loaded.
+     */
     public static final class Result {
         private final NbGradleModel mainModel;
-        private final List<NbGradleModel> otherModels;
-        private final List<ModelLoadIssue> issues;
+        private final List<NbSupplier<? extends NbGradleModel>> otherModelParsers;
+        private final Collection<? extends ModelLoadIssue> issues;
+        private List<NbGradleModel> otherModels;
 
         public Result(NbGradleModel mainModel, Collection<NbGradleModel> otherModels) {
             this(mainModel, otherModels, Collections.<ModelLoadIssue>emptyList());
@@ -31,22 +42,102 @@ public interface NbModelLoader {
 
             this.mainModel = mainModel;
             this.otherModels = CollectionUtils.copyNullSafeList(otherModels);
+            this.otherModelParsers = Collections.emptyList();
             this.issues = CollectionUtils.copyNullSafeList(issues);
         }
 
+        private Result(
+                NbGradleModel mainModel,
+                List<? extends NbSupplier<? extends NbGradleModel>> otherModelParsers,
+                Collection<? extends ModelLoadIssue> issues) {
+            this.mainModel = mainModel;
+            this.otherModels = null;
+            this.otherModelParsers = CollectionUtils.copyNullSafeList(otherModelParsers);
+            this.issues = issues;
+        }
+
+        /**
+         * Creates a result whose other models are only parsed when they are
+         * requested.
+         *
+         * @param mainModel the model of the project for which the models were
+         *   requested. This argument cannot be {@code null}.
+         * @param otherModelParsers the parsers of the models of the other
+         *   projects. The parsers are called at most once. This argument
+         *   cannot be {@code null}.
+         * @param issues the issues found while parsing the models. This
+         *   collection is not copied, so the parsers might add new issues to
+         *   it. This argument cannot be {@code null}.
+         * @return the lazily parsed result. This method never returns
+         *   {@code null}.
+         */
+        public static Result lazyResult(
+                NbGradleModel mainModel,
+                List<? extends NbSupplier<? extends NbGradleModel>> otherModelParsers,
+                Collection<? extends ModelLoadIssue> issues) {
+            ExceptionHelper.checkNotNullArgument(mainModel, "mainModel");
+            ExceptionHelper.checkNotNullArgument(otherModelParsers, "otherModelParsers");
+            ExceptionHelper.checkNotNullArgument(issues, "issues");
+
+            return new Result(mainModel, otherModelParsers, issues);
+        }
+
         public NbGradleModel getMainModel() {
             return mainModel;
         }
 
+        public int getOtherModelCount() {
+            return otherModels != null ? otherModels.size() : otherModelParsers.size();
+        }
+
+        /**
+         * Returns the models of the other projects, parsing all of them if
+         * they were not parsed yet.
+         */
         public List<NbGradleModel> getOtherModels() {
+            if (otherModels == null) {
+                List<NbGradleModel> parsedModels = new ArrayList<>(otherModelParsers.size());
+                for (NbSupplier<? extends NbGradleModel> parser: otherModelParsers) {
+                    parsedModels.add(parser.get());
+                }
+                otherModels = Collections.unmodifiableList(parsedModels);
+            }
             return otherModels;
         }
 
+        /**
+         * Parses the models of the other projects one by one and notifies the
+         * given listener after each model. Unlike {@link #getOtherModels()},
+         * this method does not retain the parsed models.
+         */
+        public void parseOtherModels(ParsedModelListener listener) {
+            ExceptionHelper.checkNotNullArgument(listener, "listener");
+
+            if (otherModels != null) {
+                for (NbGradleModel model: otherModels) {
+                    listener.onModelParsed(model);
+                }
+                return;
+            }
+
+            for (NbSupplier<? extends NbGradleModel> parser: otherModelParsers) {
+                listener.onModelParsed(parser.get());
+            }
+        }
+
+        /**
+         * Returns the issues found while parsing the models. Issues of the
+         * other projects are only known after their models were parsed.
+         */
         public List<ModelLoadIssue> getIssues() {
-            return issues;
+            return CollectionUtils.copyNullSafeList(issues);
         }
     }
 
+    public interface ParsedModelListener {
+        public void onModelParsed(NbGradleModel model);
+    }
+
     public Result loadModels(
             NbGradleProject project,
             ProjectConnection connection,
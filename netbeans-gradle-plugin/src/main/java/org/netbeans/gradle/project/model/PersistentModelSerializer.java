@@ -0,0 +1,10 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface PersistentModelSerializer<T> {
+    public void writeModel(T model, OutputStream output) throws IOException;
+    public T tryReadModel(InputStream input) throws IOException;
+}
@@ -1,13 +1,27 @@
 package org.netbeans.gradle.project.model;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.model.util.CollectionUtils;
 import org.netbeans.gradle.project.NbGradleProject;
-import org.netbeans.gradle.project.util.SerializationUtils2;
+import org.netbeans.gradle.project.extensions.NbGradleExtensionRef;
 
 public final class PersistentProjectModelStoreFactory {
+    private static final Logger LOGGER = Logger.getLogger(PersistentProjectModelStoreFactory.class.getName());
+
     public PersistentProjectModelStoreFactory() {
     }
 
@@ -19,18 +33,37 @@ public final class PersistentProjectModelStoreFactory {
         return new PersistentProjectModelStore(ownerProject);
     }
 
+    public PersistentModelSerializer<NbGradleModel> createModelSerializer(NbGradleProject ownerProject) {
+        return new ProjectModelSerializer(ownerProject);
+    }
+
+    private static Set<String> getExtensionNames(NbGradleProject ownerProject) {
+        Collection<? extends NbGradleExtensionRef> extensionRefs = ownerProject.getExtensions().getExtensionRefs();
+        Set<String> result = CollectionUtils.newHashSet(extensionRefs.size());
+        for (NbGradleExtensionRef extensionRef: extensionRefs) {
+            result.add(extensionRef.getName());
+        }
+        return result;
+    }
+
+    private static void saveSerializedModels(SerializedNbGradleModels toSave, Path dest) throws IOException {
+        Path destDir = dest.getParent();
+        if (destDir != null) {
+            Files.createDirectories(destDir);
+        }
+
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(dest))) {
+            NbGradleModelBinaryFormat.write(toSave, output);
+        }
+    }
+
     private enum ProjectModelPersister implements ModelPersister<NbGradleModel> {
         INSANCE;
 
         @Override
         public void persistModel(NbGradleModel model, Path dest) throws IOException {
-            Path destDir = dest.getParent();
-            if (destDir != null) {
-                Files.createDirectories(destDir);
-            }
-
             SerializedNbGradleModels toSave = SerializedNbGradleModels.createSerialized(model);
-            SerializationUtils2.serializeToFile(dest, toSave);
+            saveSerializedModels(toSave, dest);
         }
     }
 
@@ -53,8 +86,84 @@ public final class PersistentProjectModelStoreFactory {
                 return null;
             }
 
+            SerializedNbGradleModels serializedModel;
+            boolean legacyFormat;
+
+            try (InputStream input = new BufferedInputStream(Files.newInputStream(src))) {
+                input.mark(Integer.SIZE / Byte.SIZE);
+
+                int header;
+                try {
+                    header = new DataInputStream(input).readInt();
+                } catch (EOFException ex) {
+                    return null;
+                }
+
+                if (NbGradleModelBinaryFormat.isBinaryFormat(header)) {
+                    legacyFormat = false;
+                    serializedModel = NbGradleModelBinaryFormat.readAfterHeader(input, getExtensionNames(ownerProject));
+                }
+                else if (NbGradleModelBinaryFormat.isJavaSerializationFormat(header)) {
+                    legacyFormat = true;
+                    input.reset();
+                    serializedModel = readJavaSerialized(input);
+                }
+                else {
+                    LOGGER.log(Level.INFO, "Unknown format of the persistent model cache file: {0}", src);
+                    return null;
+                }
+            }
+
+            if (serializedModel == null) {
+                return null;
+            }
+
+            if (legacyFormat) {
+                migrateLegacyFile(serializedModel, src);
+            }
+
+            return serializedModel.deserializeModel(ownerProject);
+        }
+
+        private static SerializedNbGradleModels readJavaSerialized(InputStream input) throws IOException {
+            try (ObjectInputStream objInput = new ObjectInputStream(input)) {
+                return (SerializedNbGradleModels)objInput.readObject();
+            } catch (ClassNotFoundException | ClassCastException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        private static void migrateLegacyFile(SerializedNbGradleModels serializedModel, Path dest) {
+            try {
+                saveSerializedModels(serializedModel, dest);
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to convert persistent model cache file to the binary format: " + dest, ex);
+            }
+        }
+    }
+
+    private static final class ProjectModelSerializer implements PersistentModelSerializer<NbGradleModel> {
+        private final NbGradleProject ownerProject;
+
+        public ProjectModelSerializer(NbGradleProject ownerProject) {
+            ExceptionHelper.checkNotNullArgument(ownerProject, "ownerProject");
+            this.ownerProject = ownerProject;
+        }
+
+        @Override
+        public void writeModel(NbGradleModel model, OutputStream output) throws IOException {
+            NbGradleModelBinaryFormat.write(SerializedNbGradleModels.createSerialized(model), output);
+        }
+
+        @Override
+        public NbGradleModel tryReadModel(InputStream input) throws IOException {
+            DataInputStream dataInput = new DataInputStream(input);
+            if (!NbGradleModelBinaryFormat.isBinaryFormat(dataInput.readInt())) {
+                return null;
+            }
+
             SerializedNbGradleModels serializedModel
-                    = (SerializedNbGradleModels)SerializationUtils2.deserializeFile(src);
+                    = NbGradleModelBinaryFormat.readAfterHeader(dataInput, getExtensionNames(ownerProject));
             return serializedModel != null
                     ? serializedModel.deserializeModel(ownerProject)
                     : null;
@@ -0,0 +1,195 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.properties.SettingsFiles;
+import org.netbeans.gradle.project.util.NbFunction;
+import org.netbeans.gradle.project.util.NbTaskExecutors;
+
+/**
+ * Defines a {@code PersistentModelCache} storing the models of all the
+ * projects of a build in a single {@link ModelSegmentFile}. The segment file
+ * is stored in the cache directory of the root project.
+ * <P>
+ * Models not found in the segment file are looked up in the fallback cache
+ * (if there is any) and are copied into the segment file if found there.
+ * <P>
+ * The models are written to the segment file through a
+ * {@link ModelSegmentWriter write-behind stage}, so
+ * {@link #saveGradleModels(Collection) saveGradleModels} only serializes the
+ * models and does not wait for them to be written to the disk.
+ */
+public final class SegmentFileModelCache<T> implements PersistentModelCache<T> {
+    private static final Logger LOGGER = Logger.getLogger(SegmentFileModelCache.class.getName());
+
+    private static final String SEGMENT_FILE_NAME = "project-models.seg";
+
+    private static final long DEFAULT_WRITE_DELAY_MS = 1000;
+    private static final long DEFAULT_MAX_BYTES_PER_SECOND = 8L * 1024 * 1024;
+
+    private static final ConcurrentMap<Path, ModelSegmentFile> SEGMENT_FILES = new ConcurrentHashMap<>();
+
+    private static final ModelSegmentWriter DEFAULT_WRITER = new ModelSegmentWriter(
+            NbTaskExecutors.newExecutor("Gradle-Project-Model-Writer", 1),
+            DEFAULT_WRITE_DELAY_MS,
+            DEFAULT_MAX_BYTES_PER_SECOND);
+
+    private static final NbFunction<Path, Path> DEFAULT_SEGMENT_FILE_PROVIDER = new NbFunction<Path, Path>() {
+        @Override
+        public Path apply(Path rootPath) {
+            return SettingsFiles.getCacheDir(rootPath).resolve(SEGMENT_FILE_NAME);
+        }
+    };
+
+    private final PersistentModelSerializer<T> modelSerializer;
+    private final NbFunction<? super T, ? extends PersistentModelKey> modelKeyFactory;
+    private final NbFunction<? super Path, ? extends Path> segmentFileProvider;
+    private final PersistentModelCache<T> fallbackCache;
+    private final ModelSegmentWriter writer;
+
+    public SegmentFileModelCache(
+            PersistentModelSerializer<T> modelSerializer,
+            NbFunction<? super T, ? extends PersistentModelKey> modelKeyFactory,
+            PersistentModelCache<T> fallbackCache) {
+        this(modelSerializer, modelKeyFactory, DEFAULT_SEGMENT_FILE_PROVIDER, fallbackCache, DEFAULT_WRITER);
+    }
+
+    /**
+     * Creates a new {@code SegmentFileModelCache}.
+     *
+     * @param modelSerializer the serializer converting the models to bytes and
+     *   back. This argument cannot be {@code null}.
+     * @param modelKeyFactory the function returning the key of a model. This
+     *   argument cannot be {@code null}.
+     * @param segmentFileProvider the function returning the path of the
+     *   segment file for the root directory of a build. This argument cannot be
+     *   {@code null}.
+     * @param fallbackCache the cache to read the models not found in the
+     *   segment file from. This argument can be {@code null}, if there is no
+     *   such cache.
+     * @param writer the write-behind stage writing the serialized models to
+     *   the segment files. This argument cannot be {@code null}.
+     */
+    public SegmentFileModelCache(
+            PersistentModelSerializer<T> modelSerializer,
+            NbFunction<? super T, ? extends PersistentModelKey> modelKeyFactory,
+            NbFunction<? super Path, ? extends Path> segmentFileProvider,
+            PersistentModelCache<T> fallbackCache,
+            ModelSegmentWriter writer) {
+        ExceptionHelper.checkNotNullArgument(modelSerializer, "modelSerializer");
+        ExceptionHelper.checkNotNullArgument(modelKeyFactory, "modelKeyFactory");
+        ExceptionHelper.checkNotNullArgument(segmentFileProvider, "segmentFileProvider");
+        ExceptionHelper.checkNotNullArgument(writer, "writer");
+
+        this.modelSerializer = modelSerializer;
+        this.modelKeyFactory = modelKeyFactory;
+        this.segmentFileProvider = segmentFileProvider;
+        this.fallbackCache = fallbackCache;
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the models saved through the default write-behind stage to the
+     * disk and waits until they are written. This method is intended to be
+     * called before the IDE exits.
+     */
+    public static void flushPendingWrites() {
+        DEFAULT_WRITER.flush();
+    }
+
+    public static ModelSegmentWriter.Statistics getWriteStatistics() {
+        return DEFAULT_WRITER.getStatistics();
+    }
+
+    private ModelSegmentFile getSegmentFile(PersistentModelKey modelKey) {
+        Path segmentFilePath = segmentFileProvider.apply(modelKey.getRootPath());
+
+        ModelSegmentFile result = SEGMENT_FILES.get(segmentFilePath);
+        if (result == null) {
+            ModelSegmentFile newSegmentFile = new ModelSegmentFile(segmentFilePath);
+            result = SEGMENT_FILES.putIfAbsent(segmentFilePath, newSegmentFile);
+            if (result == null) {
+                result = newSegmentFile;
+            }
+        }
+        return result;
+    }
+
+    private static String getRecordKey(PersistentModelKey modelKey) {
+        return modelKey.getRootPath().toString() + "\n" + modelKey.getProjectDir().toString();
+    }
+
+    @Override
+    public T tryGetModel(PersistentModelKey modelKey) throws IOException {
+        ExceptionHelper.checkNotNullArgument(modelKey, "modelKey");
+
+        ModelSegmentFile segmentFile = getSegmentFile(modelKey);
+        String recordKey = getRecordKey(modelKey);
+
+        byte[] serializedModel = writer.tryGetPending(segmentFile, recordKey);
+        if (serializedModel == null) {
+            serializedModel = segmentFile.tryRead(recordKey);
+        }
+        if (serializedModel != null) {
+            T result = modelSerializer.tryReadModel(new ByteArrayInputStream(serializedModel));
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return tryGetFromFallback(modelKey);
+    }
+
+    private T tryGetFromFallback(PersistentModelKey modelKey) throws IOException {
+        if (fallbackCache == null) {
+            return null;
+        }
+
+        T result = fallbackCache.tryGetModel(modelKey);
+        if (result != null) {
+            try {
+                saveGradleModels(Collections.singleton(result));
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to copy model into the segment file: " + modelKey, ex);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void saveGradleModels(Collection<? extends T> models) throws IOException {
+        Map<ModelSegmentFile, Map<String, byte[]>> recordsBySegments = new HashMap<>();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        for (T model: models) {
+            PersistentModelKey modelKey = modelKeyFactory.apply(model);
+
+            buffer.reset();
+            modelSerializer.writeModel(model, buffer);
+
+            ModelSegmentFile segmentFile = getSegmentFile(modelKey);
+            Map<String, byte[]> records = recordsBySegments.get(segmentFile);
+            if (records == null) {
+                records = new LinkedHashMap<>();
+                recordsBySegments.put(segmentFile, records);
+            }
+            records.put(getRecordKey(modelKey), buffer.toByteArray());
+        }
+
+        for (Map.Entry<ModelSegmentFile, Map<String, byte[]>> entry: recordsBySegments.entrySet()) {
+            writer.write(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.gradle.model.util.CollectionUtils;
 import org.netbeans.gradle.model.util.SerializationCache;
 import org.netbeans.gradle.model.util.SerializationCaches;
@@ -34,6 +35,16 @@ public final class SerializedNbGradleModels implements Serializable {
         this.rootWithoutSettingsGradle = rootWithoutSettingsGradle;
     }
 
+    static SerializedNbGradleModels create(
+            NbGenericModelInfo genericInfo,
+            Map<String, byte[]> extensionModels,
+            boolean rootWithoutSettingsGradle) {
+        ExceptionHelper.checkNotNullArgument(genericInfo, "genericInfo");
+        ExceptionHelper.checkNotNullArgument(extensionModels, "extensionModels");
+
+        return new SerializedNbGradleModels(genericInfo, extensionModels, rootWithoutSettingsGradle);
+    }
+
     public static SerializedNbGradleModels createSerialized(NbGradleModel model) {
         Map<String, Object> extensionModels = model.getExtensionModels();
         Map<String, byte[]> serializedModels = CollectionUtils.newHashMap(extensionModels.size());
@@ -60,6 +71,18 @@ public final class SerializedNbGradleModels implements Serializable {
         return new SerializedNbGradleModels(model.getGenericInfo(), serializedModels, model.isRootWithoutSettingsGradle());
     }
 
+    NbGenericModelInfo getGenericInfo() {
+        return genericInfo;
+    }
+
+    Map<String, byte[]> getExtensionModels() {
+        return extensionModels;
+    }
+
+    boolean isRootWithoutSettingsGradle() {
+        return rootWithoutSettingsGradle;
+    }
+
     public NbGradleModel deserializeModel(NbGradleProject ownerProject) {
         SerializationCache serializationCache = SerializationCaches.getDefault();
         Map<String, Object> deserializedModels = CollectionUtils.newHashMap(extensionModels.size());
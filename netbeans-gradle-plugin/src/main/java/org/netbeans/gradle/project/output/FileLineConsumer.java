@@ -1,11 +1,14 @@
 package org.netbeans.gradle.project.output;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public final class FileLineConsumer implements OutputLinkFinder {
+public final class FileLineConsumer implements KeywordLinkFinder {
     private static final Logger LOGGER = Logger.getLogger(FileLineConsumer.class.getName());
+    private static final Collection<String> KEYWORDS = Collections.singleton(":");
 
     private static int trimEndIndex(String str, int endIndex) {
         for (int i = endIndex - 1; i >= 0; i--) {
@@ -50,6 +53,11 @@ public final class FileLineConsumer implements OutputLinkFinder {
         }
     }
 
+    @Override
+    public Collection<String> getKeywords() {
+        return KEYWORDS;
+    }
+
     @Override
     public OutputLinkDef tryFindLink(String line) {
         int sepIndex = line.indexOf(':');
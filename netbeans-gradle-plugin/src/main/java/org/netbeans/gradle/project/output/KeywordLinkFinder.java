@@ -0,0 +1,22 @@
+package org.netbeans.gradle.project.output;
+
+import java.util.Collection;
+
+/**
+ * Defines an {@code OutputLinkFinder} which can only find a link in lines
+ * containing at least one of its keywords. This allows the lines to be
+ * pre-filtered before calling {@link #tryFindLink(String) tryFindLink}.
+ */
+public interface KeywordLinkFinder extends OutputLinkFinder {
+    /**
+     * Returns the keywords of which at least one must be contained by a line
+     * (ignoring case) for this link finder to find a link in it. Returning an
+     * empty collection means that this link finder must be called for every
+     * line.
+     *
+     * @return the keywords of which at least one must be contained by a line
+     *   for this link finder to find a link in it. This method never returns
+     *   {@code null}.
+     */
+    public Collection<String> getKeywords();
+}
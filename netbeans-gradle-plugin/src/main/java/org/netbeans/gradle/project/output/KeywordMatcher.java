@@ -0,0 +1,185 @@
+package org.netbeans.gradle.project.output;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Finds which groups of keywords occur in a string by scanning the string only
+ * once (using the Aho-Corasick algorithm). Keywords are matched ignoring case.
+ * There can be at most 64 groups, so that the matching groups can be
+ * returned as a bit mask.
+ * <P>
+ * Instances of this class are immutable (after {@link Builder#create() created}),
+ * so they can be used by multiple threads concurrently.
+ */
+public final class KeywordMatcher {
+    public static final int MAX_GROUP_COUNT = Long.SIZE;
+
+    private final Node root;
+    private final long allGroups;
+
+    private KeywordMatcher(Builder builder) {
+        this.root = builder.root;
+        this.allGroups = builder.allGroups;
+        buildFailureLinks(root);
+    }
+
+    private static void buildFailureLinks(Node root) {
+        Deque<Node> queue = new ArrayDeque<>();
+        for (int i = 0; i < root.childCount; i++) {
+            Node child = root.children[i];
+            child.failure = root;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (int i = 0; i < node.childCount; i++) {
+                char key = node.keys[i];
+                Node child = node.children[i];
+
+                Node failure = node.failure;
+                while (failure != null && failure.tryGetChild(key) == null) {
+                    failure = failure.failure;
+                }
+                child.failure = failure != null ? failure.tryGetChild(key) : root;
+                child.groups |= child.failure.groups;
+
+                queue.add(child);
+            }
+        }
+    }
+
+    private static char normalizeChar(char ch) {
+        return Character.toLowerCase(ch);
+    }
+
+    /**
+     * Returns the bit mask of the groups having at least one of their keywords
+     * in the given string. That is, bit {@code n} of the result is set if
+     * the string contains a keyword of group {@code n}.
+     */
+    public long findMatchingGroups(CharSequence str) {
+        ExceptionHelper.checkNotNullArgument(str, "str");
+
+        long result = 0;
+        Node state = root;
+
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char ch = normalizeChar(str.charAt(i));
+
+            Node next = state.tryGetChild(ch);
+            while (next == null && state != root) {
+                state = state.failure;
+                next = state.tryGetChild(ch);
+            }
+            state = next != null ? next : root;
+
+            result |= state.groups;
+            if (result == allGroups) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public static final class Builder {
+        private final Node root;
+        private long allGroups;
+        private boolean created;
+
+        public Builder() {
+            this.root = new Node();
+            this.allGroups = 0;
+            this.created = false;
+        }
+
+        /**
+         * Adds keywords to the given group.
+         *
+         * @param groupIndex the index of the group. This argument must be
+         *   between zero and 63 (inclusive).
+         * @param keywords the keywords of the group. The keywords cannot be
+         *   empty strings. This argument cannot be {@code null}.
+         */
+        public void addKeywords(int groupIndex, Collection<String> keywords) {
+            ExceptionHelper.checkArgumentInRange(groupIndex, 0, MAX_GROUP_COUNT - 1, "groupIndex");
+            ExceptionHelper.checkNotNullElements(keywords, "keywords");
+            if (created) {
+                throw new IllegalStateException("The matcher has already been created.");
+            }
+
+            long groupMask = 1L << groupIndex;
+            for (String keyword: keywords) {
+                if (keyword.isEmpty()) {
+                    throw new IllegalArgumentException("Keywords cannot be empty.");
+                }
+
+                Node node = root;
+                for (int i = 0; i < keyword.length(); i++) {
+                    node = node.getOrAddChild(normalizeChar(keyword.charAt(i)));
+                }
+                node.groups |= groupMask;
+                allGroups |= groupMask;
+            }
+        }
+
+        public KeywordMatcher create() {
+            if (created) {
+                throw new IllegalStateException("The matcher has already been created.");
+            }
+            created = true;
+            return new KeywordMatcher(this);
+        }
+    }
+
+    private static final class Node {
+        private char[] keys;
+        private Node[] children;
+        private int childCount;
+
+        private Node failure;
+        private long groups;
+
+        public Node() {
+            this.keys = new char[0];
+            this.children = new Node[0];
+            this.childCount = 0;
+            this.failure = null;
+            this.groups = 0;
+        }
+
+        public Node tryGetChild(char key) {
+            char[] currentKeys = keys;
+            for (int i = 0; i < childCount; i++) {
+                if (currentKeys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        public Node getOrAddChild(char key) {
+            Node result = tryGetChild(key);
+            if (result != null) {
+                return result;
+            }
+
+            if (childCount == keys.length) {
+                int newCapacity = Math.max(2, 2 * childCount);
+                keys = Arrays.copyOf(keys, newCapacity);
+                children = Arrays.copyOf(children, newCapacity);
+            }
+
+            result = new Node();
+            keys[childCount] = key;
+            children[childCount] = result;
+            childCount++;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.netbeans.gradle.project.output;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.concurrent.CancelableTask;
+import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.util.NbTaskExecutors;
+
+/**
+ * Defines a single queue of the lines written to {@link LineOutputWriter}
+ * instances. The queued lines are passed to the handlers of their writers in
+ * the order they were queued, even if they were written to different writers.
+ * So the standard output and the standard error of the same output tab should
+ * share the same dispatcher to keep their lines in order.
+ * <P>
+ * The lines are passed to the handlers in batches on a background thread. If
+ * the handlers cannot keep up with the writers and the number of queued lines
+ * reaches a limit, the writing thread processes the queued lines itself (still
+ * in the order they were queued), so the queue cannot grow without bound.
+ * <P>
+ * The methods of the handlers are never called concurrently by the same
+ * dispatcher.
+ */
+public final class LineOutputDispatcher {
+    private static final int DEFAULT_MAX_QUEUED_LINES = 4096;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final TaskExecutor DEFAULT_EXECUTOR
+            = NbTaskExecutors.newExecutor("Gradle-Output-Dispatcher", getDefaultExecutorThreadCount());
+
+    private final TaskExecutor executor;
+    private final int maxQueuedLines;
+
+    private final Queue<QueuedLine> queuedLines;
+    private final AtomicInteger queuedLineCount;
+    private final AtomicBoolean dispatchScheduled;
+    private final Lock dispatchLock;
+    private final List<QueuedLine> batch;
+    private final Set<LineOutputWriter> writersToFlush;
+
+    public LineOutputDispatcher() {
+        this(DEFAULT_EXECUTOR, DEFAULT_MAX_QUEUED_LINES);
+    }
+
+    /**
+     * Creates a new {@code LineOutputDispatcher} with an empty queue.
+     *
+     * @param executor the executor on which the lines are passed to the
+     *   handlers. This argument cannot be {@code null}.
+     * @param maxQueuedLines the number of queued lines after which the
+     *   writing thread processes the queued lines itself. This argument must
+     *   be greater than zero.
+     */
+    public LineOutputDispatcher(TaskExecutor executor, int maxQueuedLines) {
+        ExceptionHelper.checkNotNullArgument(executor, "executor");
+        ExceptionHelper.checkArgumentInRange(maxQueuedLines, 1, Integer.MAX_VALUE, "maxQueuedLines");
+
+        this.executor = executor;
+        this.maxQueuedLines = maxQueuedLines;
+
+        this.queuedLines = new ConcurrentLinkedQueue<>();
+        this.queuedLineCount = new AtomicInteger(0);
+        this.dispatchScheduled = new AtomicBoolean(false);
+        this.dispatchLock = new ReentrantLock();
+        this.batch = new ArrayList<>(MAX_BATCH_SIZE);
+        this.writersToFlush = new LinkedHashSet<>();
+    }
+
+    private static int getDefaultExecutorThreadCount() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    }
+
+    void queueLine(LineOutputWriter writer, String line) {
+        queuedLines.add(new QueuedLine(writer, line));
+        queuedLineCount.incrementAndGet();
+    }
+
+    void onLinesQueued() {
+        if (queuedLineCount.get() >= maxQueuedLines) {
+            // The handlers cannot keep up with the output, so slow down
+            // the writers instead of queuing more lines.
+            dispatchQueuedLines(null);
+        }
+        else {
+            scheduleDispatch();
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (queuedLines.isEmpty() || !dispatchScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(Cancellation.UNCANCELABLE_TOKEN, new CancelableTask() {
+            @Override
+            public void execute(CancellationToken cancelToken) {
+                dispatchScheduled.set(false);
+                dispatchQueuedLines(null);
+                scheduleDispatch();
+            }
+        }, null);
+    }
+
+    /**
+     * Passes every queued line to the handler of its writer and flushes the
+     * handlers which received lines.
+     *
+     * @param flushedWriter the writer whose handler must be flushed even if
+     *   it did not receive any line. This argument can be {@code null}.
+     */
+    void dispatchQueuedLines(LineOutputWriter flushedWriter) {
+        dispatchLock.lock();
+        try {
+            while (pollBatch()) {
+                for (QueuedLine queuedLine: batch) {
+                    queuedLine.writer.dispatchLine(queuedLine.line);
+                    writersToFlush.add(queuedLine.writer);
+                }
+                batch.clear();
+            }
+
+            if (flushedWriter != null) {
+                writersToFlush.add(flushedWriter);
+            }
+            for (LineOutputWriter writer: writersToFlush) {
+                writer.flushHandler();
+            }
+            writersToFlush.clear();
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    private boolean pollBatch() {
+        assert ((ReentrantLock)dispatchLock).isHeldByCurrentThread();
+
+        QueuedLine line;
+        while (batch.size() < MAX_BATCH_SIZE && (line = queuedLines.poll()) != null) {
+            batch.add(line);
+        }
+        queuedLineCount.addAndGet(-batch.size());
+        return !batch.isEmpty();
+    }
+
+    private static final class QueuedLine {
+        public final LineOutputWriter writer;
+        public final String line;
+
+        public QueuedLine(LineOutputWriter writer, String line) {
+            this.writer = writer;
+            this.line = line;
+        }
+    }
+}
@@ -3,29 +3,67 @@ package org.netbeans.gradle.project.output;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.jtrim.utils.ExceptionHelper;
 
+/**
+ * Defines a {@code Writer} splitting the written characters into lines and
+ * forwarding the lines to a {@link Handler}.
+ * <P>
+ * The lines are not passed to the handler by the writing thread but are
+ * queued in a {@link LineOutputDispatcher} which passes them to the handler
+ * in batches on a background thread. Writers sharing the same dispatcher have
+ * their lines passed to their handlers in the order they were written.
+ */
 public final class LineOutputWriter extends Writer {
     public static interface Handler {
         public void writeLine(String line) throws IOException;
         public void flush() throws IOException;
     }
 
+    private static final int COPY_BUFFER_SIZE = 1024;
+
     private final Handler handler;
+    private final LineOutputDispatcher dispatcher;
+
     private final Lock mainLock;
     private final StringBuilder lineBuffer;
+    private final char[] copyBuffer;
+    private boolean lastWasCr;
+
+    private final AtomicReference<Throwable> dispatchError;
+
     private final AtomicBoolean closed;
-    private char lastChar;
 
     public LineOutputWriter(Handler handler) {
+        this(handler, new LineOutputDispatcher());
+    }
+
+    /**
+     * Creates a new {@code LineOutputWriter}.
+     *
+     * @param handler the handler to process the lines. The methods of the
+     *   handler are never called concurrently. This argument cannot be
+     *   {@code null}.
+     * @param dispatcher the dispatcher passing the lines to the handler. This
+     *   argument cannot be {@code null}.
+     */
+    public LineOutputWriter(Handler handler, LineOutputDispatcher dispatcher) {
         ExceptionHelper.checkNotNullArgument(handler, "handler");
+        ExceptionHelper.checkNotNullArgument(dispatcher, "dispatcher");
 
         this.handler = handler;
-        this.lineBuffer = new StringBuilder(256);
+        this.dispatcher = dispatcher;
+
         this.mainLock = new ReentrantLock();
-        this.lastChar = '\0';
+        this.lineBuffer = new StringBuilder(256);
+        this.copyBuffer = new char[COPY_BUFFER_SIZE];
+        this.lastWasCr = false;
+
+        this.dispatchError = new AtomicReference<>(null);
+
         this.closed = new AtomicBoolean(false);
     }
 
@@ -35,48 +73,137 @@ public final class LineOutputWriter extends Writer {
         ExceptionHelper.checkArgumentInRange(off, 0, cbuf.length, "off");
         ExceptionHelper.checkArgumentInRange(len, 0, cbuf.length - off, "len");
 
-        int currentOffset = off;
-        int currentLength = len;
+        mainLock.lock();
+        try {
+            splitLines(cbuf, off, len);
+        } finally {
+            mainLock.unlock();
+        }
 
-        while (currentLength > 0) {
-            String line = null;
+        onLinesQueued();
+    }
 
-            mainLock.lock();
-            try {
-                while (currentLength > 0) {
-                    char currentChar = cbuf[currentOffset];
-                    char prevChar = lastChar;
-                    lastChar = currentChar;
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ExceptionHelper.checkNotNullArgument(str, "str");
+        ExceptionHelper.checkArgumentInRange(off, 0, str.length(), "off");
+        ExceptionHelper.checkArgumentInRange(len, 0, str.length() - off, "len");
 
-                    currentOffset++;
-                    currentLength--;
+        mainLock.lock();
+        try {
+            int end = off + len;
+            int currentOffset = off;
+            while (currentOffset < end) {
+                int chunkLength = Math.min(copyBuffer.length, end - currentOffset);
+                str.getChars(currentOffset, currentOffset + chunkLength, copyBuffer, 0);
+                splitLines(copyBuffer, 0, chunkLength);
+                currentOffset += chunkLength;
+            }
+        } finally {
+            mainLock.unlock();
+        }
 
-                    if (prevChar == '\r' && currentChar == '\n') {
-                        continue;
-                    }
+        onLinesQueued();
+    }
 
-                    if (currentChar == '\n' || currentChar == '\r') {
-                        line = lineBuffer.toString();
-                        lineBuffer.setLength(0);
-                        break;
-                    }
-                    else {
-                        lineBuffer.append(currentChar);
+    private void splitLines(char[] cbuf, int off, int len) {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        if (len <= 0) {
+            return;
+        }
+
+        int end = off + len;
+        int index = off;
+
+        if (lastWasCr) {
+            lastWasCr = false;
+            if (cbuf[index] == '\n') {
+                index++;
+            }
+        }
+
+        int lineStart = index;
+        for (; index < end; index++) {
+            char ch = cbuf[index];
+            if (ch != '\n' && ch != '\r') {
+                continue;
+            }
+
+            queueLine(cbuf, lineStart, index - lineStart);
+
+            if (ch == '\r') {
+                if (index + 1 < end) {
+                    if (cbuf[index + 1] == '\n') {
+                        index++;
                     }
                 }
-            } finally {
-                mainLock.unlock();
+                else {
+                    lastWasCr = true;
+                }
             }
+            lineStart = index + 1;
+        }
+
+        lineBuffer.append(cbuf, lineStart, end - lineStart);
+    }
+
+    private void queueLine(char[] cbuf, int offset, int length) {
+        String line;
+        if (lineBuffer.length() == 0) {
+            line = new String(cbuf, offset, length);
+        }
+        else {
+            lineBuffer.append(cbuf, offset, length);
+            line = lineBuffer.toString();
+            lineBuffer.setLength(0);
+        }
+        queueLine(line);
+    }
 
-            if (line != null) {
-                handler.writeLine(line);
+    private void queueLine(String line) {
+        dispatcher.queueLine(this, line);
+    }
+
+    private void onLinesQueued() throws IOException {
+        dispatcher.onLinesQueued();
+        rethrowDispatchError();
+    }
+
+    void dispatchLine(String line) {
+        try {
+            handler.writeLine(line);
+        } catch (Throwable ex) {
+            setDispatchError(ex);
+        }
+    }
+
+    void flushHandler() {
+        try {
+            handler.flush();
+        } catch (Throwable ex) {
+            setDispatchError(ex);
+        }
+    }
+
+    private void setDispatchError(Throwable error) {
+        if (!dispatchError.compareAndSet(null, error)) {
+            Throwable firstError = dispatchError.get();
+            if (firstError != null && firstError != error) {
+                firstError.addSuppressed(error);
             }
         }
     }
 
+    private void rethrowDispatchError() throws IOException {
+        Throwable error = dispatchError.getAndSet(null);
+        ExceptionHelper.rethrowCheckedIfNotNull(error, IOException.class);
+    }
+
     @Override
     public void flush() throws IOException {
-        handler.flush();
+        dispatcher.dispatchQueuedLines(this);
+        rethrowDispatchError();
     }
 
     @Override
@@ -85,16 +212,15 @@ public final class LineOutputWriter extends Writer {
             return;
         }
 
-        String line;
         mainLock.lock();
         try {
-            line = lineBuffer.toString();
+            queueLine(lineBuffer.toString());
             lineBuffer.setLength(0);
         } finally {
             mainLock.unlock();
         }
 
-        handler.writeLine(line);
-        handler.flush();
+        dispatcher.dispatchQueuedLines(this);
+        rethrowDispatchError();
     }
 }
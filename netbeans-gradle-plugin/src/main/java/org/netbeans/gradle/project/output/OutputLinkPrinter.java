@@ -2,6 +2,8 @@ package org.netbeans.gradle.project.output;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import org.jtrim.utils.ExceptionHelper;
 import org.openide.windows.IOColorPrint;
@@ -10,40 +12,86 @@ import org.openide.windows.OutputWriter;
 
 public final class OutputLinkPrinter implements SmartOutputHandler.Consumer {
     private final OutputLinkFinder[] linkFinders;
+    private final KeywordMatcher keywordMatcher;
+    private final long alwaysCheckedFinders;
 
     public OutputLinkPrinter(OutputLinkFinder... linkFinders) {
         this.linkFinders = linkFinders.clone();
 
         ExceptionHelper.checkNotNullElements(this.linkFinders, "linkFinders");
+
+        KeywordMatcher.Builder matcherBuilder = new KeywordMatcher.Builder();
+        long alwaysChecked = 0;
+        for (int i = 0; i < this.linkFinders.length; i++) {
+            OutputLinkFinder linkFinder = this.linkFinders[i];
+            Collection<String> keywords = linkFinder instanceof KeywordLinkFinder
+                    ? ((KeywordLinkFinder)linkFinder).getKeywords()
+                    : Collections.<String>emptySet();
+
+            if (i >= KeywordMatcher.MAX_GROUP_COUNT) {
+                // Finders not fitting into the mask are always checked.
+                alwaysChecked = -1L;
+            }
+            else if (keywords.isEmpty()) {
+                alwaysChecked |= 1L << i;
+            }
+            else {
+                matcherBuilder.addKeywords(i, keywords);
+            }
+        }
+
+        this.keywordMatcher = matcherBuilder.create();
+        this.alwaysCheckedFinders = alwaysChecked;
     }
 
-    private void findLinkDefs(String line, int startIndex, int endIndex, List<OutputLinkDef> linkDefs) {
+    private static boolean isCandidate(long candidateFinders, int finderIndex) {
+        return finderIndex >= KeywordMatcher.MAX_GROUP_COUNT
+                || (candidateFinders & (1L << finderIndex)) != 0;
+    }
+
+    private void findLinkDefs(
+            String line,
+            int startIndex,
+            int endIndex,
+            long candidateFinders,
+            List<OutputLinkDef> linkDefs) {
+
         if (startIndex >= endIndex || startIndex >= line.length()) {
             return;
         }
 
         String subStr = line.substring(startIndex, endIndex);
-        for (OutputLinkFinder linkFinder: linkFinders) {
-            OutputLinkDef linkDef = linkFinder.tryFindLink(subStr);
+        for (int i = 0; i < linkFinders.length; i++) {
+            // A finder not matching the whole line cannot match a part of it.
+            if (!isCandidate(candidateFinders, i)) {
+                continue;
+            }
+
+            OutputLinkDef linkDef = linkFinders[i].tryFindLink(subStr);
             // Empty links are unreasonable and may cause an infinite recursion.
             if (linkDef != null && !linkDef.isEmptyLink()) {
                 OutputLinkDef baseLinkDef = linkDef.offsetLinkDef(startIndex);
 
-                findLinkDefs(line, startIndex, baseLinkDef.getStartIndex(), linkDefs);
+                findLinkDefs(line, startIndex, baseLinkDef.getStartIndex(), candidateFinders, linkDefs);
                 linkDefs.add(baseLinkDef);
-                findLinkDefs(line, baseLinkDef.getEndIndex(), endIndex, linkDefs);
+                findLinkDefs(line, baseLinkDef.getEndIndex(), endIndex, candidateFinders, linkDefs);
                 return;
             }
         }
     }
 
     private List<OutputLinkDef> findLinkDefs(String line) {
+        long candidateFinders = alwaysCheckedFinders | keywordMatcher.findMatchingGroups(line);
+        if (candidateFinders == 0) {
+            return null;
+        }
+
         // Note that in the majority of cases, the line is not a link, so we
         // spare creating a list when not needed.
-        for (OutputLinkFinder linkFinder: linkFinders) {
-            if (linkFinder.tryFindLink(line) != null) {
+        for (int i = 0; i < linkFinders.length; i++) {
+            if (isCandidate(candidateFinders, i) && linkFinders[i].tryFindLink(line) != null) {
                 List<OutputLinkDef> result = new ArrayList<>(linkFinders.length);
-                findLinkDefs(line, 0, line.length(), result);
+                findLinkDefs(line, 0, line.length(), candidateFinders, result);
                 return result;
             }
         }
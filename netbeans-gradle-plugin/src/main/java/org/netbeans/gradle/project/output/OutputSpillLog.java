@@ -0,0 +1,192 @@
+package org.netbeans.gradle.project.output;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.NbStrings;
+import org.openide.windows.OutputListener;
+import org.openide.windows.OutputWriter;
+
+/**
+ * Limits the number of lines kept in an output tab. Every line written to the
+ * tab is also appended to a log file and if the number of lines in the tab
+ * reaches the limit, the tab is cleared and a link to the log file is printed
+ * instead of the removed lines. This way, the memory retained by the output
+ * window (including the hyperlinks of the removed lines) remains bounded
+ * even for builds running for hours.
+ * <P>
+ * The methods of this class are safe to be called from multiple threads
+ * concurrently.
+ */
+public final class OutputSpillLog implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(OutputSpillLog.class.getName());
+
+    private final InputOutputWrapper io;
+    private final int maxLinesInTab;
+
+    private final Lock mainLock;
+    private File logFile;
+    private Writer logWriter;
+    private boolean logFailed;
+    private long loggedLineCount;
+    private int linesInTab;
+    private boolean closed;
+
+    /**
+     * Creates a new {@code OutputSpillLog} for the given tab.
+     *
+     * @param io the output tab to be limited. This argument cannot be
+     *   {@code null}.
+     * @param maxLinesInTab the number of lines after which the output tab is
+     *   cleared. This argument must be greater than zero.
+     */
+    public OutputSpillLog(InputOutputWrapper io, int maxLinesInTab) {
+        ExceptionHelper.checkNotNullArgument(io, "io");
+        ExceptionHelper.checkArgumentInRange(maxLinesInTab, 1, Integer.MAX_VALUE, "maxLinesInTab");
+
+        this.io = io;
+        this.maxLinesInTab = maxLinesInTab;
+        this.mainLock = new ReentrantLock();
+        this.logFile = null;
+        this.logWriter = null;
+        this.logFailed = false;
+        this.loggedLineCount = 0;
+        this.linesInTab = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Returns a handler logging the lines passed to the given handler and
+     * clearing the output tab if necessary before forwarding the lines.
+     */
+    public LineOutputWriter.Handler wrapHandler(final LineOutputWriter.Handler handler) {
+        ExceptionHelper.checkNotNullArgument(handler, "handler");
+
+        return new LineOutputWriter.Handler() {
+            @Override
+            public void writeLine(String line) throws IOException {
+                beforeLine(line);
+                handler.writeLine(line);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                handler.flush();
+            }
+        };
+    }
+
+    private void beforeLine(String line) {
+        mainLock.lock();
+        try {
+            if (closed || !tryLogLine(line)) {
+                return;
+            }
+
+            linesInTab++;
+            if (linesInTab <= maxLinesInTab) {
+                return;
+            }
+
+            linesInTab = 1;
+            if (tryFlushLog()) {
+                // The current line is the first line remaining in the tab.
+                clearTab(logFile, loggedLineCount);
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    private void clearTab(File fileToLink, long firstLineInTab) {
+        OutputWriter output = io.getOutRef();
+        try {
+            output.reset();
+
+            String message = NbStrings.getSpilledOutput(fileToLink);
+            int lineNumber = firstLineInTab < Integer.MAX_VALUE ? (int)firstLineInTab : 0;
+            OutputListener link = OpenEditorOutputListener.tryCreateListener(fileToLink, lineNumber);
+            if (link != null) {
+                output.println(message, link);
+            }
+            else {
+                output.println(message);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to clear the output tab.", ex);
+        }
+    }
+
+    private boolean tryLogLine(String line) {
+        if (logFailed) {
+            return false;
+        }
+
+        try {
+            if (logWriter == null) {
+                logFile = File.createTempFile("nb-gradle-output", ".log");
+                logFile.deleteOnExit();
+                logWriter = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(logFile),
+                        StandardCharsets.UTF_8));
+            }
+
+            logWriter.write(line);
+            logWriter.write('\n');
+            loggedLineCount++;
+            return true;
+        } catch (IOException ex) {
+            // Without the log, removing lines from the tab would lose them.
+            LOGGER.log(Level.INFO, "Failed to write the output log: " + logFile, ex);
+            logFailed = true;
+            closeLogWriter();
+            return false;
+        }
+    }
+
+    private boolean tryFlushLog() {
+        try {
+            logWriter.flush();
+            return true;
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, "Failed to write the output log: " + logFile, ex);
+            logFailed = true;
+            closeLogWriter();
+            return false;
+        }
+    }
+
+    private void closeLogWriter() {
+        Writer writer = logWriter;
+        logWriter = null;
+
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Failed to close the output log: " + logFile, ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        mainLock.lock();
+        try {
+            closed = true;
+            closeLogWriter();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+}
@@ -2,18 +2,24 @@ package org.netbeans.gradle.project.output;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.gradle.project.util.StringUtils;
 import org.openide.awt.HtmlBrowser;
 import org.openide.windows.OutputEvent;
 import org.openide.windows.OutputListener;
 
-public final class OutputUrlConsumer implements OutputLinkFinder {
+public final class OutputUrlConsumer implements KeywordLinkFinder {
     private static final String[] URL_PREFIXES = new String[]{
         "http://",
         "https://",
         "file://"
     };
+    private static final Collection<String> KEYWORDS
+            = Collections.unmodifiableList(Arrays.asList(URL_PREFIXES));
+
     private static OutputLinkDef tryGetUrlWithPrefix(String prefix, String line) {
         int startIndex = line.indexOf(prefix);
         if (startIndex < 0) {
@@ -39,6 +45,11 @@ public final class OutputUrlConsumer implements OutputLinkFinder {
         return new OutputLinkDef(startIndex, endIndex, getUrlOpenTask(url));
     }
 
+    @Override
+    public Collection<String> getKeywords() {
+        return KEYWORDS;
+    }
+
     @Override
     public OutputLinkDef tryFindLink(String line) {
         for (String prefix: URL_PREFIXES) {
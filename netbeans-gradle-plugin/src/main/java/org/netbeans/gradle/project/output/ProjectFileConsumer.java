@@ -3,20 +3,46 @@ package org.netbeans.gradle.project.output;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Locale;
 import org.netbeans.gradle.project.NbGradleProject;
 import org.netbeans.gradle.project.util.StringUtils;
 import org.openide.filesystems.FileObject;
 import org.openide.util.Utilities;
 
-public final class ProjectFileConsumer implements OutputLinkFinder {
+public final class ProjectFileConsumer implements KeywordLinkFinder {
     private final String normalizedPath;
+    private final Collection<String> keywords;
 
     public ProjectFileConsumer(NbGradleProject project) {
         FileObject projectDirectory = project.getProjectDirectory();
         // In case the filesystem is not case-sesitive, otherwise it shouldn't
         // hurt much, since we will check if the file exists anyway.
         normalizedPath = projectDirectory.getPath().toLowerCase(Locale.ROOT);
+        keywords = getKeywords(normalizedPath);
+    }
+
+    private static Collection<String> getKeywords(String normalizedPath) {
+        // The line must contain the whole path of the project directory, so
+        // it must contain its name as well.
+        String dirName = normalizedPath.substring(normalizedPath.lastIndexOf('/') + 1);
+        if (dirName.isEmpty() || !isAscii(dirName)) {
+            // Lower casing non-ASCII characters one by one might not be
+            // the same as lower casing the whole string.
+            return Collections.emptySet();
+        }
+        return Collections.singleton(dirName);
+    }
+
+    private static boolean isAscii(String str) {
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static boolean isBrowserFile(String path) {
@@ -67,6 +93,11 @@ public final class ProjectFileConsumer implements OutputLinkFinder {
         }
     }
 
+    @Override
+    public Collection<String> getKeywords() {
+        return keywords;
+    }
+
     @Override
     public OutputLinkDef tryFindLink(String line) {
         String normalizedLine = line.replace(File.separatorChar, '/').toLowerCase(Locale.ROOT);
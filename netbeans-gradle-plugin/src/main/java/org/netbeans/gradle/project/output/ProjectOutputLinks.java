@@ -0,0 +1,105 @@
+package org.netbeans.gradle.project.output;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jtrim.utils.ExceptionHelper;
+import org.netbeans.gradle.project.NbGradleProject;
+import org.netbeans.gradle.project.model.NbGradleModel;
+
+/**
+ * Keeps the link finders used to add hyperlinks to the output of the tasks of
+ * a project, so that subsequent task executions can reuse them (along with the
+ * source files they have already found).
+ * <P>
+ * The link finders are recreated when the model of the project changes. The
+ * source files found for stack traces are also forgotten when the class path
+ * of the project changes.
+ * <P>
+ * The methods of this class are safe to be called from multiple threads
+ * concurrently.
+ */
+public final class ProjectOutputLinks {
+    private final NbGradleProject project;
+
+    private final Lock mainLock;
+    private NbGradleModel linksModel;
+    private LinkFinders links;
+
+    public ProjectOutputLinks(NbGradleProject project) {
+        ExceptionHelper.checkNotNullArgument(project, "project");
+
+        this.project = project;
+        this.mainLock = new ReentrantLock();
+        this.linksModel = null;
+        this.links = null;
+    }
+
+    public StackTraceConsumer getStackTraceConsumer() {
+        return getLinks().stackTraceConsumer;
+    }
+
+    /**
+     * Returns the consumer adding hyperlinks to the standard output of tasks.
+     */
+    public OutputLinkPrinter getOutputLinkPrinter() {
+        return getLinks().outputLinkPrinter;
+    }
+
+    /**
+     * Returns the consumer adding hyperlinks to the standard error of tasks.
+     */
+    public OutputLinkPrinter getErrorLinkPrinter() {
+        return getLinks().errorLinkPrinter;
+    }
+
+    private LinkFinders getLinks() {
+        NbGradleModel currentModel = project.currentModel().getValue();
+
+        mainLock.lock();
+        try {
+            if (links != null && linksModel == currentModel) {
+                return links;
+            }
+        } finally {
+            mainLock.unlock();
+        }
+
+        // Looking up the class path of the project might be slow, so don't
+        // do it while holding the lock.
+        LinkFinders newLinks = new LinkFinders(project);
+
+        mainLock.lock();
+        try {
+            linksModel = currentModel;
+            links = newLinks;
+        } finally {
+            mainLock.unlock();
+        }
+        return newLinks;
+    }
+
+    private static final class LinkFinders {
+        public final StackTraceConsumer stackTraceConsumer;
+        public final OutputLinkPrinter outputLinkPrinter;
+        public final OutputLinkPrinter errorLinkPrinter;
+
+        public LinkFinders(NbGradleProject project) {
+            // The stack trace consumer caches the source files it has found,
+            // so share it between the output and the error stream.
+            this.stackTraceConsumer = new StackTraceConsumer(project);
+
+            ProjectFileConsumer projectFileConsumer = new ProjectFileConsumer(project);
+            OutputUrlConsumer urlConsumer = new OutputUrlConsumer();
+
+            this.outputLinkPrinter = new OutputLinkPrinter(
+                    stackTraceConsumer,
+                    urlConsumer,
+                    projectFileConsumer);
+            this.errorLinkPrinter = new OutputLinkPrinter(
+                    stackTraceConsumer,
+                    urlConsumer,
+                    projectFileConsumer,
+                    new FileLineConsumer());
+        }
+    }
+}
@@ -5,23 +5,42 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.jtrim.utils.ExceptionHelper;
 
+/**
+ * Defines an {@code InputStream} encoding the characters read from a
+ * {@code Reader}.
+ * <P>
+ * The characters are read and encoded on demand into buffers of fixed size
+ * allocated only once, so the memory used by this stream does not depend on
+ * the amount of data passed through it. Reads are served from the already
+ * encoded bytes and only block (on the underlying {@code Reader}) if there
+ * are no such bytes.
+ */
 public final class ReaderInputStream extends InputStream {
+    private static final int CHAR_BUFFER_SIZE = 1024;
+
+    private enum EncoderState {
+        READING,
+        ENCODING_LAST_CHARS,
+        FLUSHING,
+        COMPLETED
+    }
+
     private final Reader reader;
-    private final AtomicReference<byte[]> cacheRef;
 
-    private final Lock encoderLock;
+    private final Lock mainLock;
     private final CharsetEncoder encoder;
-    private boolean eofReached;
-    private char[] remainingChars;
+    // Characters read but not yet encoded. In write mode.
+    private final CharBuffer pendingChars;
+    // Encoded bytes not yet read. In read mode.
+    private final ByteBuffer encodedBytes;
+    private EncoderState encoderState;
 
     public ReaderInputStream(Reader reader) {
         this(reader, Charset.defaultCharset());
@@ -32,176 +51,110 @@ public final class ReaderInputStream extends InputStream {
         ExceptionHelper.checkNotNullArgument(encoding, "encoding");
 
         this.reader = reader;
-        this.encoderLock = new ReentrantLock();
+        this.mainLock = new ReentrantLock();
         this.encoder = encoding.newEncoder();
-        this.remainingChars = null;
-        this.eofReached = false;
-        this.cacheRef = new AtomicReference<>(new byte[0]);
+        this.pendingChars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+        // Large enough to hold all the pending characters once encoded, so
+        // the pending characters can always be encoded into an empty buffer.
+        int byteBufferSize = (int)Math.ceil(CHAR_BUFFER_SIZE * (double)encoder.maxBytesPerChar());
+        this.encodedBytes = ByteBuffer.allocate(byteBufferSize);
+        this.encodedBytes.flip();
+        this.encoderState = EncoderState.READING;
     }
 
-    private int readFromCache(byte[] b, int offset, int length) {
-        byte[] cache;
-        byte[] newCache;
-        int toRead;
-        do {
-            cache = cacheRef.get();
-            toRead = Math.min(cache.length, length);
-            System.arraycopy(cache, 0, b, offset, toRead);
-            newCache = new byte[cache.length - toRead];
-            System.arraycopy(cache, toRead, newCache, 0, newCache.length);
-        } while (!cacheRef.compareAndSet(cache, newCache));
-        return toRead;
-    }
-
-    private ByteBuffer encodeChars(char[] chars, int charCount) throws CharacterCodingException {
-        return encodeChars(chars, charCount, false);
-    }
+    /**
+     * Ensures that there is at least one encoded byte to be read, reading
+     * and encoding more characters if necessary.
+     *
+     * @return {@code true} if there is a byte to be read, {@code false} if
+     *   the end of the stream has been reached
+     */
+    private boolean ensureEncodedBytes() throws IOException {
+        assert ((ReentrantLock)mainLock).isHeldByCurrentThread();
+
+        if (encodedBytes.hasRemaining()) {
+            return true;
+        }
 
-    private ByteBuffer encodeChars(char[] chars, int charCount, boolean finalBytes) throws CharacterCodingException {
-        encoderLock.lock();
+        encodedBytes.clear();
         try {
-            CharBuffer input;
-            if (remainingChars == null || remainingChars.length == 0) {
-                input = CharBuffer.wrap(chars, 0, charCount);
-            }
-            else {
-                char[] toPrepend = remainingChars;
-                remainingChars = null;
-
-                char[] newChars = new char[charCount + toPrepend.length];
-                System.arraycopy(toPrepend, 0, newChars, 0, toPrepend.length);
-                System.arraycopy(chars, 0, newChars, toPrepend.length, charCount);
-
-                input = CharBuffer.wrap(newChars);
-            }
-
-            int n = (int)(input.remaining() * encoder.averageBytesPerChar());
-            ByteBuffer out = ByteBuffer.allocate(n);
-
-            while (true) {
-                CoderResult result = encoder.encode(input, out, finalBytes);
-                if (result.isOverflow()) {
-                    n = 2 * n + 1;
-                    ByteBuffer newOut = ByteBuffer.allocate(n);
-                    out.flip();
-                    newOut.put(out);
-                    out = newOut;
-                }
-                else if (result.isError()) {
-                    result.throwException();
-                }
-                else {
-                    int remainingCount = input.remaining();
-                    if (remainingCount > 0) {
-                        char[] currentRemaining = new char[remainingCount];
-                        input.get(currentRemaining);
-                        remainingChars = currentRemaining;
-                    }
-                    break;
-                }
+            while (encodedBytes.position() == 0 && encoderState != EncoderState.COMPLETED) {
+                encodeMore();
             }
-
-            out.flip();
-            return out;
         } finally {
-            encoderLock.unlock();
+            encodedBytes.flip();
         }
+        return encodedBytes.hasRemaining();
     }
 
-    private ByteBuffer completeStream() throws CharacterCodingException {
-        encoderLock.lock();
-        try {
-            if (eofReached) {
-                return null;
-            }
-            eofReached = true;
-
-            char[] finalChars = remainingChars;
-            remainingChars = null;
-
-            if (finalChars == null) {
-                finalChars = new char[0];
-            }
-
-            ByteBuffer out = encodeChars(finalChars, finalChars.length, true);
-            int n = out.capacity();
-
-            while (true) {
-                CoderResult result = encoder.flush(out);
-                if (result.isUnderflow()) {
-                    break;
+    private void encodeMore() throws IOException {
+        switch (encoderState) {
+            case READING:
+                encodePendingChars(false);
+                if (encodedBytes.position() == 0) {
+                    // The encoder needs more characters.
+                    readChars();
                 }
-
-                if (result.isOverflow()) {
-                    n = 2 * n + 1;
-                    ByteBuffer newOut = ByteBuffer.allocate(n);
-                    out.flip();
-                    newOut.put(out);
-                    out = newOut;
+                break;
+            case ENCODING_LAST_CHARS:
+                if (encodePendingChars(true).isUnderflow()) {
+                    encoderState = EncoderState.FLUSHING;
                 }
-                else {
-                    result.throwException();
+                break;
+            case FLUSHING:
+                CoderResult result = encoder.flush(encodedBytes);
+                checkResult(result);
+                if (result.isUnderflow()) {
+                    encoderState = EncoderState.COMPLETED;
                 }
-            }
-
-            out.flip();
-            return out;
-        } finally {
-            encoderLock.unlock();
+                break;
+            default:
+                throw new AssertionError(encoderState.name());
         }
     }
 
-    private boolean readToCache(int requiredBytes) throws IOException {
-        assert requiredBytes > 0;
-        // We rely on the encoder to choose the number of bytes to read but
-        // it does not have to be actually accurate, it only matters
-        // performance wise but this is not a performance critical code.
-        int toRead = (int)((float)requiredBytes / encoder.averageBytesPerChar()) + 1;
-        toRead = Math.max(toRead, requiredBytes);
-        char[] readChars = new char[toRead];
-        int readCount = reader.read(readChars);
-
-        ByteBuffer encodedBuffer;
+    private void readChars() throws IOException {
+        int offset = pendingChars.arrayOffset() + pendingChars.position();
+        int readCount = reader.read(pendingChars.array(), offset, pendingChars.remaining());
         if (readCount <= 0) {
             // readCount should never be zero but if reader returns zero
             // regardless, assume that it believes that EOF has been
             // reached.
-
-            encodedBuffer = completeStream();
-            if (encodedBuffer == null || encodedBuffer.remaining() <= 0) {
-                return false;
-            }
+            encoderState = EncoderState.ENCODING_LAST_CHARS;
         }
         else {
-            encodedBuffer = encodeChars(readChars, readCount);
+            pendingChars.position(pendingChars.position() + readCount);
         }
+    }
 
-        byte[] encoded = new byte[encodedBuffer.remaining()];
-        encodedBuffer.get(encoded);
-        appendToCache(encoded);
-        return true;
+    private CoderResult encodePendingChars(boolean endOfInput) throws IOException {
+        pendingChars.flip();
+        try {
+            CoderResult result = encoder.encode(pendingChars, encodedBytes, endOfInput);
+            checkResult(result);
+            return result;
+        } finally {
+            pendingChars.compact();
+        }
     }
 
-    private void appendToCache(byte[] newBytes) {
-        byte[] oldCache;
-        byte[] newCache;
-        do {
-            oldCache = cacheRef.get();
-            newCache = new byte[oldCache.length + newBytes.length];
-            System.arraycopy(oldCache, 0, newCache, 0, oldCache.length);
-            System.arraycopy(newBytes, 0, newCache, oldCache.length, newBytes.length);
-        } while (!cacheRef.compareAndSet(oldCache, newCache));
+    private static void checkResult(CoderResult result) throws IOException {
+        if (result.isError()) {
+            result.throwException();
+        }
     }
 
     @Override
     public int read() throws IOException {
-        byte[] result = new byte[1];
-        if (read(result) <= 0) {
-            // Althouth the above read should never return zero.
-            return -1;
-        }
-        else {
-            return (int)result[0] & 0xFF;
+        mainLock.lock();
+        try {
+            if (!ensureEncodedBytes()) {
+                return -1;
+            }
+            return (int)encodedBytes.get() & 0xFF;
+        } finally {
+            mainLock.unlock();
         }
     }
 
@@ -215,26 +168,23 @@ public final class ReaderInputStream extends InputStream {
         ExceptionHelper.checkNotNullArgument(b, "b");
         ExceptionHelper.checkArgumentInRange(off, 0, b.length, "off");
         ExceptionHelper.checkArgumentInRange(len, 0, b.length - off, "len");
-        // Note that while this method is implemented to be thread-safe
-        // calling it concurrently is unadvised, since read is not atomic.
 
         if (len == 0) {
             return 0;
         }
 
-        int currentOffset = off;
-        int currentLength = len;
-        int readCount = 0;
-        do {
-            int currentRead = readFromCache(b, currentOffset, currentLength);
-            readCount += currentRead;
-            currentOffset += currentRead;
-            currentLength -= currentRead;
-            if (readCount > 0) {
-                return readCount;
+        mainLock.lock();
+        try {
+            if (!ensureEncodedBytes()) {
+                return -1;
             }
-        } while (readToCache(currentLength));
-        return readCount > 0 ? readCount : -1;
+
+            int readCount = Math.min(len, encodedBytes.remaining());
+            encodedBytes.get(b, off, readCount);
+            return readCount;
+        } finally {
+            mainLock.unlock();
+        }
     }
 
     @Override
@@ -2,7 +2,15 @@ package org.netbeans.gradle.project.output;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -15,24 +23,55 @@ import org.netbeans.gradle.project.java.query.GradleClassPathProvider;
 import org.netbeans.spi.java.queries.SourceForBinaryQueryImplementation;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.URLMapper;
+import org.openide.util.WeakListeners;
 
-public final class StackTraceConsumer implements OutputLinkFinder {
+public final class StackTraceConsumer implements KeywordLinkFinder {
     private static final Logger LOGGER = Logger.getLogger(StackTraceConsumer.class.getName());
 
     private static final Pattern LINE_PATTERN = Pattern.compile("(?:\\[catch\\])?\\sat (.*)\\((.*)\\.java\\:(\\d+)\\)");
+    private static final Collection<String> KEYWORDS = Collections.singleton(".java:");
+
+    private static final int MAX_CACHED_SOURCES = 1024;
+    private static final SourceFileRef NO_SOURCE = new SourceFileRef(null);
 
     private final Project project;
     private final ClassPath classPath;
 
+    private final Lock sourceCacheLock;
+    private final Map<String, SourceFileRef> sourceCache;
+    private final PropertyChangeListener classPathChangeListener;
+
     public StackTraceConsumer(Project project) {
         ExceptionHelper.checkNotNullArgument(project, "project");
 
         this.project = project;
-        this.classPath = getClassPathFromProject(project);
-    }
 
-    private static ClassPath getClassPathFromProject(Project project) {
+        this.sourceCacheLock = new ReentrantLock();
+        this.sourceCache = new LinkedHashMap<String, SourceFileRef>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SourceFileRef> eldest) {
+                return size() > MAX_CACHED_SOURCES;
+            }
+        };
+        this.classPathChangeListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                clearSourceCache();
+            }
+        };
+
         GradleClassPathProvider classPaths = project.getLookup().lookup(GradleClassPathProvider.class);
+        if (classPaths != null) {
+            // The listener is only referenced weakly, so that the provider
+            // does not keep the consumer (and its cache) alive.
+            classPaths.addPropertyChangeListener(WeakListeners.propertyChange(classPathChangeListener, classPaths));
+        }
+        this.classPath = getClassPathFromProject(project, classPaths);
+    }
+
+    private static ClassPath getClassPathFromProject(Project project, GradleClassPathProvider classPaths) {
         if (classPaths == null) {
             LOGGER.log(Level.WARNING, "No class path provider for project: {0}", project.getProjectDirectory());
             return ClassPath.EMPTY;
@@ -46,26 +85,84 @@ public final class StackTraceConsumer implements OutputLinkFinder {
         return classPath;
     }
 
-    private OpenEditorOutputListener tryCreateLinkListener(
-            SourceForBinaryQuery.Result sourceForBinary,
-            String path,
-            String lineNum) {
+    private void clearSourceCache() {
+        sourceCacheLock.lock();
+        try {
+            sourceCache.clear();
+        } finally {
+            sourceCacheLock.unlock();
+        }
+    }
 
+    private static FileObject tryFindSourceFile(SourceForBinaryQuery.Result sourceForBinary, String path) {
         FileObject[] roots = sourceForBinary.getRoots();
         for (FileObject root: roots) {
             FileObject javaFo = root.getFileObject(path);
             if (javaFo != null) {
-                int lineInt = -1;
-                try {
-                    lineInt = Integer.parseInt(lineNum);
-                } catch (NumberFormatException ex) {
-                }
-                return OpenEditorOutputListener.tryCreateListener(javaFo, lineInt);
+                return javaFo;
             }
         }
         return null;
     }
 
+    private FileObject tryFindSourceFileUncached(String packageName, String file) {
+        String resourceName = packageName + file + ".class";
+        FileObject resource = classPath.findResource(resourceName);
+        if (resource == null) {
+            return null;
+        }
+
+        String path = packageName + file + ".java";
+        FileObject root = classPath.findOwnerRoot(resource);
+        if (root == null) {
+            return null;
+        }
+        URL url = URLMapper.findURL(root, URLMapper.INTERNAL);
+
+        for (SourceForBinaryQueryImplementation query: project.getLookup().lookupAll(SourceForBinaryQueryImplementation.class)) {
+            SourceForBinaryQuery.Result sourceForBinary = query.findSourceRoots(url);
+            if (sourceForBinary != null) {
+                FileObject result = tryFindSourceFile(sourceForBinary, path);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+
+        SourceForBinaryQuery.Result sourceForBinary = SourceForBinaryQuery.findSourceRoots(url);
+        if (sourceForBinary == null) {
+            return null;
+        }
+
+        return tryFindSourceFile(sourceForBinary, path);
+    }
+
+    private FileObject tryFindSourceFile(String packageName, String file) {
+        String key = packageName + file;
+
+        SourceFileRef cached;
+        sourceCacheLock.lock();
+        try {
+            cached = sourceCache.get(key);
+        } finally {
+            sourceCacheLock.unlock();
+        }
+
+        if (cached != null && cached.isValid()) {
+            return cached.sourceFile;
+        }
+
+        FileObject result = tryFindSourceFileUncached(packageName, file);
+
+        sourceCacheLock.lock();
+        try {
+            sourceCache.put(key, result != null ? new SourceFileRef(result) : NO_SOURCE);
+        } finally {
+            sourceCacheLock.unlock();
+        }
+        return result;
+    }
+
     public ActionListener tryGetOpenEditorAction(String line) {
         final OutputLinkDef linkDef = tryFindLink(line);
         if (linkDef != null) {
@@ -81,6 +178,11 @@ public final class StackTraceConsumer implements OutputLinkFinder {
         }
     }
 
+    @Override
+    public Collection<String> getKeywords() {
+        return KEYWORDS;
+    }
+
     // This method is based on
     // org.netbeans.modules.maven.api.output.OutputUtils.matchStackTraceLine
     @Override
@@ -98,35 +200,31 @@ public final class StackTraceConsumer implements OutputLinkFinder {
             return null;
         }
         String packageName = method.substring(0, index).replace('.', '/');
-        String resourceName = packageName + file + ".class";
-        FileObject resource = classPath.findResource(resourceName);
-        if (resource == null) {
+        FileObject javaFo = tryFindSourceFile(packageName, file);
+        if (javaFo == null) {
             return null;
         }
 
-        String path = packageName + file + ".java";
-        FileObject root = classPath.findOwnerRoot(resource);
-        if (root == null) {
-            return null;
+        int lineInt = -1;
+        try {
+            lineInt = Integer.parseInt(lineNum);
+        } catch (NumberFormatException ex) {
         }
-        URL url = URLMapper.findURL(root, URLMapper.INTERNAL);
 
-        for (SourceForBinaryQueryImplementation query: project.getLookup().lookupAll(SourceForBinaryQueryImplementation.class)) {
-            SourceForBinaryQuery.Result sourceForBinary = query.findSourceRoots(url);
-            if (sourceForBinary != null) {
-                OpenEditorOutputListener result = tryCreateLinkListener(sourceForBinary, path, lineNum);
-                if (result != null) {
-                    return new OutputLinkDef(match.start(), match.end(), result);
-                }
-            }
-        }
+        OpenEditorOutputListener result = OpenEditorOutputListener.tryCreateListener(javaFo, lineInt);
+        return result != null ? new OutputLinkDef(match.start(), match.end(), result) : null;
+    }
 
-        SourceForBinaryQuery.Result sourceForBinary = SourceForBinaryQuery.findSourceRoots(url);
-        if (sourceForBinary == null) {
-            return null;
+    private static final class SourceFileRef {
+        public final FileObject sourceFile;
+
+        public SourceFileRef(FileObject sourceFile) {
+            this.sourceFile = sourceFile;
         }
 
-        OpenEditorOutputListener result = tryCreateLinkListener(sourceForBinary, path, lineNum);
-        return result != null ? new OutputLinkDef(match.start(), match.end(), result) : null;
+        public boolean isValid() {
+            // Negative results are only dropped when the class path changes.
+            return sourceFile == null || sourceFile.isValid();
+        }
     }
 }
@@ -11,10 +11,12 @@ import org.openide.windows.InputOutput;
 public final class TaskIOTab implements IOTabDef {
     private final InputOutputWrapper io;
     private final TaskTabAction[] actions;
+    private final LineOutputDispatcher outputDispatcher;
 
     public TaskIOTab(InputOutput io, TaskTabAction... actions) {
         this.io = new InputOutputWrapper(io);
         this.actions = actions.clone();
+        this.outputDispatcher = new LineOutputDispatcher();
 
         CollectionUtils.checkNoNullElements(Arrays.asList(this.actions), "actions");
     }
@@ -41,6 +43,15 @@ public final class TaskIOTab implements IOTabDef {
         return io;
     }
 
+    /**
+     * Returns the dispatcher queuing the lines written to the standard output
+     * and the standard error of this tab, so that their lines are printed in
+     * the order they were written.
+     */
+    public LineOutputDispatcher getOutputDispatcher() {
+        return outputDispatcher;
+    }
+
     @Override
     public boolean isDestroyed() {
         return io.getIo().isClosed();
@@ -3,18 +3,43 @@ package org.netbeans.gradle.project.output;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import org.jtrim.utils.ExceptionHelper;
 
+/**
+ * Defines an {@code OutputStream} decoding the written bytes and forwarding
+ * the characters to a {@code Writer}.
+ * <P>
+ * The bytes are decoded with a single decoder using buffers allocated only
+ * once, so characters encoded on multiple bytes are decoded properly even if
+ * they are split between two writes. Bytes of an incomplete character are
+ * kept until the next write (or until the stream is closed).
+ */
 public final class WriterOutputStream extends OutputStream {
+    private static final int BUFFER_SIZE = 4 * 1024;
+
     private final Writer writer;
-    private final Charset encoding;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer inputBuffer;
+    private final CharBuffer outputBuffer;
+    private boolean closed;
 
     public WriterOutputStream(Writer writer, Charset encoding) {
         ExceptionHelper.checkNotNullArgument(writer, "writer");
         ExceptionHelper.checkNotNullArgument(encoding, "encoding");
+
         this.writer = writer;
-        this.encoding = encoding;
+        this.decoder = encoding.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.inputBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.outputBuffer = CharBuffer.allocate(BUFFER_SIZE);
+        this.closed = false;
     }
 
     public WriterOutputStream(Writer writer) {
@@ -22,27 +47,90 @@ public final class WriterOutputStream extends OutputStream {
     }
 
     @Override
-    public void close() throws IOException {
-        writer.close();
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            inputBuffer.flip();
+            decode(true);
+            while (decoder.flush(outputBuffer).isOverflow()) {
+                forwardDecoded();
+            }
+            forwardDecoded();
+        } finally {
+            writer.close();
+        }
     }
 
     @Override
-    public void flush() throws IOException {
+    public synchronized void flush() throws IOException {
+        // The bytes of an incomplete character cannot be forwarded yet.
         writer.flush();
     }
 
     @Override
     public void write(byte[] b) throws IOException {
-        writer.write(new String(b, encoding));
+        write(b, 0, b.length);
     }
 
     @Override
-    public void write(byte[] b, int off, int len) throws IOException {
-        writer.write(new String(b, off, len, encoding));
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        ExceptionHelper.checkArgumentInRange(off, 0, b.length, "off");
+        ExceptionHelper.checkArgumentInRange(len, 0, b.length - off, "len");
+        ensureOpen();
+
+        int currentOffset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            int chunkSize = Math.min(remaining, inputBuffer.remaining());
+            inputBuffer.put(b, currentOffset, chunkSize);
+            currentOffset += chunkSize;
+            remaining -= chunkSize;
+
+            decodeInput();
+        }
     }
 
     @Override
-    public void write(int b) throws IOException {
-        write(new byte[]{(byte)b});
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+
+        inputBuffer.put((byte)b);
+        decodeInput();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream has been closed.");
+        }
+    }
+
+    private void decodeInput() throws IOException {
+        inputBuffer.flip();
+        try {
+            decode(false);
+        } finally {
+            inputBuffer.compact();
+        }
+    }
+
+    private void decode(boolean endOfInput) throws IOException {
+        CoderResult result;
+        do {
+            result = decoder.decode(inputBuffer, outputBuffer, endOfInput);
+            forwardDecoded();
+        } while (result.isOverflow());
+    }
+
+    private void forwardDecoded() throws IOException {
+        int length = outputBuffer.position();
+        if (length > 0) {
+            writer.write(outputBuffer.array(), outputBuffer.arrayOffset(), length);
+            outputBuffer.clear();
+        }
     }
 }
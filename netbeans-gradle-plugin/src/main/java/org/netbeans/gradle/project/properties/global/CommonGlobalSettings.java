@@ -49,13 +49,18 @@ public final class CommonGlobalSettings {
     private final PropertyReference<Boolean> compileOnSave;
     private final PropertyReference<Boolean> replaceLfOnStdIn;
     private final PropertyReference<Boolean> loadRootProjectFirst;
+    private final PropertyReference<Boolean> watchTestReports;
 
     private final PropertyReference<Boolean> detectProjectDependenciesByJarName;
     private final PropertyReference<SelfMaintainedTasks> selfMaintainedTasks;
     private final PropertyReference<ModelLoadingStrategy> modelLoadingStrategy;
 
     private final PropertyReference<Integer> projectCacheSize;
+    private final PropertyReference<Integer> projectCacheMemoryBudgetMb;
+    private final PropertyReference<Integer> maxParallelProjectLoads;
     private final PropertyReference<Integer> gradleDaemonTimeoutSec;
+    private final PropertyReference<Integer> maxParallelDaemonTasks;
+    private final PropertyReference<Integer> outputTabLineLimit;
 
     public CommonGlobalSettings(ActiveSettingsQuery activeSettingsQuery) {
         ExceptionHelper.checkNotNullArgument(activeSettingsQuery, "activeSettingsQuery");
@@ -74,11 +79,16 @@ public final class CommonGlobalSettings {
         this.compileOnSave = compileOnSave(activeSettingsQuery);
         this.replaceLfOnStdIn = replaceLfOnStdIn(activeSettingsQuery);
         this.loadRootProjectFirst = loadRootProjectFirst(activeSettingsQuery);
+        this.watchTestReports = watchTestReports(activeSettingsQuery);
         this.detectProjectDependenciesByJarName = detectProjectDependenciesByJarName(activeSettingsQuery);
         this.selfMaintainedTasks = selfMaintainedTasks(activeSettingsQuery);
         this.modelLoadingStrategy = modelLoadingStrategy(activeSettingsQuery);
         this.projectCacheSize = projectCacheSize(activeSettingsQuery);
+        this.projectCacheMemoryBudgetMb = projectCacheMemoryBudgetMb(activeSettingsQuery);
+        this.maxParallelProjectLoads = maxParallelProjectLoads(activeSettingsQuery);
         this.gradleDaemonTimeoutSec = gradleDaemonTimeoutSec(activeSettingsQuery);
+        this.maxParallelDaemonTasks = maxParallelDaemonTasks(activeSettingsQuery);
+        this.outputTabLineLimit = outputTabLineLimit(activeSettingsQuery);
     }
 
     public static PropertyReference<ScriptPlatform> defaultJdk(ActiveSettingsQuery activeSettingsQuery) {
@@ -200,6 +210,14 @@ public final class CommonGlobalSettings {
         return loadRootProjectFirst;
     }
 
+    public static PropertyReference<Boolean> watchTestReports(ActiveSettingsQuery activeSettingsQuery) {
+        return propertyRef(defineBooleanProperty("tasks", "watch-test-reports"), activeSettingsQuery, false);
+    }
+
+    public PropertyReference<Boolean> watchTestReports() {
+        return watchTestReports;
+    }
+
     public static PropertyReference<Boolean> detectProjectDependenciesByJarName(ActiveSettingsQuery activeSettingsQuery) {
         return propertyRef(
                 defineBooleanProperty("hacks", "detect-project-dep-by-jar-name"),
@@ -241,6 +259,22 @@ public final class CommonGlobalSettings {
         return projectCacheSize;
     }
 
+    public static PropertyReference<Integer> projectCacheMemoryBudgetMb(ActiveSettingsQuery activeSettingsQuery) {
+        return propertyRef(defineIntProperty("cache", "memory-budget-mb"), activeSettingsQuery, null);
+    }
+
+    public PropertyReference<Integer> projectCacheMemoryBudgetMb() {
+        return projectCacheMemoryBudgetMb;
+    }
+
+    public static PropertyReference<Integer> maxParallelProjectLoads(ActiveSettingsQuery activeSettingsQuery) {
+        return propertyRef(defineIntProperty("model-loading", "max-parallel-builds"), activeSettingsQuery, null);
+    }
+
+    public PropertyReference<Integer> maxParallelProjectLoads() {
+        return maxParallelProjectLoads;
+    }
+
     public static PropertyReference<Integer> gradleDaemonTimeoutSec(ActiveSettingsQuery activeSettingsQuery) {
         return propertyRef(defineIntProperty("daemon", "timeout-seconds"), activeSettingsQuery, null);
     }
@@ -249,6 +283,22 @@ public final class CommonGlobalSettings {
         return gradleDaemonTimeoutSec;
     }
 
+    public static PropertyReference<Integer> maxParallelDaemonTasks(ActiveSettingsQuery activeSettingsQuery) {
+        return propertyRef(defineIntProperty("daemon", "max-parallel-builds"), activeSettingsQuery, null);
+    }
+
+    public PropertyReference<Integer> maxParallelDaemonTasks() {
+        return maxParallelDaemonTasks;
+    }
+
+    public static PropertyReference<Integer> outputTabLineLimit(ActiveSettingsQuery activeSettingsQuery) {
+        return propertyRef(defineIntProperty("tasks", "output-line-limit"), activeSettingsQuery, null);
+    }
+
+    public PropertyReference<Integer> outputTabLineLimit() {
+        return outputTabLineLimit;
+    }
+
     public File tryGetGradleInstallationAsFile() {
         GradleLocationDef locationDef = gradleLocation.getActiveValue();
         GradleLocation location = locationDef.getLocation(StringResolvers.getDefaultGlobalResolver());
@@ -7,6 +7,7 @@ import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,7 +40,7 @@ import org.jtrim.event.ListenerRef;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.gradle.model.OperationInitializer;
-import org.netbeans.gradle.model.util.TemporaryFileManager;
+import org.netbeans.gradle.model.util.PersistentFileCache;
 import org.netbeans.gradle.model.util.TemporaryFileRef;
 import org.netbeans.gradle.project.NbGradleProject;
 import org.netbeans.gradle.project.NbStrings;
@@ -47,6 +48,7 @@ import org.netbeans.gradle.project.api.config.InitScriptQuery;
 import org.netbeans.gradle.project.api.config.InitScriptQueryEx;
 import org.netbeans.gradle.project.api.modelquery.GradleTarget;
 import org.netbeans.gradle.project.api.task.CommandCompleteListener;
+import org.netbeans.gradle.project.api.task.ContextAwareCommandCompleteListener;
 import org.netbeans.gradle.project.api.task.DaemonTaskContext;
 import org.netbeans.gradle.project.api.task.ExecutedCommandContext;
 import org.netbeans.gradle.project.api.task.GradleActionProviderContext;
@@ -59,18 +61,16 @@ import org.netbeans.gradle.project.api.task.TaskVariableMap;
 import org.netbeans.gradle.project.model.DefaultGradleModelLoader;
 import org.netbeans.gradle.project.model.DefaultModelBuilderSetup;
 import org.netbeans.gradle.project.output.BuildErrorConsumer;
-import org.netbeans.gradle.project.output.FileLineConsumer;
 import org.netbeans.gradle.project.output.IOTabRef;
 import org.netbeans.gradle.project.output.IOTabs;
 import org.netbeans.gradle.project.output.InputOutputWrapper;
+import org.netbeans.gradle.project.output.LineOutputDispatcher;
 import org.netbeans.gradle.project.output.LineOutputWriter;
-import org.netbeans.gradle.project.output.OutputLinkPrinter;
-import org.netbeans.gradle.project.output.OutputUrlConsumer;
-import org.netbeans.gradle.project.output.ProjectFileConsumer;
+import org.netbeans.gradle.project.output.OutputSpillLog;
+import org.netbeans.gradle.project.output.ProjectOutputLinks;
 import org.netbeans.gradle.project.output.ReaderInputStream;
 import org.netbeans.gradle.project.output.ReplaceLineFeedReader;
 import org.netbeans.gradle.project.output.SmartOutputHandler;
-import org.netbeans.gradle.project.output.StackTraceConsumer;
 import org.netbeans.gradle.project.output.TaskIOTab;
 import org.netbeans.gradle.project.output.WriterOutputStream;
 import org.netbeans.gradle.project.properties.global.CommonGlobalSettings;
@@ -153,10 +153,25 @@ public final class AsyncGradleTask implements Runnable {
             }
         }
 
+        return persistentFileRef(scriptFile);
+    }
+
+    private static TemporaryFileRef getCachedInitScript(InitScriptQuery scriptQuery) throws IOException {
+        // The files are named after their content, so the path of a script
+        // remains the same between builds (and IDE restarts) as long as its
+        // content does not change. This allows Gradle to reuse the compiled
+        // script.
+        String scriptContent = scriptQuery.getInitScript();
+        File scriptFile = PersistentFileCache.getDefault().getFile(
+                "task-init-script", GroovyScripts.EXTENSION, scriptContent, StringUtils.UTF8);
+        return persistentFileRef(scriptFile);
+    }
+
+    private static TemporaryFileRef persistentFileRef(final File file) {
         return new TemporaryFileRef() {
             @Override
             public File getFile() {
-                return scriptFile;
+                return file;
             }
 
             @Override
@@ -194,9 +209,7 @@ public final class AsyncGradleTask implements Runnable {
                         results.add(getManualInitScript(userHome, scriptQueryEx));
                     }
                     else {
-                        String scriptContent = scriptQuery.getInitScript();
-                        results.add(TemporaryFileManager.getDefault().createFile(
-                                "task-init-script", scriptContent, StringUtils.UTF8));
+                        results.add(getCachedInitScript(scriptQuery));
                     }
                 } catch (Throwable ex) {
                     LOGGER.log(Level.SEVERE,
@@ -270,34 +283,48 @@ public final class AsyncGradleTask implements Runnable {
             BuildLauncher buildLauncher,
             TaskIOTab tab) {
 
+        // The link finders (and the source files they have found) are reused
+        // by every task of the project.
+        ProjectOutputLinks outputLinks = project.getOutputLinks();
+
         List<SmartOutputHandler.Consumer> outputConsumers = new ArrayList<>();
-        outputConsumers.add(new OutputLinkPrinter(
-                new StackTraceConsumer(project),
-                new OutputUrlConsumer(),
-                new ProjectFileConsumer(project)));
+        outputConsumers.add(outputLinks.getOutputLinkPrinter());
 
         List<SmartOutputHandler.Consumer> errorConsumers = new ArrayList<>();
         errorConsumers.add(new BuildErrorConsumer());
-        errorConsumers.add(new OutputLinkPrinter(
-                new StackTraceConsumer(project),
-                new OutputUrlConsumer(),
-                new ProjectFileConsumer(project),
-                new FileLineConsumer()));
+        errorConsumers.add(outputLinks.getErrorLinkPrinter());
 
         InputOutputWrapper io = tab.getIo();
-        Writer forwardedStdOut = new LineOutputWriter(new SmartOutputHandler(
+        LineOutputWriter.Handler stdOutHandler = new SmartOutputHandler(
                 io.getIo(),
                 io.getOutRef(),
                 Arrays.asList(taskDef.getStdOutListener(project)),
-                outputConsumers));
-        Writer forwardedStdErr = new LineOutputWriter(new SmartOutputHandler(
+                outputConsumers);
+        LineOutputWriter.Handler stdErrHandler = new SmartOutputHandler(
                 io.getIo(),
                 io.getErrRef(),
                 Arrays.asList(taskDef.getStdErrListener(project)),
-                errorConsumers));
+                errorConsumers);
+
+        OutputSpillLog spillLog = null;
+        Integer outputLineLimit = CommonGlobalSettings.getDefault().outputTabLineLimit().getActiveValue();
+        if (outputLineLimit != null && outputLineLimit > 0) {
+            spillLog = new OutputSpillLog(io, outputLineLimit);
+            stdOutHandler = spillLog.wrapHandler(stdOutHandler);
+            stdErrHandler = spillLog.wrapHandler(stdErrHandler);
+        }
+
+        LineOutputDispatcher outputDispatcher = tab.getOutputDispatcher();
+        Writer forwardedStdOut = new LineOutputWriter(stdOutHandler, outputDispatcher);
+        Writer forwardedStdErr = new LineOutputWriter(stdErrHandler, outputDispatcher);
+
+        // Closing the streams flushes the bytes of an incomplete character
+        // and closes the writers they forward to.
+        WriterOutputStream stdOut = new WriterOutputStream(forwardedStdOut);
+        WriterOutputStream stdErr = new WriterOutputStream(forwardedStdErr);
 
-        buildLauncher.setStandardOutput(new WriterOutputStream(forwardedStdOut));
-        buildLauncher.setStandardError(new WriterOutputStream(forwardedStdErr));
+        buildLauncher.setStandardOutput(stdOut);
+        buildLauncher.setStandardError(stdErr);
 
         Reader input = tab.getIo().getInRef();
         if (CommonGlobalSettings.getDefault().replaceLfOnStdIn().getActiveValue()) {
@@ -306,7 +333,11 @@ public final class AsyncGradleTask implements Runnable {
 
         buildLauncher.setStandardInput(new ReaderInputStream(input));
 
-        return new OutputRef(forwardedStdOut, forwardedStdErr);
+        // The spill log must be closed after the writers have forwarded
+        // their remaining lines.
+        return spillLog != null
+                ? new OutputRef(stdOut, stdErr, spillLog)
+                : new OutputRef(stdOut, stdErr);
     }
 
     private boolean checkTaskExecutable(
@@ -441,6 +472,10 @@ public final class AsyncGradleTask implements Runnable {
         gradleConnector.forProjectDirectory(projectDir);
         ProjectConnection projectConnection = null;
         try {
+            // The command finalizer is notified in the finally block below,
+            // so listeners starting work here can always stop it.
+            notifyExecutionStarted(taskDef);
+
             projectConnection = gradleConnector.connect();
 
             BuildLauncher buildLauncher = projectConnection.newBuild();
@@ -469,6 +504,7 @@ public final class AsyncGradleTask implements Runnable {
                         GradleCommandServiceFactory commandServiceFactory = taskDef.getCommandServiceFactory();
                         GradleCommandContext commandContext = new GradleCommandContext(project, tab.getIo().getIo());
 
+                        boolean buildCompleted = false;
                         try (OutputRef outputRef = configureOutput(project, taskDef, buildLauncher, tab);
                                 GradleCommandService commandService = commandServiceFactory.startService(cancelToken, commandContext)) {
                             assert outputRef != null; // Avoid warning
@@ -489,12 +525,18 @@ public final class AsyncGradleTask implements Runnable {
                                 printCommand(buildOutput, command, finalTaskDef);
                                 configureBuildLauncher(targetSetup, buildLauncher, finalTaskDef, initScripts);
                                 runBuild(cancelToken, buildLauncher);
-
-                                taskDef.getSuccessfulCommandFinalizer().finalizeSuccessfulCommand(
-                                        buildOutput,
-                                        io.getErrRef());
+                                buildCompleted = true;
                             }
                         }
+
+                        // Closing the output above waits until every line of
+                        // the build has been printed, so the output of the
+                        // finalizer follows the output of the build.
+                        if (buildCompleted) {
+                            taskDef.getSuccessfulCommandFinalizer().finalizeSuccessfulCommand(
+                                    buildOutput,
+                                    tab.getIo().getErrRef());
+                        }
                     } catch (Throwable ex) {
                         Level logLevel;
 
@@ -537,6 +579,13 @@ public final class AsyncGradleTask implements Runnable {
         }
     }
 
+    private static void notifyExecutionStarted(GradleTaskDef taskDef) {
+        ContextAwareCommandCompleteListener commandFinalizer = taskDef.getCommandFinalizer();
+        if (commandFinalizer instanceof ExecutionAwareCommandCompleteListener) {
+            ((ExecutionAwareCommandCompleteListener)commandFinalizer).onExecutionStarted();
+        }
+    }
+
     private void preSubmitGradleTask() {
         if (!actionContexts.contains(GradleActionProviderContext.DONT_SAVE_FILES)) {
             LifecycleManager.getDefault().saveAll();
@@ -769,7 +818,8 @@ public final class AsyncGradleTask implements Runnable {
 
             String progressCaption = processedCommandSpec.getProgressCaption();
             boolean nonBlocking = processedCommandSpec.getProcessedTaskDef().isNonBlocking();
-            this.daemonTaskDef = new DaemonTaskDef(progressCaption, nonBlocking, new DaemonTask() {
+            Path rootProjectDir = DefaultGradleModelLoader.getBuildRootDir(project);
+            this.daemonTaskDef = new DaemonTaskDef(progressCaption, nonBlocking, DaemonTaskKind.COMMAND, rootProjectDir, new DaemonTask() {
                 @Override
                 public void run(CancellationToken cancelToken, ProgressHandle progress) {
                     doGradleTasksWithProgress(cancelToken, progress, BuildExecutionItem.this);
@@ -838,18 +888,34 @@ public final class AsyncGradleTask implements Runnable {
     }
 
     private static class OutputRef implements Closeable {
-        private final Writer[] writers;
+        private final Closeable[] outputs;
 
-        public OutputRef(Writer... writers) {
-            this.writers = writers.clone();
+        public OutputRef(Closeable... outputs) {
+            this.outputs = outputs.clone();
 
-            ExceptionHelper.checkNotNullElements(this.writers, "writers");
+            ExceptionHelper.checkNotNullElements(this.outputs, "outputs");
         }
 
         @Override
         public void close() throws IOException {
-            for (Writer writer: writers) {
-                writer.close();
+            // Every output must be closed even if a previous one fails,
+            // otherwise its remaining content would be lost.
+            IOException error = null;
+            for (Closeable output: outputs) {
+                try {
+                    output.close();
+                } catch (IOException ex) {
+                    if (error == null) {
+                        error = ex;
+                    }
+                    else {
+                        error.addSuppressed(ex);
+                    }
+                }
+            }
+
+            if (error != null) {
+                throw error;
             }
         }
     }
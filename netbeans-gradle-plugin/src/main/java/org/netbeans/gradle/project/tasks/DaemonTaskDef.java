@@ -1,19 +1,48 @@
 package org.netbeans.gradle.project.tasks;
 
+import java.nio.file.Path;
 import org.jtrim.cancel.CancellationToken;
 import org.jtrim.utils.ExceptionHelper;
 
 public final class DaemonTaskDef {
     private final String caption;
     private final boolean nonBlocking;
+    private final DaemonTaskKind kind;
+    private final Path rootProjectDir;
     private final DaemonTask task;
 
     public DaemonTaskDef(String caption, boolean nonBlocking, DaemonTask task) {
+        this(caption, nonBlocking, DaemonTaskKind.OTHER, null, task);
+    }
+
+    /**
+     * Creates a new task definition.
+     *
+     * @param caption the caption displayed while the task is being executed.
+     *   This argument cannot be {@code null}.
+     * @param nonBlocking {@code true} if other tasks of the same build must
+     *   wait for this task to complete, {@code false} if this task only needs
+     *   to wait for the previously submitted tasks of the same build
+     * @param kind the kind of the task. This argument cannot be {@code null}.
+     * @param rootProjectDir the root project directory of the build the task
+     *   is executed for. This argument can be {@code null}, in which case the
+     *   task is queued with the other tasks whose build is not known.
+     * @param task the task to be executed. This argument cannot be {@code null}.
+     */
+    public DaemonTaskDef(
+            String caption,
+            boolean nonBlocking,
+            DaemonTaskKind kind,
+            Path rootProjectDir,
+            DaemonTask task) {
         ExceptionHelper.checkNotNullArgument(caption, "caption");
+        ExceptionHelper.checkNotNullArgument(kind, "kind");
         ExceptionHelper.checkNotNullArgument(task, "task");
 
         this.caption = caption;
         this.nonBlocking = nonBlocking;
+        this.kind = kind;
+        this.rootProjectDir = rootProjectDir;
         this.task = task;
     }
 
@@ -25,6 +54,14 @@ public final class DaemonTaskDef {
         return nonBlocking;
     }
 
+    public DaemonTaskKind getKind() {
+        return kind;
+    }
+
+    public Path getRootProjectDir() {
+        return rootProjectDir;
+    }
+
     public DaemonTask getTask() {
         return task;
     }
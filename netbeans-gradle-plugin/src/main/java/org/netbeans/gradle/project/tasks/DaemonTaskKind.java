@@ -0,0 +1,23 @@
+package org.netbeans.gradle.project.tasks;
+
+/**
+ * Defines the kinds of tasks executed by the Gradle daemon. The kind of a task
+ * determines its priority relative to the other tasks of the same build and
+ * the statistics it is accounted to.
+ */
+public enum DaemonTaskKind {
+    MODEL_LOAD(true),
+    COMMAND(true),
+    DOWNLOAD_SOURCES(false),
+    OTHER(false);
+
+    private final boolean highPriority;
+
+    private DaemonTaskKind(boolean highPriority) {
+        this.highPriority = highPriority;
+    }
+
+    public boolean isHighPriority() {
+        return highPriority;
+    }
+}
@@ -0,0 +1,433 @@
+package org.netbeans.gradle.project.tasks;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.cancel.OperationCanceledException;
+import org.jtrim.concurrent.CancelableTask;
+import org.jtrim.concurrent.CleanupTask;
+import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.concurrent.WaitableSignal;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines a scheduler granting permits to execute Gradle daemon tasks. At most
+ * one permit is granted for a build at a time, while permits might be granted
+ * for different builds concurrently (up to a configurable limit). Permits of
+ * the same build are granted in the order of the priority of the
+ * {@link DaemonTaskKind kind} of the task and then in the order of the
+ * requests.
+ * <P>
+ * Tasks keep a thread of the executor specified at construction time busy
+ * while they hold their permit, so the executor must be able to execute at
+ * least as many tasks concurrently as the configured limit for the limit to
+ * be effective.
+ * <P>
+ * The methods of this class can be called from multiple threads concurrently.
+ */
+public final class DaemonTaskScheduler {
+    private static final Object UNKNOWN_BUILD_KEY = new Object();
+
+    private final KeyedTaskScheduler<Object> buildScheduler;
+
+    private final Lock mainLock;
+    private final Map<Object, BuildExecutor> buildExecutors;
+    private final Map<DaemonTaskKind, KindStatisticsCollector> kindStatistics;
+
+    public DaemonTaskScheduler(TaskExecutor wrapped, int maxConcurrency) {
+        this.buildScheduler = new KeyedTaskScheduler<>(wrapped, maxConcurrency);
+        this.mainLock = new ReentrantLock();
+        this.buildExecutors = new HashMap<>();
+        this.kindStatistics = new EnumMap<>(DaemonTaskKind.class);
+
+        for (DaemonTaskKind kind: DaemonTaskKind.values()) {
+            kindStatistics.put(kind, new KindStatisticsCollector());
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return buildScheduler.getMaxConcurrency();
+    }
+
+    /**
+     * Sets the maximum number of builds for which permits might be held
+     * concurrently. Lowering the limit does not affect the permits already
+     * granted.
+     *
+     * @param maxConcurrency the maximum number of builds for which permits
+     *   might be held concurrently. This argument must be greater than zero.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        buildScheduler.setMaxConcurrency(maxConcurrency);
+    }
+
+    private static Object getBuildKey(Path rootProjectDir) {
+        return rootProjectDir != null ? rootProjectDir : UNKNOWN_BUILD_KEY;
+    }
+
+    private BuildExecutor acquireExecutor(Object key) {
+        mainLock.lock();
+        try {
+            BuildExecutor executor = buildExecutors.get(key);
+            if (executor == null) {
+                executor = new BuildExecutor(new PriorityAwareExecutor(buildScheduler.getExecutor(key)));
+                buildExecutors.put(key, executor);
+            }
+            executor.requestCount++;
+            return executor;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    private void releaseExecutor(Object key, BuildExecutor executor) {
+        mainLock.lock();
+        try {
+            executor.requestCount--;
+            // Remove the executor of the build once it has no more requests,
+            // so that the executors of builds no longer used are not retained.
+            if (executor.requestCount <= 0 && buildExecutors.get(key) == executor) {
+                buildExecutors.remove(key);
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of builds for which there are permits currently
+     * requested or held.
+     */
+    int getActiveBuildCount() {
+        mainLock.lock();
+        try {
+            return buildExecutors.size();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the given task is allowed to be executed and returns the
+     * permit granted to the task. The returned permit must be released after
+     * the task has been completed, even if the task fails.
+     *
+     * @param cancelToken the cancellation token signaling that the caller no
+     *   longer wants to wait for the permit. This argument cannot be {@code null}.
+     * @param taskDef the task requesting the permit. This argument cannot be
+     *   {@code null}.
+     * @return the permit granted to the task. This method never returns
+     *   {@code null}.
+     *
+     * @throws OperationCanceledException thrown if cancellation was requested
+     *   before the permit was granted
+     */
+    public Permit acquire(CancellationToken cancelToken, DaemonTaskDef taskDef) {
+        ExceptionHelper.checkNotNullArgument(cancelToken, "cancelToken");
+        ExceptionHelper.checkNotNullArgument(taskDef, "taskDef");
+
+        final Permit permit = new Permit(taskDef.getRootProjectDir(), kindStatistics.get(taskDef.getKind()));
+
+        final Object key = getBuildKey(taskDef.getRootProjectDir());
+        final BuildExecutor buildExecutor = acquireExecutor(key);
+        TaskExecutor executor = buildExecutor.getExecutor(taskDef.getKind());
+        executor.execute(cancelToken, new CancelableTask() {
+            @Override
+            public void execute(CancellationToken cancelToken) {
+                permit.holdUntilReleased();
+            }
+        }, new CleanupTask() {
+            @Override
+            public void cleanup(boolean canceled, Throwable error) {
+                try {
+                    permit.abandon();
+                } finally {
+                    releaseExecutor(key, buildExecutor);
+                }
+            }
+        });
+
+        permit.waitForGrant(cancelToken);
+        return permit;
+    }
+
+    /**
+     * Returns the wait and run time statistics of the given kind of tasks.
+     *
+     * @param kind the kind of tasks whose statistics is to be returned. This
+     *   argument cannot be {@code null}.
+     * @return the statistics of the given kind of tasks. This method never
+     *   returns {@code null}.
+     */
+    public TaskKindStatistics getStatistics(DaemonTaskKind kind) {
+        ExceptionHelper.checkNotNullArgument(kind, "kind");
+        return kindStatistics.get(kind).getStatistics();
+    }
+
+    public Map<DaemonTaskKind, TaskKindStatistics> getAllStatistics() {
+        Map<DaemonTaskKind, TaskKindStatistics> result = new EnumMap<>(DaemonTaskKind.class);
+        for (Map.Entry<DaemonTaskKind, KindStatisticsCollector> entry: kindStatistics.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return result;
+    }
+
+    public static final class Permit {
+        private static final int STATE_WAITING = 0;
+        private static final int STATE_GRANTED = 1;
+        private static final int STATE_ABANDONED = 2;
+
+        private final Path rootProjectDir;
+        private final KindStatisticsCollector statistics;
+        private final long requestTimeNanos;
+
+        private final AtomicInteger state;
+        private final WaitableSignal grantedSignal;
+        private final WaitableSignal queueReleasedSignal;
+        private final AtomicBoolean released;
+        private volatile long grantTimeNanos;
+
+        private Permit(Path rootProjectDir, KindStatisticsCollector statistics) {
+            this.rootProjectDir = rootProjectDir;
+            this.statistics = statistics;
+            this.requestTimeNanos = System.nanoTime();
+            this.state = new AtomicInteger(STATE_WAITING);
+            this.grantedSignal = new WaitableSignal();
+            this.queueReleasedSignal = new WaitableSignal();
+            this.released = new AtomicBoolean(false);
+            this.grantTimeNanos = 0;
+        }
+
+        private void holdUntilReleased() {
+            grantTimeNanos = System.nanoTime();
+            if (!state.compareAndSet(STATE_WAITING, STATE_GRANTED)) {
+                return;
+            }
+
+            statistics.addWaitTime(grantTimeNanos - requestTimeNanos);
+            grantedSignal.signal();
+            queueReleasedSignal.waitSignal(Cancellation.UNCANCELABLE_TOKEN);
+        }
+
+        private void abandon() {
+            if (state.compareAndSet(STATE_WAITING, STATE_ABANDONED)) {
+                grantedSignal.signal();
+            }
+        }
+
+        private void waitForGrant(CancellationToken cancelToken) {
+            try {
+                grantedSignal.waitSignal(cancelToken);
+            } catch (OperationCanceledException ex) {
+                if (!state.compareAndSet(STATE_WAITING, STATE_ABANDONED)) {
+                    release();
+                }
+                throw ex;
+            }
+
+            if (state.get() != STATE_GRANTED) {
+                throw new OperationCanceledException();
+            }
+        }
+
+        /**
+         * Returns the root project directory of the build this permit was
+         * granted for or {@code null} if the build is not known.
+         *
+         * @return the root project directory of the build this permit was
+         *   granted for
+         */
+        public Path getRootProjectDir() {
+            return rootProjectDir;
+        }
+
+        /**
+         * Allows other tasks of the same build to be executed but unlike
+         * {@link #release() release} does not consider the task completed.
+         * That is, the run time of the task is still measured until
+         * {@code release} is called.
+         */
+        public void releaseQueue() {
+            queueReleasedSignal.signal();
+        }
+
+        public boolean isQueueReleased() {
+            return queueReleasedSignal.isSignaled();
+        }
+
+        /**
+         * Releases this permit and records the time elapsed since the permit
+         * was granted as the run time of the task. Subsequent calls to this
+         * method do nothing.
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                if (state.get() == STATE_GRANTED) {
+                    statistics.addRunTime(System.nanoTime() - grantTimeNanos);
+                }
+            } finally {
+                releaseQueue();
+            }
+        }
+    }
+
+    public static final class TaskKindStatistics {
+        private final long startedTaskCount;
+        private final long totalWaitTimeNanos;
+        private final long maxWaitTimeNanos;
+        private final long completedTaskCount;
+        private final long totalRunTimeNanos;
+        private final long maxRunTimeNanos;
+
+        private TaskKindStatistics(
+                long startedTaskCount,
+                long totalWaitTimeNanos,
+                long maxWaitTimeNanos,
+                long completedTaskCount,
+                long totalRunTimeNanos,
+                long maxRunTimeNanos) {
+            this.startedTaskCount = startedTaskCount;
+            this.totalWaitTimeNanos = totalWaitTimeNanos;
+            this.maxWaitTimeNanos = maxWaitTimeNanos;
+            this.completedTaskCount = completedTaskCount;
+            this.totalRunTimeNanos = totalRunTimeNanos;
+            this.maxRunTimeNanos = maxRunTimeNanos;
+        }
+
+        private static long average(long total, long count) {
+            return count > 0 ? total / count : 0;
+        }
+
+        public long getStartedTaskCount() {
+            return startedTaskCount;
+        }
+
+        /**
+         * Returns the sum of the time the started tasks had to wait for their
+         * permit.
+         *
+         * @param unit the time unit of the returned value. This argument
+         *   cannot be {@code null}.
+         * @return the sum of the time the started tasks had to wait for their
+         *   permit
+         */
+        public long getTotalWaitTime(TimeUnit unit) {
+            return unit.convert(totalWaitTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxWaitTime(TimeUnit unit) {
+            return unit.convert(maxWaitTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getAverageWaitTime(TimeUnit unit) {
+            return unit.convert(average(totalWaitTimeNanos, startedTaskCount), TimeUnit.NANOSECONDS);
+        }
+
+        public long getCompletedTaskCount() {
+            return completedTaskCount;
+        }
+
+        public long getTotalRunTime(TimeUnit unit) {
+            return unit.convert(totalRunTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxRunTime(TimeUnit unit) {
+            return unit.convert(maxRunTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getAverageRunTime(TimeUnit unit) {
+            return unit.convert(average(totalRunTimeNanos, completedTaskCount), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return "TaskKindStatistics{"
+                    + "started=" + startedTaskCount
+                    + ", avgWaitMs=" + getAverageWaitTime(TimeUnit.MILLISECONDS)
+                    + ", maxWaitMs=" + getMaxWaitTime(TimeUnit.MILLISECONDS)
+                    + ", completed=" + completedTaskCount
+                    + ", avgRunMs=" + getAverageRunTime(TimeUnit.MILLISECONDS)
+                    + ", maxRunMs=" + getMaxRunTime(TimeUnit.MILLISECONDS) + '}';
+        }
+    }
+
+    private static final class BuildExecutor {
+        private final PriorityAwareExecutor executor;
+        // Guarded by the mainLock of the scheduler.
+        private int requestCount;
+
+        public BuildExecutor(PriorityAwareExecutor executor) {
+            this.executor = executor;
+            this.requestCount = 0;
+        }
+
+        public TaskExecutor getExecutor(DaemonTaskKind kind) {
+            return kind.isHighPriority()
+                    ? executor.getHighPriorityExecutor()
+                    : executor.getLowPriorityExecutor();
+        }
+    }
+
+    private static final class KindStatisticsCollector {
+        private final Lock lock;
+        private long startedTaskCount;
+        private long totalWaitTimeNanos;
+        private long maxWaitTimeNanos;
+        private long completedTaskCount;
+        private long totalRunTimeNanos;
+        private long maxRunTimeNanos;
+
+        public KindStatisticsCollector() {
+            this.lock = new ReentrantLock();
+        }
+
+        public void addWaitTime(long waitTimeNanos) {
+            lock.lock();
+            try {
+                startedTaskCount++;
+                totalWaitTimeNanos += waitTimeNanos;
+                maxWaitTimeNanos = Math.max(maxWaitTimeNanos, waitTimeNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void addRunTime(long runTimeNanos) {
+            lock.lock();
+            try {
+                completedTaskCount++;
+                totalRunTimeNanos += runTimeNanos;
+                maxRunTimeNanos = Math.max(maxRunTimeNanos, runTimeNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public TaskKindStatistics getStatistics() {
+            lock.lock();
+            try {
+                return new TaskKindStatistics(
+                        startedTaskCount,
+                        totalWaitTimeNanos,
+                        maxWaitTimeNanos,
+                        completedTaskCount,
+                        totalRunTimeNanos,
+                        maxRunTimeNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.jtrim.cancel.CancellationToken;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.api.project.Project;
+import org.netbeans.gradle.project.NbGradleProject;
 import org.netbeans.gradle.model.OperationInitializer;
 import org.netbeans.gradle.project.NbStrings;
 import org.netbeans.gradle.project.model.DefaultGradleModelLoader;
@@ -23,10 +24,12 @@ public final class DownloadSourcesTask implements DaemonTask {
         this.project = project;
     }
 
-    public static DaemonTaskDef createTaskDef(Project project) {
+    public static DaemonTaskDef createTaskDef(NbGradleProject project) {
         return new DaemonTaskDef(
                 NbStrings.getDownloadSourcesProgressCaption(),
                 true,
+                DaemonTaskKind.DOWNLOAD_SOURCES,
+                DefaultGradleModelLoader.getBuildRootDir(project),
                 new DownloadSourcesTask(project));
     }
 
@@ -0,0 +1,24 @@
+package org.netbeans.gradle.project.tasks;
+
+import org.netbeans.gradle.project.api.task.ContextAwareCommandCompleteListener;
+
+/**
+ * Defines a {@link ContextAwareCommandCompleteListener} which also needs to
+ * know when the execution of its command actually starts. The command might be
+ * canceled (or fail) before being executed, in which case neither method of
+ * the listener is called.
+ * <P>
+ * If {@link #onExecutionStarted() onExecutionStarted} was called, then
+ * {@link #onComplete(org.netbeans.gradle.project.api.task.ExecutedCommandContext, Throwable) onComplete}
+ * is always called after it, even if the command fails.
+ * <P>
+ * The methods of this interface are called from a background thread (not the
+ * Event Dispatch Thread).
+ */
+public interface ExecutionAwareCommandCompleteListener extends ContextAwareCommandCompleteListener {
+    /**
+     * Called when the execution of the command starts, before the build is
+     * started by Gradle.
+     */
+    public void onExecutionStarted();
+}
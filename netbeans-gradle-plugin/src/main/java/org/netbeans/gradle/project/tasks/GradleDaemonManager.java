@@ -1,12 +1,11 @@
 package org.netbeans.gradle.project.tasks;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jtrim.cancel.CancelableWaits;
 import org.jtrim.cancel.Cancellation;
 import org.jtrim.cancel.CancellationController;
 import org.jtrim.cancel.CancellationSource;
@@ -14,45 +13,158 @@ import org.jtrim.cancel.CancellationToken;
 import org.jtrim.concurrent.CancelableTask;
 import org.jtrim.concurrent.CleanupTask;
 import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.property.PropertySource;
 import org.jtrim.utils.ExceptionHelper;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.gradle.project.api.task.CommandCompleteListener;
+import org.netbeans.gradle.project.properties.global.CommonGlobalSettings;
+import org.netbeans.gradle.project.util.NbTaskExecutors;
 import org.openide.util.Cancellable;
 
 public final class GradleDaemonManager {
     private static final Logger LOGGER = Logger.getLogger(GradleDaemonManager.class.getName());
 
-    private static final ReentrantLock QUEUE_LOCK = new ReentrantLock(true);
+    // The actual number of concurrently executed tasks is limited by the scheduler.
+    private static final int MAX_PARALLEL_DAEMON_TASKS = 16;
+
+    private static final TaskExecutor PERMIT_HOLDER
+            = NbTaskExecutors.newExecutor("Gradle-Daemon-Task-Permits", MAX_PARALLEL_DAEMON_TASKS);
+
+    private static final AtomicReference<DaemonTaskScheduler> DEFAULT_SCHEDULER_REF
+            = new AtomicReference<>(null);
+
+    private static final ThreadLocal<DaemonTaskScheduler.Permit> CURRENT_PERMIT
+            = new ThreadLocal<>();
+
+    private static DaemonTaskScheduler getDefaultScheduler() {
+        DaemonTaskScheduler result = DEFAULT_SCHEDULER_REF.get();
+        if (result == null) {
+            final PropertySource<Integer> maxParallelTasks
+                    = CommonGlobalSettings.getDefault().maxParallelDaemonTasks().getActiveSource();
+            result = new DaemonTaskScheduler(PERMIT_HOLDER, toMaxParallelTasks(maxParallelTasks.getValue()));
+            if (DEFAULT_SCHEDULER_REF.compareAndSet(null, result)) {
+                final DaemonTaskScheduler scheduler = result;
+                maxParallelTasks.addChangeListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.setMaxConcurrency(toMaxParallelTasks(maxParallelTasks.getValue()));
+                    }
+                });
+                scheduler.setMaxConcurrency(toMaxParallelTasks(maxParallelTasks.getValue()));
+            }
+            else {
+                result = DEFAULT_SCHEDULER_REF.get();
+            }
+        }
+        return result;
+    }
+
+    private static int toMaxParallelTasks(Integer maxParallelTasks) {
+        // Each concurrently executed task is likely to require a separate
+        // daemon, so be conservative by default.
+        int result = maxParallelTasks != null ? maxParallelTasks : 2;
+        return Math.max(1, Math.min(result, MAX_PARALLEL_DAEMON_TASKS));
+    }
+
+    /**
+     * Returns the wait and run time statistics of the tasks submitted to the
+     * Gradle daemon by their kind.
+     *
+     * @return the statistics of the tasks submitted to the Gradle daemon. This
+     *   method never returns {@code null}.
+     */
+    public static Map<DaemonTaskKind, DaemonTaskScheduler.TaskKindStatistics> getTaskStatistics() {
+        return getDefaultScheduler().getAllStatistics();
+    }
+
+    private static void logStatistics(DaemonTaskScheduler scheduler, DaemonTaskKind kind) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Statistics of {0} daemon tasks: {1}",
+                    new Object[]{kind, scheduler.getStatistics(kind)});
+        }
+    }
+
+    /**
+     * Executes the given task after acquiring a permit from the given
+     * scheduler.
+     * <P>
+     * Tasks submitted by a task preventing other tasks from being executed
+     * (e.g., a model load waiting for the model of another project) are
+     * executed immediately on the calling thread without acquiring a new
+     * permit, even if they were submitted for another build. Otherwise
+     * the nested task could wait for a permit which cannot be granted until
+     * the outer task completes.
+     */
+    static void runGradleTask(
+            DaemonTaskScheduler scheduler,
+            CancellationToken cancelToken,
+            DaemonTaskDef taskDef,
+            ProgressHandle progress) {
+
+        DaemonTask task = taskDef.getTask();
+
+        if (isRunningExclusiveTask()) {
+            progress.switchToIndeterminate();
+            task.run(cancelToken, progress);
+            return;
+        }
+
+        if (taskDef.isNonBlocking()) {
+            runNonBlockingGradleTask(scheduler, cancelToken, taskDef, progress);
+        }
+        else {
+            runBlockingGradleTask(scheduler, cancelToken, taskDef, progress);
+        }
+    }
 
     private static void runNonBlockingGradleTask(
+            DaemonTaskScheduler scheduler,
             CancellationToken cancelToken,
-            DaemonTask task,
+            DaemonTaskDef taskDef,
             ProgressHandle progress) {
 
-        CancelableWaits.lock(cancelToken, QUEUE_LOCK);
+        DaemonTaskScheduler.Permit prevPermit = CURRENT_PERMIT.get();
+        DaemonTaskScheduler.Permit permit = scheduler.acquire(cancelToken, taskDef);
+        CURRENT_PERMIT.set(permit);
         try {
             progress.switchToIndeterminate();
-            task.run(cancelToken, progress);
-        } finally{
-            QUEUE_LOCK.unlock();
+            taskDef.getTask().run(cancelToken, progress);
+        } finally {
+            CURRENT_PERMIT.set(prevPermit);
+            permit.release();
+            logStatistics(scheduler, taskDef.getKind());
         }
     }
 
     private static void runBlockingGradleTask(
+            DaemonTaskScheduler scheduler,
             CancellationToken cancelToken,
-            DaemonTask task,
+            DaemonTaskDef taskDef,
             ProgressHandle progress) {
 
-        // This lock/unlock is here only to wait for pending non-blocking tasks.
-        CancelableWaits.lock(cancelToken, QUEUE_LOCK);
-        QUEUE_LOCK.unlock();
-
-        progress.switchToIndeterminate();
-        task.run(cancelToken, progress);
+        // The permit is only acquired to wait for the pending non-blocking
+        // tasks of the same build and to measure the run time of the task.
+        DaemonTaskScheduler.Permit permit = scheduler.acquire(cancelToken, taskDef);
+        permit.releaseQueue();
+        try {
+            progress.switchToIndeterminate();
+            taskDef.getTask().run(cancelToken, progress);
+        } finally {
+            permit.release();
+            logStatistics(scheduler, taskDef.getKind());
+        }
     }
 
+    /**
+     * Returns {@code true} if the calling thread is executing a task preventing
+     * other tasks of the same build from being executed.
+     *
+     * @return {@code true} if the calling thread is executing a task preventing
+     *   other tasks of the same build from being executed, {@code false} otherwise
+     */
     public static boolean isRunningExclusiveTask() {
-        return QUEUE_LOCK.isHeldByCurrentThread();
+        DaemonTaskScheduler.Permit permit = CURRENT_PERMIT.get();
+        return permit != null && !permit.isQueueReleased();
     }
 
     public static void submitGradleTask(
@@ -114,19 +226,12 @@ public final class GradleDaemonManager {
                 }
 
                 String displayName = taskDef.getCaption();
-                boolean nonBlocking = taskDef.isNonBlocking();
-                DaemonTask task = taskDef.getTask();
 
                 if (!Objects.equals(displayName, origDisplayName)) {
                     progress.start(displayName);
                 }
 
-                if (nonBlocking) {
-                    runNonBlockingGradleTask(cancelToken, task, progress.getCurrentHandle());
-                }
-                else {
-                    runBlockingGradleTask(cancelToken, task, progress.getCurrentHandle());
-                }
+                runGradleTask(getDefaultScheduler(), cancelToken, taskDef, progress.getCurrentHandle());
             }
         }, new CleanupTask() {
             @Override
@@ -0,0 +1,455 @@
+package org.netbeans.gradle.project.tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.cancel.OperationCanceledException;
+import org.jtrim.concurrent.CancelableTask;
+import org.jtrim.concurrent.CleanupTask;
+import org.jtrim.concurrent.TaskExecutor;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines a scheduler executing tasks submitted for different keys
+ * concurrently, while tasks submitted for the same key are executed one after
+ * another in submission order.
+ * <P>
+ * The number of keys whose tasks might be executed concurrently is limited.
+ * When there are more keys with pending tasks than the limit allows, the keys
+ * get their turn in a round-robin fashion, so a key with many queued tasks
+ * cannot starve the others.
+ * <P>
+ * The actual execution of the tasks is delegated to the executor specified at
+ * construction time, which must be able to execute at least as many tasks
+ * concurrently as the configured limit for the limit to be effective.
+ * <P>
+ * The queue of a key is removed once it has no more tasks, only the statistics
+ * of the most recently used idle keys are kept.
+ *
+ * @param <K> the type of the keys. The keys must have proper
+ *   {@code equals} and {@code hashCode} implementations.
+ */
+public final class KeyedTaskScheduler<K> {
+    private static final Logger LOGGER = Logger.getLogger(KeyedTaskScheduler.class.getName());
+
+    private static final int MAX_IDLE_STATISTICS = 64;
+
+    private final TaskExecutor wrapped;
+
+    private final Lock mainLock;
+    private final Map<K, KeyQueue<K>> queues;
+    private final Map<K, QueueStatistics> idleStatistics;
+    private final Deque<KeyQueue<K>> readyQueues;
+    private int runningCount;
+    private int maxConcurrency;
+
+    public KeyedTaskScheduler(TaskExecutor wrapped, int maxConcurrency) {
+        ExceptionHelper.checkNotNullArgument(wrapped, "wrapped");
+        ExceptionHelper.checkArgumentInRange(maxConcurrency, 1, Integer.MAX_VALUE, "maxConcurrency");
+
+        this.wrapped = wrapped;
+        this.mainLock = new ReentrantLock();
+        this.queues = new HashMap<>();
+        this.idleStatistics = new LinkedHashMap<K, QueueStatistics>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, QueueStatistics> eldest) {
+                return size() > MAX_IDLE_STATISTICS;
+            }
+        };
+        this.readyQueues = new ArrayDeque<>();
+        this.runningCount = 0;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        mainLock.lock();
+        try {
+            return maxConcurrency;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum number of keys whose tasks might be executed
+     * concurrently. Lowering the limit does not affect the tasks already being
+     * executed.
+     *
+     * @param maxConcurrency the maximum number of keys whose tasks might be
+     *   executed concurrently. This argument must be greater than zero.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        ExceptionHelper.checkArgumentInRange(maxConcurrency, 1, Integer.MAX_VALUE, "maxConcurrency");
+
+        List<TaskDef<K>> toStart;
+        mainLock.lock();
+        try {
+            this.maxConcurrency = maxConcurrency;
+            toStart = pollStartableTasksUnsafe();
+        } finally {
+            mainLock.unlock();
+        }
+
+        startTasks(toStart);
+    }
+
+    /**
+     * Returns an executor executing the submitted tasks after the previously
+     * submitted tasks of the same key have been completed.
+     *
+     * @param key the key of the tasks submitted to the returned executor.
+     *   This argument cannot be {@code null}.
+     * @return an executor executing the submitted tasks in the queue of the
+     *   given key. This method never returns {@code null}.
+     */
+    public TaskExecutor getExecutor(final K key) {
+        ExceptionHelper.checkNotNullArgument(key, "key");
+
+        return new TaskExecutor() {
+            @Override
+            public void execute(CancellationToken cancelToken, CancelableTask task, CleanupTask cleanupTask) {
+                submit(key, cancelToken, task, cleanupTask);
+            }
+        };
+    }
+
+    private void submit(K key, CancellationToken cancelToken, CancelableTask task, CleanupTask cleanupTask) {
+        ExceptionHelper.checkNotNullArgument(cancelToken, "cancelToken");
+        ExceptionHelper.checkNotNullArgument(task, "task");
+
+        List<TaskDef<K>> toStart;
+        mainLock.lock();
+        try {
+            KeyQueue<K> queue = queues.get(key);
+            if (queue == null) {
+                queue = new KeyQueue<>(key, idleStatistics.remove(key));
+                queues.put(key, queue);
+            }
+
+            queue.tasks.add(new TaskDef<>(queue, cancelToken, task, cleanupTask));
+            if (!queue.running && queue.tasks.size() == 1) {
+                readyQueues.add(queue);
+            }
+
+            toStart = pollStartableTasksUnsafe();
+        } finally {
+            mainLock.unlock();
+        }
+
+        startTasks(toStart);
+    }
+
+    private List<TaskDef<K>> pollStartableTasksUnsafe() {
+        List<TaskDef<K>> result = Collections.emptyList();
+        while (runningCount < maxConcurrency) {
+            KeyQueue<K> queue = readyQueues.poll();
+            if (queue == null) {
+                break;
+            }
+
+            TaskDef<K> taskDef = queue.tasks.poll();
+            assert taskDef != null;
+
+            queue.running = true;
+            runningCount++;
+
+            long waitTimeNanos = System.nanoTime() - taskDef.submitTimeNanos;
+            queue.startedTaskCount++;
+            queue.totalWaitTimeNanos += waitTimeNanos;
+            queue.maxWaitTimeNanos = Math.max(queue.maxWaitTimeNanos, waitTimeNanos);
+
+            if (result.isEmpty()) {
+                result = new ArrayList<>();
+            }
+            result.add(taskDef);
+        }
+        return result;
+    }
+
+    private void startTasks(List<TaskDef<K>> tasks) {
+        for (final TaskDef<K> taskDef: tasks) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                long waitTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - taskDef.submitTimeNanos);
+                LOGGER.log(Level.FINE, "Starting task of {0} after waiting {1} ms.",
+                        new Object[]{taskDef.queue.key, waitTimeMs});
+            }
+
+            wrapped.execute(Cancellation.UNCANCELABLE_TOKEN, new CancelableTask() {
+                @Override
+                public void execute(CancellationToken cancelToken) {
+                    taskDef.run(cancelToken);
+                }
+            }, new CleanupTask() {
+                @Override
+                public void cleanup(boolean canceled, Throwable error) {
+                    try {
+                        taskDef.cleanupIfNotDone(canceled, error);
+                    } finally {
+                        onTaskCompleted(taskDef.queue);
+                    }
+                }
+            });
+        }
+    }
+
+    private void onTaskCompleted(KeyQueue<K> queue) {
+        List<TaskDef<K>> toStart;
+        mainLock.lock();
+        try {
+            queue.running = false;
+            runningCount--;
+
+            if (!queue.tasks.isEmpty()) {
+                readyQueues.add(queue);
+            }
+            else if (queues.get(queue.key) == queue) {
+                queues.remove(queue.key);
+                idleStatistics.put(queue.key, queue.getStatistics());
+            }
+
+            toStart = pollStartableTasksUnsafe();
+        } finally {
+            mainLock.unlock();
+        }
+
+        startTasks(toStart);
+    }
+
+    /**
+     * Returns the number of keys having queued or running tasks.
+     */
+    int getActiveKeyCount() {
+        mainLock.lock();
+        try {
+            return queues.size();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the statistics of the queue of the given key.
+     *
+     * @param key the key whose queue is to be examined. This argument cannot
+     *   be {@code null}.
+     * @return the statistics of the queue of the given key. This method never
+     *   returns {@code null}, even if no task has been submitted for the given key.
+     */
+    public QueueStatistics getStatistics(K key) {
+        ExceptionHelper.checkNotNullArgument(key, "key");
+
+        mainLock.lock();
+        try {
+            KeyQueue<K> queue = queues.get(key);
+            if (queue != null) {
+                return queue.getStatistics();
+            }
+
+            QueueStatistics statistics = idleStatistics.get(key);
+            return statistics != null ? statistics : QueueStatistics.EMPTY;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the statistics of the queues of every key having queued or
+     * running tasks and of the most recently used idle keys.
+     *
+     * @return the statistics of the queues of every key having queued or
+     *   running tasks and of the most recently used idle keys. This method
+     *   never returns {@code null}.
+     */
+    public Map<K, QueueStatistics> getAllStatistics() {
+        mainLock.lock();
+        try {
+            Map<K, QueueStatistics> result = new HashMap<>(idleStatistics);
+            for (Map.Entry<K, KeyQueue<K>> entry: queues.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().getStatistics());
+            }
+            return result;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    public static final class QueueStatistics {
+        private static final QueueStatistics EMPTY = new QueueStatistics(0, false, 0, 0, 0);
+
+        private final int queuedTaskCount;
+        private final boolean executing;
+        private final long startedTaskCount;
+        private final long totalWaitTimeNanos;
+        private final long maxWaitTimeNanos;
+
+        private QueueStatistics(
+                int queuedTaskCount,
+                boolean executing,
+                long startedTaskCount,
+                long totalWaitTimeNanos,
+                long maxWaitTimeNanos) {
+            this.queuedTaskCount = queuedTaskCount;
+            this.executing = executing;
+            this.startedTaskCount = startedTaskCount;
+            this.totalWaitTimeNanos = totalWaitTimeNanos;
+            this.maxWaitTimeNanos = maxWaitTimeNanos;
+        }
+
+        /**
+         * Returns the number of tasks waiting to be started. The task currently
+         * being executed is not counted.
+         *
+         * @return the number of tasks waiting to be started
+         */
+        public int getQueuedTaskCount() {
+            return queuedTaskCount;
+        }
+
+        public boolean isExecuting() {
+            return executing;
+        }
+
+        public long getStartedTaskCount() {
+            return startedTaskCount;
+        }
+
+        /**
+         * Returns the sum of the time the started tasks had to wait in the
+         * queue before being started.
+         *
+         * @param unit the time unit of the returned value. This argument
+         *   cannot be {@code null}.
+         * @return the sum of the time the started tasks had to wait in the queue
+         */
+        public long getTotalWaitTime(TimeUnit unit) {
+            return unit.convert(totalWaitTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxWaitTime(TimeUnit unit) {
+            return unit.convert(maxWaitTimeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getAverageWaitTime(TimeUnit unit) {
+            if (startedTaskCount == 0) {
+                return 0;
+            }
+            return unit.convert(totalWaitTimeNanos / startedTaskCount, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return "QueueStatistics{"
+                    + "queued=" + queuedTaskCount
+                    + ", executing=" + executing
+                    + ", started=" + startedTaskCount
+                    + ", avgWaitMs=" + getAverageWaitTime(TimeUnit.MILLISECONDS)
+                    + ", maxWaitMs=" + getMaxWaitTime(TimeUnit.MILLISECONDS) + '}';
+        }
+    }
+
+    private static final class KeyQueue<K> {
+        public final K key;
+        public final Deque<TaskDef<K>> tasks;
+        public boolean running;
+
+        public long startedTaskCount;
+        public long totalWaitTimeNanos;
+        public long maxWaitTimeNanos;
+
+        public KeyQueue(K key, QueueStatistics prevStatistics) {
+            this.key = key;
+            this.tasks = new ArrayDeque<>();
+            this.running = false;
+
+            QueueStatistics initialStatistics = prevStatistics != null ? prevStatistics : QueueStatistics.EMPTY;
+            this.startedTaskCount = initialStatistics.startedTaskCount;
+            this.totalWaitTimeNanos = initialStatistics.totalWaitTimeNanos;
+            this.maxWaitTimeNanos = initialStatistics.maxWaitTimeNanos;
+        }
+
+        public QueueStatistics getStatistics() {
+            return new QueueStatistics(tasks.size(), running, startedTaskCount, totalWaitTimeNanos, maxWaitTimeNanos);
+        }
+    }
+
+    private static final class TaskDef<K> {
+        public final KeyQueue<K> queue;
+        public final long submitTimeNanos;
+
+        private final CancellationToken cancelToken;
+        private final CancelableTask task;
+        private final CleanupTask cleanupTask;
+        private volatile boolean done;
+
+        public TaskDef(
+                KeyQueue<K> queue,
+                CancellationToken cancelToken,
+                CancelableTask task,
+                CleanupTask cleanupTask) {
+            this.queue = queue;
+            this.submitTimeNanos = System.nanoTime();
+            this.cancelToken = cancelToken;
+            this.task = task;
+            this.cleanupTask = cleanupTask;
+            this.done = false;
+        }
+
+        public void run(CancellationToken executorCancelToken) {
+            CancellationToken combinedToken = Cancellation.anyToken(executorCancelToken, cancelToken);
+
+            boolean canceled = combinedToken.isCanceled();
+            Throwable error = null;
+            if (!canceled) {
+                try {
+                    task.execute(combinedToken);
+                } catch (OperationCanceledException ex) {
+                    canceled = true;
+                    error = ex;
+                } catch (Throwable ex) {
+                    error = ex;
+                }
+            }
+
+            done = true;
+            cleanup(canceled, error);
+        }
+
+        public void cleanupIfNotDone(boolean canceled, Throwable error) {
+            // If the task was not run, the wrapped executor must have been
+            // terminated.
+            if (!done) {
+                done = true;
+                cleanup(canceled, error);
+            }
+        }
+
+        private void cleanup(boolean canceled, Throwable error) {
+            if (cleanupTask == null) {
+                if (error != null && !canceled) {
+                    LOGGER.log(Level.SEVERE, "Uncaught exception in task.", error);
+                }
+                return;
+            }
+
+            try {
+                cleanupTask.cleanup(canceled, error);
+            } catch (Throwable ex) {
+                LOGGER.log(Level.SEVERE, "Uncaught exception in cleanup task.", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package org.netbeans.gradle.project.util;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines a precompiled set of Ant style exclude and include patterns.
+ * <P>
+ * The patterns are matched path segment by path segment, so checking a file
+ * does not require compiling or evaluating regular expressions unless
+ * a pattern contains character classes or alternatives within a segment.
+ * Patterns whose character classes or alternatives span multiple segments
+ * are matched by the {@code PathMatcher} of the file system.
+ * <P>
+ * Instances of this class are immutable and can be used by multiple
+ * threads concurrently.
+ */
+public final class ExcludeIncludeMatcher {
+    public static final ExcludeIncludeMatcher ALLOW_ALL
+            = new ExcludeIncludeMatcher(new PathPattern[0], new PathPattern[0]);
+
+    private static final boolean IGNORE_CASE = isCaseInsensitiveFileSystem();
+
+    // The relative path of the root is matched as if it was a single empty
+    // segment, the same way a glob matches the empty string.
+    private static final String[] ROOT_SEGMENTS = new String[]{""};
+
+    private static final SegmentMatcher ANY_DEPTH = new SegmentMatcher() {
+        @Override
+        public boolean matches(String segment) {
+            return true;
+        }
+    };
+
+    private static final SegmentMatcher ANY_SEGMENT = new SegmentMatcher() {
+        @Override
+        public boolean matches(String segment) {
+            return true;
+        }
+    };
+
+    private final PathPattern[] excludePatterns;
+    private final PathPattern[] includePatterns;
+
+    private ExcludeIncludeMatcher(PathPattern[] excludePatterns, PathPattern[] includePatterns) {
+        this.excludePatterns = excludePatterns;
+        this.includePatterns = includePatterns;
+    }
+
+    public static ExcludeIncludeMatcher compile(
+            Collection<String> excludePatterns,
+            Collection<String> includePatterns) {
+        ExceptionHelper.checkNotNullElements(excludePatterns, "excludePatterns");
+        ExceptionHelper.checkNotNullElements(includePatterns, "includePatterns");
+
+        if (excludePatterns.isEmpty() && includePatterns.isEmpty()) {
+            return ALLOW_ALL;
+        }
+
+        return new ExcludeIncludeMatcher(compilePatterns(excludePatterns), compilePatterns(includePatterns));
+    }
+
+    private static boolean isCaseInsensitiveFileSystem() {
+        // The original glob based implementation relied on the PathMatcher of
+        // the default file system, so follow its case sensitivity.
+        FileSystem fileSystem = FileSystems.getDefault();
+        return fileSystem.getPathMatcher("glob:a").matches(fileSystem.getPath("A"));
+    }
+
+    private static PathPattern[] compilePatterns(Collection<String> patterns) {
+        PathPattern[] result = new PathPattern[patterns.size()];
+        int index = 0;
+        for (String pattern: patterns) {
+            result[index] = compilePattern(pattern);
+            index++;
+        }
+        return result;
+    }
+
+    public boolean isAllowAll() {
+        return excludePatterns.length == 0 && includePatterns.length == 0;
+    }
+
+    public boolean isIncluded(Path rootPath, Path file) {
+        ExceptionHelper.checkNotNullArgument(rootPath, "rootPath");
+        ExceptionHelper.checkNotNullArgument(file, "file");
+
+        Path absoluteRoot = rootPath.toAbsolutePath();
+        Path testedPath = file.toAbsolutePath();
+
+        if (!testedPath.startsWith(absoluteRoot)) {
+            return false;
+        }
+
+        if (isAllowAll()) {
+            return true;
+        }
+
+        String[] segments = getRelativeSegments(absoluteRoot, testedPath);
+
+        if (includePatterns.length > 0) {
+            if (!matchesAny(includePatterns, absoluteRoot, segments)) {
+                return false;
+            }
+        }
+
+        return !matchesAny(excludePatterns, absoluteRoot, segments);
+    }
+
+    private static String[] getRelativeSegments(Path rootPath, Path file) {
+        int rootNameCount = rootPath.getNameCount();
+        int segmentCount = file.getNameCount() - rootNameCount;
+        if (segmentCount <= 0) {
+            return ROOT_SEGMENTS;
+        }
+
+        String[] result = new String[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            result[i] = file.getName(rootNameCount + i).toString();
+        }
+        return result;
+    }
+
+    private static boolean matchesAny(PathPattern[] patterns, Path rootPath, String[] segments) {
+        for (PathPattern pattern: patterns) {
+            if (pattern.matches(rootPath, segments)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PathPattern compilePattern(String pattern) {
+        String normPattern = pattern.replace("\\\\", "/");
+        // A remaining (single) backslash escapes the next character of the
+        // glob, which is only supported by the glob matcher.
+        if (normPattern.indexOf('\\') >= 0 || hasSeparatorInGroup(normPattern)) {
+            return new GlobPathPattern(toGlobPattern(normPattern));
+        }
+
+        List<SegmentMatcher> segments = new ArrayList<>();
+        for (String segment: normPattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+
+            if (segment.equals("**")) {
+                if (segments.isEmpty() || segments.get(segments.size() - 1) != ANY_DEPTH) {
+                    segments.add(ANY_DEPTH);
+                }
+            }
+            else if (segment.contains("**")) {
+                return new GlobPathPattern(toGlobPattern(normPattern));
+            }
+            else {
+                segments.add(compileSegment(segment));
+            }
+        }
+
+        if (normPattern.endsWith("/")) {
+            if (segments.isEmpty() || segments.get(segments.size() - 1) != ANY_DEPTH) {
+                segments.add(ANY_DEPTH);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            // An empty pattern only matches the root.
+            segments.add(new LiteralSegmentMatcher(""));
+        }
+
+        // A trailing "**" must match at least one segment, unless it is the
+        // only part of the pattern.
+        int segmentCount = segments.size();
+        if (segmentCount > 1 && segments.get(segmentCount - 1) == ANY_DEPTH) {
+            segments.add(segmentCount - 1, ANY_SEGMENT);
+        }
+
+        return new SegmentPathPattern(segments.toArray(new SegmentMatcher[segments.size()]));
+    }
+
+    private static boolean hasSeparatorInGroup(String pattern) {
+        int braceDepth = 0;
+        boolean inBrackets = false;
+
+        int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            char ch = pattern.charAt(i);
+            switch (ch) {
+                case '{':
+                    braceDepth++;
+                    break;
+                case '}':
+                    braceDepth = Math.max(0, braceDepth - 1);
+                    break;
+                case '[':
+                    inBrackets = true;
+                    break;
+                case ']':
+                    inBrackets = false;
+                    break;
+                case '/':
+                    if (braceDepth > 0 || inBrackets) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private static SegmentMatcher compileSegment(String segment) {
+        if (segment.equals("*")) {
+            return ANY_SEGMENT;
+        }
+
+        int firstWildcard = indexOfWildcard(segment, 0);
+        if (firstWildcard < 0) {
+            return new LiteralSegmentMatcher(segment);
+        }
+
+        if (segment.charAt(firstWildcard) == '*' && indexOfWildcard(segment, firstWildcard + 1) < 0) {
+            return new PrefixSuffixSegmentMatcher(
+                    segment.substring(0, firstWildcard),
+                    segment.substring(firstWildcard + 1));
+        }
+
+        return new RegexSegmentMatcher(segment);
+    }
+
+    private static int indexOfWildcard(String str, int startIndex) {
+        int length = str.length();
+        for (int i = startIndex; i < length; i++) {
+            switch (str.charAt(i)) {
+                case '*':
+                case '?':
+                case '[':
+                case '{':
+                    return i;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    private static String toGlobPattern(String normPattern) {
+        // 7 = "glob:".length() + "**".length()
+        StringBuilder result = new StringBuilder(normPattern.length() + 7);
+        result.append("glob:");
+
+        String normedDirMatches = normPattern;
+        if (normedDirMatches.startsWith("/")) {
+            normedDirMatches = normedDirMatches.substring(1);
+        }
+
+        normedDirMatches = normedDirMatches.replace("/**/", "{/**/,/}");
+        if (normedDirMatches.startsWith("**/")) {
+            normedDirMatches = "{**/,}" + normedDirMatches.substring(3);
+        }
+
+        result.append(normedDirMatches);
+        if (normPattern.endsWith("/")) {
+            result.append("**");
+        }
+        return result.toString();
+    }
+
+    private static String globSegmentToRegex(String segment) {
+        StringBuilder result = new StringBuilder(segment.length() * 2);
+        boolean inGroup = false;
+
+        int length = segment.length();
+        for (int i = 0; i < length; i++) {
+            char ch = segment.charAt(i);
+            switch (ch) {
+                case '*':
+                    result.append(".*");
+                    break;
+                case '?':
+                    result.append('.');
+                    break;
+                case '[':
+                    int classEnd = segment.indexOf(']', i + 2);
+                    if (classEnd < 0) {
+                        appendQuoted(ch, result);
+                        break;
+                    }
+
+                    result.append('[');
+                    int classStart = i + 1;
+                    if (segment.charAt(classStart) == '!') {
+                        result.append('^');
+                        classStart++;
+                    }
+                    for (int j = classStart; j < classEnd; j++) {
+                        char classCh = segment.charAt(j);
+                        if (classCh == '\\' || classCh == '[' || classCh == '&' || classCh == '^') {
+                            result.append('\\');
+                        }
+                        result.append(classCh);
+                    }
+                    result.append(']');
+                    i = classEnd;
+                    break;
+                case '{':
+                    if (inGroup) {
+                        appendQuoted(ch, result);
+                    }
+                    else {
+                        result.append("(?:");
+                        inGroup = true;
+                    }
+                    break;
+                case '}':
+                    if (inGroup) {
+                        result.append(')');
+                        inGroup = false;
+                    }
+                    else {
+                        appendQuoted(ch, result);
+                    }
+                    break;
+                case ',':
+                    result.append(inGroup ? '|' : ',');
+                    break;
+                default:
+                    appendQuoted(ch, result);
+                    break;
+            }
+        }
+
+        if (inGroup) {
+            result.append(')');
+        }
+        return result.toString();
+    }
+
+    private static void appendQuoted(char ch, StringBuilder result) {
+        if ("\\.^$|()+{}[]".indexOf(ch) >= 0) {
+            result.append('\\');
+        }
+        result.append(ch);
+    }
+
+    private interface PathPattern {
+        public boolean matches(Path rootPath, String[] segments);
+    }
+
+    private interface SegmentMatcher {
+        public boolean matches(String segment);
+    }
+
+    private static final class SegmentPathPattern implements PathPattern {
+        private final SegmentMatcher[] segments;
+        private final int fixedPrefixLength;
+        private final int minSegmentCount;
+
+        public SegmentPathPattern(SegmentMatcher[] segments) {
+            this.segments = segments;
+
+            int prefixLength = 0;
+            while (prefixLength < segments.length && segments[prefixLength] != ANY_DEPTH) {
+                prefixLength++;
+            }
+            this.fixedPrefixLength = prefixLength;
+
+            int minCount = 0;
+            for (SegmentMatcher segment: segments) {
+                if (segment != ANY_DEPTH) {
+                    minCount++;
+                }
+            }
+            this.minSegmentCount = minCount;
+        }
+
+        @Override
+        public boolean matches(Path rootPath, String[] path) {
+            if (path.length < minSegmentCount) {
+                return false;
+            }
+
+            if (fixedPrefixLength == segments.length && path.length != segments.length) {
+                return false;
+            }
+
+            for (int i = 0; i < fixedPrefixLength; i++) {
+                if (!segments[i].matches(path[i])) {
+                    return false;
+                }
+            }
+
+            if (fixedPrefixLength == segments.length) {
+                return true;
+            }
+
+            return matchesAfterPrefix(path);
+        }
+
+        private boolean matchesAfterPrefix(String[] path) {
+            int stateCount = segments.length + 1;
+            boolean[] states = new boolean[stateCount];
+            boolean[] nextStates = new boolean[stateCount];
+
+            states[fixedPrefixLength] = true;
+            addAnyDepthTransitions(states);
+
+            for (int pathIndex = fixedPrefixLength; pathIndex < path.length; pathIndex++) {
+                String pathSegment = path[pathIndex];
+
+                boolean hasState = false;
+                for (int state = fixedPrefixLength; state < segments.length; state++) {
+                    if (!states[state]) {
+                        continue;
+                    }
+
+                    SegmentMatcher segment = segments[state];
+                    if (segment == ANY_DEPTH) {
+                        nextStates[state] = true;
+                        hasState = true;
+                    }
+                    else if (segment.matches(pathSegment)) {
+                        nextStates[state + 1] = true;
+                        hasState = true;
+                    }
+                }
+
+                if (!hasState) {
+                    return false;
+                }
+
+                addAnyDepthTransitions(nextStates);
+
+                boolean[] tmp = states;
+                states = nextStates;
+                nextStates = tmp;
+                for (int i = 0; i < stateCount; i++) {
+                    nextStates[i] = false;
+                }
+            }
+
+            return states[segments.length];
+        }
+
+        private void addAnyDepthTransitions(boolean[] states) {
+            for (int state = 0; state < segments.length; state++) {
+                if (states[state] && segments[state] == ANY_DEPTH) {
+                    states[state + 1] = true;
+                }
+            }
+        }
+    }
+
+    private static final class GlobPathPattern implements PathPattern {
+        private final String globPattern;
+        private volatile FileSystemMatcher matcherRef;
+
+        public GlobPathPattern(String globPattern) {
+            this.globPattern = globPattern;
+            this.matcherRef = null;
+        }
+
+        private PathMatcher getMatcher(FileSystem fileSystem) {
+            FileSystemMatcher matcher = matcherRef;
+            if (matcher == null || matcher.fileSystem != fileSystem) {
+                matcher = new FileSystemMatcher(fileSystem, fileSystem.getPathMatcher(globPattern));
+                matcherRef = matcher;
+            }
+            return matcher.matcher;
+        }
+
+        @Override
+        public boolean matches(Path rootPath, String[] segments) {
+            FileSystem fileSystem = rootPath.getFileSystem();
+
+            String[] otherSegments = new String[segments.length - 1];
+            System.arraycopy(segments, 1, otherSegments, 0, otherSegments.length);
+            Path relPath = fileSystem.getPath(segments[0], otherSegments);
+
+            return getMatcher(fileSystem).matches(relPath);
+        }
+    }
+
+    private static final class FileSystemMatcher {
+        public final FileSystem fileSystem;
+        public final PathMatcher matcher;
+
+        public FileSystemMatcher(FileSystem fileSystem, PathMatcher matcher) {
+            this.fileSystem = fileSystem;
+            this.matcher = matcher;
+        }
+    }
+
+    private static final class LiteralSegmentMatcher implements SegmentMatcher {
+        private final String name;
+
+        public LiteralSegmentMatcher(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean matches(String segment) {
+            return IGNORE_CASE ? name.equalsIgnoreCase(segment) : name.equals(segment);
+        }
+    }
+
+    private static final class PrefixSuffixSegmentMatcher implements SegmentMatcher {
+        private final String prefix;
+        private final String suffix;
+        private final int minLength;
+
+        public PrefixSuffixSegmentMatcher(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.minLength = prefix.length() + suffix.length();
+        }
+
+        @Override
+        public boolean matches(String segment) {
+            int segmentLength = segment.length();
+            if (segmentLength < minLength) {
+                return false;
+            }
+
+            return segment.regionMatches(IGNORE_CASE, 0, prefix, 0, prefix.length())
+                    && segment.regionMatches(IGNORE_CASE, segmentLength - suffix.length(), suffix, 0, suffix.length());
+        }
+    }
+
+    private static final class RegexSegmentMatcher implements SegmentMatcher {
+        private final Pattern pattern;
+
+        public RegexSegmentMatcher(String globSegment) {
+            int flags = IGNORE_CASE ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            this.pattern = Pattern.compile(globSegmentToRegex(globSegment), flags);
+        }
+
+        @Override
+        public boolean matches(String segment) {
+            return pattern.matcher(segment).matches();
+        }
+    }
+}
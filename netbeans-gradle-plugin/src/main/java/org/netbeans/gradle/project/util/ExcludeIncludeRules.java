@@ -19,10 +19,12 @@ public final class ExcludeIncludeRules implements FileGroupFilter, Serializable
             SourceIncludePatterns.ALLOW_ALL);
 
     private final SourceIncludePatterns sourceIncludePatterns;
+    private transient volatile ExcludeIncludeMatcher matcher;
 
     private ExcludeIncludeRules(SourceIncludePatterns sourceIncludePatterns) {
         ExceptionHelper.checkNotNullArgument(sourceIncludePatterns, "sourceIncludePatterns");
         this.sourceIncludePatterns = sourceIncludePatterns;
+        this.matcher = null;
     }
 
     public static ExcludeIncludeRules create(SourceIncludePatterns sourceIncludePatterns) {
@@ -46,6 +48,19 @@ public final class ExcludeIncludeRules implements FileGroupFilter, Serializable
         return sourceIncludePatterns;
     }
 
+    private ExcludeIncludeMatcher getMatcher() {
+        ExcludeIncludeMatcher result = matcher;
+        if (result == null) {
+            // Compiling the patterns is idempotent, so it is not a problem if
+            // multiple threads do it concurrently.
+            result = ExcludeIncludeMatcher.compile(
+                    sourceIncludePatterns.getExcludePatterns(),
+                    sourceIncludePatterns.getIncludePatterns());
+            matcher = result;
+        }
+        return result;
+    }
+
     public boolean isIncluded(Path rootPath, FileObject file) {
         ExceptionHelper.checkNotNullArgument(rootPath, "rootPath");
         ExceptionHelper.checkNotNullArgument(file, "file");
@@ -78,11 +93,7 @@ public final class ExcludeIncludeRules implements FileGroupFilter, Serializable
             return true;
         }
 
-        return ExcludeInclude.includeFile(
-                file,
-                rootPath,
-                sourceIncludePatterns.getExcludePatterns(),
-                sourceIncludePatterns.getIncludePatterns());
+        return getMatcher().isIncluded(rootPath, file);
     }
 
     @Override
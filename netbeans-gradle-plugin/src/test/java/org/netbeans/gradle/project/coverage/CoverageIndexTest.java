@@ -0,0 +1,128 @@
+package org.netbeans.gradle.project.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class CoverageIndexTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private File writeReport(String content) throws IOException {
+        File report = tmpDir.newFile("report.xml");
+        Files.write(report.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return report;
+    }
+
+    private static String jacocoReport() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<!DOCTYPE report PUBLIC \"-//JACOCO//DTD Report 1.1//EN\" \"report.dtd\">"
+                + "<report name=\"test\">"
+                + "<package name=\"mypackage\">"
+                + "<class name=\"mypackage/MyClass\"><method name=\"m\" desc=\"()V\" line=\"3\"/></class>"
+                + "<sourcefile name=\"MyClass.java\">"
+                + "<line nr=\"3\" mi=\"0\" ci=\"4\" mb=\"0\" cb=\"0\"/>"
+                + "<line nr=\"4\" mi=\"2\" ci=\"3\" mb=\"1\" cb=\"1\"/>"
+                + "<line nr=\"6\" mi=\"5\" ci=\"0\" mb=\"0\" cb=\"0\"/>"
+                + "<counter type=\"LINE\" missed=\"1\" covered=\"2\"/>"
+                + "</sourcefile>"
+                + "</package>"
+                + "</report>";
+    }
+
+    private static String coberturaReport() {
+        return "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE coverage SYSTEM \"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">"
+                + "<coverage><packages><package name=\"mypackage\"><classes>"
+                + "<class name=\"mypackage.MyClass$Inner\" filename=\"mypackage/MyClass.java\">"
+                + "<methods><method name=\"m\"><lines><line number=\"20\" hits=\"9\"/></lines></method></methods>"
+                + "<lines><line number=\"20\" hits=\"1\"/></lines>"
+                + "</class>"
+                + "<class name=\"mypackage.MyClass\" filename=\"mypackage/MyClass.java\">"
+                + "<lines>"
+                + "<line number=\"5\" hits=\"2\" branch=\"true\" condition-coverage=\"50% (1/2)\"/>"
+                + "<line number=\"7\" hits=\"0\"/>"
+                + "</lines>"
+                + "</class>"
+                + "</classes></package></packages></coverage>";
+    }
+
+    @Test
+    public void testJacocoReport() throws IOException {
+        File report = writeReport(jacocoReport());
+
+        CoverageIndex index = CoverageIndex.load(report);
+        assertTrue(CoverageIndex.getIndexFile(report).isFile());
+
+        CoverageIndex.FileEntry entry = index.tryGetFile("mypackage/MyClass.java");
+        assertNotNull(entry);
+        assertEquals("mypackage.MyClass", entry.getDisplayName());
+        assertEquals(3, entry.getLineCount());
+        assertEquals(2, entry.getExecutedLineCount());
+        assertEquals(1, entry.getPartialLineCount());
+
+        CoverageIndex.LineCoverage lines = index.loadLineCoverage(entry);
+        assertEquals(4, lines.getHitCount(2));
+        assertEquals(3, lines.getHitCount(3));
+        assertEquals(1, lines.getMissedBranchCount(3));
+        assertEquals(1, lines.getCoveredBranchCount(3));
+        assertEquals(0, lines.getHitCount(5));
+        assertTrue(lines.isRecorded(5));
+        assertFalse(lines.isRecorded(4));
+    }
+
+    @Test
+    public void testIndexIsReused() throws IOException {
+        File report = writeReport(jacocoReport());
+        CoverageIndex.load(report);
+
+        File indexFile = CoverageIndex.getIndexFile(report);
+        long indexLastModified = indexFile.lastModified();
+
+        CoverageIndex index = CoverageIndex.load(report);
+        assertEquals(indexLastModified, indexFile.lastModified());
+
+        CoverageIndex.FileEntry entry = index.tryGetFile("mypackage/MyClass.java");
+        assertEquals(3, index.loadLineCoverage(entry).getHitCount(3));
+    }
+
+    @Test
+    public void testIndexIsRebuiltForChangedReport() throws IOException {
+        File report = writeReport(jacocoReport());
+        CoverageIndex.load(report);
+
+        Files.write(report.toPath(), coberturaReport().getBytes(StandardCharsets.UTF_8));
+
+        CoverageIndex index = CoverageIndex.load(report);
+        CoverageIndex.FileEntry entry = index.tryGetFile("mypackage/MyClass.java");
+        assertEquals(3, entry.getLineCount());
+    }
+
+    @Test
+    public void testCoberturaReport() throws IOException {
+        File report = writeReport(coberturaReport());
+
+        CoverageIndex index = CoverageIndex.load(report);
+        assertEquals(1, index.getFiles().size());
+
+        CoverageIndex.FileEntry entry = index.tryGetFile("mypackage/MyClass.java");
+        assertNotNull(entry);
+        assertEquals("mypackage.MyClass", entry.getDisplayName());
+        assertEquals(3, entry.getLineCount());
+        assertEquals(2, entry.getExecutedLineCount());
+        assertEquals(1, entry.getPartialLineCount());
+
+        CoverageIndex.LineCoverage lines = index.loadLineCoverage(entry);
+        assertEquals(1, lines.getHitCount(19));
+        assertEquals(2, lines.getHitCount(4));
+        assertEquals(1, lines.getMissedBranchCount(4));
+        assertEquals(1, lines.getCoveredBranchCount(4));
+        assertEquals(0, lines.getHitCount(6));
+    }
+}
@@ -0,0 +1,228 @@
+package org.netbeans.gradle.project.java.query;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jtrim.event.ListenerRef;
+import org.junit.Test;
+import org.netbeans.gradle.project.api.event.NbListenerRefs;
+import org.netbeans.gradle.project.java.model.NbJarOutput;
+
+import static org.junit.Assert.*;
+
+public class OpenedProjectsOutputRegistryTest {
+    private static File classesDir(String projectName) {
+        return new File(new File(projectName, "build"), "classes");
+    }
+
+    private static NbJarOutput jarOutput(String taskName, String jarName, String projectName) {
+        return new NbJarOutput(
+                taskName,
+                new File(new File(projectName, "libs"), jarName),
+                Collections.singleton(classesDir(projectName)));
+    }
+
+    private static TestProject project(String name) {
+        return new TestProject(name, jarOutput(NbJarOutput.DEFAULT_JAR_TASK_NAME, name + ".jar", name));
+    }
+
+    private static void verifyJar(OpenedProjectsOutputRegistry registry, String jarName, File... expectedClassDirs) {
+        Set<File> classDirs = registry.tryGetClassDirsOfJar(jarName);
+        if (expectedClassDirs.length == 0) {
+            assertNull("Class dirs of " + jarName, classDirs);
+        }
+        else {
+            assertEquals("Class dirs of " + jarName, new HashSet<>(Arrays.asList(expectedClassDirs)), classDirs);
+        }
+    }
+
+    @Test
+    public void testOpenAndClose() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject project = project("app");
+
+        ListenerRef ref = registry.registerOpenedProject(project);
+        verifyJar(registry, "app.jar", classesDir("app"));
+        verifyJar(registry, "APP.JAR", classesDir("app"));
+
+        ref.unregister();
+        assertFalse(ref.isRegistered());
+        verifyJar(registry, "app.jar");
+    }
+
+    @Test
+    public void testUnregisterTwice() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject project = project("app");
+
+        ListenerRef ref1 = registry.registerOpenedProject(project);
+        ListenerRef ref2 = registry.registerOpenedProject(project);
+
+        ref1.unregister();
+        ref1.unregister();
+        verifyJar(registry, "app.jar", classesDir("app"));
+
+        ref2.unregister();
+        verifyJar(registry, "app.jar");
+    }
+
+    @Test
+    public void testOpenedTwiceNeedsTwoCloses() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject lib = project("lib");
+        TestProject app = project("app");
+        app.setDependencies(lib);
+
+        ListenerRef ref1 = registry.registerOpenedProject(app);
+        ListenerRef ref2 = registry.registerOpenedProject(app);
+
+        ref1.unregister();
+        verifyJar(registry, "app.jar", classesDir("app"));
+        verifyJar(registry, "lib.jar", classesDir("lib"));
+
+        ref2.unregister();
+        verifyJar(registry, "app.jar");
+        verifyJar(registry, "lib.jar");
+    }
+
+    @Test
+    public void testDependencyRetainedWhileDependentIsOpen() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject lib = project("lib");
+        TestProject app = project("app");
+        app.setDependencies(lib);
+
+        ListenerRef appRef = registry.registerOpenedProject(app);
+        ListenerRef libRef = registry.registerOpenedProject(lib);
+        verifyJar(registry, "lib.jar", classesDir("lib"));
+
+        libRef.unregister();
+        verifyJar(registry, "lib.jar", classesDir("lib"));
+
+        appRef.unregister();
+        verifyJar(registry, "lib.jar");
+    }
+
+    @Test
+    public void testDependencyChange() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject lib1 = project("lib1");
+        TestProject lib2 = project("lib2");
+        TestProject app = project("app");
+        app.setDependencies(lib1);
+
+        ListenerRef ref = registry.registerOpenedProject(app);
+        verifyJar(registry, "lib1.jar", classesDir("lib1"));
+
+        app.setDependencies(lib2);
+        verifyJar(registry, "lib1.jar");
+        verifyJar(registry, "lib2.jar", classesDir("lib2"));
+
+        ref.unregister();
+        verifyJar(registry, "lib2.jar");
+        assertEquals("Dependency listeners", 0, app.getListenerCount());
+    }
+
+    @Test
+    public void testModelChangeReplacesJars() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject app = project("app");
+
+        ListenerRef ref = registry.registerOpenedProject(app);
+
+        app.setJarOutputs(jarOutput(NbJarOutput.DEFAULT_JAR_TASK_NAME, "app-2.0.jar", "app"));
+        registry.onModelChange(app);
+        verifyJar(registry, "app.jar");
+        verifyJar(registry, "app-2.0.jar", classesDir("app"));
+
+        ref.unregister();
+        verifyJar(registry, "app-2.0.jar");
+    }
+
+    @Test
+    public void testModelChangeOfUnregisteredProject() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject app = project("app");
+
+        registry.onModelChange(app);
+        verifyJar(registry, "app.jar");
+    }
+
+    @Test
+    public void testDefaultJarIsPreferred() {
+        OpenedProjectsOutputRegistry registry = new OpenedProjectsOutputRegistry();
+        TestProject other = new TestProject("other", jarOutput("otherJar", "common.jar", "other"));
+        TestProject main = new TestProject("main", jarOutput(NbJarOutput.DEFAULT_JAR_TASK_NAME, "common.jar", "main"));
+
+        ListenerRef otherRef = registry.registerOpenedProject(other);
+        ListenerRef mainRef = registry.registerOpenedProject(main);
+        verifyJar(registry, "common.jar", classesDir("main"));
+
+        mainRef.unregister();
+        verifyJar(registry, "common.jar", classesDir("other"));
+
+        otherRef.unregister();
+        verifyJar(registry, "common.jar");
+    }
+
+    private static final class TestProject implements OpenedProjectsOutputRegistry.RegisteredProject {
+        private final File projectDir;
+        private final List<Runnable> listeners;
+        private volatile Collection<NbJarOutput> jarOutputs;
+        private volatile Collection<OpenedProjectsOutputRegistry.RegisteredProject> dependencies;
+
+        public TestProject(String name, NbJarOutput... jarOutputs) {
+            this.projectDir = new File(name);
+            this.listeners = new CopyOnWriteArrayList<>();
+            this.jarOutputs = Arrays.asList(jarOutputs);
+            this.dependencies = Collections.emptyList();
+        }
+
+        public void setJarOutputs(NbJarOutput... jarOutputs) {
+            this.jarOutputs = Arrays.asList(jarOutputs);
+        }
+
+        public void setDependencies(TestProject... dependencies) {
+            this.dependencies = new ArrayList<OpenedProjectsOutputRegistry.RegisteredProject>(Arrays.asList(dependencies));
+            for (Runnable listener: listeners) {
+                listener.run();
+            }
+        }
+
+        public int getListenerCount() {
+            return listeners.size();
+        }
+
+        @Override
+        public File getProjectDir() {
+            return projectDir;
+        }
+
+        @Override
+        public Collection<NbJarOutput> getJarOutputs() {
+            return jarOutputs;
+        }
+
+        @Override
+        public Collection<OpenedProjectsOutputRegistry.RegisteredProject> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public ListenerRef addDependenciesChangeListener(final Runnable listener) {
+            listeners.add(listener);
+            return NbListenerRefs.fromRunnable(new Runnable() {
+                @Override
+                public void run() {
+                    listeners.remove(listener);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.netbeans.gradle.project.java.query;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.netbeans.gradle.project.util.ExcludeIncludeRules;
+import org.netbeans.gradle.project.util.NbFunction;
+import org.netbeans.gradle.project.util.UrlFactory;
+import org.netbeans.spi.java.classpath.PathResourceImplementation;
+
+import static org.junit.Assert.*;
+
+public class PathResourcePoolTest {
+    private static UrlFactory dirUrlFactory() {
+        return new UrlFactory(new NbFunction<File, URL>() {
+            @Override
+            public URL apply(File arg) {
+                try {
+                    return new URL(arg.getAbsoluteFile().toURI().toString() + "/");
+                } catch (MalformedURLException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+        });
+    }
+
+    private static UrlFactory nullUrlFactory() {
+        return new UrlFactory(new NbFunction<File, URL>() {
+            @Override
+            public URL apply(File arg) {
+                return null;
+            }
+        });
+    }
+
+    private static PathResourceImplementation getResource(PathResourcePool pool, File file, UrlFactory urlFactory) {
+        return pool.tryGetResource(file, ExcludeIncludeRules.ALLOW_ALL, urlFactory);
+    }
+
+    @Test
+    public void testSameResourceIsShared() {
+        PathResourcePool pool = new PathResourcePool();
+        UrlFactory urlFactory = dirUrlFactory();
+
+        PathResourceImplementation resource1 = getResource(pool, new File("lib1"), urlFactory);
+        PathResourceImplementation resource2 = getResource(pool, new File("lib1"), urlFactory);
+        PathResourcePool.Statistics statistics = pool.getStatistics();
+
+        assertNotNull(resource1);
+        assertSame(resource1, resource2);
+        assertEquals(1, statistics.getPooledResourceCount());
+        assertEquals(2, statistics.getResourceRequestCount());
+        assertEquals(1, statistics.getResourceHitCount());
+    }
+
+    @Test
+    public void testDifferentFilesAreNotShared() {
+        PathResourcePool pool = new PathResourcePool();
+        UrlFactory urlFactory = dirUrlFactory();
+
+        PathResourceImplementation resource1 = getResource(pool, new File("lib1"), urlFactory);
+        PathResourceImplementation resource2 = getResource(pool, new File("lib2"), urlFactory);
+        PathResourcePool.Statistics statistics = pool.getStatistics();
+
+        assertNotSame(resource1, resource2);
+        assertEquals(2, statistics.getPooledResourceCount());
+    }
+
+    @Test
+    public void testDifferentUrlFactoriesAreNotShared() {
+        PathResourcePool pool = new PathResourcePool();
+
+        PathResourceImplementation resource1 = getResource(pool, new File("lib1"), dirUrlFactory());
+        PathResourceImplementation resource2 = getResource(pool, new File("lib1"), dirUrlFactory());
+        assertNotNull(resource1);
+        assertNotNull(resource2);
+        assertNotSame(resource1, resource2);
+        assertEquals(0, pool.getStatistics().getResourceHitCount());
+    }
+
+    @Test
+    public void testUnconvertibleFile() {
+        PathResourcePool pool = new PathResourcePool();
+        UrlFactory urlFactory = nullUrlFactory();
+
+        assertNull(getResource(pool, new File("lib1"), urlFactory));
+        assertNull(getResource(pool, new File("lib1"), urlFactory));
+        assertEquals(0, pool.getStatistics().getPooledResourceCount());
+    }
+
+    @Test
+    public void testInternList() {
+        PathResourcePool pool = new PathResourcePool();
+        UrlFactory urlFactory = dirUrlFactory();
+
+        PathResourceImplementation resource1 = getResource(pool, new File("lib1"), urlFactory);
+        PathResourceImplementation resource2 = getResource(pool, new File("lib2"), urlFactory);
+
+        List<PathResourceImplementation> list1 = pool.internList(Arrays.asList(resource1, resource2));
+        List<PathResourceImplementation> list2 = pool.internList(Arrays.asList(resource1, resource2));
+        List<PathResourceImplementation> list3 = pool.internList(Arrays.asList(resource2, resource1));
+        PathResourcePool.Statistics statistics = pool.getStatistics();
+
+        assertEquals(Arrays.asList(resource1, resource2), list1);
+        assertSame(list1, list2);
+        assertNotSame(list1, list3);
+        assertEquals(2, statistics.getPooledListCount());
+        assertEquals(3, statistics.getListRequestCount());
+        assertEquals(1, statistics.getListHitCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInternedListIsUnmodifiable() {
+        PathResourcePool pool = new PathResourcePool();
+        List<PathResourceImplementation> list = pool.internList(
+                Collections.<PathResourceImplementation>emptyList());
+        list.add(null);
+    }
+}
@@ -0,0 +1,72 @@
+package org.netbeans.gradle.project.java.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CapturedOutputTest {
+    private static void append(CapturedOutput output, String str) {
+        char[] chars = ("#" + str + "#").toCharArray();
+        output.append(chars, 1, str.length());
+    }
+
+    private static File findSpillFile(String text) {
+        for (String word: text.split("\\s+")) {
+            File file = new File(word);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testShortOutputIsKeptInMemory() {
+        CapturedOutput output = new CapturedOutput(10, new CapturedOutputFiles());
+        append(output, "Hello");
+        append(output, "World");
+
+        assertEquals("HelloWorld", output.finish());
+    }
+
+    @Test
+    public void testLongOutputIsSpilled() throws IOException {
+        CapturedOutputFiles spillFiles = new CapturedOutputFiles();
+        CapturedOutput output = new CapturedOutput(8, spillFiles);
+        append(output, "Hello");
+        append(output, "World");
+        append(output, "!");
+
+        String text = output.finish();
+        assertTrue(text, text.startsWith("HelloWor"));
+        assertFalse(text, text.startsWith("HelloWorld"));
+
+        File spillFile = findSpillFile(text);
+        assertNotNull(text, spillFile);
+        try {
+            assertEquals("HelloWorld!", new String(Files.readAllBytes(spillFile.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            spillFiles.deleteAll();
+        }
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void testNoFileIsCreatedAfterDeleteAll() throws IOException {
+        CapturedOutputFiles spillFiles = new CapturedOutputFiles();
+        CapturedOutput output = new CapturedOutput(4, spillFiles);
+        append(output, "HelloWorld");
+        output.close();
+
+        spillFiles.deleteAll();
+
+        CapturedOutput output2 = new CapturedOutput(4, spillFiles);
+        append(output2, "HelloWorld");
+        String text = output2.finish();
+        assertNull(text, findSpillFile(text));
+    }
+}
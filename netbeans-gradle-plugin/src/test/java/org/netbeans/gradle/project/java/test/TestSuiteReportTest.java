@@ -0,0 +1,25 @@
+package org.netbeans.gradle.project.java.test;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestSuiteReportTest {
+    @Test
+    public void testExtractStackTrace() {
+        String text = "\n  java.lang.AssertionError: message\r\n"
+                + "\tat mypackage.MyTest.testMethod(MyTest.java:10)\r"
+                + "\tat mypackage.MyTest.main(MyTest.java:20)\n\n";
+
+        assertArrayEquals(new String[]{
+            "java.lang.AssertionError: message",
+            "mypackage.MyTest.testMethod(MyTest.java:10)",
+            "mypackage.MyTest.main(MyTest.java:20)"
+        }, TestSuiteReport.extractStackTrace(text));
+    }
+
+    @Test
+    public void testExtractStackTraceOfEmptyText() {
+        assertArrayEquals(new String[]{""}, TestSuiteReport.extractStackTrace(" \n "));
+    }
+}
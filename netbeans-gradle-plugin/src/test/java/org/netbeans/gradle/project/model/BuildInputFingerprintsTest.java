@@ -0,0 +1,104 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.netbeans.gradle.project.util.SafeTmpFolder;
+
+import static org.junit.Assert.*;
+
+public class BuildInputFingerprintsTest {
+    @ClassRule
+    public static final SafeTmpFolder TMP_DIR_ROOT = new SafeTmpFolder();
+
+    private static Path newProjectDir() throws IOException {
+        return TMP_DIR_ROOT.newFolder().toPath();
+    }
+
+    private static Path writeFile(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testFileHashOfMissingFile() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        assertTrue(fingerprints.getFileHash(newProjectDir().resolve("missing.gradle")) < 0);
+    }
+
+    @Test
+    public void testFileHashChangesWithContent() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path file = writeFile(newProjectDir().resolve("build.gradle"), "apply plugin: 'java'");
+
+        long hash1 = fingerprints.getFileHash(file);
+        assertEquals(hash1, fingerprints.getFileHash(file));
+
+        writeFile(file, "apply plugin: 'groovy'");
+        assertNotEquals(hash1, fingerprints.getFileHash(file));
+    }
+
+    @Test
+    public void testProjectFingerprintTracksAppliedScripts() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path projectDir = newProjectDir();
+        Path buildScript = writeFile(projectDir.resolve("build.gradle"), "apply from: 'other.gradle'");
+        Path otherScript = writeFile(projectDir.resolve("other.gradle"), "version = '1.0'");
+
+        long fingerprint1 = fingerprints.getProjectFingerprint(projectDir, buildScript);
+        assertEquals(fingerprint1, fingerprints.getProjectFingerprint(projectDir, buildScript));
+
+        writeFile(otherScript, "version = '2.0.0'");
+        long fingerprint2 = fingerprints.getProjectFingerprint(projectDir, buildScript);
+        assertNotEquals(fingerprint1, fingerprint2);
+
+        writeFile(projectDir.resolve("gradle.properties"), "myProperty=value");
+        assertNotEquals(fingerprint2, fingerprints.getProjectFingerprint(projectDir, buildScript));
+    }
+
+    @Test
+    public void testBuildFingerprintTracksBuildSrc() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path rootDir = newProjectDir();
+        writeFile(rootDir.resolve("settings.gradle"), "include 'sub'");
+        Path buildSrcSource = writeFile(rootDir.resolve("buildSrc/src/main/groovy/MyTask.groovy"), "class MyTask {}");
+
+        long fingerprint1 = fingerprints.getBuildFingerprint(rootDir);
+
+        writeFile(rootDir.resolve("buildSrc/build/classes/MyTask.class"), "output");
+        assertEquals(fingerprint1, fingerprints.getBuildFingerprint(rootDir));
+
+        writeFile(buildSrcSource, "class MyTask { int x }");
+        assertNotEquals(fingerprint1, fingerprints.getBuildFingerprint(rootDir));
+    }
+
+    @Test
+    public void testEnvironmentFingerprintTracksInitScripts() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path rootDir = newProjectDir();
+        Path userHome = newProjectDir();
+        Path userInitScript = writeFile(userHome.resolve("init.d/repos.gradle"), "allprojects {}");
+        Path argInitScript = writeFile(rootDir.resolve("ide-init.gradle"), "allprojects {}");
+        List<String> args = Arrays.asList("--offline", "--init-script", "ide-init.gradle");
+
+        long fingerprint1 = fingerprints.getEnvironmentFingerprint(userHome, rootDir, args);
+        assertEquals(fingerprint1, fingerprints.getEnvironmentFingerprint(userHome, rootDir, args));
+
+        writeFile(userInitScript, "allprojects { repositories {} }");
+        long fingerprint2 = fingerprints.getEnvironmentFingerprint(userHome, rootDir, args);
+        assertNotEquals(fingerprint1, fingerprint2);
+
+        writeFile(argInitScript, "allprojects { repositories {} }");
+        long fingerprint3 = fingerprints.getEnvironmentFingerprint(userHome, rootDir, args);
+        assertNotEquals(fingerprint2, fingerprint3);
+
+        writeFile(userHome.resolve("gradle.properties"), "org.gradle.jvmargs=-Xmx1g");
+        assertNotEquals(fingerprint3, fingerprints.getEnvironmentFingerprint(userHome, rootDir, args));
+    }
+}
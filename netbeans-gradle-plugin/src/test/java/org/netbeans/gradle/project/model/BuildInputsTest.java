@@ -0,0 +1,82 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.netbeans.gradle.project.util.SafeTmpFolder;
+
+import static org.junit.Assert.*;
+
+public class BuildInputsTest {
+    @ClassRule
+    public static final SafeTmpFolder TMP_DIR_ROOT = new SafeTmpFolder();
+
+    private static Path writeFile(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static BuildInputs.ProjectLocation project(Path rootDir, String path, String relativeDir) {
+        Path projectDir = relativeDir.isEmpty() ? rootDir : rootDir.resolve(relativeDir);
+        return new BuildInputs.ProjectLocation(path, projectDir, projectDir.resolve("build.gradle"));
+    }
+
+    @Test
+    public void testChangedProjects() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path rootDir = TMP_DIR_ROOT.newFolder().toPath();
+        writeFile(rootDir.resolve("settings.gradle"), "include 'app', 'lib'");
+        writeFile(rootDir.resolve("build.gradle"), "");
+        writeFile(rootDir.resolve("app/build.gradle"), "apply plugin: 'java'");
+        Path libScript = writeFile(rootDir.resolve("lib/build.gradle"), "apply plugin: 'java'");
+
+        List<BuildInputs.ProjectLocation> projects = Arrays.asList(
+                project(rootDir, ":", ""),
+                project(rootDir, ":app", "app"),
+                project(rootDir, ":lib", "lib"));
+
+        BuildInputs inputs1 = BuildInputs.capture(fingerprints, rootDir, 0, projects);
+        BuildInputs inputs2 = BuildInputs.capture(fingerprints, rootDir, 0, projects);
+        assertEquals(Collections.emptySet(), inputs2.getChangedProjects(inputs1));
+        assertEquals(inputs1.getFingerprint(), inputs2.getFingerprint());
+
+        writeFile(libScript, "apply plugin: 'groovy'");
+        BuildInputs inputs3 = BuildInputs.capture(fingerprints, rootDir, 0, projects);
+        assertEquals(Collections.singleton(":lib"), inputs3.getChangedProjects(inputs1));
+        assertEquals(inputs1.getBuildFingerprint(), inputs3.getBuildFingerprint());
+        assertNotEquals(inputs1.getFingerprint(), inputs3.getFingerprint());
+    }
+
+    @Test
+    public void testEnvironmentChangesBuildFingerprint() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path rootDir = TMP_DIR_ROOT.newFolder().toPath();
+        writeFile(rootDir.resolve("settings.gradle"), "");
+
+        List<BuildInputs.ProjectLocation> projects = Collections.singletonList(project(rootDir, ":", ""));
+
+        BuildInputs inputs1 = BuildInputs.capture(fingerprints, rootDir, 1, projects);
+        BuildInputs inputs2 = BuildInputs.capture(fingerprints, rootDir, 2, projects);
+        assertNotEquals(inputs1.getBuildFingerprint(), inputs2.getBuildFingerprint());
+        assertEquals(Collections.emptySet(), inputs2.getChangedProjects(inputs1));
+    }
+
+    @Test
+    public void testMovedProjectIsChanged() throws IOException {
+        BuildInputFingerprints fingerprints = new BuildInputFingerprints();
+        Path rootDir = TMP_DIR_ROOT.newFolder().toPath();
+
+        BuildInputs inputs1 = BuildInputs.capture(fingerprints, rootDir, 0,
+                Collections.singletonList(project(rootDir, ":app", "app")));
+        BuildInputs inputs2 = BuildInputs.capture(fingerprints, rootDir, 0,
+                Collections.singletonList(project(rootDir, ":app", "apps/app")));
+        assertEquals(Collections.singleton(":app"), inputs2.getChangedProjects(inputs1));
+    }
+}
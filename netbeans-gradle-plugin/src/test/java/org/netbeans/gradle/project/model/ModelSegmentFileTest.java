@@ -0,0 +1,135 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.netbeans.gradle.project.util.SafeTmpFolder;
+
+import static org.junit.Assert.*;
+
+public class ModelSegmentFileTest {
+    @ClassRule
+    public static final SafeTmpFolder TMP_DIR_ROOT = new SafeTmpFolder();
+
+    private static Path newSegmentFilePath() throws IOException {
+        return TMP_DIR_ROOT.newFolder().toPath().resolve("test.seg");
+    }
+
+    private static void write(ModelSegmentFile segmentFile, String key, byte[] content) throws IOException {
+        segmentFile.writeAll(Collections.singletonMap(key, content));
+    }
+
+    @Test
+    public void testGetNonExistant() throws IOException {
+        ModelSegmentFile segmentFile = new ModelSegmentFile(newSegmentFilePath());
+        assertNull(segmentFile.tryRead("key"));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        ModelSegmentFile segmentFile = new ModelSegmentFile(newSegmentFilePath());
+
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        records.put("key1", new byte[]{1, 2, 3});
+        records.put("key2", new byte[0]);
+        segmentFile.writeAll(records);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, segmentFile.tryRead("key1"));
+        assertArrayEquals(new byte[0], segmentFile.tryRead("key2"));
+        assertNull(segmentFile.tryRead("key3"));
+    }
+
+    @Test
+    public void testOverwrite() throws IOException {
+        ModelSegmentFile segmentFile = new ModelSegmentFile(newSegmentFilePath());
+
+        write(segmentFile, "key", new byte[]{1});
+        write(segmentFile, "key", new byte[]{2, 3});
+
+        assertArrayEquals(new byte[]{2, 3}, segmentFile.tryRead("key"));
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path file = newSegmentFilePath();
+
+        ModelSegmentFile segmentFile1 = new ModelSegmentFile(file);
+        write(segmentFile1, "key1", new byte[]{1});
+        write(segmentFile1, "key2", new byte[]{2});
+        write(segmentFile1, "key1", new byte[]{3});
+
+        ModelSegmentFile segmentFile2 = new ModelSegmentFile(file);
+        assertArrayEquals(new byte[]{3}, segmentFile2.tryRead("key1"));
+        assertArrayEquals(new byte[]{2}, segmentFile2.tryRead("key2"));
+    }
+
+    @Test
+    public void testPartiallyWrittenRecordIsIgnored() throws IOException {
+        Path file = newSegmentFilePath();
+
+        ModelSegmentFile segmentFile1 = new ModelSegmentFile(file);
+        write(segmentFile1, "key1", new byte[]{1});
+
+        // Simulate a crash during writing a record.
+        Files.write(file, new byte[]{0x52, 0x45, 0x43, 0x31, 0, 0, 0, 4}, StandardOpenOption.APPEND);
+
+        ModelSegmentFile segmentFile2 = new ModelSegmentFile(file);
+        assertArrayEquals(new byte[]{1}, segmentFile2.tryRead("key1"));
+
+        write(segmentFile2, "key2", new byte[]{2});
+
+        ModelSegmentFile segmentFile3 = new ModelSegmentFile(file);
+        assertArrayEquals(new byte[]{1}, segmentFile3.tryRead("key1"));
+        assertArrayEquals(new byte[]{2}, segmentFile3.tryRead("key2"));
+    }
+
+    @Test
+    public void testCorruptedRecordIsIgnored() throws IOException {
+        Path file = newSegmentFilePath();
+
+        ModelSegmentFile segmentFile1 = new ModelSegmentFile(file);
+        write(segmentFile1, "key1", new byte[]{1});
+        write(segmentFile1, "key2", new byte[]{2});
+
+        byte[] content = Files.readAllBytes(file);
+        content[content.length - 1] = 3;
+        Files.write(file, content);
+
+        ModelSegmentFile segmentFile2 = new ModelSegmentFile(file);
+        assertArrayEquals(new byte[]{1}, segmentFile2.tryRead("key1"));
+        assertNull(segmentFile2.tryRead("key2"));
+
+        write(segmentFile2, "key2", new byte[]{4});
+
+        ModelSegmentFile segmentFile3 = new ModelSegmentFile(file);
+        assertArrayEquals(new byte[]{1}, segmentFile3.tryRead("key1"));
+        assertArrayEquals(new byte[]{4}, segmentFile3.tryRead("key2"));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path file = newSegmentFilePath();
+
+        ModelSegmentFile segmentFile1 = new ModelSegmentFile(file);
+        byte[] content = new byte[64 * 1024];
+        for (int i = 0; i < 64; i++) {
+            content[0] = (byte)i;
+            write(segmentFile1, "key", content);
+        }
+        write(segmentFile1, "otherKey", new byte[]{5});
+
+        assertTrue("compacted", Files.size(file) < 32L * content.length);
+        assertEquals(63, segmentFile1.tryRead("key")[0]);
+        assertArrayEquals(new byte[]{5}, segmentFile1.tryRead("otherKey"));
+
+        ModelSegmentFile segmentFile2 = new ModelSegmentFile(file);
+        assertEquals(63, segmentFile2.tryRead("key")[0]);
+        assertArrayEquals(new byte[]{5}, segmentFile2.tryRead("otherKey"));
+    }
+}
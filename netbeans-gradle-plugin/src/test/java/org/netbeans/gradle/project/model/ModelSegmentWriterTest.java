@@ -0,0 +1,111 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.IOException;
+import java.util.Collections;
+import org.jtrim.concurrent.ManualTaskExecutor;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.netbeans.gradle.project.util.SafeTmpFolder;
+
+import static org.junit.Assert.*;
+
+public class ModelSegmentWriterTest {
+    @ClassRule
+    public static final SafeTmpFolder TMP_DIR_ROOT = new SafeTmpFolder();
+
+    private static ModelSegmentFile newSegmentFile() throws IOException {
+        return new ModelSegmentFile(TMP_DIR_ROOT.newFolder().toPath().resolve("test.seg"));
+    }
+
+    private static void write(ModelSegmentWriter writer, ModelSegmentFile segmentFile, String key, byte[] content) {
+        writer.write(segmentFile, Collections.singletonMap(key, content));
+    }
+
+    @Test
+    public void testPendingIsVisibleBeforeWrite() throws Exception {
+        ManualTaskExecutor executor = new ManualTaskExecutor(false);
+        ModelSegmentWriter writer = new ModelSegmentWriter(executor, 0, 0);
+        ModelSegmentFile segmentFile = newSegmentFile();
+
+        write(writer, segmentFile, "key", new byte[]{1, 2});
+
+        assertArrayEquals(new byte[]{1, 2}, writer.tryGetPending(segmentFile, "key"));
+        assertNull(segmentFile.tryRead("key"));
+
+        executor.executeCurrentlySubmitted();
+
+        assertNull(writer.tryGetPending(segmentFile, "key"));
+        assertArrayEquals(new byte[]{1, 2}, segmentFile.tryRead("key"));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        ManualTaskExecutor executor = new ManualTaskExecutor(false);
+        ModelSegmentWriter writer = new ModelSegmentWriter(executor, 0, 0);
+        ModelSegmentFile segmentFile = newSegmentFile();
+
+        write(writer, segmentFile, "key1", new byte[]{1});
+        write(writer, segmentFile, "key1", new byte[]{2, 3});
+        write(writer, segmentFile, "key2", new byte[]{4});
+
+        executor.executeCurrentlySubmitted();
+
+        assertArrayEquals(new byte[]{2, 3}, segmentFile.tryRead("key1"));
+        assertArrayEquals(new byte[]{4}, segmentFile.tryRead("key2"));
+
+        ModelSegmentWriter.Statistics statistics = writer.getStatistics();
+        assertEquals(1, statistics.getCoalescedWrites());
+        assertEquals(2, statistics.getRecordsWritten());
+        assertEquals(3, statistics.getBytesWritten());
+        assertEquals(1, statistics.getBatchCount());
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        ManualTaskExecutor executor = new ManualTaskExecutor(false);
+        ModelSegmentWriter writer = new ModelSegmentWriter(executor, 0, 1);
+        ModelSegmentFile segmentFile1 = newSegmentFile();
+        ModelSegmentFile segmentFile2 = newSegmentFile();
+
+        write(writer, segmentFile1, "key", new byte[]{1});
+        write(writer, segmentFile2, "key", new byte[]{2});
+
+        writer.flush();
+
+        assertArrayEquals(new byte[]{1}, segmentFile1.tryRead("key"));
+        assertArrayEquals(new byte[]{2}, segmentFile2.tryRead("key"));
+        assertEquals(2, writer.getStatistics().getBatchCount());
+    }
+
+    @Test(timeout = 30000)
+    public void testFlushDoesNotWaitForThrottledWriter() throws Exception {
+        final ManualTaskExecutor executor = new ManualTaskExecutor(false);
+        // The background writer pauses 100 seconds after writing 100 bytes.
+        ModelSegmentWriter writer = new ModelSegmentWriter(executor, 0, 1);
+        ModelSegmentFile segmentFile1 = newSegmentFile();
+        ModelSegmentFile segmentFile2 = newSegmentFile();
+
+        write(writer, segmentFile1, "key", new byte[100]);
+
+        Thread backgroundWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                executor.executeCurrentlySubmitted();
+            }
+        });
+        backgroundWriter.start();
+        try {
+            while (segmentFile1.tryRead("key") == null) {
+                Thread.sleep(10);
+            }
+
+            write(writer, segmentFile2, "key", new byte[]{2});
+            writer.flush();
+
+            assertArrayEquals(new byte[]{2}, segmentFile2.tryRead("key"));
+        } finally {
+            backgroundWriter.interrupt();
+            backgroundWriter.join();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.netbeans.gradle.project.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.netbeans.gradle.project.model.NbGradleMultiProjectDefTest.*;
+
+public class NbGradleModelBinaryFormatTest {
+    private static SerializedNbGradleModels roundTrip(
+            SerializedNbGradleModels source,
+            String... neededExtensions) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NbGradleModelBinaryFormat.write(source, output);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        assertTrue("binary header", NbGradleModelBinaryFormat.isBinaryFormat(input.readInt()));
+
+        return NbGradleModelBinaryFormat.readAfterHeader(input, new HashSet<>(Arrays.asList(neededExtensions)));
+    }
+
+    private static void assertSameTree(NbGradleProjectTree expected, NbGradleProjectTree actual) {
+        assertEquals(expected.getProjectFullName(), actual.getProjectFullName());
+        assertEquals(expected.getProjectName(), actual.getProjectName());
+        assertEquals(expected.getProjectDir(), actual.getProjectDir());
+        assertEquals(
+                expected.getGenericProperties().getBuildScript(),
+                actual.getGenericProperties().getBuildScript());
+        assertEquals(
+                expected.getGenericProperties().getBuildDir(),
+                actual.getGenericProperties().getBuildDir());
+        assertEquals(expected.getTasks().size(), actual.getTasks().size());
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+    }
+
+    @Test
+    public void testGenericInfoRoundTrip() throws IOException {
+        NbGradleMultiProjectDef projectDef = createTestMultiProject();
+        NbGenericModelInfo genericInfo = new NbGenericModelInfo(projectDef, Paths.get("settings.gradle"), 1234L);
+
+        SerializedNbGradleModels source = SerializedNbGradleModels.create(
+                genericInfo,
+                Collections.<String, byte[]>emptyMap(),
+                true);
+
+        SerializedNbGradleModels deserialized = roundTrip(source);
+        NbGenericModelInfo deserializedInfo = deserialized.getGenericInfo();
+
+        assertTrue(deserialized.isRootWithoutSettingsGradle());
+        assertEquals(1234L, deserializedInfo.getCreateTimeEpochMs());
+        assertEquals(genericInfo.getSettingsFile(), deserializedInfo.getSettingsFile());
+        assertSameTree(projectDef.getRootProject(), deserializedInfo.getProjectDef().getRootProject());
+        assertSameTree(projectDef.getMainProject(), deserializedInfo.getProjectDef().getMainProject());
+    }
+
+    @Test
+    public void testSkipsUnneededExtensions() throws IOException {
+        NbGenericModelInfo genericInfo = new NbGenericModelInfo(createTestMultiProject(), (Path)null);
+
+        Map<String, byte[]> extensionModels = new HashMap<>();
+        extensionModels.put("ext1", new byte[]{1, 2, 3});
+        extensionModels.put("ext2", new byte[300]);
+        extensionModels.put("ext3", new byte[]{4});
+
+        SerializedNbGradleModels source = SerializedNbGradleModels.create(genericInfo, extensionModels, false);
+        SerializedNbGradleModels deserialized = roundTrip(source, "ext1", "ext3");
+
+        Map<String, byte[]> deserializedModels = deserialized.getExtensionModels();
+        assertEquals(2, deserializedModels.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, deserializedModels.get("ext1"));
+        assertArrayEquals(new byte[]{4}, deserializedModels.get("ext3"));
+        assertNull(deserialized.getGenericInfo().getSettingsFile());
+    }
+
+    @Test
+    public void testDetectsJavaSerialization() {
+        assertTrue(NbGradleModelBinaryFormat.isJavaSerializationFormat(0xACED0005));
+        assertFalse(NbGradleModelBinaryFormat.isBinaryFormat(0xACED0005));
+    }
+}
@@ -0,0 +1,67 @@
+package org.netbeans.gradle.project.output;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeywordMatcherTest {
+    private static KeywordMatcher createMatcher(String[]... groups) {
+        KeywordMatcher.Builder builder = new KeywordMatcher.Builder();
+        for (int i = 0; i < groups.length; i++) {
+            builder.addKeywords(i, Arrays.asList(groups[i]));
+        }
+        return builder.create();
+    }
+
+    @Test
+    public void testNoMatch() {
+        KeywordMatcher matcher = createMatcher(new String[]{"http://"}, new String[]{".java:"});
+        assertEquals(0L, matcher.findMatchingGroups(":compileJava UP-TO-DATE"));
+        assertEquals(0L, matcher.findMatchingGroups(""));
+    }
+
+    @Test
+    public void testMatchesIgnoreCase() {
+        KeywordMatcher matcher = createMatcher(new String[]{"http://", "file://"}, new String[]{".java:"});
+        assertEquals(1L, matcher.findMatchingGroups("See FILE:///tmp/report.html"));
+        assertEquals(2L, matcher.findMatchingGroups("\tat a.B.c(B.Java:12)"));
+        assertEquals(3L, matcher.findMatchingGroups("http://x B.java:1"));
+    }
+
+    @Test
+    public void testOverlappingKeywords() {
+        KeywordMatcher matcher = createMatcher(
+                new String[]{"abcd"},
+                new String[]{"bc"},
+                new String[]{"cde"});
+
+        assertEquals(2L, matcher.findMatchingGroups("abce"));
+        assertEquals(3L, matcher.findMatchingGroups("xabcdx"));
+        assertEquals(7L, matcher.findMatchingGroups("abcde"));
+        assertEquals(6L, matcher.findMatchingGroups("abccde"));
+        assertEquals(4L, matcher.findMatchingGroups("aacde"));
+    }
+
+    @Test
+    public void testKeywordAfterFailedPartialMatch() {
+        KeywordMatcher matcher = createMatcher(new String[]{"https://"}, new String[]{"http"});
+        assertEquals(2L, matcher.findMatchingGroups("hhttp://"));
+        assertEquals(2L, matcher.findMatchingGroups("https:/"));
+        assertEquals(3L, matcher.findMatchingGroups("hhttps://"));
+    }
+
+    @Test
+    public void testEmptyMatcher() {
+        KeywordMatcher matcher = new KeywordMatcher.Builder().create();
+        assertEquals(0L, matcher.findMatchingGroups("anything"));
+    }
+
+    @Test
+    public void testLastGroup() {
+        KeywordMatcher.Builder builder = new KeywordMatcher.Builder();
+        builder.addKeywords(KeywordMatcher.MAX_GROUP_COUNT - 1, Collections.singleton(":"));
+        assertEquals(Long.MIN_VALUE, builder.create().findMatchingGroups("a:b"));
+    }
+}
@@ -0,0 +1,174 @@
+package org.netbeans.gradle.project.output;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jtrim.concurrent.ManualTaskExecutor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LineOutputWriterTest {
+    private static final class CollectorHandler implements LineOutputWriter.Handler {
+        public final List<String> lines = new ArrayList<>();
+        public int flushCount = 0;
+
+        @Override
+        public void writeLine(String line) throws IOException {
+            lines.add(line);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushCount++;
+        }
+    }
+
+    private static void executeAll(ManualTaskExecutor executor) throws Exception {
+        while (executor.executeCurrentlySubmitted() > 0) {
+            // One more time to execute tasks submitted by the executed tasks.
+        }
+    }
+
+    @Test
+    public void testLinesAreDispatchedInBackground() throws Exception {
+        CollectorHandler handler = new CollectorHandler();
+        ManualTaskExecutor dispatcher = new ManualTaskExecutor(false);
+        LineOutputWriter writer = new LineOutputWriter(handler, new LineOutputDispatcher(dispatcher, 100));
+
+        writer.write("line1\nline2\n");
+        assertTrue(handler.lines.isEmpty());
+
+        executeAll(dispatcher);
+        assertEquals(Arrays.asList("line1", "line2"), handler.lines);
+        assertEquals(1, handler.flushCount);
+    }
+
+    @Test
+    public void testLineTerminators() throws Exception {
+        CollectorHandler handler = new CollectorHandler();
+        ManualTaskExecutor dispatcher = new ManualTaskExecutor(false);
+        LineOutputWriter writer = new LineOutputWriter(handler, new LineOutputDispatcher(dispatcher, 100));
+
+        writer.write("a\r\nb\rc\n\nd\r");
+        writer.write("\ne");
+        writer.write("f\r");
+        writer.write("g");
+        writer.close();
+
+        assertEquals(Arrays.asList("a", "b", "c", "", "d", "ef", "g"), handler.lines);
+    }
+
+    @Test
+    public void testLineSplitBetweenWrites() throws Exception {
+        CollectorHandler handler = new CollectorHandler();
+        ManualTaskExecutor dispatcher = new ManualTaskExecutor(false);
+        LineOutputWriter writer = new LineOutputWriter(handler, new LineOutputDispatcher(dispatcher, 100));
+
+        writer.write("ab".toCharArray(), 0, 2);
+        writer.write("cd\nef".toCharArray(), 1, 3);
+        writer.flush();
+
+        assertEquals(Arrays.asList("abd"), handler.lines);
+
+        writer.close();
+        assertEquals(Arrays.asList("abd", "e"), handler.lines);
+    }
+
+    @Test
+    public void testWriterDispatchesWhenQueueIsFull() throws Exception {
+        CollectorHandler handler = new CollectorHandler();
+        ManualTaskExecutor dispatcher = new ManualTaskExecutor(false);
+        LineOutputWriter writer = new LineOutputWriter(handler, new LineOutputDispatcher(dispatcher, 3));
+
+        writer.write("line1\nline2\n");
+        assertTrue(handler.lines.isEmpty());
+
+        writer.write("line3\n");
+        assertEquals(Arrays.asList("line1", "line2", "line3"), handler.lines);
+    }
+
+    @Test
+    public void testHandlerErrorIsRethrown() throws Exception {
+        ManualTaskExecutor dispatcher = new ManualTaskExecutor(false);
+        final IOException error = new IOException("Test exception");
+        LineOutputWriter writer = new LineOutputWriter(new LineOutputWriter.Handler() {
+            @Override
+            public void writeLine(String line) throws IOException {
+                throw error;
+            }
+
+            @Override
+            public void flush() throws IOException {
+            }
+        }, new LineOutputDispatcher(dispatcher, 100));
+
+        writer.write("line\n");
+        executeAll(dispatcher);
+
+        try {
+            writer.flush();
+            fail("Expected IOException.");
+        } catch (IOException ex) {
+            assertSame(error, ex);
+        }
+    }
+
+    private static final class TaggingHandler implements LineOutputWriter.Handler {
+        private final String tag;
+        private final List<String> lines;
+
+        public TaggingHandler(String tag, List<String> lines) {
+            this.tag = tag;
+            this.lines = lines;
+        }
+
+        @Override
+        public void writeLine(String line) throws IOException {
+            lines.add(tag + line);
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+    }
+
+    @Test
+    public void testWritersSharingDispatcherAreInterleaved() throws Exception {
+        List<String> lines = new ArrayList<>();
+        ManualTaskExecutor executor = new ManualTaskExecutor(false);
+        LineOutputDispatcher dispatcher = new LineOutputDispatcher(executor, 100);
+        LineOutputWriter writerA = new LineOutputWriter(new TaggingHandler("A", lines), dispatcher);
+        LineOutputWriter writerB = new LineOutputWriter(new TaggingHandler("B", lines), dispatcher);
+
+        writerA.write("1\n");
+        writerB.write("1\n");
+        writerA.write("2\n");
+        writerB.write("2\n3\n");
+        writerA.write("3\n");
+
+        executeAll(executor);
+        assertEquals(Arrays.asList("A1", "B1", "A2", "B2", "B3", "A3"), lines);
+    }
+
+    @Test
+    public void testWritersSharingFullDispatcherAreInterleaved() throws Exception {
+        List<String> lines = new ArrayList<>();
+        ManualTaskExecutor executor = new ManualTaskExecutor(false);
+        LineOutputDispatcher dispatcher = new LineOutputDispatcher(executor, 3);
+        LineOutputWriter writerA = new LineOutputWriter(new TaggingHandler("A", lines), dispatcher);
+        LineOutputWriter writerB = new LineOutputWriter(new TaggingHandler("B", lines), dispatcher);
+
+        writerA.write("1\n");
+        writerB.write("1\n");
+        assertTrue(lines.isEmpty());
+
+        writerA.write("2\n");
+        assertEquals(Arrays.asList("A1", "B1", "A2"), lines);
+
+        writerB.write("2\n");
+        writerA.flush();
+        assertEquals(Arrays.asList("A1", "B1", "A2", "B2"), lines);
+    }
+}
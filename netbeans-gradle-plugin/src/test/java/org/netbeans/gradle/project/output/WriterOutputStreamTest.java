@@ -0,0 +1,87 @@
+package org.netbeans.gradle.project.output;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriterOutputStreamTest {
+    private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+    @Test
+    public void testWriteArray() throws IOException {
+        StringWriter result = new StringWriter();
+        try (WriterOutputStream output = new WriterOutputStream(result, UTF8)) {
+            output.write("Hello \u00E1rv\u00EDzt\u0171r\u0151\n".getBytes(UTF8));
+        }
+        assertEquals("Hello \u00E1rv\u00EDzt\u0171r\u0151\n", result.toString());
+    }
+
+    @Test
+    public void testMultiByteCharacterSplitBetweenWrites() throws IOException {
+        String str = "a\u20ACb\uD83D\uDE00c";
+        byte[] bytes = str.getBytes(UTF8);
+
+        for (int splitIndex = 0; splitIndex <= bytes.length; splitIndex++) {
+            StringWriter result = new StringWriter();
+            try (WriterOutputStream output = new WriterOutputStream(result, UTF8)) {
+                output.write(bytes, 0, splitIndex);
+                output.write(bytes, splitIndex, bytes.length - splitIndex);
+            }
+            assertEquals("Split at " + splitIndex, str, result.toString());
+        }
+    }
+
+    @Test
+    public void testWriteByteByByte() throws IOException {
+        String str = "\u00E1\u20AC\uD83D\uDE00x";
+
+        StringWriter result = new StringWriter();
+        try (WriterOutputStream output = new WriterOutputStream(result, UTF8)) {
+            for (byte b: str.getBytes(UTF8)) {
+                output.write(b);
+            }
+        }
+        assertEquals(str, result.toString());
+    }
+
+    @Test
+    public void testIncompleteCharacterIsNotForwardedBeforeClose() throws IOException {
+        byte[] euro = "\u20AC".getBytes(UTF8);
+
+        StringWriter result = new StringWriter();
+        WriterOutputStream output = new WriterOutputStream(result, UTF8);
+        output.write('x');
+        output.write(euro, 0, 2);
+        output.flush();
+        assertEquals("x", result.toString());
+
+        output.close();
+        assertEquals("x\uFFFD", result.toString());
+    }
+
+    @Test
+    public void testLongOutput() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            expected.append("line\u00E9").append(i).append('\n');
+        }
+        byte[] bytes = expected.toString().getBytes(UTF8);
+
+        StringWriter result = new StringWriter();
+        try (WriterOutputStream output = new WriterOutputStream(result, UTF8)) {
+            int offset = 0;
+            int chunkSize = 1;
+            while (offset < bytes.length) {
+                int length = Math.min(chunkSize, bytes.length - offset);
+                output.write(bytes, offset, length);
+                offset += length;
+                chunkSize = (chunkSize * 7 + 3) % 9000 + 1;
+            }
+        }
+        assertEquals(expected.toString(), result.toString());
+    }
+}
@@ -0,0 +1,176 @@
+package org.netbeans.gradle.project.tasks;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationSource;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.cancel.OperationCanceledException;
+import org.jtrim.concurrent.MonitorableTaskExecutorService;
+import org.jtrim.concurrent.ThreadPoolTaskExecutor;
+import org.jtrim.concurrent.WaitableSignal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class DaemonTaskSchedulerTest {
+    private static final long TIMEOUT_MS = 10000;
+
+    private MonitorableTaskExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolTaskExecutor("DaemonTaskSchedulerTest", 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.tryAwaitTermination(Cancellation.UNCANCELABLE_TOKEN, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static DaemonTaskDef taskDef(DaemonTaskKind kind, String rootDir) {
+        Path rootProjectDir = rootDir != null ? Paths.get(rootDir) : null;
+        return new DaemonTaskDef("Test", true, kind, rootProjectDir, mock(DaemonTask.class));
+    }
+
+    private static Thread acquireAsync(
+            final DaemonTaskScheduler scheduler,
+            final DaemonTaskDef taskDef,
+            final WaitableSignal acquiredSignal) {
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                DaemonTaskScheduler.Permit permit = scheduler.acquire(Cancellation.UNCANCELABLE_TOKEN, taskDef);
+                acquiredSignal.signal();
+                permit.release();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testDifferentBuildsAreConcurrent() {
+        DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 2);
+
+        DaemonTaskScheduler.Permit permit1 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.MODEL_LOAD, "root1"));
+        DaemonTaskScheduler.Permit permit2 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.MODEL_LOAD, "root2"));
+
+        permit1.release();
+        permit2.release();
+
+        DaemonTaskScheduler.TaskKindStatistics statistics = scheduler.getStatistics(DaemonTaskKind.MODEL_LOAD);
+        assertEquals(2, statistics.getStartedTaskCount());
+        assertEquals(2, statistics.getCompletedTaskCount());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testSameBuildIsSerialized() throws Exception {
+        DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 2);
+
+        DaemonTaskScheduler.Permit permit1 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.COMMAND, "root"));
+
+        WaitableSignal acquiredSignal = new WaitableSignal();
+        Thread thread = acquireAsync(scheduler, taskDef(DaemonTaskKind.COMMAND, "root"), acquiredSignal);
+
+        assertFalse(acquiredSignal.tryWaitSignal(Cancellation.UNCANCELABLE_TOKEN, 100, TimeUnit.MILLISECONDS));
+
+        permit1.release();
+        acquiredSignal.waitSignal(Cancellation.UNCANCELABLE_TOKEN);
+        thread.join();
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testReleasedQueueAllowsNextTask() throws Exception {
+        DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 1);
+
+        DaemonTaskScheduler.Permit permit1 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.COMMAND, null));
+        permit1.releaseQueue();
+
+        DaemonTaskScheduler.Permit permit2 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.OTHER, null));
+        permit2.release();
+
+        assertEquals(0, scheduler.getStatistics(DaemonTaskKind.COMMAND).getCompletedTaskCount());
+        permit1.release();
+        assertEquals(1, scheduler.getStatistics(DaemonTaskKind.COMMAND).getCompletedTaskCount());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testCancelWhileWaiting() throws Exception {
+        DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 1);
+
+        DaemonTaskScheduler.Permit permit1 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.COMMAND, "root1"));
+
+        final CancellationSource cancel = Cancellation.createCancellationSource();
+        final DaemonTaskScheduler schedulerRef = scheduler;
+        final WaitableSignal canceledSignal = new WaitableSignal();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                CancellationToken cancelToken = cancel.getToken();
+                try {
+                    schedulerRef.acquire(cancelToken, taskDef(DaemonTaskKind.COMMAND, "root2"));
+                } catch (OperationCanceledException ex) {
+                    canceledSignal.signal();
+                }
+            }
+        });
+        thread.start();
+
+        cancel.getController().cancel();
+        canceledSignal.waitSignal(Cancellation.UNCANCELABLE_TOKEN);
+        thread.join();
+
+        permit1.release();
+
+        DaemonTaskScheduler.Permit permit3 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.COMMAND, "root2"));
+        permit3.release();
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testIdleBuildsAreRemoved() throws Exception {
+        DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 2);
+
+        DaemonTaskScheduler.Permit permit1 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.MODEL_LOAD, "root1"));
+        DaemonTaskScheduler.Permit permit2 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.COMMAND, "root2"));
+        assertEquals(2, scheduler.getActiveBuildCount());
+
+        permit1.release();
+        permit2.release();
+
+        // The tasks holding the permits complete asynchronously.
+        while (scheduler.getActiveBuildCount() > 0) {
+            Thread.sleep(10);
+        }
+
+        DaemonTaskScheduler.Permit permit3 = scheduler.acquire(
+                Cancellation.UNCANCELABLE_TOKEN,
+                taskDef(DaemonTaskKind.MODEL_LOAD, "root1"));
+        assertEquals(1, scheduler.getActiveBuildCount());
+        permit3.release();
+    }
+}
@@ -0,0 +1,97 @@
+package org.netbeans.gradle.project.tasks;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.concurrent.MonitorableTaskExecutorService;
+import org.jtrim.concurrent.ThreadPoolTaskExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.netbeans.api.progress.ProgressHandle;
+
+import static org.junit.Assert.*;
+
+public class GradleDaemonManagerTest {
+    private static final long TIMEOUT_MS = 10000;
+
+    private MonitorableTaskExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolTaskExecutor("GradleDaemonManagerTest", 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.tryAwaitTermination(Cancellation.UNCANCELABLE_TOKEN, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static DaemonTaskDef taskDef(boolean nonBlocking, String rootDir, DaemonTask task) {
+        return new DaemonTaskDef("Test", nonBlocking, DaemonTaskKind.MODEL_LOAD, Paths.get(rootDir), task);
+    }
+
+    private static void runTask(DaemonTaskScheduler scheduler, DaemonTaskDef taskDef) {
+        ProgressHandle progress = ProgressHandle.createHandle(taskDef.getCaption());
+        progress.start();
+        try {
+            GradleDaemonManager.runGradleTask(scheduler, Cancellation.UNCANCELABLE_TOKEN, taskDef, progress);
+        } finally {
+            progress.finish();
+        }
+    }
+
+    private void testNestedTaskOfOtherBuild(boolean nestedNonBlocking) {
+        final DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 1);
+        final AtomicBoolean nestedRun = new AtomicBoolean(false);
+        final AtomicBoolean nestedExclusive = new AtomicBoolean(false);
+
+        final DaemonTaskDef nestedTask = taskDef(nestedNonBlocking, "root2", new DaemonTask() {
+            @Override
+            public void run(CancellationToken cancelToken, ProgressHandle progress) {
+                nestedRun.set(true);
+                nestedExclusive.set(GradleDaemonManager.isRunningExclusiveTask());
+            }
+        });
+
+        runTask(scheduler, taskDef(true, "root1", new DaemonTask() {
+            @Override
+            public void run(CancellationToken cancelToken, ProgressHandle progress) {
+                assertTrue(GradleDaemonManager.isRunningExclusiveTask());
+                runTask(scheduler, nestedTask);
+            }
+        }));
+
+        assertTrue(nestedRun.get());
+        assertTrue(nestedExclusive.get());
+        assertFalse(GradleDaemonManager.isRunningExclusiveTask());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testNestedNonBlockingTaskOfOtherBuild() {
+        testNestedTaskOfOtherBuild(true);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testNestedBlockingTaskOfOtherBuild() {
+        testNestedTaskOfOtherBuild(false);
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void testBlockingTaskDoesNotHoldTheQueue() {
+        DaemonTaskScheduler scheduler = new DaemonTaskScheduler(executor, 1);
+        final AtomicBoolean exclusive = new AtomicBoolean(true);
+
+        runTask(scheduler, taskDef(false, "root1", new DaemonTask() {
+            @Override
+            public void run(CancellationToken cancelToken, ProgressHandle progress) {
+                exclusive.set(GradleDaemonManager.isRunningExclusiveTask());
+            }
+        }));
+
+        assertFalse(exclusive.get());
+    }
+}
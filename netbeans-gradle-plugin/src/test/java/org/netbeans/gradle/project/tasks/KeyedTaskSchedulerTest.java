@@ -0,0 +1,185 @@
+package org.netbeans.gradle.project.tasks;
+
+import java.util.concurrent.TimeUnit;
+import org.jtrim.cancel.Cancellation;
+import org.jtrim.cancel.CancellationSource;
+import org.jtrim.cancel.CancellationToken;
+import org.jtrim.concurrent.CancelableTask;
+import org.jtrim.concurrent.CleanupTask;
+import org.jtrim.concurrent.ManualTaskExecutor;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class KeyedTaskSchedulerTest {
+    @Test
+    public void testSameKeyIsSerialized() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 4);
+
+        CancelableTask task1 = mock(CancelableTask.class);
+        CancelableTask task2 = mock(CancelableTask.class);
+
+        scheduler.getExecutor("key").execute(Cancellation.UNCANCELABLE_TOKEN, task1, null);
+        scheduler.getExecutor("key").execute(Cancellation.UNCANCELABLE_TOKEN, task2, null);
+
+        assertEquals(1, scheduler.getStatistics("key").getQueuedTaskCount());
+        assertTrue(scheduler.getStatistics("key").isExecuting());
+
+        assertEquals(1, wrapped.executeCurrentlySubmitted());
+        verify(task1).execute(any(CancellationToken.class));
+        verifyZeroInteractions(task2);
+
+        assertEquals(1, wrapped.executeCurrentlySubmitted());
+        verify(task2).execute(any(CancellationToken.class));
+
+        KeyedTaskScheduler.QueueStatistics statistics = scheduler.getStatistics("key");
+        assertEquals(0, statistics.getQueuedTaskCount());
+        assertFalse(statistics.isExecuting());
+        assertEquals(2, statistics.getStartedTaskCount());
+    }
+
+    @Test
+    public void testDifferentKeysAreConcurrent() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 4);
+
+        CancelableTask task1 = mock(CancelableTask.class);
+        CancelableTask task2 = mock(CancelableTask.class);
+
+        scheduler.getExecutor("key1").execute(Cancellation.UNCANCELABLE_TOKEN, task1, null);
+        scheduler.getExecutor("key2").execute(Cancellation.UNCANCELABLE_TOKEN, task2, null);
+
+        assertEquals(2, wrapped.executeCurrentlySubmitted());
+        verify(task1).execute(any(CancellationToken.class));
+        verify(task2).execute(any(CancellationToken.class));
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 1);
+
+        CancelableTask task1 = mock(CancelableTask.class);
+        CancelableTask task2 = mock(CancelableTask.class);
+        CancelableTask task3 = mock(CancelableTask.class);
+
+        scheduler.getExecutor("key1").execute(Cancellation.UNCANCELABLE_TOKEN, task1, null);
+        scheduler.getExecutor("key1").execute(Cancellation.UNCANCELABLE_TOKEN, task2, null);
+        scheduler.getExecutor("key2").execute(Cancellation.UNCANCELABLE_TOKEN, task3, null);
+
+        assertEquals(1, wrapped.executeCurrentlySubmitted());
+        assertEquals(1, wrapped.executeCurrentlySubmitted());
+        assertEquals(1, wrapped.executeCurrentlySubmitted());
+        assertEquals(0, wrapped.executeCurrentlySubmitted());
+
+        // The other key must get its turn before the second task of the first key.
+        InOrder inOrder = inOrder(task1, task2, task3);
+        inOrder.verify(task1).execute(any(CancellationToken.class));
+        inOrder.verify(task3).execute(any(CancellationToken.class));
+        inOrder.verify(task2).execute(any(CancellationToken.class));
+    }
+
+    @Test
+    public void testIncreaseConcurrencyLimit() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 1);
+
+        CancelableTask task1 = mock(CancelableTask.class);
+        CancelableTask task2 = mock(CancelableTask.class);
+
+        scheduler.getExecutor("key1").execute(Cancellation.UNCANCELABLE_TOKEN, task1, null);
+        scheduler.getExecutor("key2").execute(Cancellation.UNCANCELABLE_TOKEN, task2, null);
+        scheduler.setMaxConcurrency(2);
+
+        assertEquals(2, wrapped.executeCurrentlySubmitted());
+        verify(task1).execute(any(CancellationToken.class));
+        verify(task2).execute(any(CancellationToken.class));
+    }
+
+    @Test
+    public void testCanceledWithCleanup() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 1);
+
+        CancelableTask task1 = mock(CancelableTask.class);
+        CancelableTask task2 = mock(CancelableTask.class);
+
+        CleanupTask cleanup1 = mock(CleanupTask.class);
+        CleanupTask cleanup2 = mock(CleanupTask.class);
+
+        CancellationSource cancel1 = Cancellation.createCancellationSource();
+
+        scheduler.getExecutor("key").execute(cancel1.getToken(), task1, cleanup1);
+        scheduler.getExecutor("key").execute(Cancellation.UNCANCELABLE_TOKEN, task2, cleanup2);
+
+        cancel1.getController().cancel();
+
+        wrapped.executeCurrentlySubmitted();
+        wrapped.executeCurrentlySubmitted();
+
+        verifyZeroInteractions(task1);
+
+        InOrder inOrder = inOrder(task2, cleanup1, cleanup2);
+        inOrder.verify(cleanup1).cleanup(eq(true), isNull(Throwable.class));
+        inOrder.verify(task2).execute(any(CancellationToken.class));
+        inOrder.verify(cleanup2).cleanup(eq(false), isNull(Throwable.class));
+    }
+
+    @Test
+    public void testFailedTaskDoesNotBlockQueue() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 1);
+
+        CancelableTask task1 = mock(CancelableTask.class);
+        CancelableTask task2 = mock(CancelableTask.class);
+        CleanupTask cleanup1 = mock(CleanupTask.class);
+
+        Exception error = new Exception("Test exception");
+        doThrow(error).when(task1).execute(any(CancellationToken.class));
+
+        scheduler.getExecutor("key").execute(Cancellation.UNCANCELABLE_TOKEN, task1, cleanup1);
+        scheduler.getExecutor("key").execute(Cancellation.UNCANCELABLE_TOKEN, task2, null);
+
+        wrapped.executeCurrentlySubmitted();
+        verify(cleanup1).cleanup(false, error);
+
+        wrapped.executeCurrentlySubmitted();
+        verify(task2).execute(any(CancellationToken.class));
+    }
+
+    @Test
+    public void testStatisticsOfUnknownKey() {
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(new ManualTaskExecutor(false), 1);
+
+        KeyedTaskScheduler.QueueStatistics statistics = scheduler.getStatistics("key");
+        assertEquals(0, statistics.getQueuedTaskCount());
+        assertEquals(0, statistics.getStartedTaskCount());
+        assertEquals(0, statistics.getAverageWaitTime(TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.getAllStatistics().isEmpty());
+    }
+
+    @Test
+    public void testIdleQueuesAreRemoved() throws Exception {
+        ManualTaskExecutor wrapped = new ManualTaskExecutor(false);
+        KeyedTaskScheduler<String> scheduler = new KeyedTaskScheduler<>(wrapped, 4);
+
+        scheduler.getExecutor("key1").execute(Cancellation.UNCANCELABLE_TOKEN, mock(CancelableTask.class), null);
+        scheduler.getExecutor("key2").execute(Cancellation.UNCANCELABLE_TOKEN, mock(CancelableTask.class), null);
+        assertEquals(2, scheduler.getActiveKeyCount());
+
+        assertEquals(2, wrapped.executeCurrentlySubmitted());
+        assertEquals(0, scheduler.getActiveKeyCount());
+
+        // The statistics are kept for the removed queues.
+        assertEquals(1, scheduler.getStatistics("key1").getStartedTaskCount());
+        assertEquals(2, scheduler.getAllStatistics().size());
+
+        scheduler.getExecutor("key1").execute(Cancellation.UNCANCELABLE_TOKEN, mock(CancelableTask.class), null);
+        assertEquals(1, scheduler.getActiveKeyCount());
+        assertEquals(2, scheduler.getStatistics("key1").getStartedTaskCount());
+    }
+}
@@ -0,0 +1,108 @@
+package org.netbeans.gradle.project.util;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExcludeIncludeMatcherTest {
+    private static final String[] SEGMENTS = {"a", "b", "test", "Test", "x.java", "FooTest.java", "ab"};
+
+    private static Path getRoot() {
+        return Paths.get("root", "subDir").toAbsolutePath();
+    }
+
+    private static List<Path> getTestedPaths(Path root, int maxDepth) {
+        List<Path> result = new ArrayList<>();
+        result.add(root);
+
+        List<Path> prevLevel = Collections.singletonList(root);
+        for (int depth = 0; depth < maxDepth; depth++) {
+            List<Path> level = new ArrayList<>();
+            for (Path parent: prevLevel) {
+                for (String segment: SEGMENTS) {
+                    level.add(parent.resolve(segment));
+                }
+            }
+            result.addAll(level);
+            prevLevel = level;
+        }
+        return result;
+    }
+
+    private static PathMatcher globMatcher(String glob) {
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    private static void assertSameAsGlob(String pattern, String equivalentGlob) {
+        ExcludeIncludeMatcher matcher = ExcludeIncludeMatcher.compile(
+                Collections.singleton(pattern),
+                Collections.<String>emptySet());
+        PathMatcher expected = globMatcher(equivalentGlob);
+
+        Path root = getRoot();
+        for (Path path: getTestedPaths(root, 4)) {
+            boolean expectedExcluded = expected.matches(root.relativize(path));
+            assertEquals(pattern + " for " + path, !expectedExcluded, matcher.isIncluded(root, path));
+        }
+    }
+
+    @Test
+    public void testLiteralPatterns() {
+        assertSameAsGlob("a/b", "a/b");
+        assertSameAsGlob("/a/b", "a/b");
+        assertSameAsGlob("a", "a");
+    }
+
+    @Test
+    public void testSingleSegmentWildcards() {
+        assertSameAsGlob("*", "*");
+        assertSameAsGlob("*/*.java", "*/*.java");
+        assertSameAsGlob("a/*Test.java", "a/*Test.java");
+        assertSameAsGlob("?/t?st", "?/t?st");
+        assertSameAsGlob("[a-b]/*", "[a-b]/*");
+        assertSameAsGlob("{a,b}/*", "{a,b}/*");
+    }
+
+    @Test
+    public void testAnyDepthPatterns() {
+        assertSameAsGlob("**", "**");
+        assertSameAsGlob("**/test/*", "{**/,}test/*");
+        assertSameAsGlob("**/*.java", "{**/,}*.java");
+        assertSameAsGlob("a/**", "a/**");
+        assertSameAsGlob("a/", "a/**");
+        assertSameAsGlob("a/**/b", "a{/**/,/}b");
+        assertSameAsGlob("**/a/**/test/**", "{**/,}a{/**/,/}test/**");
+    }
+
+    @Test
+    public void testGroupWithSeparator() {
+        assertSameAsGlob("{a/b,test}/*", "{a/b,test}/*");
+    }
+
+    @Test
+    public void testBackslashes() {
+        assertSameAsGlob("a\\\\b", "a/b");
+        assertSameAsGlob("**\\\\*.java", "{**/,}*.java");
+        assertSameAsGlob("\\a/b", "\\a/b");
+        assertSameAsGlob("a/\\*", "a/\\*");
+    }
+
+    @Test
+    public void testOutsideOfRoot() {
+        Path root = getRoot();
+        ExcludeIncludeMatcher matcher = ExcludeIncludeMatcher.compile(
+                Collections.<String>emptySet(),
+                Collections.singleton("**"));
+
+        assertTrue(matcher.isIncluded(root, root.resolve("a")));
+        assertFalse(matcher.isIncluded(root, root.getParent().resolve("a")));
+        assertFalse(ExcludeIncludeMatcher.ALLOW_ALL.isIncluded(root, root.getParent()));
+    }
+}